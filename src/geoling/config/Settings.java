@@ -19,6 +19,9 @@ public class Settings {
 	/** Default path to the directory containing configuration files. */
 	public static String PROPERTIES_PATH = "properties/";
 	
+	/** Name of the directory (in the properties directory) containing cache files. */
+	public static String CACHE_DIRECTORY = "cache/";
+	
 	/** Default file name of the settings file (in the properties directory). */
 	public static String DEFAULT_SETTINGS_FILENAME = "settings.properties";
 	
@@ -109,4 +112,22 @@ public class Settings {
 		Directory.mkdir(Settings.PROPERTIES_PATH);
 	}
 	
+	/**
+	 * Returns the path to the directory containing cache files.
+	 * 
+	 * @return the path to the cache directory
+	 */
+	public static String getCachePath() {
+		return Directory.ensureTrailingSlash(Settings.PROPERTIES_PATH) + CACHE_DIRECTORY;
+	}
+	
+	/**
+	 * Ensures that the cache directory exists.
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void createCacheDirectory() throws IOException {
+		Directory.mkdir(getCachePath());
+	}
+	
 }
\ No newline at end of file
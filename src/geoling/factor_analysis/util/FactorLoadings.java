@@ -2,7 +2,6 @@ package geoling.factor_analysis.util;
 
 import geoling.maps.weights.VariantWeights;
 import geoling.models.Location;
-import geoling.models.Variant;
 
 import java.util.HashMap;
 import java.util.Map.Entry;
@@ -46,12 +45,11 @@ public class FactorLoadings extends VariantWeights {
 	 *                  <code>Factor</code> object)
 	 */
 	public void putVariantCounter(Location location, HashMap<Factor, Double> loadings) {
-		HashMap<Variant, Integer> scaledLoadings = new HashMap<Variant, Integer>();
+		int locationIndex = addLocation(location);
 		for (Entry<Factor, Double> entry : loadings.entrySet()) {
-			scaledLoadings.put(entry.getKey(), (int) Math.round(SCALE_FACTOR * entry.getValue().doubleValue()));
+			addOccurences(addVariant(entry.getKey()), locationIndex, (int) Math.round(SCALE_FACTOR * entry.getValue().doubleValue()));
 		}
-		variantCounter.put(location, scaledLoadings);
-		totalCounter.put(location, SCALE_FACTOR);
+		setTotalNumberOfVariantOccurences(locationIndex, SCALE_FACTOR);
 	}
 	
 }
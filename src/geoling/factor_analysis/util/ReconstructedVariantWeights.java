@@ -5,8 +5,6 @@ import geoling.models.Location;
 import geoling.models.Map;
 import geoling.models.Variant;
 
-import java.util.HashMap;
-
 /**
  * Object used to handle reconstructed maps from a factor analysis.
  * 
@@ -50,24 +48,12 @@ public class ReconstructedVariantWeights extends VariantWeights {
 		if (weight.doubleValue() < 0.0) weight = 0.0;
 		if (weight.doubleValue() > 1.0) weight = 1.0;
 		
-		HashMap<Variant, Integer> scaledWeights = variantCounter.get(location);
-		if (scaledWeights == null) {
-			scaledWeights = new HashMap<Variant, Integer>();
-			variantCounter.put(location, scaledWeights);
-		}
-		
-		Integer oldWeight = scaledWeights.get(variant);
-		if (oldWeight != null) {
+		int locationIndex = addLocation(location);
+		int variantIndex  = addVariant(variant);
+		if (getNumberOfVariantOccurences(variantIndex, locationIndex) != 0) {
 			throw new RuntimeException("This should not happen: existing weight for this variant and location.");
 		}
-		Integer newWeight = (int)Math.round(SCALE_FACTOR * weight);
-		scaledWeights.put(variant, newWeight);
-		
-		Integer oldTotal = totalCounter.get(location);
-		if (oldTotal == null) {
-			oldTotal = 0;
-		}
-		totalCounter.put(location, oldTotal + newWeight);
+		addOccurences(variantIndex, locationIndex, (int)Math.round(SCALE_FACTOR * weight));
 	}
 	
 }
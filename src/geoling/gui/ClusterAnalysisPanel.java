@@ -33,6 +33,7 @@ import geoling.util.ThreadedTodoWorker;
 import geoling.util.XMLExport;
 import geoling.util.clusteranalysis.ClusterAnalysis;
 import geoling.util.clusteranalysis.ClusteringResult;
+import geoling.util.clusteranalysis.Dendrogram;
 import geoling.util.clusteranalysis.distance.EuclideanDistance;
 import geoling.util.clusteranalysis.linkage.CentroidMethod;
 import geoling.util.clusteranalysis.linkage.LinkageMethod;
@@ -83,6 +84,7 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 import javax.xml.stream.XMLStreamException;
 
+import org.javalite.activejdbc.Base;
 import org.javalite.activejdbc.LazyList;
 
 /**
@@ -163,6 +165,13 @@ public class ClusterAnalysisPanel {
 
 	private MapClusteringResult result;
 
+	/** The cluster objects of the last agglomerative clustering, which are reused for unchanged settings. */
+	private ArrayList<MapClusterObject> cachedClusterObjects;
+	/** The maps and settings used for <code>cachedClusterObjects</code>, see <code>getClusterObjectsKey</code>. */
+	private List<Object> cachedClusterObjectsKey;
+	/** The merge tree of the last agglomerative clustering of <code>cachedClusterObjects</code>. */
+	private Dendrogram cachedDendrogram;
+
 	private Object[][] tableData;
 	private JTable table;
 	private ArrayList<AreaClassMap> tableAreaClassMaps;
@@ -305,23 +314,42 @@ public class ClusterAnalysisPanel {
 									}
 								}
 
-								ArrayList<AreaClassMap> areaClassMaps = createAreaClassMaps();
-								if (areaClassMaps == null || areaClassMaps.isEmpty()) {
-									pm.close();
-									return;
-								}
-								ArrayList<MapClusterObject> clusterObjects = parseAreaClassMapsToObjects(areaClassMaps);
-								if (pm.isCanceled()) {
-									return;
+								// if maps and settings are unchanged, the cluster objects of the last run are reused,
+								// and therefore also the cached map distances and the cached dendrogram
+								List<Object> clusterObjectsKey = getClusterObjectsKey();
+								ArrayList<AreaClassMap> areaClassMaps;
+								ArrayList<MapClusterObject> clusterObjects;
+								if (clusterObjectsKey.equals(cachedClusterObjectsKey)) {
+									clusterObjects = cachedClusterObjects;
+									areaClassMaps = new ArrayList<AreaClassMap>(clusterObjects.size());
+									for (MapClusterObject clusterObject : clusterObjects) {
+										areaClassMaps.add(clusterObject.getAreaClassMap());
+									}
 								}
-								if (useCovarianceFunction) {
-									clusterObjects = computeCovarianceFunctionForClusterObjects(clusterObjects);
+								else {
+									areaClassMaps = createAreaClassMaps();
+									if (areaClassMaps == null || areaClassMaps.isEmpty()) {
+										pm.close();
+										return;
+									}
+									clusterObjects = parseAreaClassMapsToObjects(areaClassMaps);
 									if (pm.isCanceled()) {
 										return;
 									}
+									if (useCovarianceFunction) {
+										clusterObjects = computeCovarianceFunctionForClusterObjects(clusterObjects);
+										if (pm.isCanceled()) {
+											return;
+										}
+									}
+									cachedClusterObjects = clusterObjects;
+									cachedClusterObjectsKey = clusterObjectsKey;
+									cachedDendrogram = null;
 								}
-								ClusterAnalysis clustering = new AgglomerativeHierarchicalClustering(selectedClusterDistance, termination);
+								AgglomerativeHierarchicalClustering clustering = new AgglomerativeHierarchicalClustering(selectedClusterDistance, termination);
+								clustering.setDendrogram(cachedDendrogram);
 								result = new MapClusteringResult(performClusterAnalysis(clustering, clusterObjects));
+								cachedDendrogram = clustering.getDendrogram();
 
 								if (pm.isCanceled()) {
 									return;
@@ -1516,6 +1544,71 @@ public class ClusterAnalysisPanel {
 	}
 
 
+	/**
+	 * Returns the maps of the selected group.
+	 * 
+	 * @return The list of maps, all maps if no group is selected
+	 */
+	private List<Map> getSelectedMaps() {
+		List<Map> maps = (selectedGroup != null) ? selectedGroup.getAll(Map.class) : null;
+		if (maps == null) {
+			// no group: fallback to all maps
+			maps = Map.findAll();
+		}
+		return maps;
+	}
+
+
+	/**
+	 * Returns the maps, settings and the state of the database which determine the
+	 * cluster objects of an agglomerative clustering: if they are equal for two runs,
+	 * then the cluster objects of the first run can be reused.
+	 * 
+	 * @return The list of map IDs, settings and the database stamp
+	 */
+	private List<Object> getClusterObjectsKey() {
+		ArrayList<Object> mapIds = new ArrayList<Object>();
+		for (Map map : getSelectedMaps()) {
+			mapIds.add(map.getId());
+		}
+		return Arrays.asList(mapIds, selectedLevel, selectedDistanceMeasure, selectedKernel, selectedEstimatorIdentification,
+		                     selectedMapDistance, useCovarianceFunction, getDatabaseStamp());
+	}
+
+
+	/**
+	 * Returns a stamp of the tables from which the cluster objects are computed
+	 * (bandwidths, interview answers, variant mappings and locations). It changes
+	 * if rows are added or removed (the row IDs are never reused) or if the relevant
+	 * values are modified, e.g. when bandwidths are recomputed in the meantime.
+	 * 
+	 * @return The list of aggregated values of the tables
+	 */
+	private List<Object> getDatabaseStamp() {
+		String[] columns = { "bandwidths_count", "bandwidths_max_id", "bandwidths_sum",
+		                     "answers_count", "answers_max_id", "answers_sum",
+		                     "mappings_count", "mappings_max_id", "mappings_sum",
+		                     "locations_count", "locations_max_id", "locations_sum" };
+		java.util.Map<?,?> row = Base.findAll("SELECT (SELECT COUNT(*) FROM bandwidths) AS bandwidths_count,"+
+		                                      " (SELECT MAX(id) FROM bandwidths) AS bandwidths_max_id,"+
+		                                      " (SELECT SUM(bandwidth) FROM bandwidths) AS bandwidths_sum,"+
+		                                      " (SELECT COUNT(*) FROM interview_answers) AS answers_count,"+
+		                                      " (SELECT MAX(id) FROM interview_answers) AS answers_max_id,"+
+		                                      " (SELECT SUM(variant_id) FROM interview_answers) AS answers_sum,"+
+		                                      " (SELECT COUNT(*) FROM variants_mappings) AS mappings_count,"+
+		                                      " (SELECT MAX(id) FROM variants_mappings) AS mappings_max_id,"+
+		                                      " (SELECT SUM(to_variant_id) FROM variants_mappings) AS mappings_sum,"+
+		                                      " (SELECT COUNT(*) FROM locations) AS locations_count,"+
+		                                      " (SELECT MAX(id) FROM locations) AS locations_max_id,"+
+		                                      " (SELECT SUM(latitude) + SUM(longitude) FROM locations) AS locations_sum").get(0);
+		ArrayList<Object> stamp = new ArrayList<Object>(columns.length);
+		for (String column : columns) {
+			stamp.add(row.get(column));
+		}
+		return stamp;
+	}
+
+
 	/**
 	 * This method constructs a list of area Class Maps which contains all maps
 	 * given by <code>maps</code>. The bandwidth, which is necessary to create
@@ -1526,11 +1619,7 @@ public class ClusterAnalysisPanel {
 	 * @return The described Array List of area Class Maps
 	 */
 	private ArrayList<AreaClassMap> createAreaClassMaps() {
-		List<Map> maps = (selectedGroup != null) ? selectedGroup.getAll(Map.class) : null;
-		if (maps == null) {
-			// no group: fallback to all maps
-			maps = Map.findAll();
-		}
+		List<Map> maps = getSelectedMaps();
 		final ArrayList<AreaClassMap> result = new ArrayList<AreaClassMap>();
 
 		pm.setProgress(0);
@@ -1620,44 +1709,6 @@ public class ClusterAnalysisPanel {
 		final int p = (int) ((size[0] + size[1]) / 2.0);
 
 
-		// precompute distances between grid points
-		if (pm.isCanceled()) {
-			return null;
-		}
-		pm.setNote(rb.getString("text_noteComputeGridDistances"));
-		pm.setProgress(0);
-		pm.setMaximum(grid.getGridPoints().size() * grid.getGridPoints().size() / 2 + 1);
-
-		final double[][] cachedDistances = new double[grid.getGridPoints().size()][];
-		ThreadedTodoWorker.workOnIndices(0, grid.getGridPoints().size() - 1, 1, new ThreadedTodoWorker.SimpleTodoWorker<Integer>() {
-			int counter = 0;
-
-			public void processTodoItem(Integer todo) {
-				int j = todo.intValue();
-				cachedDistances[j] = new double[j];
-				for (int k = 0; k < j; k++) {
-					RectangularGrid.GridPoint currentLocation1 = grid.getGridPoints().get(j);
-					RectangularGrid.GridPoint currentLocation2 = grid.getGridPoints().get(k);
-					cachedDistances[j][k] = selectedDistanceMeasure.getDistance(currentLocation1.getLatLong(), currentLocation2.getLatLong());
-
-					if (pm.isCanceled()) {
-						return;
-					}
-					synchronized (this) {
-						counter++;
-						pm.setProgress(counter);
-					}
-
-				}
-			}
-		});
-
-		if (pm.isCanceled()) {
-			return null;
-		}
-		pm.setProgress(pm.getMaximum());
-
-
 		// compute all covariance functions
 		pm.setProgress(0);
 		pm.setMaximum(n*2);
@@ -1680,7 +1731,7 @@ public class ClusterAnalysisPanel {
 				}
 
 
-				clusterObjects.get(i).computeCovarianceFunction(grid, cachedDistances, p);
+				clusterObjects.get(i).computeCovarianceFunction(grid, p);
 
 
 				synchronized (this) {
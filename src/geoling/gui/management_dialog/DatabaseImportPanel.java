@@ -5,9 +5,13 @@ import geoling.gui.GeoLingGUI;
 import geoling.gui.util.StatusLabel;
 import geoling.locations.SimilarCoordinatesAggregation;
 import geoling.locations.util.AggregatedLocation;
+import geoling.maps.distances.DistanceCacheFile;
+import geoling.maps.distances.PrecomputedDistance;
 import geoling.models.*;
+import geoling.sql.BulkInsertWriter;
 import geoling.sql.SQLReader;
 import geoling.util.Directory;
+import geoling.util.ProgressOutput;
 
 import java.awt.Color;
 import java.awt.GridBagConstraints;
@@ -40,6 +44,8 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTextField;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.DBException;
 import org.javalite.activejdbc.LazyList;
 
 /**
@@ -1578,6 +1584,8 @@ public class DatabaseImportPanel {
 		distance.set("identification", distanceIdentification);
 		distance.saveIt();
 		Object distanceId = distance.getId();
+		// cache files of a previous database may use the same distance ID
+		DistanceCacheFile.delete(distance);
 
 		// fetch all locations to get their ids and put them in a catch to reduce the number of database queries
 		LazyList<Location> locations = Location.findAll();
@@ -1612,51 +1620,82 @@ public class DatabaseImportPanel {
 				tagNames = null;
 			}
 	
-			// read all further lines and create one entry for each line
-			int countLine = 0;
-			while ((line=br.readLine())!=null) {
-				countLine++;
-				if (line.isEmpty()) continue;
-				
-				String[] split = line.split(DELIMITER_COLUMNS);
-				if (split.length!=inputColumns) {
-					throw new IllegalArgumentException("Wrong number of columns in line " + (countLine+1) + " for file: " + filename);
-				}
-				LocationDistance locationDistance = new LocationDistance();
-				locationDistance.set("distance_id", distanceId);
-				Object locationId1;
-				Object locationId2;
-				if (locationsMap.containsKey(split[0])) {
-					locationId1 = locationsMap.get(split[0]);
-				}
-				else {
-					throw new IllegalArgumentException("Name of location is not contained in table 'locations': " + split[0]);
-	
-				}
-				if (locationsMap.containsKey(split[1])) {
-					locationId2 = locationsMap.get(split[1]);
+			// without tags, the rows are inserted in batches (tags require the IDs of the single rows)
+			BulkInsertWriter writer = null;
+			if (tagColumns == 0) {
+				writer = new BulkInsertWriter(Base.connection(), "location_distances", "distance_id", "location_id1", "location_id2", "distance");
+			}
+			try {
+				// read all further lines and create one entry for each line
+				int countLine = 0;
+				while ((line=br.readLine())!=null) {
+					countLine++;
+					if (line.isEmpty()) continue;
+					
+					String[] split = line.split(DELIMITER_COLUMNS);
+					if (split.length!=inputColumns) {
+						throw new IllegalArgumentException("Wrong number of columns in line " + (countLine+1) + " for file: " + filename);
+					}
+					Object locationId1;
+					Object locationId2;
+					if (locationsMap.containsKey(split[0])) {
+						locationId1 = locationsMap.get(split[0]);
+					}
+					else {
+						throw new IllegalArgumentException("Name of location is not contained in table 'locations': " + split[0]);
+		
+					}
+					if (locationsMap.containsKey(split[1])) {
+						locationId2 = locationsMap.get(split[1]);
+					}
+					else {
+						throw new IllegalArgumentException("Name of location is not contained in table 'locations': " + split[1]);
+		
+					}
+					// by definition, location_id1 contains the smaller ID (the distance is symmetric)
+					int cmp = Long.compare(((Number)locationId1).longValue(), ((Number)locationId2).longValue());
+					if (cmp == 0) {
+						throw new IllegalArgumentException("location_id1 and location_id2 must not be equal!");
+					} else if (cmp > 0) {
+						Object tmp = locationId1;
+						locationId1 = locationId2;
+						locationId2 = tmp;
+					}
+					if (writer != null) {
+						writer.addRow(distanceId, locationId1, locationId2, Double.valueOf(split[2]));
+						continue;
+					}
+					LocationDistance locationDistance = new LocationDistance();
+					locationDistance.set("distance_id", distanceId);
+					locationDistance.set("location_id1", locationId1);
+					locationDistance.set("location_id2", locationId2);
+					locationDistance.set("distance", split[2]);
+					locationDistance.saveIt();
+		
+					// add optional tags
+					for (int t=0; t<tagColumns; t++) {
+						if (split[requiredColumns+t].length()>0) {
+							Tag tag = new Tag();
+							tag.set("name", tagNames[t]);
+							tag.set("value", split[requiredColumns+t]);
+							locationDistance.add(tag);
+						}
+					}
 				}
-				else {
-					throw new IllegalArgumentException("Name of location is not contained in table 'locations': " + split[1]);
-	
+				if (writer != null) {
+					writer.close(new ProgressOutput(System.out));
 				}
-				locationDistance.set("location_id1", locationId1);
-				locationDistance.set("location_id2", locationId2);
-				locationDistance.set("distance", split[2]);
-				locationDistance.saveIt();
-	
-				// add optional tags
-				for (int t=0; t<tagColumns; t++) {
-					if (split[requiredColumns+t].length()>0) {
-						Tag tag = new Tag();
-						tag.set("name", tagNames[t]);
-						tag.set("value", split[requiredColumns+t]);
-						locationDistance.add(tag);
-					}
+			} finally {
+				if (writer != null) {
+					writer.abort();
 				}
 			}
 
+		} catch (SQLException e) {
+			throw new DBException(e);
 		}
+		
+		PrecomputedDistance.invalidateCache(distanceIdentification);
 
 	}
 
@@ -3,7 +3,6 @@ package geoling.gui.util;
 import geoling.locations.util.AggregatedLocation;
 import geoling.maps.AreaClassMap;
 import geoling.models.Variant;
-import geoling.util.sim.grain.Point;
 import geoling.util.sim.grain.Polytope;
 
 import java.awt.event.MouseEvent;
@@ -12,8 +11,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
 
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -33,7 +30,7 @@ public class AreaClassMapLabel extends JLabel {
 	private HashMap<Polytope, AggregatedLocation> hints;
 	private AreaClassMap areaClassMap;
 	private float scaleFactor;
-	private Polytope lastPolytope;
+	private HintRaster hintRaster;
 
 	/** Default constructor using constructor of super class. */
 	public AreaClassMapLabel() {
@@ -71,27 +68,26 @@ public class AreaClassMapLabel extends JLabel {
 		if (x >= 0 && x <= imageIcon.getIconWidth() && y >= 0 & y <= imageIcon.getIconHeight()) {
 			x = (int) (x / scaleFactor);
 			y = (int) (y / scaleFactor);
-			// the cursor is still in the previous voronoi cell
-			if (lastPolytope != null && lastPolytope.contains(new Point(new double[] { x, y }))) {
-				return getToolTipText(hints.get(lastPolytope), areaClassMap);
-			} 
-			// the cursor has moved to another voronoi cell
-			else {
-				lastPolytope = null;
-				Iterator<Entry<Polytope, AggregatedLocation>> it = this.hints.entrySet().iterator();
-				while (it.hasNext()) {
-					Entry<Polytope, AggregatedLocation> entry = it.next();
-					if (entry.getKey().contains(new Point(new double[] { x, y }))) {
-						lastPolytope = entry.getKey();
-						return getToolTipText(hints.get(lastPolytope), areaClassMap);
-					}
-				}
+			AggregatedLocation location = getHintRaster().getLocation(x, y);
+			if (location != null) {
+				return getToolTipText(location, areaClassMap);
 			}
 		}
 		return null;
 
 	}
 
+	/**
+	 * Returns the raster of the cells, which is computed when it is required for the first time.
+	 * @return the raster of the cells
+	 */
+	private HintRaster getHintRaster() {
+		if (hintRaster == null) {
+			hintRaster = new HintRaster(hints);
+		}
+		return hintRaster;
+	}
+
 	/**
 	 * Gives a useful <code>String</code> for the selected location.
 	 * @param location the location of the cursor
@@ -127,4 +123,4 @@ public class AreaClassMapLabel extends JLabel {
 		return result + "</html>";
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
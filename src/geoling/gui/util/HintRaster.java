@@ -0,0 +1,165 @@
+package geoling.gui.util;
+
+import geoling.locations.util.AggregatedLocation;
+import geoling.util.sim.grain.Point;
+import geoling.util.sim.grain.Polytope;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Raster of the cell polygons of a plotted map (the "hints", see e.g.
+ * <code>PlotVoronoiMap.voronoiCellsHints</code>), which stores for every
+ * pixel the index of the cell containing it. This allows to find the location
+ * under the mouse cursor in constant time, instead of testing all polygons.
+ * <p>
+ * The raster is computed by a scanline algorithm: a pixel with integer coordinates
+ * (x, y) belongs to a polygon, if the horizontal half-open interval at height y
+ * crosses the polygon boundary an odd number of times left of x. Therefore pixels
+ * on a common edge of adjacent cells are assigned to exactly one of them.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class HintRaster {
+	
+	/** The locations of the cells, identified by their indices. */
+	private final AggregatedLocation[] locations;
+	
+	/** The smallest x-coordinate of the raster. */
+	private final int minX;
+	
+	/** The smallest y-coordinate of the raster. */
+	private final int minY;
+	
+	/** The width of the raster. */
+	private final int width;
+	
+	/** The height of the raster. */
+	private final int height;
+	
+	/** The cell index for every pixel (row by row), <code>-1</code> if there is no cell. */
+	private final int[] raster;
+	
+	/**
+	 * Constructs the raster for the given hints.
+	 * 
+	 * @param hints  the cell polygons (in pixel coordinates) and the corresponding locations
+	 */
+	public HintRaster(Map<Polytope, AggregatedLocation> hints) {
+		int n = hints.size();
+		this.locations = new AggregatedLocation[n];
+		double[][] xs = new double[n][];
+		double[][] ys = new double[n][];
+		
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		int index = 0;
+		for (Entry<Polytope, AggregatedLocation> entry : hints.entrySet()) {
+			Point[] vertices = entry.getKey().getVertices();
+			xs[index] = new double[vertices.length];
+			ys[index] = new double[vertices.length];
+			for (int k = 0; k < vertices.length; k++) {
+				double[] c = vertices[k].getCoordinates();
+				xs[index][k] = c[0];
+				ys[index][k] = c[1];
+				minX = Math.min(minX, c[0]);
+				minY = Math.min(minY, c[1]);
+				maxX = Math.max(maxX, c[0]);
+				maxY = Math.max(maxY, c[1]);
+			}
+			this.locations[index] = entry.getValue();
+			index++;
+		}
+		
+		if (minX > maxX || minY > maxY) {
+			this.minX   = 0;
+			this.minY   = 0;
+			this.width  = 0;
+			this.height = 0;
+			this.raster = new int[0];
+			return;
+		}
+		
+		this.minX   = (int) Math.floor(minX);
+		this.minY   = (int) Math.floor(minY);
+		this.width  = (int) Math.ceil(maxX) - this.minX + 1;
+		this.height = (int) Math.ceil(maxY) - this.minY + 1;
+		this.raster = new int[this.width * this.height];
+		Arrays.fill(this.raster, -1);
+		
+		double[] crossings = new double[16];
+		for (int i = 0; i < n; i++) {
+			crossings = fill(i, xs[i], ys[i], crossings);
+		}
+	}
+	
+	/**
+	 * Fills the pixels of a polygon with its index.
+	 * 
+	 * @param index      the index of the polygon
+	 * @param x          the x-coordinates of the vertices
+	 * @param y          the y-coordinates of the vertices
+	 * @param crossings  an array for the x-coordinates of the edge crossings (may be replaced by a larger one)
+	 * @return the array for the edge crossings
+	 */
+	private double[] fill(int index, double[] x, double[] y, double[] crossings) {
+		int m = x.length;
+		if (m < 3) {
+			return crossings;
+		}
+		double polyMinY = y[0];
+		double polyMaxY = y[0];
+		for (int k = 1; k < m; k++) {
+			polyMinY = Math.min(polyMinY, y[k]);
+			polyMaxY = Math.max(polyMaxY, y[k]);
+		}
+		int rowStart = (int) Math.ceil(polyMinY);
+		int rowEnd   = (int) Math.floor(polyMaxY);
+		
+		for (int py = rowStart; py <= rowEnd; py++) {
+			// x-coordinates of all edges crossing the row (each edge as half-open interval in y)
+			int count = 0;
+			for (int k = 0; k < m; k++) {
+				int l = (k + 1 == m) ? 0 : k + 1;
+				if ((y[k] <= py) != (y[l] <= py)) {
+					if (count == crossings.length) {
+						crossings = Arrays.copyOf(crossings, 2 * count);
+					}
+					crossings[count++] = x[k] + (py - y[k]) / (y[l] - y[k]) * (x[l] - x[k]);
+				}
+			}
+			Arrays.sort(crossings, 0, count);
+			
+			int offset = (py - this.minY) * this.width - this.minX;
+			for (int c = 0; c + 1 < count; c += 2) {
+				int from = (int) Math.ceil(crossings[c]);
+				int to   = (int) Math.ceil(crossings[c + 1]) - 1;
+				for (int px = from; px <= to; px++) {
+					this.raster[offset + px] = index;
+				}
+			}
+		}
+		return crossings;
+	}
+	
+	/**
+	 * Returns the location of the cell containing the given pixel.
+	 * 
+	 * @param x  the x-coordinate of the pixel (in the coordinates of the hints)
+	 * @param y  the y-coordinate of the pixel (in the coordinates of the hints)
+	 * @return the location, <code>null</code> if there is no cell at this pixel
+	 */
+	public AggregatedLocation getLocation(int x, int y) {
+		int i = x - this.minX;
+		int j = y - this.minY;
+		if (i < 0 || j < 0 || i >= this.width || j >= this.height) {
+			return null;
+		}
+		int index = this.raster[j * this.width + i];
+		return (index >= 0) ? this.locations[index] : null;
+	}
+	
+}
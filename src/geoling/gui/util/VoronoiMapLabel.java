@@ -1,13 +1,10 @@
 package geoling.gui.util;
 
 import geoling.locations.util.AggregatedLocation;
-import geoling.util.sim.grain.Point;
 import geoling.util.sim.grain.Polytope;
 
 import java.awt.event.MouseEvent;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
 
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -25,7 +22,7 @@ public class VoronoiMapLabel extends JLabel {
 	private ImageIcon imageIcon;
 	private HashMap<Polytope, AggregatedLocation> hints;
 	private float scaleFactor;
-	private Polytope lastPolytope;
+	private HintRaster hintRaster;
 
 	/** Default constructor using constructor of super class. */
 	public VoronoiMapLabel() {
@@ -70,6 +67,18 @@ public class VoronoiMapLabel extends JLabel {
 	}
 
 
+	/**
+	 * Returns the raster of the cells, which is computed when it is required for the first time.
+	 * @return the raster of the cells
+	 */
+	private HintRaster getHintRaster() {
+		if (hintRaster == null) {
+			hintRaster = new HintRaster(hints);
+		}
+		return hintRaster;
+	}
+
+
 	/** Computes the location for the current cursor position.
 	 * 
 	 * @param event the <code>MouseEvent</code>
@@ -90,24 +99,10 @@ public class VoronoiMapLabel extends JLabel {
 		if (x >= 0 && x <= imageIcon.getIconWidth() && y >= 0 & y <= imageIcon.getIconHeight()) {
 			x = (int) (x / scaleFactor);
 			y = (int) (y / scaleFactor);
-			// the cursor is still in the previous voronoi cell
-			if (lastPolytope != null && lastPolytope.contains(new Point(new double[] { x, y }))) {
-				return hints.get(lastPolytope);
-			} 
-			// the cursor has moved to another voronoi cell
-			else {
-				Iterator<Entry<Polytope, AggregatedLocation>> it = this.hints.entrySet().iterator();
-				while (it.hasNext()) {
-					Entry<Polytope, AggregatedLocation> entry = it.next();
-					if (entry.getKey().contains(new Point(new double[] { x, y }))) {
-						lastPolytope = entry.getKey();
-						return hints.get(lastPolytope);
-					}
-				}
-			}
+			return getHintRaster().getLocation(x, y);
 		}
 		return null;
 	}
 
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -3,8 +3,11 @@ package geoling.import_data;
 import geoling.config.Database;
 import geoling.config.Settings;
 import geoling.maps.density.bandwidth.computation.ComputeBandwidths;
+import geoling.maps.distances.DistanceCacheFile;
+import geoling.maps.distances.PrecomputedDistance;
 import geoling.maps.distances.computation.LinguisticDistanceComputation;
 import geoling.models.*;
+import geoling.sql.BulkInsertWriter;
 import geoling.util.Directory;
 import geoling.util.ProgressOutput;
 
@@ -17,11 +20,13 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.DBException;
 import org.javalite.activejdbc.LazyList;
 
 /**
@@ -501,6 +506,8 @@ public class ImportDataExample {
 		distance.set("identification", distanceIdentification);
 		distance.saveIt();
 		Object distanceId = distance.getId();
+		// cache files of a previous database may use the same distance ID
+		DistanceCacheFile.delete(distance);
 
 		// fetch all locations to get their ids and put them in a catch to reduce the number of database queries
 		LazyList<Location> locations = Location.findAll();
@@ -535,51 +542,82 @@ public class ImportDataExample {
 				tagNames = null;
 			}
 
-			// read all further lines and create one entry for each line
-			int countLine = 0;
-			while ((line=br.readLine())!=null) {
-				countLine++;
-				String[] split = line.split(DELIMITER_COLUMNS);
-				if (split.length!=inputColumns) {
-					throw new IllegalArgumentException("Wrong number of columns in line " + (countLine+1) + " for file: " + filename);
-				}
-				LocationDistance locationDistance = new LocationDistance();
-				locationDistance.set("distance_id", distanceId);
-				Object locationId1;
-				Object locationId2;
-				if (locationsMap.containsKey(split[0])) {
-					locationId1 = locationsMap.get(split[0]);
-				}
-				else {
-					throw new IllegalArgumentException("Name of location is not contained in table Locations: " + split[0]);
-
-				}
-				if (locationsMap.containsKey(split[1])) {
-					locationId2 = locationsMap.get(split[1]);
-				}
-				else {
-					throw new IllegalArgumentException("Name of location is not contained in table Locations: " + split[1]);
+			// without tags, the rows are inserted in batches (tags require the IDs of the single rows)
+			BulkInsertWriter writer = null;
+			if (tagColumns == 0) {
+				writer = new BulkInsertWriter(Base.connection(), "location_distances", "distance_id", "location_id1", "location_id2", "distance");
+			}
+			try {
+				// read all further lines and create one entry for each line
+				int countLine = 0;
+				while ((line=br.readLine())!=null) {
+					countLine++;
+					String[] split = line.split(DELIMITER_COLUMNS);
+					if (split.length!=inputColumns) {
+						throw new IllegalArgumentException("Wrong number of columns in line " + (countLine+1) + " for file: " + filename);
+					}
+					Object locationId1;
+					Object locationId2;
+					if (locationsMap.containsKey(split[0])) {
+						locationId1 = locationsMap.get(split[0]);
+					}
+					else {
+						throw new IllegalArgumentException("Name of location is not contained in table Locations: " + split[0]);
 
-				}
-				locationDistance.set("location_id1", locationId1);
-				locationDistance.set("location_id2", locationId2);
-				locationDistance.set("distance", split[2]);
-				locationDistance.saveIt();
+					}
+					if (locationsMap.containsKey(split[1])) {
+						locationId2 = locationsMap.get(split[1]);
+					}
+					else {
+						throw new IllegalArgumentException("Name of location is not contained in table Locations: " + split[1]);
 
-				// add optional tags
-				for (int t=0; t<tagColumns; t++) {
-					if (split[requiredColumns+t].length()>0) {
-						Tag tag = new Tag();
-						tag.set("name", tagNames[t]);
-						tag.set("value", split[requiredColumns+t]);
-						locationDistance.add(tag);
 					}
+					// by definition, location_id1 contains the smaller ID (the distance is symmetric)
+					int cmp = Long.compare(((Number)locationId1).longValue(), ((Number)locationId2).longValue());
+					if (cmp == 0) {
+						throw new IllegalArgumentException("location_id1 and location_id2 must not be equal!");
+					} else if (cmp > 0) {
+						Object tmp = locationId1;
+						locationId1 = locationId2;
+						locationId2 = tmp;
+					}
+					if (writer != null) {
+						writer.addRow(distanceId, locationId1, locationId2, Double.valueOf(split[2]));
+						continue;
+					}
+					LocationDistance locationDistance = new LocationDistance();
+					locationDistance.set("distance_id", distanceId);
+					locationDistance.set("location_id1", locationId1);
+					locationDistance.set("location_id2", locationId2);
+					locationDistance.set("distance", split[2]);
+					locationDistance.saveIt();
+
+					// add optional tags
+					for (int t=0; t<tagColumns; t++) {
+						if (split[requiredColumns+t].length()>0) {
+							Tag tag = new Tag();
+							tag.set("name", tagNames[t]);
+							tag.set("value", split[requiredColumns+t]);
+							locationDistance.add(tag);
+						}
+					}
+				}
+				if (writer != null) {
+					writer.close(new ProgressOutput(System.out));
+				}
+			} finally {
+				if (writer != null) {
+					writer.abort();
 				}
 			}
 		} catch (IOException e) {
 			System.err.println("IOException in readDistances.");
 			e.printStackTrace();
+		} catch (SQLException e) {
+			throw new DBException(e);
 		}
+		
+		PrecomputedDistance.invalidateCache(distanceIdentification);
 	}
 
 
@@ -7,7 +7,6 @@ import geoling.models.Location;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -66,27 +65,36 @@ public class SimilarCoordinatesAggregation implements LocationAggregator {
 		
 		ArrayList<AggregatedLocation> result = new ArrayList<AggregatedLocation>(locations.size());
 		
-		HashSet<Location> done = new HashSet<Location>();
-		for (Location location : locations) {
-			if (done.contains(location)) {
+		// note that the indices of the locations in the grid correspond to the iteration order
+		boolean[] done = new boolean[grid.size()];
+		final ArrayList<Location> neighbours = new ArrayList<Location>();
+		final int[] neighbourIndices = new int[grid.size()];
+		for (int i = 0; i < grid.size(); i++) {
+			if (done[i]) {
 				continue;
 			}
+			Location location = grid.getLocation(i);
 			
-			ArrayList<Location> neighbours = grid.findLocationsInDistance(location.getLatLong(), this.tolerance, false);
+			neighbours.clear();
+			grid.visitLocationsInDistance(location.getLatLong(), this.tolerance, false, new LocationGrid.LocationVisitor() {
+				public void visit(int index, Location neighbour) {
+					neighbourIndices[neighbours.size()] = index;
+					neighbours.add(neighbour);
+				}
+			});
 			
 			if (neighbours.isEmpty()) {
 				throw new RuntimeException("Error: something went wrong, didn't even find the location that is known to be at the given coordinates!");
 			} else if (neighbours.size() == 1) {
 				result.add(new AggregatedLocation(this, Arrays.asList(new Location[] { location })));
 			} else {
-				ArrayList<Location> aggregateLocations = new ArrayList<Location>();
-				for (Location neighbour : neighbours) {
-					aggregateLocations.add(neighbour);
-					if (!done.add(neighbour)) {
+				for (int k = 0; k < neighbours.size(); k++) {
+					if (done[neighbourIndices[k]]) {
 						throw new RuntimeException("Error: location aggregation by distance ("+this.tolerance+" km) is not uniquely determined in this case!");
 					}
+					done[neighbourIndices[k]] = true;
 				}
-				result.add(new AggregatedLocation(this, aggregateLocations));
+				result.add(new AggregatedLocation(this, new ArrayList<Location>(neighbours)));
 			}
 		}
 		
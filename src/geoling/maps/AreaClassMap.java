@@ -31,6 +31,7 @@ import geoling.models.Location;
 import geoling.models.Map;
 import geoling.models.Variant;
 import geoling.util.LatLong;
+import geoling.util.ThreadedTodoWorker;
 import geoling.util.Utilities;
 import geoling.util.XMLExport;
 import geoling.util.geom.Geometry2D;
@@ -237,8 +238,29 @@ public class AreaClassMap {
 	 * (i.e., it is not rebuilt).
 	 */
 	public synchronized void buildLocationDensityCache() {
+		// the densities of all variants are estimated at once for every location,
+		// which avoids repeating the search for relevant locations for every variant
+		final ArrayList<VariantMap> variantMapsWithoutCache = new ArrayList<VariantMap>();
 		for (Entry<Variant,VariantMap> entry : this.variantMaps.entrySet()) {
-			entry.getValue().buildLocationDensityCache(false);
+			if (!entry.getValue().hasLocationDensityCache()) {
+				variantMapsWithoutCache.add(entry.getValue());
+			}
+		}
+		if (!variantMapsWithoutCache.isEmpty()) {
+			final double[][] densities = new double[this.locations.size()][];
+			ThreadedTodoWorker.workOnIndexRange(0, this.locations.size()-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+				public void processTodoIndex(int index) {
+					densities[index] = densityEstimation.estimateAllVariants(variantWeights, locations.get(index));
+				}
+			});
+			for (VariantMap variantMap : variantMapsWithoutCache) {
+				int variantIndex = this.variantWeights.getVariantIndex(variantMap.getVariant());
+				HashMap<AggregatedLocation,Double> locationDensityCache = new HashMap<AggregatedLocation,Double>(this.locations.size()*4/3+1);
+				for (int i = 0; i < this.locations.size(); i++) {
+					locationDensityCache.put(this.locations.get(i), densities[i][variantIndex]);
+				}
+				variantMap.setLocationDensityCache(locationDensityCache);
+			}
 		}
 		if (this.dominantVariantLocationCache == null) {
 			HashMap<AggregatedLocation,VariantDensityResult> dominantVariants = new HashMap<AggregatedLocation,VariantDensityResult>(this.getLocations().size()*4/3);
@@ -313,8 +335,31 @@ public class AreaClassMap {
 	 */
 	public synchronized void buildGridDensityCache(RectangularGrid grid) {
 		this.grid = grid;
+		
+		// the densities of all variants are estimated at once for every grid point,
+		// which avoids repeating the search for relevant locations for every variant
+		final ArrayList<VariantMap> variantMapsWithoutCache = new ArrayList<VariantMap>();
 		for (Entry<Variant,VariantMap> entry : this.variantMaps.entrySet()) {
-			entry.getValue().buildGridDensityCache(grid, false);
+			if (!entry.getValue().hasGridDensityCache(grid)) {
+				variantMapsWithoutCache.add(entry.getValue());
+			}
+		}
+		if (!variantMapsWithoutCache.isEmpty()) {
+			final List<RectangularGrid.GridPoint> gridPoints = grid.getGridPoints();
+			final double[][] densities = new double[gridPoints.size()][];
+			ThreadedTodoWorker.workOnIndexRange(0, gridPoints.size()-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+				public void processTodoIndex(int index) {
+					densities[index] = densityEstimation.estimateAllVariants(variantWeights, gridPoints.get(index).getLatLong());
+				}
+			});
+			for (VariantMap variantMap : variantMapsWithoutCache) {
+				int variantIndex = this.variantWeights.getVariantIndex(variantMap.getVariant());
+				HashMap<RectangularGrid.GridPoint,Double> gridDensityCache = new HashMap<RectangularGrid.GridPoint,Double>(gridPoints.size()*4/3+1);
+				for (int i = 0; i < gridPoints.size(); i++) {
+					gridDensityCache.put(gridPoints.get(i), densities[i][variantIndex]);
+				}
+				variantMap.setGridDensityCache(grid, gridDensityCache);
+			}
 		}
 		if (this.dominantVariantGridCache == null) {
 			HashMap<RectangularGrid.GridPoint,VariantDensityResult> dominantVariants = new HashMap<RectangularGrid.GridPoint,VariantDensityResult>(grid.getGridPoints().size()*4/3);
@@ -133,6 +133,16 @@ public class VariantMap {
 		this.locationDensityCache = locationDensityCacheLocal;
 	}
 	
+	/**
+	 * Sets the density cache for all locations, e.g., if the densities have been
+	 * estimated for all variants of the area-class-map at once.
+	 * 
+	 * @param locationDensityCache  the densities for all locations
+	 */
+	protected synchronized void setLocationDensityCache(HashMap<AggregatedLocation,Double> locationDensityCache) {
+		this.locationDensityCache = locationDensityCache;
+	}
+	
 	/**
 	 * Builds the density cache for all locations, never throws an exception.
 	 * 
@@ -203,6 +213,18 @@ public class VariantMap {
 		this.gridDensityCache = gridDensityCacheLocal;
 	}
 	
+	/**
+	 * Sets the grid density cache, e.g., if the densities have been
+	 * estimated for all variants of the area-class-map at once.
+	 * 
+	 * @param grid              the grid containing all the grid points
+	 * @param gridDensityCache  the densities for all grid points
+	 */
+	protected synchronized void setGridDensityCache(RectangularGrid grid, HashMap<RectangularGrid.GridPoint,Double> gridDensityCache) {
+		this.grid             = grid;
+		this.gridDensityCache = gridDensityCache;
+	}
+	
 	/**
 	 * Builds the grid density cache, never throws an exception.
 	 * 
@@ -2,9 +2,13 @@ package geoling.maps.clustering.data;
 
 import geoling.maps.AreaClassMap;
 import geoling.maps.AreaClassMap.VariantDensityResult;
+import geoling.maps.projection.KilometresProjection;
 import geoling.maps.util.RectangularGrid;
+import geoling.util.FFT;
 import geoling.util.clusteranalysis.ClusterObject;
 
+import java.util.Arrays;
+
 /**
  * A wrapper class for maps to implement the <code>ClusterObject</code> interface.
  * 
@@ -12,6 +16,12 @@ import geoling.util.clusteranalysis.ClusterObject;
  */
 public class MapClusterObject implements ClusterObject {
 	
+	/**
+	 * Determines whether covariance functions on grids may be computed with the FFT,
+	 * see <code>computeCovarianceFunction(RectangularGrid, int)</code>.
+	 */
+	public static boolean FFT_ENABLED = true;
+	
 	private final AreaClassMap areaClassMap;
 	private double[] covarianceFunction;
 	
@@ -20,30 +30,222 @@ public class MapClusterObject implements ClusterObject {
 		this.covarianceFunction = null;
 	}
 	
-	public void computeCovarianceFunction(RectangularGrid grid, double[][] gridDistances, int maxDistance) {
+	/**
+	 * Computes the covariance function of the dominant prevalences on the grid
+	 * without pairwise distances: because the grid points lie on a regular lattice,
+	 * the distance between two grid points depends only on the offset of their columns
+	 * and rows. Distances are the Euclidean distances in the plane of the
+	 * <code>KilometresProjection</code>, which approximate the geographical distances
+	 * of the grid points, and they are rounded to kilometres.
+	 * <p>
+	 * There are two methods, which give the same result (up to rounding errors):
+	 * <ul>
+	 * <li>iterating over all pairs of grid points with an offset within <code>maxDistance</code>,
+	 *     using a precomputed table of the offsets and their distance bins
+	 *     (O(G + offsets) memory, O(G &middot; offsets) time), and</li>
+	 * <li>computing the sums of the products of the prevalence deviations (and the numbers
+	 *     of pairs) for all offsets as autocorrelations of the prevalence field (and of its mask)
+	 *     with a two-dimensional FFT (O(G log G) time, about 16 bytes per element of the lattice,
+	 *     padded to powers of two with room for all offsets up to <code>maxDistance</code>).</li>
+	 * </ul>
+	 * The FFT is used if it is enabled (see <code>FFT_ENABLED</code>) and if its estimated
+	 * costs are lower.
+	 * 
+	 * @param grid         the grid, which has to use a <code>KilometresProjection</code>
+	 * @param maxDistance  the maximal distance in kilometres
+	 */
+	public void computeCovarianceFunction(RectangularGrid grid, int maxDistance) {
+		if (!(grid.getMapProjection() instanceof KilometresProjection)) {
+			throw new IllegalArgumentException("The grid has to use a projection to kilometres!");
+		}
+		
 		areaClassMap.buildGridDensityCache(grid);
 		
 		double meanPrevalence = areaClassMap.computeMeanPrevalence(true);
 		
-		double[] covarianceFunction = new double[maxDistance + 1];
-		int[] numberOfLocations = new int[maxDistance + 1];
-		
-		for (int j = 0; j < grid.getGridPoints().size(); j++) {
-			for (int k = 0; k < j; k++) {
-				RectangularGrid.GridPoint currentLocation1 = grid.getGridPoints().get(j);
-				RectangularGrid.GridPoint currentLocation2 = grid.getGridPoints().get(k);
-				
-				double distance = gridDistances[j][k];
-				int h = (int)Math.round(distance);
-				if (h > maxDistance) {
+		int n = grid.getGridPoints().size();
+		int[] columns = new int[n];
+		int[] rows = new int[n];
+		double[] deviations = new double[n];
+		for (int i = 0; i < n; i++) {
+			RectangularGrid.GridPoint gridPoint = grid.getGridPoints().get(i);
+			VariantDensityResult dominantVariantAndDensity = areaClassMap.getDominantVariantAndDensity(gridPoint);
+			columns[i] = gridPoint.getColumn();
+			rows[i]    = gridPoint.getRow();
+			deviations[i] = (dominantVariantAndDensity != null) ? (dominantVariantAndDensity.density - meanPrevalence) : Double.NaN;
+		}
+		
+		areaClassMap.clearGridDensityCache();
+		
+		OffsetTable offsets = new OffsetTable(columns, rows, grid.getResolution(), maxDistance);
+		if (FFT_ENABLED && offsets.getFFTCosts() < offsets.getIterationCosts(n)) {
+			this.covarianceFunction = computeCovarianceFunctionFFT(columns, rows, deviations, offsets);
+		} else {
+			this.covarianceFunction = computeCovarianceFunctionByOffsets(columns, rows, deviations, offsets);
+		}
+	}
+	
+	/**
+	 * The offsets of columns and rows of pairs of lattice points with a rounded distance
+	 * of at most <code>maxDistance</code>, and the corresponding distance bins.
+	 * Only offsets in the upper half-plane are contained, such that every unordered
+	 * pair of lattice points corresponds to exactly one offset.
+	 */
+	static class OffsetTable {
+		/** The number of columns of the lattice. */
+		final int numberOfColumns;
+		
+		/** The number of rows of the lattice. */
+		final int numberOfRows;
+		
+		/** The maximal absolute offset of columns. */
+		final int maxColumnOffset;
+		
+		/** The maximal offset of rows. */
+		final int maxRowOffset;
+		
+		/** The maximal distance. */
+		final int maxDistance;
+		
+		/** The number of offsets. */
+		int size;
+		
+		/** The offsets of the columns. */
+		int[] columnOffsets;
+		
+		/** The offsets of the rows. */
+		int[] rowOffsets;
+		
+		/** The distance bins (rounded distances) of the offsets. */
+		int[] bins;
+		
+		/**
+		 * Constructs the table of offsets for the given lattice points.
+		 * 
+		 * @param columns      the columns of the lattice points (non-negative)
+		 * @param rows         the rows of the lattice points (non-negative)
+		 * @param resolution   the distance between adjacent lattice points
+		 * @param maxDistance  the maximal distance
+		 */
+		OffsetTable(int[] columns, int[] rows, double resolution, int maxDistance) {
+			int numberOfColumns = 0;
+			int numberOfRows = 0;
+			for (int i = 0; i < columns.length; i++) {
+				numberOfColumns = Math.max(numberOfColumns, columns[i] + 1);
+				numberOfRows    = Math.max(numberOfRows, rows[i] + 1);
+			}
+			this.numberOfColumns = numberOfColumns;
+			this.numberOfRows    = numberOfRows;
+			this.maxDistance     = maxDistance;
+			
+			// maximal offset of columns/rows such that the rounded distance may be at most maxDistance
+			int maxOffset = (int)Math.floor((maxDistance + 0.5) / resolution);
+			this.maxColumnOffset = Math.min(Math.max(numberOfColumns - 1, 0), maxOffset);
+			this.maxRowOffset    = Math.min(Math.max(numberOfRows - 1, 0), maxOffset);
+			
+			int capacity = (this.maxRowOffset + 1) * (2 * this.maxColumnOffset + 1);
+			this.columnOffsets = new int[capacity];
+			this.rowOffsets    = new int[capacity];
+			this.bins          = new int[capacity];
+			for (int dRow = 0; dRow <= this.maxRowOffset; dRow++) {
+				for (int dColumn = -this.maxColumnOffset; dColumn <= this.maxColumnOffset; dColumn++) {
+					if (dRow == 0 && dColumn <= 0) {
+						continue;
+					}
+					int h = (int)Math.round(resolution * Math.sqrt(dColumn*dColumn + dRow*dRow));
+					if (h <= maxDistance) {
+						this.columnOffsets[this.size] = dColumn;
+						this.rowOffsets[this.size]    = dRow;
+						this.bins[this.size]          = h;
+						this.size++;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Returns the width of the padded lattice for the FFT.
+		 * 
+		 * @return the width (a power of two)
+		 */
+		int getFFTWidth() {
+			return FFT.nextPowerOfTwo(this.numberOfColumns + this.maxColumnOffset);
+		}
+		
+		/**
+		 * Returns the height of the padded lattice for the FFT.
+		 * 
+		 * @return the height (a power of two)
+		 */
+		int getFFTHeight() {
+			return FFT.nextPowerOfTwo(this.numberOfRows + this.maxRowOffset);
+		}
+		
+		/**
+		 * Estimates the costs of the FFT (the number of floating-point operations).
+		 * 
+		 * @return the estimated costs
+		 */
+		double getFFTCosts() {
+			double n = (double)getFFTWidth() * getFFTHeight();
+			// two complex two-dimensional transforms with about 5 n log2(n) operations each
+			return 10.0 * n * Math.log(n) / Math.log(2.0);
+		}
+		
+		/**
+		 * Estimates the costs of iterating over all offsets for every lattice point.
+		 * 
+		 * @param numberOfPoints  the number of lattice points
+		 * @return the estimated costs
+		 */
+		double getIterationCosts(int numberOfPoints) {
+			return 2.0 * numberOfPoints * this.size;
+		}
+	}
+	
+	/**
+	 * Computes the covariance function for values on a lattice by iterating over
+	 * the offsets for every lattice point, see <code>computeCovarianceFunction(RectangularGrid, int)</code>.
+	 * 
+	 * @param columns     the columns of the lattice points (non-negative)
+	 * @param rows        the rows of the lattice points (non-negative)
+	 * @param deviations  the deviations of the values from their mean, <code>NaN</code> for missing values
+	 * @param offsets     the table of offsets
+	 * @return the covariance function for the rounded distances <code>0</code> to <code>maxDistance</code>
+	 */
+	static double[] computeCovarianceFunctionByOffsets(int[] columns, int[] rows, double[] deviations, OffsetTable offsets) {
+		int numberOfColumns = offsets.numberOfColumns;
+		int numberOfRows    = offsets.numberOfRows;
+		
+		// index of the lattice point with a value at every element of the lattice, -1 if there is none
+		int[] lattice = new int[numberOfColumns * numberOfRows];
+		Arrays.fill(lattice, -1);
+		for (int i = 0; i < columns.length; i++) {
+			if (!Double.isNaN(deviations[i])) {
+				lattice[rows[i] * numberOfColumns + columns[i]] = i;
+			}
+		}
+		
+		double[] covarianceFunction = new double[offsets.maxDistance + 1];
+		long[] numberOfLocations = new long[offsets.maxDistance + 1];
+		
+		for (int i = 0; i < columns.length; i++) {
+			if (Double.isNaN(deviations[i])) {
+				continue;
+			}
+			int column = columns[i];
+			int row    = rows[i];
+			double deviation = deviations[i];
+			for (int o = 0; o < offsets.size; o++) {
+				int column2 = column + offsets.columnOffsets[o];
+				int row2    = row + offsets.rowOffsets[o];
+				if (column2 < 0 || column2 >= numberOfColumns || row2 >= numberOfRows) {
 					continue;
 				}
-				
-				VariantDensityResult dominantVariantAndDensity1 = areaClassMap.getDominantVariantAndDensity(currentLocation1);
-				VariantDensityResult dominantVariantAndDensity2 = areaClassMap.getDominantVariantAndDensity(currentLocation2);
-				
-				if (dominantVariantAndDensity1 != null && dominantVariantAndDensity2 != null) {
-					covarianceFunction[h] = covarianceFunction[h] + (dominantVariantAndDensity1.density - meanPrevalence) * (dominantVariantAndDensity2.density - meanPrevalence);
+				int j = lattice[row2 * numberOfColumns + column2];
+				if (j >= 0) {
+					int h = offsets.bins[o];
+					covarianceFunction[h] += deviation * deviations[j];
 					numberOfLocations[h]++;
 				}
 			}
@@ -55,9 +257,56 @@ public class MapClusterObject implements ClusterObject {
 			}
 		}
 		
-		areaClassMap.clearGridDensityCache();
+		return covarianceFunction;
+	}
+	
+	/**
+	 * Computes the covariance function for values on a lattice with the FFT,
+	 * see <code>computeCovarianceFunction(RectangularGrid, int)</code>.
+	 * 
+	 * @param columns     the columns of the lattice points (non-negative)
+	 * @param rows        the rows of the lattice points (non-negative)
+	 * @param deviations  the deviations of the values from their mean, <code>NaN</code> for missing values
+	 * @param offsets     the table of offsets
+	 * @return the covariance function for the rounded distances <code>0</code> to <code>maxDistance</code>
+	 */
+	static double[] computeCovarianceFunctionFFT(int[] columns, int[] rows, double[] deviations, OffsetTable offsets) {
+		// deviations and mask, padded with zeros to avoid wrap-around for all offsets
+		int width  = offsets.getFFTWidth();
+		int height = offsets.getFFTHeight();
+		double[] products = new double[width * height];
+		double[] pairs    = new double[width * height];
+		for (int i = 0; i < columns.length; i++) {
+			if (!Double.isNaN(deviations[i])) {
+				int k = rows[i] * width + columns[i];
+				products[k] = deviations[i];
+				pairs[k]    = 1.0;
+			}
+		}
+		
+		FFT.autocorrelation2D(products, pairs, width, height, offsets.numberOfRows);
+		
+		double[] covarianceFunction = new double[offsets.maxDistance + 1];
+		long[] numberOfLocations = new long[offsets.maxDistance + 1];
+		
+		for (int o = 0; o < offsets.size; o++) {
+			int dColumn = offsets.columnOffsets[o];
+			int k = offsets.rowOffsets[o] * width + ((dColumn < 0) ? (width + dColumn) : dColumn);
+			long count = Math.round(pairs[k]);
+			if (count > 0) {
+				int h = offsets.bins[o];
+				covarianceFunction[h] += products[k];
+				numberOfLocations[h] += count;
+			}
+		}
 		
-		this.covarianceFunction = covarianceFunction;
+		for (int k = 0; k < covarianceFunction.length; k++) {
+			if (numberOfLocations[k] > 0) {
+				covarianceFunction[k] = covarianceFunction[k] / numberOfLocations[k];
+			}
+		}
+		
+		return covarianceFunction;
 	}
 	
 	public AreaClassMap getAreaClassMap() {
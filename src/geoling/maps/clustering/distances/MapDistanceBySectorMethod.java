@@ -5,6 +5,7 @@ import geoling.maps.AreaClassMap;
 import geoling.maps.clustering.data.MapClusterObject;
 import geoling.models.Variant;
 import geoling.util.LatLong;
+import geoling.util.LatLongPoints;
 import geoling.util.SetComparison;
 import geoling.util.clusteranalysis.ClusterObject;
 
@@ -31,6 +32,9 @@ public class MapDistanceBySectorMethod implements MapDistance {
 	private HashMap<AggregatedLocation,ArrayList<ArrayList<AggregatedLocation>>> cachedSectorsForLocations;
 	private ArrayList<AggregatedLocation> cachedLocations;
 	
+	/** The distances from every location to the locations in its sectors (in the same order as in <code>cachedSectorsForLocations</code>). */
+	private HashMap<AggregatedLocation,double[][]> cachedSectorDistances;
+	
 	/**
 	 * Constructs a new object for computing distances between area-class-maps with
 	 * the sector method.
@@ -87,6 +91,7 @@ public class MapDistanceBySectorMethod implements MapDistance {
 						}
 						cachedSectorsForLocations.put(currentLocation, locationsInSectors);
 					}
+					cachedSectorDistances = computeSectorDistances(cachedLocations, cachedSectorsForLocations);
 				}
 			}
 			
@@ -103,6 +108,7 @@ public class MapDistanceBySectorMethod implements MapDistance {
 				
 				for (int j = 0; j < d; j++) {
 					ArrayList<AggregatedLocation> locationsInSector = cachedSectorsForLocations.get(currentLocation).get(j);
+					double[] distancesInSector = cachedSectorDistances.get(currentLocation)[j];
 					ArrayList<Variant> variantOfPointM1 = new ArrayList<Variant>();
 					ArrayList<Variant> variantOfPointM2 = new ArrayList<Variant>();
 					boolean areThereSeveralVariants1 = false;
@@ -126,7 +132,7 @@ public class MapDistanceBySectorMethod implements MapDistance {
 					if (!areThereSeveralVariants1) {
 						double currentDistance = 0;
 						for (int k = 0; k < locationsInSector.size(); k++) {
-							double tmp = currentLocation.getLatLong().calculateDistanceTo(locationsInSector.get(k).getLatLong());
+							double tmp = distancesInSector[k];
 							if (currentDistance <= tmp) {
 								currentDistance = tmp;
 							}
@@ -141,7 +147,7 @@ public class MapDistanceBySectorMethod implements MapDistance {
 							if (variantOfPointM1.get(k) == currentVariant || (variantOfPointM1.get(k) != null && variantOfPointM1.get(k).equals(currentVariant))) {
 								// nothing
 							} else {
-								double tmp = currentLocation.getLatLong().calculateDistanceTo(locationsInSector.get(k).getLatLong());
+								double tmp = distancesInSector[k];
 								if (currentDistance > tmp) {
 									currentDistance = tmp;
 								}
@@ -154,7 +160,7 @@ public class MapDistanceBySectorMethod implements MapDistance {
 					if (!areThereSeveralVariants2) {
 						double currentDistance = 0;
 						for (int k = 0; k < locationsInSector.size(); k++) {
-							double tmp = currentLocation.getLatLong().calculateDistanceTo(locationsInSector.get(k).getLatLong());
+							double tmp = distancesInSector[k];
 							if (currentDistance <= tmp) {
 								currentDistance = tmp;
 							}
@@ -169,7 +175,7 @@ public class MapDistanceBySectorMethod implements MapDistance {
 							if (variantOfPointM2.get(k) == currentVariant || (variantOfPointM2.get(k) != null && variantOfPointM2.get(k).equals(currentVariant))) {
 								// nothing
 							} else {
-								double tmp = currentLocation.getLatLong().calculateDistanceTo(locationsInSector.get(k).getLatLong());
+								double tmp = distancesInSector[k];
 								if (currentDistance > tmp) {
 									currentDistance = tmp;
 								}
@@ -209,6 +215,44 @@ public class MapDistanceBySectorMethod implements MapDistance {
 		}
 	}
 	
+	/**
+	 * Computes the geographical distances from every location to the locations in its sectors.
+	 * The distances do not depend on the maps, therefore they are computed only once with
+	 * the precomputed coordinates of <code>LatLongPoints</code>.
+	 * 
+	 * @param locations             the locations
+	 * @param sectorsForLocations   the locations in the sectors of every location
+	 * @return the distances for every location and sector
+	 */
+	private HashMap<AggregatedLocation,double[][]> computeSectorDistances(ArrayList<AggregatedLocation> locations,
+			HashMap<AggregatedLocation,ArrayList<ArrayList<AggregatedLocation>>> sectorsForLocations) {
+		ArrayList<LatLong> latLongs = new ArrayList<LatLong>(locations.size());
+		HashMap<AggregatedLocation,Integer> indices = new HashMap<AggregatedLocation,Integer>(locations.size() * 4 / 3);
+		for (int i = 0; i < locations.size(); i++) {
+			latLongs.add(locations.get(i).getLatLong());
+			indices.put(locations.get(i), i);
+		}
+		LatLongPoints points = new LatLongPoints(latLongs);
+		double[] distances = new double[points.size()];
+		
+		HashMap<AggregatedLocation,double[][]> result = new HashMap<AggregatedLocation,double[][]>(locations.size() * 4 / 3);
+		for (int i = 0; i < locations.size(); i++) {
+			AggregatedLocation currentLocation = locations.get(i);
+			points.distances(i, distances);
+			ArrayList<ArrayList<AggregatedLocation>> locationsInSectors = sectorsForLocations.get(currentLocation);
+			double[][] distancesInSectors = new double[locationsInSectors.size()][];
+			for (int j = 0; j < locationsInSectors.size(); j++) {
+				ArrayList<AggregatedLocation> locationsInSector = locationsInSectors.get(j);
+				distancesInSectors[j] = new double[locationsInSector.size()];
+				for (int k = 0; k < locationsInSector.size(); k++) {
+					distancesInSectors[j][k] = distances[indices.get(locationsInSector.get(k))];
+				}
+			}
+			result.put(currentLocation, distancesInSectors);
+		}
+		return result;
+	}
+	
 	/**
 	 * The method calculates all points which are in the <code>whichSector</code>'s
 	 * sector. The first sector is always the first sector which is at the right of
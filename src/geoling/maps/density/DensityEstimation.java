@@ -61,4 +61,27 @@ public interface DensityEstimation {
 	 */
 	public double estimate(VariantWeights variantWeights, Variant variant, AggregatedLocation aggregatedLocation);
 	
+	/**
+	 * Estimates the density values of all variants at the given geographic coordinates.
+	 * <p>
+	 * Warning: This method has to be implemented thread-safe!
+	 * 
+	 * @param variantWeights  the weights of the variants at all locations
+	 * @param latLong         the geographic coordinates
+	 * @return the density values, indexed by the variant indices of <code>variantWeights</code>
+	 * @throws LatLongNotSupportedException if the distance measure only supports the distance between locations
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, LatLong latLong) throws LatLongNotSupportedException;
+	
+	/**
+	 * Estimates the density values of all variants at the given (aggregated) location.
+	 * <p>
+	 * Warning: This method has to be implemented thread-safe!
+	 * 
+	 * @param variantWeights     the weights of the variants at all locations
+	 * @param aggregatedLocation the (aggregated) location
+	 * @return the density values, indexed by the variant indices of <code>variantWeights</code>
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, AggregatedLocation aggregatedLocation);
+	
 }
\ No newline at end of file
@@ -277,4 +277,153 @@ public class KernelDensityEstimation implements DensityEstimation {
 		return sum / total;
 	}
 	
+	/**
+	 * Estimates the density values of all variants at the given geographic coordinates.
+	 * The relevant locations and their kernel values are computed only once, the
+	 * densities of all variants are accumulated in a single pass over the rows of
+	 * the weights.
+	 * 
+	 * @param variantWeights  the weights of the variants at all locations
+	 * @param latLong         the geographic coordinates
+	 * @return the density values, indexed by the variant indices of <code>variantWeights</code>
+	 * @throws LatLongNotSupportedException if the distance measure only supports the distance between locations
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, LatLong latLong) throws LatLongNotSupportedException {
+		double[] result = new double[variantWeights.getNumberOfVariants()];
+		double sum = 0.0;
+		
+		for (Location otherLocation : getRelevantLocations(variantWeights, latLong)) {
+			try {
+				int otherIndex = variantWeights.getLocationIndex(otherLocation);
+				if ((otherIndex < 0) || (variantWeights.getTotalNumberOfVariantOccurences(otherIndex) == 0)) {
+					// in this map, no answers were given at the current location, i.e.,
+					// we have no information at this location, therefore just ignore it...
+					continue;
+				}
+				
+				double distance    = this.kernel.getDistanceMeasure().getDistance(otherLocation.getLatLong(), latLong);
+				double kernelValue = this.kernel.evaluateKernel(distance);
+				sum += addToDensities(result, variantWeights, otherIndex, kernelValue);
+			} catch (PrecomputedDistanceNotFoundException e) {
+				// ignore the location if the distance is unknown
+			}
+		}
+		
+		return normalizeDensities(result, sum);
+	}
+	
+	/**
+	 * Estimates the density values of all variants at the given location,
+	 * supports an additional parameter of a location that should be left out
+	 * in the estimation.
+	 * The relevant locations and their kernel values are computed only once, the
+	 * densities of all variants are accumulated in a single pass over the rows of
+	 * the weights.
+	 * 
+	 * @param variantWeights  the weights of the variants at all locations
+	 * @param location        the location
+	 * @param ignoreLocation  a location that should be left out, this parameter
+	 *                        may be <code>null</code>
+	 * @return the density values, indexed by the variant indices of <code>variantWeights</code>
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, Location location, Location ignoreLocation) {
+		double[] result = new double[variantWeights.getNumberOfVariants()];
+		double sum = 0.0;
+		
+		for (Location otherLocation : getRelevantLocations(variantWeights, location.getLatLong())) {
+			try {
+				if ((ignoreLocation != null) &&
+				    (otherLocation.equals(ignoreLocation) || otherLocation.getLatLong().equals(location.getLatLong()))) {
+					// for bandwidth estimation we need to ignore one location (and we also ignore locations with
+					// the same coordinates)
+					continue;
+				}
+				
+				int otherIndex = variantWeights.getLocationIndex(otherLocation);
+				if ((otherIndex < 0) || (variantWeights.getTotalNumberOfVariantOccurences(otherIndex) == 0)) {
+					// in this map, no answers were given at the current location, i.e.,
+					// we have no information at this location, therefore just ignore it...
+					continue;
+				}
+				
+				double distance    = this.kernel.getDistanceMeasure().getDistance(otherLocation, location);
+				double kernelValue = this.kernel.evaluateKernel(distance);
+				sum += addToDensities(result, variantWeights, otherIndex, kernelValue);
+			} catch (PrecomputedDistanceNotFoundException e) {
+				// ignore the location if the distance is unknown
+			}
+		}
+		
+		return normalizeDensities(result, sum);
+	}
+	
+	/**
+	 * Estimates the density values of all variants at the given (aggregated) location.
+	 * As for a single variant, the weighted mean of the densities at the aggregated
+	 * locations is returned.
+	 * 
+	 * @param variantWeights     the weights of the variants at all locations
+	 * @param aggregatedLocation the (aggregated) location
+	 * @return the density values, indexed by the variant indices of <code>variantWeights</code>
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, AggregatedLocation aggregatedLocation) {
+		double[] result = new double[variantWeights.getNumberOfVariants()];
+		int total = 0;
+		for (Location location : aggregatedLocation.getLocations()) {
+			double[] densities = this.estimateAllVariants(variantWeights, location, null);
+			for (int variantIndex = 0; variantIndex < result.length; variantIndex++) {
+				result[variantIndex] += densities[variantIndex];
+			}
+			total++;
+		}
+		for (int variantIndex = 0; variantIndex < result.length; variantIndex++) {
+			result[variantIndex] /= total;
+		}
+		return result;
+	}
+	
+	/**
+	 * Adds the weighted contribution of a single location to the (unnormalized)
+	 * densities of all variants.
+	 * 
+	 * @param densities      the densities, indexed by variant index
+	 * @param variantWeights the weights of the variants at all locations
+	 * @param locationIndex  the index of the location
+	 * @param kernelValue    the kernel value for the location
+	 * @return the contribution of the location to the normalizing sum
+	 */
+	private double addToDensities(double[] densities, VariantWeights variantWeights, int locationIndex, double kernelValue) {
+		int total = variantWeights.getTotalNumberOfVariantOccurences(locationIndex);
+		int[] row = variantWeights.getNumbersOfVariantOccurences(locationIndex);
+		if (this.ignoreFrequencies) {
+			for (int variantIndex = 0; variantIndex < row.length; variantIndex++) {
+				if (row[variantIndex] != 0) {
+					densities[variantIndex] += ((double)row[variantIndex] / total) * kernelValue;
+				}
+			}
+			return kernelValue;
+		} else {
+			for (int variantIndex = 0; variantIndex < row.length; variantIndex++) {
+				if (row[variantIndex] != 0) {
+					densities[variantIndex] += row[variantIndex] * kernelValue;
+				}
+			}
+			return total * kernelValue;
+		}
+	}
+	
+	/**
+	 * Divides the accumulated densities by the normalizing sum.
+	 * 
+	 * @param densities  the densities, indexed by variant index
+	 * @param sum        the normalizing sum
+	 * @return the (modified) array <code>densities</code>
+	 */
+	private static double[] normalizeDensities(double[] densities, double sum) {
+		for (int variantIndex = 0; variantIndex < densities.length; variantIndex++) {
+			densities[variantIndex] = (sum > 0.0) ? densities[variantIndex]/sum : 0.0;
+		}
+		return densities;
+	}
+	
 }
\ No newline at end of file
@@ -78,4 +78,50 @@ public class WeightPassthrough implements DensityEstimation {
 		}
 	}
 	
+	/**
+	 * Returns the weights of all variants at the location nearest to the
+	 * given geographic coordinates.
+	 * 
+	 * @param variantWeights  the weights of the variants at all locations
+	 * @param latLong         the geographic coordinates
+	 * @return the density values, indexed by the variant indices of <code>variantWeights</code>
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, LatLong latLong) {
+		double[] result = new double[variantWeights.getNumberOfVariants()];
+		int locationIndex = variantWeights.getLocationIndex(variantWeights.getLocationGrid().findNearestLocation(latLong));
+		for (int variantIndex = 0; variantIndex < result.length; variantIndex++) {
+			result[variantIndex] = variantWeights.getWeight(variantIndex, locationIndex);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the weights of all variants at the given (aggregated) location.
+	 * 
+	 * @param variantWeights     the weights of the variants at all locations
+	 * @param aggregatedLocation the (aggregated) location
+	 * @return the weights, indexed by the variant indices of <code>variantWeights</code>
+	 */
+	public double[] estimateAllVariants(VariantWeights variantWeights, AggregatedLocation aggregatedLocation) {
+		double[] result = new double[variantWeights.getNumberOfVariants()];
+		int total = 0;
+		for (Location location : aggregatedLocation.getLocations()) {
+			int locationIndex = variantWeights.getLocationIndex(location);
+			if (locationIndex < 0) {
+				continue;
+			}
+			int[] row = variantWeights.getNumbersOfVariantOccurences(locationIndex);
+			for (int variantIndex = 0; variantIndex < row.length; variantIndex++) {
+				result[variantIndex] += row[variantIndex];
+			}
+			total += variantWeights.getTotalNumberOfVariantOccurences(locationIndex);
+		}
+		if (total > 0) {
+			for (int variantIndex = 0; variantIndex < result.length; variantIndex++) {
+				result[variantIndex] /= total;
+			}
+		}
+		return result;
+	}
+	
 }
\ No newline at end of file
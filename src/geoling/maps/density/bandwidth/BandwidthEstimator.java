@@ -27,6 +27,9 @@ public abstract class BandwidthEstimator {
 	/** The kernel object. */
 	protected Kernel kernel;
 	
+	/** The search strategy, <code>null</code> if all candidates are evaluated. */
+	protected BandwidthSearch search;
+	
 	/**
 	 * Constructor using the kernel that will be used for bandwidth
 	 * estimation.
@@ -34,7 +37,20 @@ public abstract class BandwidthEstimator {
 	 * @param kernel  the kernel
 	 */
 	public BandwidthEstimator(Kernel kernel) {
+		this(kernel, null);
+	}
+	
+	/**
+	 * Constructor using the kernel that will be used for bandwidth
+	 * estimation and a strategy to search the best candidate.
+	 * 
+	 * @param kernel  the kernel
+	 * @param search  the search strategy, <code>null</code> if all candidates
+	 *                should be evaluated
+	 */
+	public BandwidthEstimator(Kernel kernel, BandwidthSearch search) {
 		this.kernel = kernel;
+		this.search = search;
 	}
 	
 	/**
@@ -55,6 +71,15 @@ public abstract class BandwidthEstimator {
 		return this.kernel.getDistanceMeasure();
 	}
 	
+	/**
+	 * Returns the search strategy.
+	 * 
+	 * @return the search strategy, <code>null</code> if all candidates are evaluated
+	 */
+	public BandwidthSearch getSearch() {
+		return this.search;
+	}
+	
 	/**
 	 * Returns an identification string for this kernel, does not include parameters
 	 * as e.g. the bandwidth.
@@ -63,6 +88,17 @@ public abstract class BandwidthEstimator {
 	 */
 	public abstract String getIdentificationStringWithoutParameters();
 	
+	/**
+	 * Returns the part of the identification string that describes the search
+	 * strategy. It is empty if all candidates are evaluated, such that existing
+	 * identification strings remain valid.
+	 * 
+	 * @return the identification string of the search strategy
+	 */
+	protected String getSearchIdentificationString() {
+		return (this.search != null) ? ":search="+this.search.getIdentificationString() : "";
+	}
+	
 	/**
 	 * Returns an identification string for this bandwidth estimator, includes the parameters
 	 * as e.g. the kernel.
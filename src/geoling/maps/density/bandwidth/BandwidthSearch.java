@@ -0,0 +1,64 @@
+package geoling.maps.density.bandwidth;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Abstract class for search strategies that find the best bandwidth among
+ * the candidates without evaluating all of them, used by bandwidth
+ * estimators whose criterion can be evaluated for single bandwidths.
+ * If no search strategy is given to an estimator, then all candidates
+ * are evaluated.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ * @see BandwidthEstimator
+ */
+public abstract class BandwidthSearch {
+	
+	/** The criterion of a bandwidth estimator, which has to be maximized. */
+	public interface Objective {
+		
+		/**
+		 * Evaluates the criterion for the given bandwidths.
+		 * 
+		 * @param bandwidths  the bandwidths
+		 * @return the values of the criterion (larger values are better),
+		 *         in the order of <code>bandwidths</code>
+		 */
+		public double[] evaluate(List<BigDecimal> bandwidths);
+		
+	}
+	
+	/**
+	 * Returns an identification string for this search strategy, includes the parameters.
+	 * 
+	 * @return the identification string
+	 */
+	public abstract String getIdentificationString();
+	
+	/**
+	 * Searches the bandwidth that maximizes the objective.
+	 * 
+	 * @param bandwidthCandidates  the bandwidth candidates, which determine the range
+	 *                             of bandwidths to search in
+	 * @param objective            the objective
+	 * @return the detected bandwidth, <code>null</code> if no best bandwidth could be detected
+	 *         (e.g., if <code>bandwidthCandidates</code> is empty)
+	 */
+	public abstract BigDecimal search(List<BigDecimal> bandwidthCandidates, Objective objective);
+	
+	/**
+	 * Returns the corresponding search strategy object for the given identification string.
+	 * 
+	 * @param searchIdStr  the identification string of the search strategy
+	 * @return the search strategy object
+	 */
+	public static BandwidthSearch getSearchObj(String searchIdStr) {
+		if (searchIdStr.startsWith(GoldenSectionSearch.getStaticIdentificationString())) {
+			return GoldenSectionSearch.fromIdentificationString(searchIdStr);
+		} else {
+			throw new IllegalArgumentException("Unknown bandwidth search identification string: "+searchIdStr);
+		}
+	}
+	
+}
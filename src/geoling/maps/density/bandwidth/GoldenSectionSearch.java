@@ -0,0 +1,212 @@
+package geoling.maps.density.bandwidth;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Bandwidth search that evaluates a coarse grid of the candidates first, then
+ * refines the best coarse bandwidth by a golden-section search between its
+ * neighbours on the coarse grid.
+ * The refinement stops when the search interval is smaller than the tolerance,
+ * which is given relative to the largest candidate. All evaluated bandwidths are
+ * rounded to the precision given by the tolerance, such that the result can be
+ * reproduced and used for identification purposes.
+ * <p>
+ * Note that the result equals the result of the exhaustive search only if the
+ * criterion is unimodal around the best coarse bandwidth.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class GoldenSectionSearch extends BandwidthSearch {
+	
+	/** The default number of bandwidths of the coarse grid. */
+	public static int DEFAULT_COARSE_COUNT = 6;
+	
+	/** The default tolerance, relative to the largest candidate. */
+	public static BigDecimal DEFAULT_TOLERANCE = new BigDecimal("0.01");
+	
+	/** The inverse of the golden ratio. */
+	private static final double INV_GOLDEN_RATIO = (Math.sqrt(5.0)-1.0)/2.0;
+	
+	/** The number of bandwidths of the coarse grid. */
+	protected int coarseCount;
+	
+	/** The tolerance, relative to the largest candidate. */
+	protected BigDecimal tolerance;
+	
+	/**
+	 * Constructs a new search strategy object.
+	 * 
+	 * @param coarseCount  the number of bandwidths of the coarse grid
+	 * @param tolerance    the tolerance, relative to the largest candidate
+	 */
+	public GoldenSectionSearch(int coarseCount, BigDecimal tolerance) {
+		if (coarseCount < 1) {
+			throw new IllegalArgumentException("The coarse grid has to contain at least one bandwidth!");
+		}
+		if (tolerance.signum() <= 0) {
+			throw new IllegalArgumentException("The tolerance has to be positive!");
+		}
+		this.coarseCount = coarseCount;
+		this.tolerance   = tolerance.stripTrailingZeros();
+	}
+	
+	/**
+	 * Constructs a new search strategy object with default parameters.
+	 */
+	public GoldenSectionSearch() {
+		this(DEFAULT_COARSE_COUNT, DEFAULT_TOLERANCE);
+	}
+	
+	/**
+	 * Returns an identification string for this search strategy, includes the parameters.
+	 * 
+	 * @return the identification string
+	 */
+	public String getIdentificationString() {
+		return getStaticIdentificationString()+":coarse="+this.coarseCount+":tolerance="+this.tolerance.toPlainString();
+	}
+	
+	/**
+	 * Returns an identification string for this search strategy type.
+	 * 
+	 * @return the identification string
+	 */
+	public static String getStaticIdentificationString() {
+		return "golden_section";
+	}
+	
+	/**
+	 * Constructs the search strategy object for the given identification string,
+	 * see <code>getIdentificationString</code>.
+	 * 
+	 * @param searchIdStr  the identification string
+	 * @return the search strategy object
+	 */
+	public static GoldenSectionSearch fromIdentificationString(String searchIdStr) {
+		int coarseCount = DEFAULT_COARSE_COUNT;
+		BigDecimal tolerance = DEFAULT_TOLERANCE;
+		for (String part : searchIdStr.split(":")) {
+			if (part.startsWith("coarse=")) {
+				coarseCount = Integer.parseInt(part.substring("coarse=".length()));
+			} else if (part.startsWith("tolerance=")) {
+				tolerance = new BigDecimal(part.substring("tolerance=".length()));
+			}
+		}
+		return new GoldenSectionSearch(coarseCount, tolerance);
+	}
+	
+	/**
+	 * Searches the bandwidth that maximizes the objective.
+	 * 
+	 * @param bandwidthCandidates  the bandwidth candidates, which determine the range
+	 *                             of bandwidths to search in
+	 * @param objective            the objective
+	 * @return the detected bandwidth, <code>null</code> if no best bandwidth could be detected
+	 *         (e.g., if <code>bandwidthCandidates</code> is empty)
+	 */
+	public BigDecimal search(List<BigDecimal> bandwidthCandidates, Objective objective) {
+		if (bandwidthCandidates.isEmpty()) {
+			return null;
+		}
+		ArrayList<BigDecimal> candidates = new ArrayList<BigDecimal>(bandwidthCandidates);
+		Collections.sort(candidates);
+		int n = candidates.size();
+		
+		// all evaluated bandwidths, sorted by bandwidth
+		TreeMap<BigDecimal,Double> values = new TreeMap<BigDecimal,Double>();
+		
+		// evaluate the coarse grid at once
+		int count = Math.min(this.coarseCount, n);
+		int[] coarseIndices = new int[count];
+		ArrayList<BigDecimal> coarse = new ArrayList<BigDecimal>(count);
+		for (int k = 0; k < count; k++) {
+			coarseIndices[k] = (int)Math.round((double)(k+1)*n/count)-1;
+			coarse.add(candidates.get(coarseIndices[k]));
+		}
+		double[] coarseValues = objective.evaluate(coarse);
+		int best = 0;
+		for (int k = 0; k < count; k++) {
+			values.put(coarse.get(k), coarseValues[k]);
+			if (Double.isNaN(coarseValues[best]) || (coarseValues[k] > coarseValues[best])) {
+				best = k;
+			}
+		}
+		
+		// refine between the neighbours of the best bandwidth of the coarse grid
+		double a = candidates.get((best > 0) ? coarseIndices[best-1] : 0).doubleValue();
+		double b = candidates.get((best < count-1) ? coarseIndices[best+1] : n-1).doubleValue();
+		BigDecimal absoluteTolerance = this.tolerance.multiply(candidates.get(n-1));
+		int scale = absoluteTolerance.stripTrailingZeros().scale();
+		BigDecimal minBandwidth = candidates.get(0);
+		
+		BigDecimal x1 = round(b - INV_GOLDEN_RATIO*(b-a), scale, minBandwidth);
+		BigDecimal x2 = round(a + INV_GOLDEN_RATIO*(b-a), scale, minBandwidth);
+		double f1 = evaluate(objective, x1, values);
+		double f2 = evaluate(objective, x2, values);
+		while (b-a > absoluteTolerance.doubleValue()) {
+			if (f1 >= f2 || Double.isNaN(f2)) {
+				b  = x2.doubleValue();
+				x2 = x1;
+				f2 = f1;
+				x1 = round(b - INV_GOLDEN_RATIO*(b-a), scale, minBandwidth);
+				f1 = evaluate(objective, x1, values);
+			} else {
+				a  = x1.doubleValue();
+				x1 = x2;
+				f1 = f2;
+				x2 = round(a + INV_GOLDEN_RATIO*(b-a), scale, minBandwidth);
+				f2 = evaluate(objective, x2, values);
+			}
+		}
+		
+		// return the best of all evaluated bandwidths, the smallest one in case of ties
+		double maxValue = Double.NEGATIVE_INFINITY;
+		BigDecimal maxValueBandwidth = null;
+		for (Entry<BigDecimal,Double> entry : values.entrySet()) {
+			if (entry.getValue() > maxValue) {
+				maxValue = entry.getValue();
+				maxValueBandwidth = entry.getKey();
+			}
+		}
+		return maxValueBandwidth;
+	}
+	
+	/**
+	 * Evaluates the objective for a single bandwidth, uses the values
+	 * computed before, if possible.
+	 * 
+	 * @param objective  the objective
+	 * @param bandwidth  the bandwidth
+	 * @param values     the values computed before, the new value is added
+	 * @return the value of the objective
+	 */
+	private static double evaluate(Objective objective, BigDecimal bandwidth, TreeMap<BigDecimal,Double> values) {
+		Double value = values.get(bandwidth);
+		if (value == null) {
+			value = objective.evaluate(Collections.singletonList(bandwidth))[0];
+			values.put(bandwidth, value);
+		}
+		return value.doubleValue();
+	}
+	
+	/**
+	 * Rounds a bandwidth to the given scale.
+	 * 
+	 * @param bandwidth     the bandwidth
+	 * @param scale         the scale
+	 * @param minBandwidth  the minimal bandwidth
+	 * @return the rounded bandwidth (normalized by <code>stripTrailingZeros</code>),
+	 *         at least <code>minBandwidth</code>
+	 */
+	private static BigDecimal round(double bandwidth, int scale, BigDecimal minBandwidth) {
+		BigDecimal result = BigDecimal.valueOf(bandwidth).setScale(scale, RoundingMode.HALF_UP).stripTrailingZeros();
+		return (result.compareTo(minBandwidth) < 0) ? minBandwidth : result;
+	}
+	
+}
@@ -6,16 +6,12 @@ import geoling.maps.distances.GeographicalDistance;
 import geoling.maps.weights.VariantWeights;
 import geoling.models.ConfigurationOption;
 import geoling.models.Location;
-import geoling.models.Variant;
 import geoling.util.ThreadedTodoWorker;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.List;
 
 /**
  * Least-squares-cross-validation for determining a bandwidth for kernel density estimation.
@@ -53,7 +49,23 @@ public class LeastSquaresCrossValidation extends BandwidthEstimator {
 	 * @throws LeastSquaresCrossValidationNotSupportedException if the given kernel is not supported
 	 */
 	public LeastSquaresCrossValidation(Kernel kernel, boolean ignoreFrequencies) {
-		super(kernel);
+		this(kernel, ignoreFrequencies, null);
+	}
+	
+	/**
+	 * Constructor using the kernel that will be used for bandwidth estimation.
+	 * Note that this method requires a Gaussian kernel using the geographic distance.
+	 * 
+	 * @param kernel            the kernel
+	 * @param ignoreFrequencies determines whether the (absolute) number of answers at a
+	 *                          location is ignored, i.e., whether only the weight
+	 *                          itself is relevant
+	 * @param search            the search strategy, <code>null</code> if all candidates
+	 *                          should be evaluated
+	 * @throws LeastSquaresCrossValidationNotSupportedException if the given kernel is not supported
+	 */
+	public LeastSquaresCrossValidation(Kernel kernel, boolean ignoreFrequencies, BandwidthSearch search) {
+		super(kernel, search);
 		if (!((kernel instanceof GaussianKernel) && (kernel.getDistanceMeasure() instanceof GeographicalDistance))) {
 			throw new LeastSquaresCrossValidationNotSupportedException("Only Gaussian kernel with geographic distance measure is allowed!");
 		}
@@ -71,9 +83,28 @@ public class LeastSquaresCrossValidation extends BandwidthEstimator {
 		this(kernel, ConfigurationOption.getOption("ignoreFrequenciesInDensityEstimation", false));
 	}
 	
+	/**
+	 * Constructor using the kernel that will be used for bandwidth estimation.
+	 * Note that this method requires a Gaussian kernel using the geographic distance.
+	 * 
+	 * @param kernel  the kernel
+	 * @param search  the search strategy, <code>null</code> if all candidates
+	 *                should be evaluated
+	 * @throws LeastSquaresCrossValidationNotSupportedException if the given kernel is not supported
+	 */
+	public LeastSquaresCrossValidation(Kernel kernel, BandwidthSearch search) {
+		this(kernel, ConfigurationOption.getOption("ignoreFrequenciesInDensityEstimation", false), search);
+	}
+	
 	/**
 	 * Detects a suitable bandwidth from the given candidates,
 	 * uses the least-squares-cross-validation.
+	 * <p>
+	 * The pairwise distances of the locations are computed only once and the
+	 * occurrences of every variant are stored as a sparse vector, then all
+	 * candidates are evaluated in a single sweep over the pairs of locations
+	 * where the variant occurs. If a search strategy is given, then only the
+	 * candidates requested by the strategy are evaluated.
 	 * 
 	 * @param variantWeights       the weights for all variants at all locations
 	 * @param bandwidthCandidates  the bandwidths that should be tested
@@ -81,71 +112,39 @@ public class LeastSquaresCrossValidation extends BandwidthEstimator {
 	 *         (e.g., if <code>bandwidthCandidates</code> is empty)
 	 */
 	public BigDecimal findBandwidth(final VariantWeights variantWeights, Collection<BigDecimal> bandwidthCandidates) {
-		final ArrayList<Location> locations = new ArrayList<Location>(variantWeights.getLocations());
-		Double minValue = Double.POSITIVE_INFINITY;
-		Double prevValue = Double.POSITIVE_INFINITY;
-		BigDecimal minValueBandwidth = null;
-		int strictlyIncreasingCounter = 0;
-		for (BigDecimal bandwidth : bandwidthCandidates) {
-			// Note: we don't need a kernel object with the correct bandwidth
-			// (kernel.copyOfKernelWithBandwidth(bandwidth)), because we don't use it.
-			// Least-squares-cross-validation is only implemented for the Gaussian case
-			// with Euclidean/geographical distance, which is asserted by the constructor.
-			
-			final double h = bandwidth.doubleValue();
-			final Map<Variant,Double> values = Collections.synchronizedMap(new HashMap<Variant,Double>());
-			
-			// evaluation in parallel for different variants, store the sum per variant into "values",
-			// which is then summed up later
-			ThreadedTodoWorker.workOnTodoList(variantWeights.getVariants(), new ThreadedTodoWorker.SimpleTodoWorker<Variant>() {
-				public void processTodoItem(Variant variant) {
-					int n = 0;
-					double sum = 0.0;
-					for (Location location1 : locations) {
-						int number1;
-						if (ignoreFrequencies) {
-							number1 = (int)Math.round(variantWeights.getWeight(variant, location1)*100);
-						} else {
-							number1 = variantWeights.getNumberOfVariantOccurencesAtLocation(variant, location1);
-						}
-						
-						if (number1 > 0) {
-							for (Location location2 : locations) {
-								if (!location1.equals(location2)) {
-									int number2;
-									if (ignoreFrequencies) {
-										number2 = (int)Math.round(variantWeights.getWeight(variant, location2)*100);
-									} else {
-										number2 = variantWeights.getNumberOfVariantOccurencesAtLocation(variant, location2);
-									}
-									
-									if (number2 > 0) {
-										double d = kernel.getDistanceMeasure().getDistance(location1, location2);
-										sum += (Math.exp(-(d/h)*(d/h)/4.0)/4.0 - Math.exp(-(d/h)*(d/h)/2.0)) * number1*number2;
-									}
-								}
-							}
-							n += number1;
-						}
-					}
-					
-					double weightSum = 0.0;
-					for (Location location : variantWeights.getLocations()) {
-						weightSum += variantWeights.getWeight(variant, location);
+		final ArrayList<BigDecimal> candidates = new ArrayList<BigDecimal>(bandwidthCandidates);
+		if (candidates.isEmpty()) {
+			return null;
+		}
+		
+		final float[] distances = computePairwiseDistances(variantWeights);
+		
+		if (this.search != null) {
+			// the search strategy maximizes, therefore use the negative values
+			return this.search.search(candidates, new BandwidthSearch.Objective() {
+				public double[] evaluate(List<BigDecimal> bandwidths) {
+					double[] values = computeValues(variantWeights, distances, bandwidths);
+					for (int b = 0; b < values.length; b++) {
+						values[b] = -values[b];
 					}
-					
-					values.put(variant, weightSum * (sum / (n*n*h*h*Math.PI) + 1.0/(Math.PI*n*h*h)));
+					return values;
 				}
 			});
-			
-			double value = 0.0;
-			for (Entry<Variant,Double> entry : values.entrySet()) {
-				value += entry.getValue();
-			}
+		}
+		
+		double[] values = computeValues(variantWeights, distances, candidates);
+		
+		// choose the minimum in the order of the candidates
+		double minValue = Double.POSITIVE_INFINITY;
+		double prevValue = Double.POSITIVE_INFINITY;
+		BigDecimal minValueBandwidth = null;
+		int strictlyIncreasingCounter = 0;
+		for (int b = 0; b < values.length; b++) {
+			double value = values[b];
 			
 			if (value < minValue) {
 				minValue = value;
-				minValueBandwidth = bandwidth;
+				minValueBandwidth = candidates.get(b);
 			}
 			
 			if (value > prevValue) {
@@ -162,13 +161,127 @@ public class LeastSquaresCrossValidation extends BandwidthEstimator {
 		return minValueBandwidth;
 	}
 	
+	/**
+	 * Computes the least-squares-cross-validation criterion for all given bandwidths,
+	 * in a single sweep over the pairs of locations.
+	 * 
+	 * @param variantWeights  the weights for all variants at all locations
+	 * @param distances       the packed distances, see <code>computePairwiseDistances</code>
+	 * @param bandwidths      the bandwidths
+	 * @return the values of the criterion (smaller values are better)
+	 */
+	private double[] computeValues(final VariantWeights variantWeights, final float[] distances, List<BigDecimal> bandwidths) {
+		// Note: we don't need a kernel object with the correct bandwidth
+		// (kernel.copyOfKernelWithBandwidth(bandwidth)), because we don't use it.
+		// Least-squares-cross-validation is only implemented for the Gaussian case
+		// with Euclidean/geographical distance, which is asserted by the constructor.
+		final double[] h = new double[bandwidths.size()];
+		final double[] hInv = new double[bandwidths.size()];
+		for (int b = 0; b < h.length; b++) {
+			h[b]    = bandwidths.get(b).doubleValue();
+			hInv[b] = 1.0 / h[b];
+		}
+		
+		final double[] values = new double[h.length];
+		
+		// evaluation in parallel for different variants, the values per variant are
+		// added to "values" at the end of each job
+		ThreadedTodoWorker.workOnIndexRange(0, variantWeights.getNumberOfVariants()-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int variantIndex) {
+				int numberOfLocations = variantWeights.getNumberOfLocations();
+				
+				// sparse vector of the occurrences of this variant
+				int[] occurrenceIndices = new int[numberOfLocations];
+				int[] occurrenceNumbers = new int[numberOfLocations];
+				int occurrenceCount = 0;
+				int n = 0;
+				double weightSum = 0.0;
+				for (int locationIndex = 0; locationIndex < numberOfLocations; locationIndex++) {
+					int number;
+					if (ignoreFrequencies) {
+						number = (int)Math.round(variantWeights.getWeight(variantIndex, locationIndex)*100);
+					} else {
+						number = variantWeights.getNumberOfVariantOccurences(variantIndex, locationIndex);
+					}
+					if (number > 0) {
+						occurrenceIndices[occurrenceCount] = locationIndex;
+						occurrenceNumbers[occurrenceCount] = number;
+						occurrenceCount++;
+						n += number;
+					}
+					weightSum += variantWeights.getWeight(variantIndex, locationIndex);
+				}
+				
+				// sum over all (ordered) pairs of different locations, i.e., twice the sum over
+				// the unordered pairs, for all bandwidth candidates at once
+				double[] sum = new double[h.length];
+				for (int k2 = 1; k2 < occurrenceCount; k2++) {
+					int index2 = occurrenceIndices[k2];
+					int offset = triangularOffset(index2);
+					for (int k1 = 0; k1 < k2; k1++) {
+						double d = distances[offset+occurrenceIndices[k1]];
+						double factor = 2.0 * occurrenceNumbers[k1] * occurrenceNumbers[k2];
+						for (int b = 0; b < sum.length; b++) {
+							double dh = d*hInv[b];
+							// exp(-(d/h)^2/2) = exp(-(d/h)^2/4)^2
+							double e = Math.exp(-dh*dh/4.0);
+							sum[b] += (e/4.0 - e*e) * factor;
+						}
+					}
+				}
+				
+				synchronized (values) {
+					for (int b = 0; b < values.length; b++) {
+						values[b] += weightSum * (sum[b] / (n*n*h[b]*h[b]*Math.PI) + 1.0/(Math.PI*n*h[b]*h[b]));
+					}
+				}
+			}
+		});
+		
+		return values;
+	}
+	
+	/**
+	 * Computes the distances of all pairs of locations, stored as a strictly lower
+	 * triangular matrix in a single array, see <code>triangularOffset</code>.
+	 * 
+	 * @param variantWeights  the weights for all variants at all locations
+	 * @return the packed distances
+	 */
+	private float[] computePairwiseDistances(final VariantWeights variantWeights) {
+		int numberOfLocations = variantWeights.getNumberOfLocations();
+		final float[] distances = new float[triangularOffset(numberOfLocations)];
+		ThreadedTodoWorker.workOnIndexRange(1, numberOfLocations-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int index2) {
+				Location location2 = variantWeights.getLocationByIndex(index2);
+				int offset = triangularOffset(index2);
+				for (int index1 = 0; index1 < index2; index1++) {
+					distances[offset+index1] = (float)kernel.getDistanceMeasure().getDistance(variantWeights.getLocationByIndex(index1), location2);
+				}
+			}
+		});
+		return distances;
+	}
+	
+	/**
+	 * Returns the position of the row <code>index</code> in a packed strictly lower
+	 * triangular matrix, i.e., the entry <code>(i,j)</code> with <code>j &lt; i</code>
+	 * is stored at <code>triangularOffset(i)+j</code>.
+	 * 
+	 * @param index  the row index
+	 * @return the position of the first entry of the row
+	 */
+	private static int triangularOffset(int index) {
+		return (int)((long)index*(index-1)/2);
+	}
+	
 	/**
 	 * Returns an identification string for the likelihood-cross validation.
 	 * 
 	 * @return the identification string
 	 */
 	public String getIdentificationStringWithoutParameters() {
-		return getStaticIdentificationString();
+		return getStaticIdentificationString()+getSearchIdentificationString();
 	}
 	
 	/**
@@ -4,16 +4,12 @@ import geoling.maps.density.KernelDensityEstimation;
 import geoling.maps.density.kernels.Kernel;
 import geoling.maps.weights.VariantWeights;
 import geoling.models.Location;
-import geoling.models.Variant;
 import geoling.util.ThreadedTodoWorker;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.List;
 
 /**
  * Likelihood-cross-validation for determining a bandwidth for kernel density estimation.
@@ -44,9 +40,23 @@ public class LikelihoodCrossValidation extends BandwidthEstimator {
 		super(kernel);
 	}
 	
+	/**
+	 * Constructor using the kernel that will be used for bandwidth estimation
+	 * and a strategy to search the best candidate.
+	 * 
+	 * @param kernel  the kernel
+	 * @param search  the search strategy, <code>null</code> if all candidates
+	 *                should be evaluated
+	 */
+	public LikelihoodCrossValidation(Kernel kernel, BandwidthSearch search) {
+		super(kernel, search);
+	}
+	
 	/**
 	 * Detects a suitable bandwidth from the given candidates,
 	 * uses the likelihood-cross-validation.
+	 * If a search strategy is given, then only the candidates requested by the
+	 * strategy are evaluated.
 	 * 
 	 * @param variantWeights       the weights for all variants at all locations
 	 * @param bandwidthCandidates  the bandwidths that should be tested
@@ -54,46 +64,24 @@ public class LikelihoodCrossValidation extends BandwidthEstimator {
 	 *         (e.g., if <code>bandwidthCandidates</code> is empty)
 	 */
 	public BigDecimal findBandwidth(final VariantWeights variantWeights, Collection<BigDecimal> bandwidthCandidates) {
+		if (this.search != null) {
+			return this.search.search(new ArrayList<BigDecimal>(bandwidthCandidates), new BandwidthSearch.Objective() {
+				public double[] evaluate(List<BigDecimal> bandwidths) {
+					double[] values = new double[bandwidths.size()];
+					for (int b = 0; b < values.length; b++) {
+						values[b] = computeValue(variantWeights, bandwidths.get(b));
+					}
+					return values;
+				}
+			});
+		}
+		
 		double maxValue = Double.NEGATIVE_INFINITY;
 		double prevValue = Double.NEGATIVE_INFINITY;
 		BigDecimal maxValueBandwidth = null;
-		final ArrayList<Location> locations = new ArrayList<Location>(variantWeights.getLocations());
 		int strictlyDecreasingCounter = 0;
 		for (BigDecimal bandwidth : bandwidthCandidates) {
-			final KernelDensityEstimation kde = new KernelDensityEstimation(kernel.copyOfKernelWithBandwidth(bandwidth));
-			
-			final Map<Variant,Double> values = Collections.synchronizedMap(new HashMap<Variant,Double>());
-			
-			// evaluation in parallel for different variants, store the sum per variant into "values",
-			// which is then summed up later
-			ThreadedTodoWorker.workOnTodoList(variantWeights.getVariants(), new ThreadedTodoWorker.SimpleTodoWorker<Variant>() {
-				public void processTodoItem(Variant variant) {
-					// count the locations where this variant has a positive weight
-					int count = 0;
-					for (Location location : locations) {
-						if (variantWeights.getNumberOfVariantOccurencesAtLocation(variant, location) > 0) {
-							count++;
-						}
-					}
-					// if this variant occurs often enough, then perform the computations for the likelihood-cross-validation itself
-					double value = 0.0;
-					if (count > locations.size() * MIN_OCCURRENCE_AT_LOCATION) {
-						for (Location location : locations) {
-							double weight = variantWeights.getWeight(variant, location);
-							if (weight > 0.0) {
-								double est = kde.estimate(variantWeights, variant, location, location);
-								value += weight * Math.log(est);
-							}
-						}
-					}
-					values.put(variant, value);
-				}
-			});
-			
-			double value = 0.0;
-			for (Entry<Variant,Double> entry : values.entrySet()) {
-				value += entry.getValue();
-			}
+			double value = computeValue(variantWeights, bandwidth);
 			
 			if (value > maxValue) {
 				maxValue = value;
@@ -113,13 +101,68 @@ public class LikelihoodCrossValidation extends BandwidthEstimator {
 		return maxValueBandwidth;
 	}
 	
+	/**
+	 * Computes the likelihood-cross-validation criterion for the given bandwidth.
+	 * The leave-one-out densities of all variants are estimated at once for
+	 * every location.
+	 * 
+	 * @param variantWeights  the weights for all variants at all locations
+	 * @param bandwidth       the bandwidth
+	 * @return the value of the criterion (larger values are better)
+	 */
+	private double computeValue(final VariantWeights variantWeights, BigDecimal bandwidth) {
+		final KernelDensityEstimation kde = new KernelDensityEstimation(kernel.copyOfKernelWithBandwidth(bandwidth));
+		final int numberOfLocations = variantWeights.getNumberOfLocations();
+		final int numberOfVariants = variantWeights.getNumberOfVariants();
+		
+		// count the locations where the variants have a positive weight, only variants
+		// occurring often enough are considered in the likelihood-cross-validation
+		final boolean[] relevant = new boolean[numberOfVariants];
+		for (int variantIndex = 0; variantIndex < numberOfVariants; variantIndex++) {
+			int count = 0;
+			for (int locationIndex = 0; locationIndex < numberOfLocations; locationIndex++) {
+				if (variantWeights.getNumberOfVariantOccurences(variantIndex, locationIndex) > 0) {
+					count++;
+				}
+			}
+			relevant[variantIndex] = (count > numberOfLocations * MIN_OCCURRENCE_AT_LOCATION);
+		}
+		
+		// evaluation in parallel for different locations, store the sum per location into "values",
+		// which is then summed up later
+		final double[] values = new double[numberOfLocations];
+		ThreadedTodoWorker.workOnIndexRange(0, numberOfLocations-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int locationIndex) {
+				Location location = variantWeights.getLocationByIndex(locationIndex);
+				double[] est = null;
+				double value = 0.0;
+				for (int variantIndex = 0; variantIndex < numberOfVariants; variantIndex++) {
+					double weight = variantWeights.getWeight(variantIndex, locationIndex);
+					if (relevant[variantIndex] && (weight > 0.0)) {
+						if (est == null) {
+							est = kde.estimateAllVariants(variantWeights, location, location);
+						}
+						value += weight * Math.log(est[variantIndex]);
+					}
+				}
+				values[locationIndex] = value;
+			}
+		});
+		
+		double value = 0.0;
+		for (int locationIndex = 0; locationIndex < numberOfLocations; locationIndex++) {
+			value += values[locationIndex];
+		}
+		return value;
+	}
+	
 	/**
 	 * Returns an identification string for the likelihood-cross validation.
 	 * 
 	 * @return the identification string
 	 */
 	public String getIdentificationStringWithoutParameters() {
-		return getStaticIdentificationString();
+		return getStaticIdentificationString()+getSearchIdentificationString();
 	}
 	
 	/**
@@ -0,0 +1,535 @@
+package geoling.maps.density.bandwidth.computation;
+
+import geoling.config.Database;
+import geoling.maps.density.bandwidth.BandwidthEstimator;
+import geoling.maps.distances.LinguisticDistance;
+import geoling.maps.weights.*;
+import geoling.models.*;
+import geoling.util.ProgressOutput;
+import geoling.util.StopWatch;
+import geoling.util.ThreadedTodoWorker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.DBException;
+import org.javalite.activejdbc.LazyList;
+
+/**
+ * Batch computation of bandwidths for all combinations of maps, levels and
+ * bandwidth estimators. The tasks are processed in parallel (grouped by map,
+ * so that the variant weights of a map are computed only once), combinations
+ * whose bandwidth is already in the database are skipped, and the results are
+ * saved in batches, each in one transaction.
+ * <p>
+ * If a progress file is given, the finished tasks are appended to this file
+ * after every committed batch. When the computation is started again (e.g. after
+ * it has been killed), these tasks are skipped, even if the bandwidths are
+ * recomputed. If a batch cannot be saved, the transaction is rolled back and its
+ * tasks are not written to the progress file, i.e., they are computed again in
+ * the next run. The progress file is deleted when all tasks are finished
+ * successfully.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class BandwidthBatchComputation {
+	
+	/** The default number of bandwidths that are saved together in one transaction. */
+	public static int DEFAULT_BATCH_SIZE = 25;
+	
+	/** The maps for which we want to compute bandwidths. */
+	private List<Map> maps;
+	
+	/** The levels for which we want to compute bandwidths (<code>null</code> entries denote "no level"). */
+	private List<Level> levels;
+	
+	/** The bandwidth estimators that should be used. */
+	private List<BandwidthEstimator> estimators;
+	
+	/** Determines whether only groups containing the map are considered for the linguistic distance. */
+	private boolean onlyContained;
+	
+	/** Determines whether bandwidths are recomputed if they are already present. */
+	private boolean recompute;
+	
+	/** The file to store the finished tasks in (may be <code>null</code>). */
+	private File progressFile = null;
+	
+	/** The number of bandwidths that are saved together in one transaction. */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	
+	/** The computed bandwidths that are not yet saved. */
+	private ArrayList<Result> unsavedResults;
+	
+	/** The number of finished tasks. */
+	private AtomicInteger finishedTasks;
+	
+	/** The number of tasks that could not be computed or saved. */
+	private AtomicInteger failedTasks;
+	
+	/** The total number of tasks to compute. */
+	private int totalTasks;
+	
+	/** The start time of the computation (in milliseconds), used to report the throughput. */
+	private long startTime;
+	
+	/**
+	 * Constructs the batch computation object.
+	 * 
+	 * @param maps          the maps for which we want to compute bandwidths,
+	 *                      may be <code>null</code>, then all maps are used
+	 * @param levels        the list of level objects for which we want to compute bandwidths,
+	 *                      may be <code>null</code>, then all levels are used
+	 *                      (<code>null</code> entries in the list denote the weights without level)
+	 * @param estimators    the list of estimator objects that should be used
+	 * @param onlyContained if set, then for the linguistic distance only groups will be
+	 *                      considered where the current map is contained
+	 * @param recompute     determines whether the bandwidth should be recomputed
+	 *                      if it is already present
+	 */
+	public BandwidthBatchComputation(List<Map> maps, List<Level> levels, List<BandwidthEstimator> estimators, boolean onlyContained, boolean recompute) {
+		if (maps == null) {
+			maps = Map.findAll();
+		}
+		if (levels == null) {
+			levels = Level.findAll();
+		}
+		this.maps          = maps;
+		this.levels        = levels;
+		this.estimators    = estimators;
+		this.onlyContained = onlyContained;
+		this.recompute     = recompute;
+	}
+	
+	/**
+	 * Sets the file that is used to remember the finished tasks, which allows to
+	 * resume an interrupted computation.
+	 * 
+	 * @param progressFile  the progress file (may be <code>null</code>)
+	 */
+	public void setProgressFile(File progressFile) {
+		this.progressFile = progressFile;
+	}
+	
+	/**
+	 * Sets the number of bandwidths that are saved together in one transaction.
+	 * 
+	 * @param batchSize  the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size has to be a positive number!");
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Computes and saves the bandwidths for all combinations of maps, levels and
+	 * estimators that are not yet present in the database (or all combinations,
+	 * if the bandwidths should be recomputed).
+	 * Note that this method requires a database connection for the current thread.
+	 * 
+	 * @param progress  the <code>ProgressOutput</code> (may be <code>null</code>)
+	 * @return the number of computed bandwidths
+	 */
+	public int compute(ProgressOutput progress) {
+		if (progress == null) {
+			progress = new ProgressOutput();
+		}
+		
+		// the existing bandwidths and the finished tasks of a previous run, which allow
+		// to skip tasks without querying the database for each of them
+		HashMap<String,Bandwidth> existingBandwidths = new HashMap<String,Bandwidth>();
+		LazyList<Bandwidth> bandwidths = Bandwidth.findAll();
+		for (Bandwidth bandwidth : bandwidths) {
+			existingBandwidths.put(getKey(bandwidth.get("map_id"), bandwidth.getString("weights_identification"),
+			                              bandwidth.getString("kernel_identification"), bandwidth.getString("distance_identification"),
+			                              bandwidth.getString("estimator_identification")), bandwidth);
+		}
+		HashSet<String> finishedKeys = readProgressFile();
+		
+		// the maps of a group, required to check whether a map is contained in the group
+		HashMap<Group,HashSet<String>> groupMapIds = new HashMap<Group,HashSet<String>>();
+		
+		// collect the tasks, ordered by map such that the weights of a map can be released
+		// as soon as all its tasks are finished
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		int skippedTasks = 0;
+		for (Map map : this.maps) {
+			MapWeights mapWeights = new MapWeights(map);
+			
+			for (Level level : this.levels) {
+				String weightsIdentification = (level != null) ? VariantWeightsWithLevel.getIdentificationString(VariantWeightsNoLevel.IDENTIFICATION_STRING, level) : VariantWeightsNoLevel.IDENTIFICATION_STRING;
+				
+				for (BandwidthEstimator estimator : this.estimators) {
+					if (estimator.getDistanceMeasure() instanceof LinguisticDistance) {
+						// if linguistic distance, then perform the estimation only if the level
+						// matches and this map is contained in the group
+						LinguisticDistance d = (LinguisticDistance)estimator.getDistanceMeasure();
+						if ((d.getLevel() != null) && !d.getLevel().equals(level)) {
+							continue;
+						}
+						if (this.onlyContained && (d.getGroup() != null)) {
+							HashSet<String> mapIds = groupMapIds.get(d.getGroup());
+							if (mapIds == null) {
+								mapIds = new HashSet<String>();
+								for (Map groupMap : d.getGroup().getAll(Map.class)) {
+									mapIds.add(groupMap.getId().toString());
+								}
+								groupMapIds.put(d.getGroup(), mapIds);
+							}
+							if (!mapIds.contains(map.getId().toString())) {
+								continue;
+							}
+						}
+					}
+					
+					String key = getKey(map.getId(), weightsIdentification,
+					                    estimator.getKernel().getIdentificationStringWithoutParameters(),
+					                    estimator.getDistanceMeasure().getIdentificationString(),
+					                    estimator.getIdentificationStringWithoutParameters());
+					Bandwidth bandwidth = existingBandwidths.get(key);
+					if (finishedKeys.contains(key) || ((bandwidth != null) && !this.recompute)) {
+						skippedTasks++;
+						continue;
+					}
+					
+					mapWeights.remainingTasks.incrementAndGet();
+					tasks.add(new Task(key, mapWeights, level, estimator, bandwidth));
+				}
+			}
+		}
+		
+		progress.customMessage("Bandwidths to compute: "+tasks.size()+" (skipped: "+skippedTasks+")");
+		
+		this.unsavedResults = new ArrayList<Result>(this.batchSize);
+		this.finishedTasks  = new AtomicInteger(0);
+		this.failedTasks    = new AtomicInteger(0);
+		this.totalTasks     = tasks.size();
+		this.startTime      = System.currentTimeMillis();
+		
+		final ProgressOutput progressFinal = progress;
+		ThreadedTodoWorker.workOnTodoList(tasks, new ThreadedTodoWorker.SimpleTodoWorker<Task>() {
+			public void processTodoItem(Task task) {
+				Database.ensureConnection();
+				
+				Result result = null;
+				try {
+					long start = System.currentTimeMillis();
+					VariantWeights variantWeights = task.mapWeights.getVariantWeights(task.level);
+					BigDecimal bw = ComputeBandwidths.computeBandwidth(variantWeights, task.estimator);
+					long end = System.currentTimeMillis();
+					
+					progressFinal.customMessage(task.mapWeights.map.getString("name")+", "+variantWeights.getIdentificationString()+", "+
+					                            task.estimator.getIdentificationString()+": "+bw.toPlainString()+" (time in ms: "+(end-start)+")");
+					
+					result = new Result(task, variantWeights.getIdentificationString(), bw);
+				} catch (Exception e) {
+					e.printStackTrace();
+					failedTasks.incrementAndGet();
+				} finally {
+					task.mapWeights.taskFinished();
+				}
+				
+				if (result != null) {
+					try {
+						addResult(result, progressFinal);
+					} catch (RuntimeException e) {
+						// the batch is rolled back and will be computed again in the next run
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+		
+		saveResults(progress);
+		
+		if (this.failedTasks.get() > 0) {
+			progress.customMessage("Bandwidths not computed or saved: "+this.failedTasks.get()+
+			                       ((this.progressFile != null) ? " (keeping progress file "+this.progressFile+")" : ""));
+		} else if (this.progressFile != null) {
+			this.progressFile.delete();
+		}
+		
+		return this.finishedTasks.get();
+	}
+	
+	/**
+	 * Adds a computed bandwidth to the list of unsaved results, and saves the
+	 * results if the batch is full.
+	 * 
+	 * @param result    the computed bandwidth
+	 * @param progress  the <code>ProgressOutput</code>
+	 * @throws RuntimeException if the batch could not be saved (e.g. a <code>DBException</code>)
+	 */
+	private synchronized void addResult(Result result, ProgressOutput progress) {
+		this.unsavedResults.add(result);
+		if (this.unsavedResults.size() >= this.batchSize) {
+			saveResults(progress);
+		}
+	}
+	
+	/**
+	 * Saves all unsaved results in one transaction, appends the finished tasks to
+	 * the progress file and reports the throughput.
+	 * If saving is not possible (because e.g. we may have only read-access to the database),
+	 * the transaction is rolled back and the tasks are counted as failed, i.e., they are
+	 * not written to the progress file.
+	 * 
+	 * @param progress  the <code>ProgressOutput</code>
+	 * @throws RuntimeException if the results could not be saved (e.g. a <code>DBException</code>)
+	 */
+	private synchronized void saveResults(ProgressOutput progress) {
+		if (this.unsavedResults.isEmpty()) {
+			return;
+		}
+		
+		try {
+			Base.openTransaction();
+			try {
+				for (Result result : this.unsavedResults) {
+					result.toBandwidth().saveIt();
+				}
+				Base.commitTransaction();
+			} catch (RuntimeException e) {
+				try {
+					Base.rollbackTransaction();
+				} catch (DBException e2) {
+					e2.printStackTrace();
+				}
+				throw e;
+			}
+		} catch (RuntimeException e) {
+			this.failedTasks.addAndGet(this.unsavedResults.size());
+			this.unsavedResults.clear();
+			throw e;
+		}
+		
+		if (this.progressFile != null) {
+			try {
+				PrintWriter writer = new PrintWriter(new FileWriter(this.progressFile, true));
+				try {
+					for (Result result : this.unsavedResults) {
+						writer.println(result.task.key);
+					}
+				} finally {
+					writer.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		int finished = this.finishedTasks.addAndGet(this.unsavedResults.size());
+		this.unsavedResults.clear();
+		
+		double seconds = (System.currentTimeMillis() - this.startTime) / 1000.0;
+		double tasksPerMinute = (seconds > 0.0) ? 60.0 * finished / seconds : 0.0;
+		String remainingTime = (finished > 0) ? StopWatch.secondsToString(seconds / finished * (this.totalTasks - finished)) : "?";
+		progress.customMessage("Saved bandwidths: "+finished+" of "+this.totalTasks+" ("+String.format("%.1f", tasksPerMinute)+
+		                       " per minute, remaining time: "+remainingTime+")");
+	}
+	
+	/**
+	 * Reads the keys of the tasks that were finished in a previous run.
+	 * 
+	 * @return the keys of the finished tasks
+	 */
+	private HashSet<String> readProgressFile() {
+		HashSet<String> keys = new HashSet<String>();
+		if ((this.progressFile != null) && this.progressFile.exists()) {
+			try {
+				BufferedReader reader = new BufferedReader(new FileReader(this.progressFile));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.isEmpty()) {
+							keys.add(line);
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return keys;
+	}
+	
+	/**
+	 * Constructs the key of a task, which identifies a row in the bandwidths table.
+	 * 
+	 * @param mapId          the ID of the map
+	 * @param weightsIdStr   the identification string of the weights
+	 * @param kernelIdStr    the identification string of the kernel
+	 * @param distanceIdStr  the identification string of the distance measure
+	 * @param estimatorIdStr the identification string of the bandwidth estimator type
+	 * @return the key
+	 */
+	private static String getKey(Object mapId, String weightsIdStr, String kernelIdStr, String distanceIdStr, String estimatorIdStr) {
+		return mapId+"\t"+weightsIdStr+"\t"+kernelIdStr+"\t"+distanceIdStr+"\t"+estimatorIdStr;
+	}
+	
+	/**
+	 * The variant weights of a map, which are computed when they are required the first
+	 * time and released when all tasks of the map are finished.
+	 */
+	private static class MapWeights {
+		
+		/** The map. */
+		private final Map map;
+		
+		/** The number of tasks of this map that are not yet finished. */
+		private final AtomicInteger remainingTasks = new AtomicInteger(0);
+		
+		/** The weights without level. */
+		private VariantWeights variantWeightsBase = null;
+		
+		/** The weights for the levels. */
+		private HashMap<Level,VariantWeights> variantWeightsWithLevel = new HashMap<Level,VariantWeights>();
+		
+		/**
+		 * Constructs the object for the given map.
+		 * 
+		 * @param map  the map
+		 */
+		private MapWeights(Map map) {
+			this.map = map;
+		}
+		
+		/**
+		 * Returns the weights for the given level, computes them if necessary.
+		 * 
+		 * @param level  the level (may be <code>null</code>, then the weights without level are returned)
+		 * @return the weights
+		 */
+		private synchronized VariantWeights getVariantWeights(Level level) {
+			if (this.variantWeightsBase == null) {
+				this.variantWeightsBase = new VariantWeightsNoLevel(this.map);
+			}
+			if (level == null) {
+				return this.variantWeightsBase;
+			}
+			VariantWeights variantWeights = this.variantWeightsWithLevel.get(level);
+			if (variantWeights == null) {
+				variantWeights = new VariantWeightsWithLevel(this.variantWeightsBase, level);
+				this.variantWeightsWithLevel.put(level, variantWeights);
+			}
+			return variantWeights;
+		}
+		
+		/**
+		 * Notifies this object that a task is finished, releases the weights
+		 * after the last task.
+		 */
+		private void taskFinished() {
+			if (this.remainingTasks.decrementAndGet() == 0) {
+				synchronized (this) {
+					this.variantWeightsBase = null;
+					this.variantWeightsWithLevel.clear();
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * A single task, i.e., the combination of map, level and estimator.
+	 */
+	private static class Task {
+		
+		/** The key of the task, see <code>getKey</code>. */
+		private final String key;
+		
+		/** The weights of the map. */
+		private final MapWeights mapWeights;
+		
+		/** The level (may be <code>null</code>). */
+		private final Level level;
+		
+		/** The bandwidth estimator. */
+		private final BandwidthEstimator estimator;
+		
+		/** The existing bandwidth object that will be updated (may be <code>null</code>). */
+		private final Bandwidth bandwidth;
+		
+		/**
+		 * Constructs the task.
+		 * 
+		 * @param key         the key of the task
+		 * @param mapWeights  the weights of the map
+		 * @param level       the level (may be <code>null</code>)
+		 * @param estimator   the bandwidth estimator
+		 * @param bandwidth   the existing bandwidth object (may be <code>null</code>)
+		 */
+		private Task(String key, MapWeights mapWeights, Level level, BandwidthEstimator estimator, Bandwidth bandwidth) {
+			this.key        = key;
+			this.mapWeights = mapWeights;
+			this.level      = level;
+			this.estimator  = estimator;
+			this.bandwidth  = bandwidth;
+		}
+		
+	}
+	
+	/**
+	 * A computed bandwidth that has to be saved.
+	 */
+	private static class Result {
+		
+		/** The task. */
+		private final Task task;
+		
+		/** The identification string of the weights. */
+		private final String weightsIdentification;
+		
+		/** The computed bandwidth. */
+		private final BigDecimal bandwidth;
+		
+		/**
+		 * Constructs the result.
+		 * 
+		 * @param task                   the task
+		 * @param weightsIdentification  the identification string of the weights
+		 * @param bandwidth              the computed bandwidth
+		 */
+		private Result(Task task, String weightsIdentification, BigDecimal bandwidth) {
+			this.task                  = task;
+			this.weightsIdentification = weightsIdentification;
+			this.bandwidth             = bandwidth;
+		}
+		
+		/**
+		 * Returns the bandwidth object that has to be saved.
+		 * 
+		 * @return the bandwidth object
+		 */
+		private Bandwidth toBandwidth() {
+			Bandwidth bandwidth = this.task.bandwidth;
+			if (bandwidth == null) {
+				bandwidth = new Bandwidth();
+				bandwidth.set("map_id", this.task.mapWeights.map.getId());
+				bandwidth.set("weights_identification", this.weightsIdentification);
+				bandwidth.set("kernel_identification", this.task.estimator.getKernel().getIdentificationStringWithoutParameters());
+				bandwidth.set("distance_identification", this.task.estimator.getDistanceMeasure().getIdentificationString());
+				bandwidth.set("estimator_identification", this.task.estimator.getIdentificationStringWithoutParameters());
+			}
+			bandwidth.set("bandwidth", this.bandwidth.toPlainString());
+			return bandwidth;
+		}
+		
+	}
+	
+}
@@ -9,6 +9,7 @@ import geoling.maps.weights.*;
 import geoling.models.*;
 import geoling.util.ProgressOutput;
 
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.LinkedList;
@@ -28,6 +29,16 @@ public class ComputeBandwidths {
 	/** Determines whether <b>all</b> sensible combinations of estimators, distance measures etc. will be used. */
 	public static boolean ALL_ESTIMATORS = false;
 	
+	/**
+	 * The search strategy used by the default cross-validation estimators, <code>null</code>
+	 * if all bandwidth candidates should be evaluated (e.g. <code>new GoldenSectionSearch()</code>
+	 * for a faster, but approximate search).
+	 */
+	public static BandwidthSearch SEARCH = null;
+	
+	/** The default file name of the progress file (in the properties directory) used by the <code>main</code> method. */
+	public static String DEFAULT_PROGRESS_FILENAME = "bandwidths_progress.txt";
+	
 	/**
 	 * Computes the bandwidth for the given map, using the given estimator.
 	 * 
@@ -130,45 +141,29 @@ public class ComputeBandwidths {
 	 *                      if it is already present
 	 */
 	public static void computeBandwidths(List<Map> maps, List<Level> levels, List<BandwidthEstimator> estimators, boolean onlyContained, boolean recompute) {
-		if (maps == null) {
-			maps = Map.findAll();
-		}
-		if (levels == null) {
-			levels = Level.findAll();
-		}
-		
-		ProgressOutput progress = new ProgressOutput(System.out);
-		
-		for (Map map : maps) {
-			VariantWeights variantWeightsBase = new VariantWeightsNoLevel(map);
-			
-			for (Level level : levels) {
-				VariantWeights variantWeights = new VariantWeightsWithLevel(variantWeightsBase, level);
-				
-				for (BandwidthEstimator estimator : estimators) {
-					if (estimator.getDistanceMeasure() instanceof LinguisticDistance) {
-						// if linguistic distance, then perform the estimation only if the level
-						// matches and this map is contained in the group
-						LinguisticDistance d = (LinguisticDistance)estimator.getDistanceMeasure();
-						if ((d.getLevel() != null) && !d.getLevel().equals(level)) {
-							continue;
-						}
-						if (onlyContained && (d.getGroup() != null) && d.getGroup().get(Map.class, "map_id = ?", map.getId()).isEmpty()) {
-							continue;
-						}
-					}
-					
-					try {
-						findOrComputeAndSaveBandwidth(variantWeights, estimator, recompute, progress);
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-					progress.customMessage("");
-				}
-				
-				progress.customMessage("");
-			}
-		}
+		computeBandwidths(maps, levels, estimators, onlyContained, recompute, null);
+	}
+	
+	/**
+	 * Computes the bandwidths for the given maps, for the given levels and estimators.
+	 * The tasks are processed in parallel, see <code>BandwidthBatchComputation</code>.
+	 * 
+	 * @param maps          the maps for which we want to compute bandwidths,
+	 *                      may be <code>null</code>, then all maps are used
+	 * @param levels        the list of level objects for which we want to compute bandwidths,
+	 *                      may be <code>null</code>, then all levels are used
+	 * @param estimators    the list of estimator objects that should be used
+	 * @param onlyContained if set, then for the linguistic distance only groups will be
+	 *                      considered where the current map is contained
+	 * @param recompute     determines whether the bandwidth should be recomputed
+	 *                      if it is already present
+	 * @param progressFile  the file used to remember the finished tasks, which allows to
+	 *                      resume an interrupted computation (may be <code>null</code>)
+	 */
+	public static void computeBandwidths(List<Map> maps, List<Level> levels, List<BandwidthEstimator> estimators, boolean onlyContained, boolean recompute, File progressFile) {
+		BandwidthBatchComputation computation = new BandwidthBatchComputation(maps, levels, estimators, onlyContained, recompute);
+		computation.setProgressFile(progressFile);
+		computation.compute(new ProgressOutput(System.out));
 	}
 	
 	/**
@@ -204,22 +199,22 @@ public class ComputeBandwidths {
 		LinkedList<BandwidthEstimator> estimators = new LinkedList<BandwidthEstimator>();
 		
 		// least-squares cross validation
-		estimators.add(new LeastSquaresCrossValidation(gaussianKernelWithGeographicalDistance));
+		estimators.add(new LeastSquaresCrossValidation(gaussianKernelWithGeographicalDistance, SEARCH));
 		
 		// likelihood cross validation
-		estimators.add(new LikelihoodCrossValidation(gaussianKernelWithGeographicalDistance));
-		if (ALL_ESTIMATORS) estimators.add(new LikelihoodCrossValidation(epanechnikovKernelWithGeographicalDistance));
-		estimators.add(new LikelihoodCrossValidation(k3KernelWithGeographicalDistance));
+		estimators.add(new LikelihoodCrossValidation(gaussianKernelWithGeographicalDistance, SEARCH));
+		if (ALL_ESTIMATORS) estimators.add(new LikelihoodCrossValidation(epanechnikovKernelWithGeographicalDistance, SEARCH));
+		estimators.add(new LikelihoodCrossValidation(k3KernelWithGeographicalDistance, SEARCH));
 		if (ALL_ESTIMATORS) {
 			for (GaussianKernel kernel : gaussianKernelsWithLinguisticDistance) {
-				estimators.add(new LikelihoodCrossValidation(kernel));
+				estimators.add(new LikelihoodCrossValidation(kernel, SEARCH));
 			}
 			for (EpanechnikovKernel kernel : epanechnikovKernelsWithLinguisticDistance) {
-				estimators.add(new LikelihoodCrossValidation(kernel));
+				estimators.add(new LikelihoodCrossValidation(kernel, SEARCH));
 			}
 		}
 		for (K3Kernel kernel : k3KernelsWithLinguisticDistance) {
-			estimators.add(new LikelihoodCrossValidation(kernel));
+			estimators.add(new LikelihoodCrossValidation(kernel, SEARCH));
 		}
 		
 		// min-complexity-max-fidelity
@@ -252,7 +247,8 @@ public class ComputeBandwidths {
 		Settings.load();
 		Database.connect(Settings.getDatabaseIdentifier());
 		
-		computeBandwidths(null, null, getDefaultEstimators(null), true, false);
+		Settings.createDirectory();
+		computeBandwidths(null, null, getDefaultEstimators(null), true, false, new File(Settings.PROPERTIES_PATH+DEFAULT_PROGRESS_FILENAME));
 	}
 	
 }
@@ -0,0 +1,339 @@
+package geoling.maps.distances;
+
+import geoling.config.Settings;
+import geoling.models.Distance;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.List;
+import java.util.Map;
+
+import org.javalite.activejdbc.Base;
+
+/**
+ * Binary cache file for the precomputed distances of a distance measure, which
+ * avoids loading all rows of the table <code>location_distances</code> every time.
+ * The file contains the location IDs and the packed strictly lower triangular
+ * matrix of distances (see <code>TriangularDistanceStore</code>) and is mapped
+ * into memory when it is read. It is identified by the database identifier, the
+ * ID of the distance measure and the stamp of the rows in the database (see
+ * <code>Stamp</code>), i.e., a file is only used if the rows have not changed since
+ * it was written. Because every state of the rows has its own file, a file that is
+ * still mapped into memory never has to be replaced (which is not possible on
+ * some platforms).
+ * <p>
+ * File format (little-endian): magic number, format version, distance ID,
+ * the stamp (number of rows, minimal and maximal row ID, sum of distances),
+ * number of locations <code>n</code>, <code>n</code> location IDs (<code>int</code>)
+ * and <code>n(n-1)/2</code> distances (<code>float</code>).
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class DistanceCacheFile {
+	
+	/** Determines whether cache files are read and written. */
+	public static boolean ENABLED = true;
+	
+	/** The magic number at the beginning of every cache file ("GLDC"). */
+	private static final int MAGIC_NUMBER = 0x474C4443;
+	
+	/** The version of the file format, files with another version are ignored. */
+	private static final int VERSION = 2;
+	
+	/** The size of the header (in bytes). */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8 + 8 + 4;
+	
+	/**
+	 * The stamp of the precomputed distances of a distance measure in the database,
+	 * consisting of the number of rows, the minimal and maximal row ID and the sum of
+	 * all distances. Because the row IDs are never reused (auto-increment), every
+	 * writer that replaces the rows changes the stamp, and updates of single distances
+	 * change the sum.
+	 */
+	public static class Stamp {
+		
+		/** The number of rows. */
+		private final long rowCount;
+		
+		/** The minimal row ID. */
+		private final long minRowId;
+		
+		/** The maximal row ID. */
+		private final long maxRowId;
+		
+		/** The sum of all distances. */
+		private final double distanceSum;
+		
+		/**
+		 * Constructs the stamp.
+		 * 
+		 * @param rowCount     the number of rows
+		 * @param minRowId     the minimal row ID
+		 * @param maxRowId     the maximal row ID
+		 * @param distanceSum  the sum of all distances
+		 */
+		private Stamp(long rowCount, long minRowId, long maxRowId, double distanceSum) {
+			this.rowCount    = rowCount;
+			this.minRowId    = minRowId;
+			this.maxRowId    = maxRowId;
+			this.distanceSum = distanceSum;
+		}
+		
+		/**
+		 * Queries the stamp of the current rows of the given distance measure.
+		 * 
+		 * @param distance  the distance measure
+		 * @return the stamp
+		 */
+		@SuppressWarnings("rawtypes")
+		public static Stamp of(Distance distance) {
+			List<Map> rows = Base.findAll("SELECT COUNT(*) AS row_count, MIN(id) AS min_id, MAX(id) AS max_id, SUM(distance) AS distance_sum"+
+			                                        " FROM location_distances WHERE distance_id = ?", distance.getId());
+			Map row = rows.get(0);
+			return new Stamp(toLong(row.get("row_count")), toLong(row.get("min_id")), toLong(row.get("max_id")),
+			                 (row.get("distance_sum") != null) ? ((Number)row.get("distance_sum")).doubleValue() : 0.0);
+		}
+		
+		/**
+		 * Converts a value of the database to a <code>long</code>.
+		 * 
+		 * @param value  the value (may be <code>null</code> for an empty table)
+		 * @return the value, <code>0</code> for <code>null</code>
+		 */
+		private static long toLong(Object value) {
+			return (value != null) ? ((Number)value).longValue() : 0L;
+		}
+		
+		/**
+		 * Returns a hash value of this stamp, which is used in the file name.
+		 * 
+		 * @return the hash value
+		 */
+		private long hash() {
+			long h = this.rowCount;
+			h = h * 0x9E3779B97F4A7C15L + this.minRowId;
+			h = h * 0x9E3779B97F4A7C15L + this.maxRowId;
+			h = h * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(this.distanceSum);
+			return h ^ (h >>> 31);
+		}
+		
+	}
+	
+	/**
+	 * Returns the prefix of the names of the cache files of the given distance measure.
+	 * 
+	 * @param distance  the distance measure
+	 * @return the prefix
+	 */
+	private static String getPrefix(Distance distance) {
+		String databaseIdentifier = Settings.getDatabaseIdentifier();
+		if (databaseIdentifier == null) {
+			databaseIdentifier = "default";
+		}
+		return "distances_" + databaseIdentifier.replaceAll("[^A-Za-z0-9_-]", "_") + "_" + distance.getId() + "_";
+	}
+	
+	/**
+	 * Returns the cache file of the given distance measure for the given stamp.
+	 * 
+	 * @param distance  the distance measure
+	 * @param stamp     the stamp of the rows in the database
+	 * @return the cache file
+	 */
+	public static File getFile(Distance distance, Stamp stamp) {
+		return new File(Settings.getCachePath() + getPrefix(distance) + Long.toHexString(stamp.hash()) + ".bin");
+	}
+	
+	/**
+	 * Returns all cache files of the given distance measure (for any stamp).
+	 * 
+	 * @param distance  the distance measure
+	 * @return the cache files
+	 */
+	private static File[] getFiles(Distance distance) {
+		final String prefix = getPrefix(distance);
+		File[] files = new File(Settings.getCachePath()).listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(prefix) && name.substring(prefix.length()).matches("[0-9a-f]+\\.bin");
+			}
+		});
+		return (files != null) ? files : new File[0];
+	}
+	
+	/**
+	 * Reads the cache file of the given distance measure, if it exists and is up to date.
+	 * Note that the returned store is backed by a read-only memory-mapped file.
+	 * 
+	 * @param distance  the distance measure
+	 * @param stamp     the stamp of the current rows in the database
+	 * @return the store with the distances, <code>null</code> if there is no valid cache file
+	 */
+	public static TriangularDistanceStore read(Distance distance, Stamp stamp) {
+		File file = getFile(distance, stamp);
+		if (!ENABLED || !file.exists()) {
+			return null;
+		}
+		
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				if (channel.size() < HEADER_SIZE) {
+					return null;
+				}
+				// note that the mapping remains valid after closing the file
+				MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+				mapped.order(ByteOrder.LITTLE_ENDIAN);
+				
+				if ((mapped.getInt() != MAGIC_NUMBER) || (mapped.getInt() != VERSION)) {
+					return null;
+				}
+				long distanceId = mapped.getLong();
+				long rowCount = mapped.getLong();
+				long minRowId = mapped.getLong();
+				long maxRowId = mapped.getLong();
+				double distanceSum = mapped.getDouble();
+				int size = mapped.getInt();
+				if ((distanceId != ((Number)distance.getId()).longValue()) || (size < 0) ||
+				    (channel.size() != HEADER_SIZE + 4L*size + 4L*TriangularDistanceStore.getNumberOfValues(size))) {
+					return null;
+				}
+				if ((rowCount != stamp.rowCount) || (minRowId != stamp.minRowId) || (maxRowId != stamp.maxRowId) ||
+				    (Double.doubleToLongBits(distanceSum) != Double.doubleToLongBits(stamp.distanceSum))) {
+					// the distances in the database have changed
+					return null;
+				}
+				
+				int[] ids = new int[size];
+				mapped.asIntBuffer().get(ids);
+				mapped.position(HEADER_SIZE + 4*size);
+				return new TriangularDistanceStore(ids, mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the cache file of the given distance measure, and removes the files of
+	 * older stamps.
+	 * Note that this method does not throw an exception if writing was not possible,
+	 * in that case it only prints the stack-trace to <code>System.err</code>.
+	 * 
+	 * @param distance  the distance measure
+	 * @param store     the store with the distances
+	 * @param stamp     the stamp of the rows in the database from which the distances were
+	 *                  loaded (it has to be queried before loading the rows)
+	 */
+	public static void write(Distance distance, TriangularDistanceStore store, Stamp stamp) {
+		if (!ENABLED) {
+			return;
+		}
+		
+		int[] ids = store.getIds();
+		long size = HEADER_SIZE + 4L*ids.length + 4L*TriangularDistanceStore.getNumberOfValues(ids.length);
+		if (size > Integer.MAX_VALUE) {
+			// too large to be mapped into memory
+			return;
+		}
+		
+		File file = getFile(distance, stamp);
+		File tmpFile = new File(file.getPath()+".tmp");
+		try {
+			Settings.createCacheDirectory();
+			
+			RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+			try {
+				raf.setLength(size);
+				MappedByteBuffer mapped = raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+				mapped.order(ByteOrder.LITTLE_ENDIAN);
+				mapped.putInt(MAGIC_NUMBER);
+				mapped.putInt(VERSION);
+				mapped.putLong(((Number)distance.getId()).longValue());
+				mapped.putLong(stamp.rowCount);
+				mapped.putLong(stamp.minRowId);
+				mapped.putLong(stamp.maxRowId);
+				mapped.putDouble(stamp.distanceSum);
+				mapped.putInt(ids.length);
+				IntBuffer idBuffer = mapped.asIntBuffer();
+				idBuffer.put(ids);
+				mapped.position(HEADER_SIZE + 4*ids.length);
+				store.writeValues(mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+				mapped.force();
+			} finally {
+				raf.close();
+			}
+			
+			// use the new file only when it is complete, a file with the same stamp
+			// contains the same distances (it may be mapped into memory, then it cannot
+			// be deleted and is kept)
+			if (file.exists() && !file.delete()) {
+				tmpFile.delete();
+			} else if (!tmpFile.renameTo(file)) {
+				throw new IOException("Could not rename cache file: "+tmpFile.getPath());
+			}
+		} catch (IOException e) {
+			tmpFile.delete();
+			e.printStackTrace();
+		}
+		
+		// the files of other stamps are never read again
+		for (File oldFile : getFiles(distance)) {
+			if (!oldFile.equals(file)) {
+				invalidate(oldFile);
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the cache files of the given distance measure, e.g. because the distances
+	 * in the database will be replaced.
+	 * 
+	 * @param distance  the distance measure
+	 * @throws RuntimeException if a file could neither be deleted nor invalidated
+	 */
+	public static void delete(Distance distance) {
+		for (File file : getFiles(distance)) {
+			if (!invalidate(file)) {
+				throw new RuntimeException("Could not delete cache file: "+file.getPath());
+			}
+		}
+	}
+	
+	/**
+	 * Deletes a cache file. If it cannot be deleted (e.g. because it is mapped into
+	 * memory on Windows), its magic number is overwritten, such that it is not read
+	 * again.
+	 * 
+	 * @param file  the cache file
+	 * @return <code>true</code> if the file was deleted or invalidated
+	 */
+	private static boolean invalidate(File file) {
+		if (file.delete() || !file.exists()) {
+			return true;
+		}
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.writeInt(0);
+			} finally {
+				raf.close();
+			}
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+}
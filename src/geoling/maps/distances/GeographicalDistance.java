@@ -1,9 +1,5 @@
 package geoling.maps.distances;
 
-import java.util.Arrays;
-
-import org.javalite.activejdbc.Model;
-
 import geoling.models.Location;
 import geoling.util.LatLong;
 
@@ -16,13 +12,9 @@ public class GeographicalDistance implements DistanceMeasure {
 	
 	/**
 	 * Internal cache that caches the distance for every pair of locations,
-	 * used the IDs of the location objects as indices (minus <code>minId</code>),
-	 * it is a strictly lower triangular matrix.
+	 * it is shared by all objects of this class (<code>null</code> if the cache is not used).
 	 */
-	protected float[][] distancesCache;
-	
-	/** Smallest location ID, used for shifting of indices in <code>distancesCache</code>. */
-	protected int minId;
+	protected TriangularDistanceStore distancesCache;
 	
 	/**
 	 * Constructs a new object for the computation of the geographical distance.
@@ -30,23 +22,14 @@ public class GeographicalDistance implements DistanceMeasure {
 	 * @param useCache  if <code>true</code>, then all computed distances will be cached
 	 */
 	public GeographicalDistance(boolean useCache) {
-		distancesCache = null;
-		minId = 0;
-		
 		if (useCache) {
-			Model obj = Location.findAll().orderBy("id DESC").limit(1).get(0);
-			if (obj != null) {
-				int maxId = obj.getLongId().intValue();
-				
-				Location distanceWithMinId = (Location)Location.findAll().orderBy("id ASC").limit(1).get(0);
-				minId = distanceWithMinId.getLongId().intValue();
-				
-				distancesCache = new float[maxId-minId+1][];
-				for (int i = 0; i < distancesCache.length; i++) {
-					distancesCache[i] = new float[i];
-					Arrays.fill(distancesCache[i], Float.NaN);
+			distancesCache = TriangularDistanceStore.acquire(getStaticIdentificationString(), new TriangularDistanceStore.Loader() {
+				public TriangularDistanceStore load() {
+					return TriangularDistanceStore.forAllLocations();
 				}
-			}
+			});
+		} else {
+			distancesCache = null;
 		}
 	}
 	
@@ -94,30 +77,24 @@ public class GeographicalDistance implements DistanceMeasure {
 	 * @return the distance in kilometres
 	 */
 	public double getDistance(Location location1, Location location2) {
-		int id1 = location1.getLongId().intValue();
-		int id2 = location2.getLongId().intValue();
-		if ((distancesCache == null) || (id1 < 1) || (id2 < 1)) {
+		int index1 = -1;
+		int index2 = -1;
+		if (distancesCache != null) {
+			index1 = distancesCache.getIndex(location1.getLongId().intValue());
+			index2 = distancesCache.getIndex(location2.getLongId().intValue());
+		}
+		if ((index1 < 0) || (index2 < 0)) {
+			// no cache or virtual location (or location not known when constructing the cache)
 			return getDistance(location1.getLatLong(), location2.getLatLong());
 		} else {
-			double result;
-			if (id1 == id2) {
-				result = 0.0;
-			} else if (id1 < id2) {
-				result = (float)distancesCache[id2-minId][id1-minId];
-			} else {
-				result = (float)distancesCache[id1-minId][id2-minId];
-			}
+			double result = distancesCache.get(index1, index2);
 			if (Double.isNaN(result)) {
 				result = getDistance(location1.getLatLong(), location2.getLatLong());
 				// Note that it is possible that several threads are using this method
 				// at the same time, but nothing bad can happen: in the worst case,
 				// we compute a distance two times. The assignment of float values
 				// is atomic, therefore unsynchronized reading is no problem. 
-				if (id1 < id2) {
-					distancesCache[id2-minId][id1-minId] = (float)result;
-				} else {
-					distancesCache[id1-minId][id2-minId] = (float)result;
-				}
+				distancesCache.set(index1, index2, (float)result);
 			}
 			return result;
 		}
@@ -1,7 +1,5 @@
 package geoling.maps.distances;
 
-import java.util.Arrays;
-
 import org.javalite.activejdbc.Base;
 import org.javalite.activejdbc.RowListenerAdapter;
 
@@ -31,15 +29,10 @@ public class PrecomputedDistance implements DistanceMeasure {
 	
 	/**
 	 * Internal cache that caches the distance for every pair of locations,
-	 * uses the IDs of the location objects as indices (minus <code>minId</code>),
-	 * it is a strictly lower triangular matrix.
-	 * Note that this array may be large and will probably have many unused entries,
-	 * but the performance is better.
+	 * it is shared by all objects with the same distance measure
+	 * (<code>null</code> if the cache is not used).
 	 */
-	protected float[][] distancesCache;
-	
-	/** Smallest location ID, used for shifting of indices in <code>distancesCache</code>. */
-	protected int minId;
+	protected TriangularDistanceStore distancesCache;
 	
 	/**
 	 * Constructs a distance measure object that fetches the precomputed
@@ -48,42 +41,75 @@ public class PrecomputedDistance implements DistanceMeasure {
 	 * @param distance  the distance measure
 	 * @param useCache  if <code>true</code>, then all distances are loaded into an internal cache
 	 */
-	public PrecomputedDistance(Distance distance, boolean useCache) {
+	public PrecomputedDistance(final Distance distance, boolean useCache) {
 		this.distance = distance;
 		
 		if (useCache) {
-			Location distanceWithMinId = (Location)Location.findAll().orderBy("id ASC").limit(1).get(0);
-			minId = distanceWithMinId.getLongId().intValue();
-			
-			Location distanceWithMaxId = (Location)Location.findAll().orderBy("id DESC").limit(1).get(0);
-			int maxId = distanceWithMaxId.getLongId().intValue();
-			
-			distancesCache = new float[maxId-minId+1][];
-			for (int i = 0; i < distancesCache.length; i++) {
-				distancesCache[i] = new float[i];
-				Arrays.fill(distancesCache[i], Float.NaN);
-			}
-			
-			// We do not use the Distance model because we have to avoid creating such a large number of objects.
-			// In this simple case, we process the rows directly.
-			Base.find("SELECT location_id1, location_id2, distance FROM location_distances"+
-			          " WHERE distance_id = ?", distance.getId()).with(new RowListenerAdapter() {
-				public void onNext(java.util.Map<String,Object> row) {
-					int id1 = ((Number)row.get("location_id1")).intValue();
-					int id2 = ((Number)row.get("location_id2")).intValue();
-					float dist = ((Number)row.get("distance")).floatValue();
-					if (id1 >= id2) {
-						throw new RuntimeException("Table \"location_distances\" is required to have the smaller ID id location_id1, the larger ID in location_id2!");
+			distancesCache = TriangularDistanceStore.acquire(getCacheKey(distance.getString("identification")), new TriangularDistanceStore.Loader() {
+				public TriangularDistanceStore load() {
+					// the stamp is queried before the rows, such that a concurrent change
+					// of the rows invalidates the cache file written below
+					DistanceCacheFile.Stamp stamp = DistanceCacheFile.Stamp.of(distance);
+					TriangularDistanceStore cachedStore = DistanceCacheFile.read(distance, stamp);
+					if (cachedStore != null) {
+						return cachedStore;
 					}
-					distancesCache[id2-minId][id1-minId] = dist;
+					
+					final TriangularDistanceStore store = TriangularDistanceStore.forAllLocations();
+					
+					// We do not use the Distance model because we have to avoid creating such a large number of objects.
+					// In this simple case, we process the rows directly.
+					Base.find("SELECT location_id1, location_id2, distance FROM location_distances"+
+					          " WHERE distance_id = ?", distance.getId()).with(new RowListenerAdapter() {
+						public void onNext(java.util.Map<String,Object> row) {
+							int id1 = ((Number)row.get("location_id1")).intValue();
+							int id2 = ((Number)row.get("location_id2")).intValue();
+							float dist = ((Number)row.get("distance")).floatValue();
+							if (id1 >= id2) {
+								throw new RuntimeException("Table \"location_distances\" is required to have the smaller ID id location_id1, the larger ID in location_id2!");
+							}
+							int index1 = store.getIndex(id1);
+							int index2 = store.getIndex(id2);
+							// rows of locations that are not in the store (e.g. deleted locations) are skipped,
+							// the distances of such locations are fetched from the database
+							if ((index1 >= 0) && (index2 >= 0)) {
+								store.set(index1, index2, dist);
+							}
+						}
+					});
+					
+					// write the cache file, such that the next time the rows need not be loaded
+					DistanceCacheFile.write(distance, store, stamp);
+					
+					return store;
 				}
 			});
 		} else {
 			distancesCache = null;
-			minId = 0;
 		}
 	}
 	
+	/**
+	 * Returns the key of the shared internal cache for the given distance measure.
+	 * 
+	 * @param identification  the identification string of the distance measure
+	 * @return the key of the cache
+	 */
+	private static String getCacheKey(String identification) {
+		return "precomputed:"+identification;
+	}
+	
+	/**
+	 * Removes the shared internal cache of the given distance measure, this method
+	 * has to be called when the precomputed distances in the database have changed.
+	 * Existing objects are not affected.
+	 * 
+	 * @param identification  the identification string of the distance measure
+	 */
+	public static void invalidateCache(String identification) {
+		TriangularDistanceStore.invalidate(getCacheKey(identification));
+	}
+	
 	/**
 	 * Returns an identification string for this distance measure.
 	 * 
@@ -128,7 +154,17 @@ public class PrecomputedDistance implements DistanceMeasure {
 		double result;
 		int id1 = location1.getLongId().intValue();
 		int id2 = location2.getLongId().intValue();
-		if (distancesCache == null) {
+		int index1 = -1;
+		int index2 = -1;
+		if (distancesCache != null) {
+			index1 = distancesCache.getIndex(id1);
+			index2 = distancesCache.getIndex(id2);
+		}
+		if ((id1 < 1) || (id2 < 1)) {
+			// virtual locations have no precomputed distances
+			result = Double.NaN;
+		} else if ((index1 < 0) || (index2 < 0)) {
+			// no cache or location not known when constructing the cache
 			Double obj = LocationDistance.getDistance(this.distance, location1, location2);
 			if (obj == null) {
 				result = Double.NaN;
@@ -136,13 +172,7 @@ public class PrecomputedDistance implements DistanceMeasure {
 				result = obj.doubleValue();
 			}
 		} else {
-			if (id1 == id2) {
-				result = 0.0;
-			} else if (id1 < id2) {
-				result = distancesCache[id2-minId][id1-minId];
-			} else {
-				result = distancesCache[id1-minId][id2-minId];
-			}
+			result = distancesCache.get(index1, index2);
 		}
 		if (Double.isNaN(result)) {
 			throw new PrecomputedDistanceNotFoundException();
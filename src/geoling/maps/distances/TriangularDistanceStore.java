@@ -0,0 +1,345 @@
+package geoling.maps.distances;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.RowListenerAdapter;
+
+/**
+ * Memory-compact store for the distances between all pairs of locations.
+ * The location IDs are mapped to consecutive indices, and the strictly lower
+ * triangular matrix of distances is packed into a single <code>float</code>
+ * array (or, optionally, a direct buffer outside of the Java heap).
+ * Entries that are not (yet) known are <code>NaN</code>.
+ * <p>
+ * Stores are shared by all distance measures with the same key: use
+ * <code>acquire</code> to obtain the store for a key (it is loaded only if
+ * there is no store for this key yet, and only once if several threads request
+ * it at the same time). A shared store is kept only as long as it is reachable,
+ * i.e., as long as it is used by a distance measure.
+ * Note that reading and writing single entries is thread-safe, because the
+ * assignment of <code>float</code> values is atomic.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class TriangularDistanceStore {
+	
+	/** Determines whether new stores keep their values in a direct buffer (outside of the Java heap). */
+	public static boolean USE_DIRECT_BUFFER = false;
+	
+	/** Interface for loading a store that is not yet available. */
+	public interface Loader {
+		/**
+		 * Constructs and fills the store.
+		 * 
+		 * @return the store
+		 */
+		public TriangularDistanceStore load();
+	}
+	
+	/** The shared stores, identified by their keys. */
+	private static final HashMap<String,WeakReference<TriangularDistanceStore>> stores = new HashMap<String,WeakReference<TriangularDistanceStore>>();
+	
+	/** The locks of the stores that are currently loaded, identified by their keys (guarded by <code>stores</code>). */
+	private static final HashMap<String,Object> loadingLocks = new HashMap<String,Object>();
+	
+	/** The IDs of the locations, ordered by their indices. */
+	private final int[] ids;
+	
+	/** Smallest location ID, used for shifting of indices in <code>indices</code>. */
+	private final int minId;
+	
+	/** The index of every location ID (minus <code>minId</code>), <code>-1</code> if the ID is not part of this store. */
+	private final int[] indices;
+	
+	/** The number of locations in this store. */
+	private final int size;
+	
+	/** The offset of every row in the packed strictly lower triangular matrix. */
+	private final int[] rowOffsets;
+	
+	/** The packed distances (if stored in the Java heap, otherwise <code>null</code>). */
+	private final float[] values;
+	
+	/** The packed distances (if stored in a direct buffer, otherwise <code>null</code>). */
+	private final FloatBuffer buffer;
+	
+	/**
+	 * Constructs an empty store for the given location IDs, all distances are <code>NaN</code>.
+	 * 
+	 * @param ids           the IDs of the locations (no duplicates allowed)
+	 * @param directBuffer  if <code>true</code>, then the values are kept in a direct buffer
+	 */
+	public TriangularDistanceStore(int[] ids, boolean directBuffer) {
+		this(ids, directBuffer, null);
+	}
+	
+	/**
+	 * Constructs a store for the given location IDs whose values are kept in the given
+	 * buffer, e.g. a buffer that maps a file into memory.
+	 * 
+	 * @param ids     the IDs of the locations (no duplicates allowed)
+	 * @param buffer  the buffer with the packed distances (strictly lower triangular matrix,
+	 *                row by row), may be read-only if the distances are not changed
+	 */
+	public TriangularDistanceStore(int[] ids, FloatBuffer buffer) {
+		this(ids, true, buffer);
+	}
+	
+	/**
+	 * Constructs a store for the given location IDs.
+	 * 
+	 * @param ids           the IDs of the locations (no duplicates allowed)
+	 * @param directBuffer  if <code>true</code>, then the values are kept in a direct buffer
+	 * @param buffer        the buffer with the packed distances, <code>null</code> if a new
+	 *                      buffer or array (filled with <code>NaN</code>) should be allocated
+	 */
+	private TriangularDistanceStore(int[] ids, boolean directBuffer, FloatBuffer buffer) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int id : ids) {
+			min = Math.min(min, id);
+			max = Math.max(max, id);
+		}
+		
+		this.ids = ids.clone();
+		this.size = ids.length;
+		this.minId = (ids.length > 0) ? min : 0;
+		this.indices = new int[(ids.length > 0) ? (max-min+1) : 0];
+		Arrays.fill(this.indices, -1);
+		for (int i = 0; i < ids.length; i++) {
+			if (this.indices[ids[i]-this.minId] >= 0) {
+				throw new IllegalArgumentException("Location IDs must be unique!");
+			}
+			this.indices[ids[i]-this.minId] = i;
+		}
+		
+		long count = getNumberOfValues(this.size);
+		if (count * (directBuffer ? 4 : 1) > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many locations for a triangular distance store!");
+		}
+		this.rowOffsets = new int[this.size];
+		for (int i = 1; i < this.size; i++) {
+			this.rowOffsets[i] = this.rowOffsets[i-1] + (i-1);
+		}
+		
+		if (buffer != null) {
+			if (buffer.capacity() != count) {
+				throw new IllegalArgumentException("Buffer size does not match the number of locations!");
+			}
+			this.values = null;
+			this.buffer = buffer;
+		} else if (directBuffer) {
+			this.values = null;
+			this.buffer = ByteBuffer.allocateDirect((int)count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+			for (int i = 0; i < count; i++) {
+				this.buffer.put(i, Float.NaN);
+			}
+		} else {
+			this.values = new float[(int)count];
+			this.buffer = null;
+			Arrays.fill(this.values, Float.NaN);
+		}
+	}
+	
+	/**
+	 * Returns the number of values of the packed strictly lower triangular matrix.
+	 * 
+	 * @param size  the number of locations
+	 * @return the number of values
+	 */
+	public static long getNumberOfValues(int size) {
+		return (long)size * (size-1) / 2;
+	}
+	
+	/**
+	 * Constructs an empty store for all locations in the database, all distances are <code>NaN</code>.
+	 * 
+	 * @return the store
+	 */
+	public static TriangularDistanceStore forAllLocations() {
+		final int[][] ids = new int[1][16];
+		final int[] count = new int[1];
+		Base.find("SELECT id FROM locations").with(new RowListenerAdapter() {
+			public void onNext(java.util.Map<String,Object> row) {
+				if (count[0] == ids[0].length) {
+					ids[0] = Arrays.copyOf(ids[0], 2*count[0]);
+				}
+				ids[0][count[0]++] = ((Number)row.get("id")).intValue();
+			}
+		});
+		return new TriangularDistanceStore(Arrays.copyOf(ids[0], count[0]), USE_DIRECT_BUFFER);
+	}
+	
+	/**
+	 * Returns the store with the given key, loads it if it is not yet available.
+	 * The global lock is not held while loading, i.e., stores with other keys can be
+	 * acquired in the meantime, and threads requesting the same key wait for the
+	 * store that is currently loaded.
+	 * 
+	 * @param key     the key of the store, e.g. the identification string of the distance measure
+	 * @param loader  the loader that constructs the store if required
+	 * @return the store
+	 */
+	public static TriangularDistanceStore acquire(String key, Loader loader) {
+		Object lock;
+		synchronized (stores) {
+			// remove stores that are no longer reachable
+			Iterator<Entry<String,WeakReference<TriangularDistanceStore>>> it = stores.entrySet().iterator();
+			while (it.hasNext()) {
+				if (it.next().getValue().get() == null) {
+					it.remove();
+				}
+			}
+			
+			TriangularDistanceStore store = getShared(key);
+			if (store != null) {
+				return store;
+			}
+			lock = loadingLocks.get(key);
+			if (lock == null) {
+				lock = new Object();
+				loadingLocks.put(key, lock);
+			}
+		}
+		
+		synchronized (lock) {
+			// another thread may have loaded the store while we were waiting
+			synchronized (stores) {
+				TriangularDistanceStore store = getShared(key);
+				if (store != null) {
+					return store;
+				}
+			}
+			
+			TriangularDistanceStore store = null;
+			try {
+				store = loader.load();
+			} finally {
+				synchronized (stores) {
+					// the store is not shared if it was invalidated while loading
+					if (loadingLocks.get(key) == lock) {
+						loadingLocks.remove(key);
+						if (store != null) {
+							stores.put(key, new WeakReference<TriangularDistanceStore>(store));
+						}
+					}
+				}
+			}
+			return store;
+		}
+	}
+	
+	/**
+	 * Returns the shared store with the given key. Note that the caller has to hold
+	 * the lock of <code>stores</code>.
+	 * 
+	 * @param key  the key of the store
+	 * @return the store, <code>null</code> if there is no such store
+	 */
+	private static TriangularDistanceStore getShared(String key) {
+		WeakReference<TriangularDistanceStore> ref = stores.get(key);
+		return (ref != null) ? ref.get() : null;
+	}
+	
+	/**
+	 * Removes the store with the given key from the shared stores, e.g. because the
+	 * distances have changed. Objects that use the store already are not affected,
+	 * and a store that is currently loaded will not be shared.
+	 * 
+	 * @param key  the key of the store
+	 */
+	public static void invalidate(String key) {
+		synchronized (stores) {
+			stores.remove(key);
+			loadingLocks.remove(key);
+		}
+	}
+	
+	/**
+	 * Returns the number of locations in this store.
+	 * 
+	 * @return the number of locations
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Returns the IDs of the locations, ordered by their indices.
+	 * 
+	 * @return the IDs of the locations
+	 */
+	public int[] getIds() {
+		return this.ids.clone();
+	}
+	
+	/**
+	 * Writes the packed distances (strictly lower triangular matrix, row by row)
+	 * to the given buffer.
+	 * 
+	 * @param target  the buffer
+	 */
+	public void writeValues(FloatBuffer target) {
+		if (this.values != null) {
+			target.put(this.values);
+		} else {
+			FloatBuffer source = this.buffer.duplicate();
+			source.rewind();
+			target.put(source);
+		}
+	}
+	
+	/**
+	 * Returns the index of the given location ID.
+	 * 
+	 * @param id  the location ID
+	 * @return the index, <code>-1</code> if the ID is not part of this store
+	 */
+	public int getIndex(int id) {
+		int i = id - this.minId;
+		return ((i >= 0) && (i < this.indices.length)) ? this.indices[i] : -1;
+	}
+	
+	/**
+	 * Returns the distance between the locations with the given indices.
+	 * 
+	 * @param index1  the index of the first location
+	 * @param index2  the index of the second location
+	 * @return the distance, <code>NaN</code> if not known
+	 */
+	public float get(int index1, int index2) {
+		if (index1 == index2) {
+			return 0.0f;
+		}
+		int pos = (index1 > index2) ? (this.rowOffsets[index1] + index2) : (this.rowOffsets[index2] + index1);
+		return (this.values != null) ? this.values[pos] : this.buffer.get(pos);
+	}
+	
+	/**
+	 * Sets the distance between the locations with the given indices.
+	 * 
+	 * @param index1  the index of the first location
+	 * @param index2  the index of the second location
+	 * @param value   the distance
+	 */
+	public void set(int index1, int index2, float value) {
+		if (index1 == index2) {
+			return;
+		}
+		int pos = (index1 > index2) ? (this.rowOffsets[index1] + index2) : (this.rowOffsets[index2] + index1);
+		if (this.values != null) {
+			this.values[pos] = value;
+		} else {
+			this.buffer.put(pos, value);
+		}
+	}
+	
+}
@@ -2,19 +2,26 @@ package geoling.maps.distances.computation;
 
 import geoling.config.Database;
 import geoling.config.Settings;
+import geoling.maps.distances.DistanceCacheFile;
 import geoling.maps.distances.LinguisticDistance;
+import geoling.maps.distances.PrecomputedDistance;
+import geoling.maps.distances.TriangularDistanceStore;
 import geoling.maps.weights.*;
 import geoling.models.*;
+import geoling.sql.BulkInsertWriter;
 import geoling.util.ProgressOutput;
+import geoling.util.ThreadedTodoWorker;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.DBException;
 import org.javalite.activejdbc.LazyList;
 
 /**
@@ -30,27 +37,63 @@ import org.javalite.activejdbc.LazyList;
  */
 public class LinguisticDistanceComputation {
 	
-	/** Helper object for computation of linguistic distance between two locations. */
-	public static class Dling {
-		public final Location location1, location2;
-		private int n = 0;
-		private double d = 0.0;
+	/**
+	 * The linguistic distances of all pairs of locations: for every pair, the sum of
+	 * the distances of the single maps and the number of maps with answers at both
+	 * locations are stored in packed strictly lower triangular matrices. The locations
+	 * are sorted by their IDs, i.e., for indices <code>i &gt; j</code> the location
+	 * with index <code>j</code> has the smaller ID.
+	 */
+	public static class LinguisticDistances {
+		private final Location[] locations;
+		private final int[] rowOffsets;
+		private final float[] d;
+		private final int[] n;
 		
-		private Dling(Location location1, Location location2) {
-			this.location1 = location1;
-			this.location2 = location2;
+		private LinguisticDistances(Location[] locations) {
+			long count = TriangularDistanceStore.getNumberOfValues(locations.length);
+			if (count > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many locations for the computation of linguistic distances!");
+			}
+			this.locations = locations;
+			this.rowOffsets = new int[locations.length];
+			for (int i = 1; i < locations.length; i++) {
+				this.rowOffsets[i] = this.rowOffsets[i-1] + (i-1);
+			}
+			this.d = new float[(int)count];
+			this.n = new int[(int)count];
 		}
 		
-		private void increment_n() {
-			n++;
+		/** Returns the number of locations. */
+		public int getNumberOfLocations() {
+			return this.locations.length;
 		}
 		
-		private void addLingDistValueTo_d(double value1, double value2) {
-			d += 0.5*Math.abs(value1-value2);
+		/** Returns the location with the given index. */
+		public Location getLocation(int index) {
+			return this.locations[index];
 		}
 		
-		public double getLinguisticDistance() {
-			return d / ((double)n);
+		/** Returns the number of maps with answers at both locations (indices <code>i &gt; j</code>). */
+		public int getNumberOfMaps(int i, int j) {
+			return this.n[this.rowOffsets[i]+j];
+		}
+		
+		/** Returns the linguistic distance of two locations (indices <code>i &gt; j</code>), <code>NaN</code> if there is no map with answers at both locations. */
+		public double getLinguisticDistance(int i, int j) {
+			int pos = this.rowOffsets[i]+j;
+			return (this.n[pos] == 0) ? Double.NaN : (double)this.d[pos] / this.n[pos];
+		}
+		
+		/** Returns the number of pairs of locations with a linguistic distance. */
+		public int getNumberOfPairs() {
+			int count = 0;
+			for (int value : this.n) {
+				if (value > 0) {
+					count++;
+				}
+			}
+			return count;
 		}
 	}
 	
@@ -122,11 +165,12 @@ public class LinguisticDistanceComputation {
 		}
 		
 		// compute distances
-		HashMap<String,Dling> dlings = computeDistances(variantWeightsList, progress);
+		LinguisticDistances distances = computeDistances(variantWeightsList, progress);
+		int numberOfPairs = distances.getNumberOfPairs();
 		
 		// save distances
 		progress.customMessage("Writing distances to database...");
-		progress.reset(dlings.size());
+		progress.reset(Math.max(numberOfPairs, 1));
 		progress.initCurrent();
 		String identification = LinguisticDistance.getStaticIdentificationString(level, group);
 		
@@ -156,33 +200,44 @@ public class LinguisticDistanceComputation {
 		}
 		
 		// remove all existing distances for pairs of locations
+		DistanceCacheFile.delete(distance);
 		Base.exec("DELETE FROM location_distances WHERE distance_id = ?", distance.getId());
 		
-		// save distances for pairs of locations, build large SQL queries directly for faster storage
-		StringBuffer sql = new StringBuffer();
-		for (Entry<String,Dling> entry : dlings.entrySet()){
-			Dling dling = entry.getValue();
-			
-			if (sql.length() == 0) {
-				sql.append("INSERT INTO location_distances (distance_id, location_id1, location_id2, distance) VALUES");
-			} else {
-				sql.append(",");
-			}
-			sql.append(" ("+distance.getId()+", "+
-			                dling.location1.getId()+", "+
-			                dling.location2.getId()+", "+
-			                dling.getLinguisticDistance()+")");
-			
-			progress.incrementCurrent();
-			
-			if (sql.length() > 65000) {
-				Base.exec(sql.toString());
-				sql = new StringBuffer();
+		// save distances for pairs of locations, use batched inserts for faster storage
+		try {
+			BulkInsertWriter writer = new BulkInsertWriter(Base.connection(), "location_distances", "distance_id", "location_id1", "location_id2", "distance");
+			try {
+				for (int i = 1; i < distances.getNumberOfLocations(); i++) {
+					for (int j = 0; j < i; j++) {
+						if (distances.getNumberOfMaps(i, j) == 0) {
+							continue;
+						}
+						writer.addRow(distance.getId(), distances.getLocation(j).getId(), distances.getLocation(i).getId(), distances.getLinguisticDistance(i, j));
+						progress.incrementCurrent();
+					}
+				}
+				writer.close(progress);
+			} finally {
+				writer.abort();
 			}
+		} catch (SQLException e) {
+			throw new DBException(e);
 		}
-		if (sql.length() > 0) {
-			Base.exec(sql.toString());
+		
+		// distance measure objects constructed from now on have to load the new distances,
+		// we write the cache file directly such that they need not query the database
+		TriangularDistanceStore store = TriangularDistanceStore.forAllLocations();
+		for (int i = 1; i < distances.getNumberOfLocations(); i++) {
+			int index1 = store.getIndex(distances.getLocation(i).getLongId().intValue());
+			for (int j = 0; j < i; j++) {
+				int index2 = store.getIndex(distances.getLocation(j).getLongId().intValue());
+				if ((index1 >= 0) && (index2 >= 0) && (distances.getNumberOfMaps(i, j) > 0)) {
+					store.set(index1, index2, (float)distances.getLinguisticDistance(i, j));
+				}
+			}
 		}
+		DistanceCacheFile.write(distance, store, DistanceCacheFile.Stamp.of(distance));
+		PrecomputedDistance.invalidateCache(identification);
 	}
 	
 	/**
@@ -191,62 +246,111 @@ public class LinguisticDistanceComputation {
 	 * 
 	 * @param variantWeightsList the variant weights objects of the maps to consider
 	 * @param progress           object for progress messages
-	 * @return the distances as a map, where the key is a string that contains the two location
-	 *         ids (smallest number first, separated by an underscore), and the value is a
-	 *         <code>Dling</code> object
+	 * @return the distances for all pairs of locations
 	 */
-	public static HashMap<String,Dling> computeDistances(List<VariantWeights> variantWeightsList, ProgressOutput progress) {
-		// hash map that holds for every pair of locations the Dling object,
-		// the key is given by the two location ids (separated by underscore,
-		// smaller id at the beginning)
-		HashMap<String,Dling> dlings = new HashMap<String,Dling>();
-		
-		// calculate distance for every map
-		progress.customMessage("Computing linguistic distances...");
-		progress.reset(variantWeightsList.size());
-		progress.initCurrent();
+	public static LinguisticDistances computeDistances(List<VariantWeights> variantWeightsList, ProgressOutput progress) {
+		// collect all locations with answers, sorted by ID
+		TreeMap<Long,Location> locationsMap = new TreeMap<Long,Location>();
 		for (VariantWeights variantWeights : variantWeightsList) {
-			ArrayList<Location> locations = new ArrayList<Location>(variantWeights.getLocations());
+			for (int l = 0; l < variantWeights.getNumberOfLocations(); l++) {
+				if (variantWeights.getTotalNumberOfVariantOccurences(l) > 0) {
+					Location location = variantWeights.getLocationByIndex(l);
+					locationsMap.put(location.getLongId(), location);
+				}
+			}
+		}
+		final LinguisticDistances distances = new LinguisticDistances(locationsMap.values().toArray(new Location[locationsMap.size()]));
+		final int numberOfLocations = distances.getNumberOfLocations();
+		HashMap<Location,Integer> indices = new HashMap<Location,Integer>(numberOfLocations*4/3+1);
+		for (int i = 0; i < numberOfLocations; i++) {
+			indices.put(distances.getLocation(i), i);
+		}
+		
+		// for every map, the locations with answers (ordered by their index in the result)
+		// and a dense matrix with the weights of all variants at these locations
+		final int numberOfMaps = variantWeightsList.size();
+		final int[][] localIndices = new int[numberOfMaps][];
+		final int[][] globalIndices = new int[numberOfMaps][];
+		final double[][] weights = new double[numberOfMaps][];
+		final int[] numberOfVariants = new int[numberOfMaps];
+		for (int m = 0; m < numberOfMaps; m++) {
+			VariantWeights variantWeights = variantWeightsList.get(m);
+			int variantCount = variantWeights.getNumberOfVariants();
 			
-			// iterate over all pairs of locations (where first id smaller than second,
-			// i.e., every pair only exactly once)
-			for (Location location1 : locations) {
-				for (Location location2 : locations) {
-					if (location1.getLongId().longValue() < location2.getLongId().longValue()) {
-						HashSet<Variant> v1 = variantWeights.getVariantsAtLocation(location1);
-						HashSet<Variant> v2 = variantWeights.getVariantsAtLocation(location2);
-						if ((v1.isEmpty()) || (v2.isEmpty())) {
-							// no variants at one of the two locations, then nothing to do
-							// (no variants = no information at this location, so we just can't
-							//  compute a distance for the current map)
-							continue;
-						}
-						
-						// fetch existing Dling object or create a new one
-						String key = location1.getId()+"_"+location2.getId();
-						Dling d = dlings.get(key);
-						if (d == null) {
-							d = new Dling(location1, location2);
-							dlings.put(key, d);
-						}
-						
-						HashSet<Variant> v1_v2 = new HashSet<Variant>();
-						v1_v2.addAll(v1);
-						v1_v2.addAll(v2);
-						// now update the Dling object
-						d.increment_n();
-						for (Variant variant : v1_v2) {
-							d.addLingDistValueTo_d(variantWeights.getWeight(variant, location1),
-							                       variantWeights.getWeight(variant, location2));
-						}
-					}
+			localIndices[m] = new int[numberOfLocations];
+			Arrays.fill(localIndices[m], -1);
+			for (int l = 0; l < variantWeights.getNumberOfLocations(); l++) {
+				if (variantWeights.getTotalNumberOfVariantOccurences(l) > 0) {
+					localIndices[m][indices.get(variantWeights.getLocationByIndex(l))] = l;
 				}
 			}
 			
-			progress.incrementCurrent();
+			int count = 0;
+			for (int i = 0; i < numberOfLocations; i++) {
+				if (localIndices[m][i] >= 0) {
+					count++;
+				}
+			}
+			globalIndices[m] = new int[count];
+			weights[m] = new double[count*variantCount];
+			count = 0;
+			for (int i = 0; i < numberOfLocations; i++) {
+				int l = localIndices[m][i];
+				if (l >= 0) {
+					for (int v = 0; v < variantCount; v++) {
+						weights[m][count*variantCount+v] = variantWeights.getWeight(v, l);
+					}
+					globalIndices[m][count] = i;
+					localIndices[m][i] = count;
+					count++;
+				}
+			}
+			numberOfVariants[m] = variantCount;
 		}
 		
-		return dlings;
+		// calculate distance for every pair of locations, every row of the (strictly lower
+		// triangular) result is computed by one thread, summing up the distances of all maps
+		// (we begin with the last rows, because they are the most expensive)
+		progress.customMessage("Computing linguistic distances...");
+		ThreadedTodoWorker.workOnIndexRange(0, numberOfLocations-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int index) {
+				int i = numberOfLocations-1-index;
+				double[] rowD = new double[i];
+				int[] rowN = new int[i];
+				
+				for (int m = 0; m < numberOfMaps; m++) {
+					int p = localIndices[m][i];
+					if (p < 0) {
+						// no variants at this location (no variants = no information at this
+						// location, so we just can't compute a distance for the current map)
+						continue;
+					}
+					
+					// all locations before position p have a smaller index
+					int variantCount = numberOfVariants[m];
+					double[] w = weights[m];
+					int offset1 = p*variantCount;
+					for (int q = 0; q < p; q++) {
+						int offset2 = q*variantCount;
+						double sum = 0.0;
+						for (int v = 0; v < variantCount; v++) {
+							sum += Math.abs(w[offset1+v]-w[offset2+v]);
+						}
+						int j = globalIndices[m][q];
+						rowD[j] += 0.5*sum;
+						rowN[j]++;
+					}
+				}
+				
+				int rowOffset = distances.rowOffsets[i];
+				for (int j = 0; j < i; j++) {
+					distances.d[rowOffset+j] = (float)rowD[j];
+					distances.n[rowOffset+j] = rowN[j];
+				}
+			}
+		}, progress);
+		
+		return distances;
 	}
 	
 	/**
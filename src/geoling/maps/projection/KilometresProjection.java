@@ -101,4 +101,13 @@ public class KilometresProjection extends MapProjection {
 		return (this == other) || (other instanceof KilometresProjection) && (new Point(centre).equals(new Point(((KilometresProjection)other).centre)));
 	}
 	
+	/**
+	 * Returns a string identifying the type and the parameters of this map projection.
+	 * 
+	 * @return the identifier
+	 */
+	public String getIdentifier() {
+		return "kilometres("+centre[0]+","+centre[1]+")";
+	}
+	
 }
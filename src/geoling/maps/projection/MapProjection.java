@@ -42,6 +42,14 @@ public abstract class MapProjection {
 	 */
 	public abstract boolean isSimilar(MapProjection other);
 	
+	/**
+	 * Returns a string identifying the type and the parameters of this map projection,
+	 * e.g. for caching. Similar map projection objects have the same identifier.
+	 * 
+	 * @return the identifier
+	 */
+	public abstract String getIdentifier();
+	
 	/**
 	 * Projects the given geographical coordinates to the
 	 * plane according to the principle of this map projection type.
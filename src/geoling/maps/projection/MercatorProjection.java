@@ -50,4 +50,13 @@ public class MercatorProjection extends MapProjection {
 		return (this == other) || (other instanceof MercatorProjection);
 	}
 	
+	/**
+	 * Returns a string identifying the type and the parameters of this map projection.
+	 * 
+	 * @return the identifier
+	 */
+	public String getIdentifier() {
+		return "mercator";
+	}
+	
 }
@@ -3,6 +3,7 @@ package geoling.maps.util;
 import java.math.BigDecimal;
 
 import geoling.maps.density.bandwidth.BandwidthEstimator;
+import geoling.maps.density.bandwidth.BandwidthSearch;
 import geoling.maps.density.bandwidth.LeastSquaresCrossValidation;
 import geoling.maps.density.bandwidth.LikelihoodCrossValidation;
 import geoling.maps.density.bandwidth.MinComplexityMaxFidelity;
@@ -70,18 +71,27 @@ public class BuilderMethods {
 	
 	/**
 	 * Returns the corresponding bandwidth estimator object for the given identification string.
+	 * The identification string may contain a search strategy (separated by
+	 * <code>":search="</code>), see <code>BandwidthEstimator.getSearch</code>.
 	 * 
 	 * @param kernel          the existing kernel object
 	 * @param estimatorIdStr  the identification string of the estimator
 	 * @return the bandwidth estimator object
 	 */
 	public static BandwidthEstimator getBandwidthEstimatorObj(Kernel kernel, String estimatorIdStr) {
+		BandwidthSearch search = null;
+		int searchPos = estimatorIdStr.indexOf(":search=");
+		if (searchPos >= 0) {
+			search = BandwidthSearch.getSearchObj(estimatorIdStr.substring(searchPos+":search=".length()));
+			estimatorIdStr = estimatorIdStr.substring(0, searchPos);
+		}
+		
 		BandwidthEstimator estimator;
 		if (LikelihoodCrossValidation.getStaticIdentificationString().equals(estimatorIdStr)) {
-			estimator = new LikelihoodCrossValidation(kernel);
+			estimator = new LikelihoodCrossValidation(kernel, search);
 		} else if (LeastSquaresCrossValidation.getStaticIdentificationString().equals(estimatorIdStr)) {
-			estimator = new LeastSquaresCrossValidation(kernel);
-		} else if (MinComplexityMaxFidelity.getStaticIdentificationString().equals(estimatorIdStr)) {
+			estimator = new LeastSquaresCrossValidation(kernel, search);
+		} else if (MinComplexityMaxFidelity.getStaticIdentificationString().equals(estimatorIdStr) && (search == null)) {
 			estimator = new MinComplexityMaxFidelity(kernel);
 		} else {
 			throw new RuntimeException("Unknown bandwidth estimator identification string: "+estimatorIdStr);
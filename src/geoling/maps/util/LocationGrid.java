@@ -2,29 +2,45 @@ package geoling.maps.util;
 
 import geoling.maps.projection.KilometresProjection;
 import geoling.models.Location;
-import geoling.util.DoubleBox;
 import geoling.util.LatLong;
-import geoling.util.PointsGrid2D;
+import geoling.util.LatLongPoints;
+import geoling.util.PackedPointsGrid2D;
 import geoling.util.Utilities;
-import geoling.util.sim.grain.ObjectMarkedPoint;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * Class to find adjacent locations, inserts all locations into a
  * grid.
  * Because the grid uses the Euclidean distance, internally all geographical
  * coordinates are converted to kilometres (which is only an approximation).
+ * The grid is a <code>PackedPointsGrid2D</code>, i.e., the locations are
+ * identified by their indices in the grid.
  *  
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
 public class LocationGrid {
 	
-	/** The grid with marked points, where the mark is the location object. */
-	private PointsGrid2D<ObjectMarkedPoint> grid;
+	/** Visitor for the locations found by a query. */
+	public interface LocationVisitor {
+		/**
+		 * Called for every location found by a query.
+		 * 
+		 * @param index     the index of the location in the grid
+		 * @param location  the location
+		 */
+		public void visit(int index, Location location);
+	}
+	
+	/** The grid with the projected coordinates of the locations. */
+	private PackedPointsGrid2D grid;
+	
+	/** The locations, ordered by their indices in the grid. */
+	private Location[] locations;
+	
+	/** The geographical coordinates of the locations, ordered by their indices in the grid. */
+	private LatLongPoints latLongs;
 	
 	/** The projection object for the coordinates. */
 	private KilometresProjection kilometresProjection;
@@ -37,23 +53,68 @@ public class LocationGrid {
 	public LocationGrid(Collection<Location> locations) {
 		this.kilometresProjection = new KilometresProjection(locations);
 		
-		LinkedList<ObjectMarkedPoint> points = new LinkedList<ObjectMarkedPoint>();
-		double[] lowCorner  = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
-		double[] highCorner = new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		int n = locations.size();
+		this.locations = new Location[n];
+		LatLong[] latLongs = new LatLong[n];
+		double[] x = new double[n];
+		double[] y = new double[n];
+		int i = 0;
 		for (Location location : locations) {
-			double[] coord = this.kilometresProjection.projectLatLong(location.getLatLong());
-			ObjectMarkedPoint point = new ObjectMarkedPoint(coord, location);
-			points.add(point);
-			lowCorner[0] = Math.min(lowCorner[0], coord[0]);
-			lowCorner[1] = Math.min(lowCorner[1], coord[1]);
-			highCorner[0] = Math.max(highCorner[0], coord[0]);
-			highCorner[1] = Math.max(highCorner[1], coord[1]);
+			this.locations[i] = location;
+			latLongs[i] = location.getLatLong();
+			double[] coord = this.kilometresProjection.projectLatLong(latLongs[i]);
+			x[i] = coord[0];
+			y[i] = coord[1];
+			i++;
 		}
-		lowCorner[0]  -= Utilities.EPS;
-		lowCorner[1]  -= Utilities.EPS;
-		highCorner[0] += Utilities.EPS;
-		highCorner[1] += Utilities.EPS;
-		this.grid = new PointsGrid2D<ObjectMarkedPoint>(points, new DoubleBox(lowCorner, highCorner));
+		this.grid = new PackedPointsGrid2D(x, y);
+		this.latLongs = new LatLongPoints(latLongs, false);
+	}
+	
+	/**
+	 * Returns the number of locations in this grid.
+	 * 
+	 * @return the number of locations
+	 */
+	public int size() {
+		return this.locations.length;
+	}
+	
+	/**
+	 * Returns the location with the given index.
+	 * 
+	 * @param index  the index of the location in the grid
+	 * @return the location
+	 */
+	public Location getLocation(int index) {
+		return this.locations[index];
+	}
+	
+	/**
+	 * Visits all locations in a given maximum distance.
+	 * Note that the (unavoidable) distortion of the coordinates in the plane is
+	 * corrected with a safety margin of 20% for the Euclidean distance, then the
+	 * real geographical distance is used in addition. 
+	 * 
+	 * @param latLong    the geographical coordinates
+	 * @param kilometres the maximum distance in kilometres
+	 * @param fuzzy      determines whether it is allowed that locations with a larger
+	 *                   distance are also visited
+	 * @param visitor    the visitor called for every detected location
+	 */
+	public void visitLocationsInDistance(LatLong latLong, double kilometres, final boolean fuzzy, final LocationVisitor visitor) {
+		double[] coord = this.kilometresProjection.projectLatLong(latLong);
+		// the geographical distance is compared via the chord length on the unit sphere,
+		// which avoids trigonometric functions for every location
+		final double[] unitVector = LatLongPoints.getUnitVector(latLong);
+		final double maxSquaredChordLength = LatLongPoints.distanceToSquaredChordLength(kilometres+Utilities.EPS);
+		this.grid.visitNeighboursInDistance(coord[0], coord[1], kilometres*1.2, new PackedPointsGrid2D.Visitor() {
+			public void visit(int index, double squaredDistance) {
+				if (fuzzy || latLongs.getSquaredChordLength(index, unitVector) < maxSquaredChordLength) {
+					visitor.visit(index, locations[index]);
+				}
+			}
+		});
 	}
 	
 	/**
@@ -69,15 +130,12 @@ public class LocationGrid {
 	 * @return a list of detected locations
 	 */
 	public ArrayList<Location> findLocationsInDistance(LatLong latLong, double kilometres, boolean fuzzy) {
-		ObjectMarkedPoint point = new ObjectMarkedPoint(this.kilometresProjection.projectLatLong(latLong), null);
-		List<ObjectMarkedPoint> neighbours = this.grid.findNeighboursInDistance(point, kilometres*1.2, false);
-		ArrayList<Location> result = new ArrayList<Location>(neighbours.size());
-		for (ObjectMarkedPoint neighbour : neighbours) {
-			Location other = (Location)neighbour.getValue();
-			if (fuzzy || latLong.calculateDistanceTo(other.getLatLong()) < kilometres+Utilities.EPS) {
-				result.add(other);
+		final ArrayList<Location> result = new ArrayList<Location>();
+		visitLocationsInDistance(latLong, kilometres, fuzzy, new LocationVisitor() {
+			public void visit(int index, Location location) {
+				result.add(location);
 			}
-		}
+		});
 		return result;
 	}
 	
@@ -88,12 +146,12 @@ public class LocationGrid {
 	 * @return the location
 	 */
 	public Location findNearestLocation(LatLong latLong) {
-		ObjectMarkedPoint point = new ObjectMarkedPoint(this.kilometresProjection.projectLatLong(latLong), null);
-		ObjectMarkedPoint obj = this.grid.findNearestNeighbour(point);
-		if (obj == null) {
+		double[] coord = this.kilometresProjection.projectLatLong(latLong);
+		int index = this.grid.findNearestNeighbour(coord[0], coord[1]);
+		if (index < 0) {
 			return null;
 		} else {
-			return (Location)obj.getValue();
+			return this.locations[index];
 		}
 	}
 	
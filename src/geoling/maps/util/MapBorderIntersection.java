@@ -5,6 +5,7 @@ import geoling.util.DoubleBox;
 import geoling.util.LatLong;
 import geoling.util.Utilities;
 import geoling.util.geom.Geometry2D;
+import geoling.util.geom.PolygonClipper;
 import geoling.util.sim.grain.ConvexPolytope;
 import geoling.util.sim.grain.LineSegment;
 import geoling.util.sim.grain.Point;
@@ -12,12 +13,16 @@ import geoling.util.sim.grain.Polytope;
 import geoling.util.sim.util.RandomSet;
 
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Helper class for the intersection of cells with the (non-convex) border polygon.
  * Note that this helper class uses the polygon implementation supplied by
  * the package <code>java.awt</code> to determine whether a cell is completely
  * contained and can be returned without intersecting. This speeds up the process.
+ * Convex cells are clipped directly against the border edges (see <code>PolygonClipper</code>),
+ * only non-convex cells (or cells where clipping fails due to numerical problems)
+ * are intersected by triangulation.
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
@@ -41,8 +46,11 @@ public class MapBorderIntersection {
 	/** The border polygon of this Voronoi map. */
 	private Polytope border;
 	
-	/** A set of triangles representing the (filled) border polygon. */
-	private RandomSet borderTriangles;
+	/** A set of triangles representing the (filled) border polygon, only computed if required. */
+	private RandomSet borderTriangles = null;
+	
+	/** The clipper for convex cells, <code>null</code> if the border polygon is degenerated. */
+	private PolygonClipper borderClipper;
 	
 	/** A (scaled) java.awt.Polygon object which is used to avoid unnecessary intersections. */
 	private java.awt.Polygon borderJavaObj;
@@ -53,10 +61,20 @@ public class MapBorderIntersection {
 	public MapBorderIntersection(Polytope border) {
 		this.border = border;
 		
-		this.borderTriangles = this.border.triangulate();
+		Point[] vertices = this.border.getVertices();
+		double[] x = new double[vertices.length];
+		double[] y = new double[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			x[i] = vertices[i].getCoordinates()[0];
+			y[i] = vertices[i].getCoordinates()[1];
+		}
+		try {
+			this.borderClipper = new PolygonClipper(x, y);
+		} catch (IllegalArgumentException e) {
+			this.borderClipper = null;
+		}
 		
 		// construct a (scaled) java.awt.Polygon object which is used to avoid unnecessary intersections
-		Point[] vertices = this.border.getVertices();
 		int[] xpoints = new int[vertices.length];
 		int[] ypoints = new int[vertices.length];
 		for (int i = 0; i < vertices.length; i++) {
@@ -75,6 +93,19 @@ public class MapBorderIntersection {
 		return this.border;
 	}
 	
+	/**
+	 * Returns the triangles representing the (filled) border polygon, they are
+	 * computed on first use.
+	 * 
+	 * @return the set of triangles
+	 */
+	private synchronized RandomSet getBorderTriangles() {
+		if (this.borderTriangles == null) {
+			this.borderTriangles = this.border.triangulate();
+		}
+		return this.borderTriangles;
+	}
+	
 	/**
 	 * Checks if the given box is completely contained in the border polygon, uses the (scaled) java.awt.Polygon object.
 	 * 
@@ -112,8 +143,43 @@ public class MapBorderIntersection {
 			result.add(new Polytope(cell.getVertices(), true));
 			return result;
 		} else {
-			return Utilities.intersectPolygonsByTriangulation(borderTriangles, cell.triangulate(), true);
+			return intersectWithBorder(cell);
+		}
+	}
+	
+	/**
+	 * Intersects the given cell with the border polygon, convex cells are clipped directly
+	 * against the border edges, otherwise both polygons are triangulated.
+	 * 
+	 * @param cell  the cell as a polygon
+	 * @return the intersection of the cell with the border polygon,
+	 *         a set containing zero, one or several polytopes
+	 */
+	private RandomSet intersectWithBorder(Polytope cell) {
+		Point[] vertices = cell.getVertices();
+		double[] x = new double[vertices.length];
+		double[] y = new double[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			x[i] = vertices[i].getCoordinates()[0];
+			y[i] = vertices[i].getCoordinates()[1];
+		}
+		if ((this.borderClipper != null) && PolygonClipper.isConvex(x, y)) {
+			try {
+				List<double[][]> polygons = this.borderClipper.clip(x, y);
+				RandomSet result = new RandomSet(border.getBoundingBox());
+				for (double[][] polygon : polygons) {
+					Point[] points = new Point[polygon[0].length];
+					for (int i = 0; i < points.length; i++) {
+						points[i] = new Point(new double[] { polygon[0][i], polygon[1][i] });
+					}
+					result.add(new Polytope(points, true));
+				}
+				return result;
+			} catch (RuntimeException e) {
+				// numerical problems, use the triangulation instead
+			}
 		}
+		return Utilities.intersectPolygonsByTriangulation(getBorderTriangles(), cell.triangulate(), true);
 	}
 	
 	/**
@@ -135,7 +201,7 @@ public class MapBorderIntersection {
 			return new Polytope(cell.getVertices(), true);
 		} else {
 			// intersect Voronoi cell with the correct border
-			RandomSet intersection = Utilities.intersectPolygonsByTriangulation(borderTriangles, cell.triangulate(), true);
+			RandomSet intersection = intersectWithBorder(cell);
 			if (intersection.isEmpty()) {
 				return null;
 			} else if (intersection.size() == 1) {
@@ -1,12 +1,12 @@
 package geoling.maps.util;
 
+import geoling.util.SharedCache;
 import geoling.util.sim.grain.Polytope;
 
-import java.util.LinkedList;
-
 /**
  * Class for caching of border intersection helper objects, because we want to avoid
- * recomputing them all the time.
+ * recomputing them all the time. The helper objects are identified by the fingerprint
+ * of the border polygon (see <code>MapFingerprint</code>).
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
@@ -16,7 +16,7 @@ public class MapBorderIntersectionCache {
 	private static final int MAX_SIZE = 10;
 	
 	/** The cached helper objects. */
-	private static LinkedList<MapBorderIntersection> cachedObjects = new LinkedList<MapBorderIntersection>();
+	private static final SharedCache<MapBorderIntersection> cache = new SharedCache<MapBorderIntersection>("Border intersections", MAX_SIZE);
 	
 	/**
 	 * Returns a map border intersection helper object.
@@ -24,20 +24,21 @@ public class MapBorderIntersectionCache {
 	 * @param border  the border polygon of the map
 	 * @return the helper object
 	 */
-	public static synchronized MapBorderIntersection getHelperObject(Polytope border) {
-		for (MapBorderIntersection obj : cachedObjects) {
-			if (MapBorder.bordersAreEqual(obj.getBorder(), border)) {
-				return obj;
+	public static MapBorderIntersection getHelperObject(final Polytope border) {
+		return cache.get(MapFingerprint.of(border), new SharedCache.Loader<MapBorderIntersection>() {
+			public MapBorderIntersection load() {
+				return new MapBorderIntersection(border);
 			}
-		}
-		
-		if (cachedObjects.size() >= MAX_SIZE) {
-			cachedObjects.removeLast();
-		}
-		
-		MapBorderIntersection result = new MapBorderIntersection(border);
-		cachedObjects.addFirst(result);
-		return result;
+		});
+	}
+	
+	/**
+	 * Returns a string with the number of cached helper objects and the hit/miss/eviction counts.
+	 * 
+	 * @return the statistics of the cache
+	 */
+	public static String getStatistics() {
+		return cache.toString();
 	}
 	
 }
\ No newline at end of file
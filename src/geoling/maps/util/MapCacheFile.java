@@ -0,0 +1,231 @@
+package geoling.maps.util;
+
+import geoling.config.Settings;
+import geoling.locations.util.AggregatedLocation;
+import geoling.maps.projection.MapProjection;
+import geoling.util.sim.grain.Polytope;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Binary cache files for Voronoi maps and grids, which avoid recomputing them
+ * every time the application is started. The files are stored in the cache
+ * directory and identified by the database identifier and the fingerprint of
+ * the object (see <code>MapFingerprint</code>), which is also stored in the file
+ * and compared when reading it. Files are only read when the object is requested
+ * and not found in the in-memory cache (see <code>VoronoiMapCache</code> and
+ * <code>RectangularGridCache</code>).
+ * <p>
+ * File format (big-endian): magic number, version, fingerprint (modified UTF-8),
+ * and the data written by <code>VoronoiMap.writeTo</code> or <code>RectangularGrid.writeTo</code>.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class MapCacheFile {
+	
+	/** Determines whether cache files are read and written. */
+	public static boolean ENABLED = true;
+	
+	/** The magic number at the beginning of every cache file ("GLMC"). */
+	private static final int MAGIC_NUMBER = 0x474C4D43;
+	
+	/**
+	 * The version of the file format, files with another version are ignored.
+	 * It has to be increased whenever the format or the computation of Voronoi maps
+	 * or grids (e.g. the clipping with the border polygon) changes.
+	 */
+	private static final int VERSION = 3;
+	
+	/**
+	 * Returns the cache file for the given type of object and fingerprint.
+	 * 
+	 * @param type         the type of the object, e.g. <code>voronoi</code>
+	 * @param fingerprint  the fingerprint of the object
+	 * @return the cache file
+	 */
+	public static File getFile(String type, String fingerprint) {
+		String databaseIdentifier = Settings.getDatabaseIdentifier();
+		if (databaseIdentifier == null) {
+			databaseIdentifier = "default";
+		}
+		String name = type + "_" + databaseIdentifier + "_" + fingerprint;
+		return new File(Settings.getCachePath() + name.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin");
+	}
+	
+	/**
+	 * Reads the cached Voronoi map with the given fingerprint, if it exists.
+	 * 
+	 * @param fingerprint    the fingerprint of the Voronoi map
+	 * @param locations      the set of (aggregated) locations
+	 * @param border         the border polygon
+	 * @param mapProjection  the projection method for the coordinates
+	 * @return the Voronoi map, <code>null</code> if there is no valid cache file
+	 */
+	public static VoronoiMap readVoronoiMap(String fingerprint, Collection<AggregatedLocation> locations, Polytope border, MapProjection mapProjection) {
+		DataInputStream in = open("voronoi", fingerprint);
+		if (in == null) {
+			return null;
+		}
+		try {
+			try {
+				return VoronoiMap.readFrom(in, locations, border, mapProjection);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// e.g. the file is truncated, it will be replaced
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the given Voronoi map to its cache file.
+	 * Note that this method does not throw an exception if writing was not possible,
+	 * in that case it only prints the stack-trace to <code>System.err</code>.
+	 * 
+	 * @param fingerprint  the fingerprint of the Voronoi map
+	 * @param voronoiMap   the Voronoi map
+	 */
+	public static void writeVoronoiMap(String fingerprint, VoronoiMap voronoiMap) {
+		if (!ENABLED) {
+			return;
+		}
+		File file = getFile("voronoi", fingerprint);
+		File tmpFile = new File(file.getPath()+".tmp");
+		try {
+			DataOutputStream out = create(tmpFile, fingerprint);
+			try {
+				voronoiMap.writeTo(out);
+			} finally {
+				out.close();
+			}
+			replace(tmpFile, file);
+		} catch (IOException e) {
+			tmpFile.delete();
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Reads the cached grid with the given fingerprint, if it exists.
+	 * 
+	 * @param fingerprint    the fingerprint of the grid
+	 * @param border         the border polygon of the map
+	 * @param mapProjection  the map projection method
+	 * @return the grid, <code>null</code> if there is no valid cache file
+	 */
+	public static RectangularGrid readGrid(String fingerprint, Polytope border, MapProjection mapProjection) {
+		DataInputStream in = open("grid", fingerprint);
+		if (in == null) {
+			return null;
+		}
+		try {
+			try {
+				return RectangularGrid.readFrom(in, border, mapProjection);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// e.g. the file is truncated, it will be replaced
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the given grid to its cache file.
+	 * Note that this method does not throw an exception if writing was not possible,
+	 * in that case it only prints the stack-trace to <code>System.err</code>.
+	 * 
+	 * @param fingerprint  the fingerprint of the grid
+	 * @param grid         the grid
+	 */
+	public static void writeGrid(String fingerprint, RectangularGrid grid) {
+		if (!ENABLED) {
+			return;
+		}
+		File file = getFile("grid", fingerprint);
+		File tmpFile = new File(file.getPath()+".tmp");
+		try {
+			DataOutputStream out = create(tmpFile, fingerprint);
+			try {
+				grid.writeTo(out);
+			} finally {
+				out.close();
+			}
+			replace(tmpFile, file);
+		} catch (IOException e) {
+			tmpFile.delete();
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Opens the cache file and checks its header.
+	 * 
+	 * @param type         the type of the object
+	 * @param fingerprint  the fingerprint of the object
+	 * @return the stream positioned after the header, <code>null</code> if there is no valid cache file
+	 */
+	private static DataInputStream open(String type, String fingerprint) {
+		File file = getFile(type, fingerprint);
+		if (!ENABLED || !file.exists()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			boolean valid = false;
+			try {
+				valid = (in.readInt() == MAGIC_NUMBER) && (in.readInt() == VERSION) && in.readUTF().equals(fingerprint);
+			} finally {
+				if (!valid) {
+					in.close();
+				}
+			}
+			return valid ? in : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Creates a (temporary) cache file and writes the header.
+	 * 
+	 * @param file         the file
+	 * @param fingerprint  the fingerprint of the object
+	 * @return the stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static DataOutputStream create(File file, String fingerprint) throws IOException {
+		Settings.createCacheDirectory();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC_NUMBER);
+		out.writeInt(VERSION);
+		out.writeUTF(fingerprint);
+		return out;
+	}
+	
+	/**
+	 * Replaces the cache file by the completely written temporary file.
+	 * 
+	 * @param tmpFile  the temporary file
+	 * @param file     the cache file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void replace(File tmpFile, File file) throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Could not delete cache file: "+file.getPath());
+		}
+		if (!tmpFile.renameTo(file)) {
+			throw new IOException("Could not rename cache file: "+tmpFile.getPath());
+		}
+	}
+	
+}
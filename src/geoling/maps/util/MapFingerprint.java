@@ -0,0 +1,126 @@
+package geoling.maps.util;
+
+import geoling.locations.util.AggregatedLocation;
+import geoling.maps.projection.MapProjection;
+import geoling.models.Location;
+import geoling.util.sim.grain.Point;
+import geoling.util.sim.grain.Polytope;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Fingerprints (strings of hash values) identifying the parameters of Voronoi maps,
+ * grids and other objects that depend on locations, border polygons and map projections.
+ * They are used as keys for caching, e.g. in <code>VoronoiMapCache</code>.
+ * The fingerprint of a set of locations depends on the IDs and the exact coordinates
+ * of the locations (such that changed coordinates after a re-import are detected),
+ * but not on their order.
+ * The fingerprint of a border polygon depends on the exact coordinates of its vertices.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class MapFingerprint {
+	
+	/**
+	 * Returns the fingerprint for the given locations, border polygon and map projection.
+	 * 
+	 * @param locations      the (aggregated) locations
+	 * @param border         the border polygon
+	 * @param mapProjection  the map projection method
+	 * @return the fingerprint
+	 */
+	public static String of(Collection<AggregatedLocation> locations, Polytope border, MapProjection mapProjection) {
+		return "locations-"+Long.toHexString(hashLocations(locations))+"_"+of(border, mapProjection);
+	}
+	
+	/**
+	 * Returns the fingerprint for the given border polygon and map projection.
+	 * 
+	 * @param border         the border polygon
+	 * @param mapProjection  the map projection method
+	 * @return the fingerprint
+	 */
+	public static String of(Polytope border, MapProjection mapProjection) {
+		return of(border)+"_"+mapProjection.getIdentifier();
+	}
+	
+	/**
+	 * Returns the fingerprint for the given border polygon.
+	 * 
+	 * @param border  the border polygon
+	 * @return the fingerprint
+	 */
+	public static String of(Polytope border) {
+		return "border-"+Long.toHexString(hashBorder(border));
+	}
+	
+	/**
+	 * Computes a hash value of the IDs and coordinates of the given locations,
+	 * which does not depend on their order.
+	 * 
+	 * @param locations  the (aggregated) locations
+	 * @return the hash value
+	 */
+	public static long hashLocations(Collection<AggregatedLocation> locations) {
+		long[] hashes = new long[locations.size()];
+		int n = 0;
+		for (AggregatedLocation location : locations) {
+			long[] locationHashes = new long[location.getLocations().size()];
+			int k = 0;
+			for (Location l : location.getLocations()) {
+				long hash = mix(3L, l.getLongId());
+				hash = mix(hash, Double.doubleToLongBits(l.getLatLong().getLatitude()));
+				hash = mix(hash, Double.doubleToLongBits(l.getLatLong().getLongitude()));
+				locationHashes[k++] = hash;
+			}
+			Arrays.sort(locationHashes);
+			long hash = mix(0L, locationHashes.length);
+			for (long h : locationHashes) {
+				hash = mix(hash, h);
+			}
+			hashes[n++] = hash;
+		}
+		Arrays.sort(hashes);
+		long hash = mix(1L, hashes.length);
+		for (long h : hashes) {
+			hash = mix(hash, h);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Computes a hash value of the vertices of the given border polygon.
+	 * 
+	 * @param border  the border polygon
+	 * @return the hash value
+	 */
+	public static long hashBorder(Polytope border) {
+		Point[] vertices = border.getVertices();
+		long hash = mix(2L, vertices.length);
+		for (Point vertex : vertices) {
+			for (double coordinate : vertex.getCoordinates()) {
+				hash = mix(hash, Double.doubleToLongBits(coordinate));
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Combines a hash value with a further value (finalizer of MurmurHash3).
+	 * 
+	 * @param hash   the hash value
+	 * @param value  the further value
+	 * @return the combined hash value
+	 */
+	private static long mix(long hash, long value) {
+		long h = (hash * 31) ^ value;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+}
@@ -1,6 +1,10 @@
 package geoling.maps.util;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import geoling.maps.projection.MapProjection;
 import geoling.util.DoubleBox;
@@ -21,26 +25,72 @@ public class RectangularGrid {
 	/** The default number of grid points for the smallest axis of the border polygon. */
 	public static int DEFAULT_GRID_WIDTH = 150;
 	
-	/** A single point on the rectangular grid. */
+	/**
+	 * Determines whether the grid is constructed by rasterising the projected border
+	 * polygon, such that only grid elements on the boundary are intersected with the
+	 * border polygon. Otherwise, every grid element is intersected with the border polygon.
+	 */
+	public static boolean FAST_CONSTRUCTION = true;
+	
+	/** Value in the coverage bitmap for grid elements outside of the border polygon. */
+	private static final byte COVERAGE_OUTSIDE = 0;
+	
+	/** Value in the coverage bitmap for grid elements inside of the border polygon. */
+	private static final byte COVERAGE_INSIDE = 1;
+	
+	/** Value in the coverage bitmap for grid elements intersecting the boundary of the border polygon. */
+	private static final byte COVERAGE_BOUNDARY = 2;
+	
+	/**
+	 * A single point on the rectangular grid. The coordinates are stored in the
+	 * arrays of the grid, the rectangle is computed on demand.
+	 */
 	public class GridPoint {
-		private LatLong latLong;
-		private Polytope latLongRect;
+		private int index;
 		
-		private GridPoint(LatLong latLong, Polytope latLongRect) {
-			this.latLong     = latLong;
-			this.latLongRect = latLongRect;
+		private GridPoint(int index) {
+			this.index = index;
 		}
 		
 		public LatLong getLatLong() {
-			return latLong;
+			return new LatLong(latitudes[index], longitudes[index]);
 		}
 		
 		public Polytope getLatLongRect() {
-			return latLongRect;
+			return computeLatLongRect(columns[index], rows[index]);
 		}
 		
 		public RandomSet getLatLongRectIntersected() {
-			return borderIntersection.intersect(latLongRect);
+			return borderIntersection.intersect(getLatLongRect());
+		}
+		
+		/**
+		 * Returns the index of this grid point in the list of grid points.
+		 * 
+		 * @return the index
+		 */
+		public int getIndex() {
+			return index;
+		}
+		
+		/**
+		 * Returns the column of this grid point in the lattice of the grid, i.e., the
+		 * x-coordinate w.r.t. the map projection is <code>column*getResolution()</code> plus a constant.
+		 * 
+		 * @return the column (non-negative)
+		 */
+		public int getColumn() {
+			return columns[index];
+		}
+		
+		/**
+		 * Returns the row of this grid point in the lattice of the grid, i.e., the
+		 * y-coordinate w.r.t. the map projection is <code>row*getResolution()</code> plus a constant.
+		 * 
+		 * @return the row (non-negative)
+		 */
+		public int getRow() {
+			return rows[index];
 		}
 	}
 	
@@ -56,6 +106,21 @@ public class RectangularGrid {
 	/** The resolution (minimal distance between grid points) w.r.t. the map projection. */
 	private double resolution;
 	
+	/** The position of the grid point in column <code>0</code> and row <code>0</code> w.r.t. the map projection. */
+	private double[] origin;
+	
+	/** The latitudes of the grid points. */
+	private double[] latitudes;
+	
+	/** The longitudes of the grid points. */
+	private double[] longitudes;
+	
+	/** The columns of the grid points, i.e., the x-coordinate is <code>origin[0]+column*resolution</code>. */
+	private int[] columns;
+	
+	/** The rows of the grid points, i.e., the y-coordinate is <code>origin[1]+row*resolution</code>. */
+	private int[] rows;
+	
 	/** The list of grid points. */
 	private ArrayList<GridPoint> gridPoints;
 	
@@ -87,59 +152,304 @@ public class RectangularGrid {
 		final double[] max = mapProjection.projectLatLong(border.getBoundingBox().getMax());
 		final int iMax = (int)Math.ceil((max[0]-min[0])/resolution);
 		final int jMax = (int)Math.ceil((max[1]-min[1])/resolution);
+		this.origin = min;
 		
-		// objects only used for parallelization below
-		final MapProjection finalMapProjection = mapProjection;
-		final double finalResolution = resolution;
-		
-		// build grid points with their rectangles, save them into 2D-array
-		final GridPoint[][] gridPointsArray = new GridPoint[iMax+1][jMax+1];
-		ThreadedTodoWorker.workOnIndices(0, iMax, 1, new ThreadedTodoWorker.SimpleTodoWorker<Integer>() {
-			public void processTodoItem(Integer iObj) {
-				int i = iObj.intValue();
-				double x = min[0] + i*finalResolution;
-				
+		// coverage bitmap of the grid elements (column i, row j at index i*(jMax+1)+j)
+		final byte[] coverage;
+		if (FAST_CONSTRUCTION) {
+			coverage = rasteriseBorder(iMax, jMax);
+		} else {
+			coverage = new byte[(iMax+1)*(jMax+1)];
+			Arrays.fill(coverage, COVERAGE_BOUNDARY);
+		}
+		
+		// intersect grid elements on the boundary with the border polygon
+		ThreadedTodoWorker.workOnIndexRange(0, iMax, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int i) {
 				for (int j = 0; j <= jMax; j++) {
-					double y = min[1] + j*finalResolution;
-					
-					double[] latLong = finalMapProjection.revertProjection(new double[] { x, y });
-					
-					// generate rectangle for grid element
-					Point p1 = new Point(new double[] { x-finalResolution/2.0, y-finalResolution/2.0 });
-					Point p2 = new Point(new double[] { x+finalResolution/2.0, y-finalResolution/2.0 });
-					Point p3 = new Point(new double[] { x+finalResolution/2.0, y+finalResolution/2.0 });
-					Point p4 = new Point(new double[] { x-finalResolution/2.0, y+finalResolution/2.0 });
-					Polytope gridRectXY = new Polytope(new Point[] { p1, p2, p3, p4 });
-					Polytope gridRect = finalMapProjection.revertProjection(gridRectXY);
+					if (coverage[i*(jMax+1)+j] != COVERAGE_BOUNDARY) {
+						continue;
+					}
 					
 					// add only if border polygon and grid element intersect
 					boolean partiallyContained = false;
 					try {
-						partiallyContained = (borderIntersection.intersect(gridRect, null) != null);
+						partiallyContained = (borderIntersection.intersect(computeLatLongRect(i, j), null) != null);
 					} catch (MapBorderIntersection.IntersectionConsistsOfSeveralPolygons e) {
 						partiallyContained = true;
 					} catch (RuntimeException e) {
 						// numerical issues? ignore
 					}
-					if (partiallyContained) {
-						GridPoint gridPoint = new GridPoint(new LatLong(latLong[0], latLong[1]), gridRect);
-						gridPointsArray[i][j] = gridPoint;
-					}
+					coverage[i*(jMax+1)+j] = partiallyContained ? COVERAGE_INSIDE : COVERAGE_OUTSIDE;
 				}
 			}
 		});
 		
-		// collect grid points that are not null
+		// collect the grid points
 		// (note that this implementation guarantees a certain order of the grid points,
 		//  but this behavior may change in the future)
-		this.gridPoints = new ArrayList<GridPoint>((iMax+1)*(jMax+1));
-		for (int i = 0; i < gridPointsArray.length; i++) {
-			for (int j = 0; j < gridPointsArray[i].length; j++) {
-				if (gridPointsArray[i][j] != null) {
-					this.gridPoints.add(gridPointsArray[i][j]);
+		int count = 0;
+		for (int k = 0; k < coverage.length; k++) {
+			if (coverage[k] == COVERAGE_INSIDE) {
+				count++;
+			}
+		}
+		this.latitudes  = new double[count];
+		this.longitudes = new double[count];
+		this.columns    = new int[count];
+		this.rows       = new int[count];
+		this.gridPoints = new ArrayList<GridPoint>(count);
+		for (int k = 0; k < coverage.length; k++) {
+			if (coverage[k] == COVERAGE_INSIDE) {
+				int index = this.gridPoints.size();
+				this.columns[index] = k / (jMax+1);
+				this.rows[index]    = k % (jMax+1);
+				this.gridPoints.add(new GridPoint(index));
+			}
+		}
+		
+		// revert the projection of the grid points
+		ThreadedTodoWorker.workOnIndexRange(0, count-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int index) {
+				double[] latLong = RectangularGrid.this.mapProjection.revertProjection(new double[] { getX(columns[index]), getY(rows[index]) });
+				latitudes[index]  = latLong[0];
+				longitudes[index] = latLong[1];
+			}
+		});
+	}
+	
+	/**
+	 * Rasterises the projected border polygon: grid elements that are close to an
+	 * edge of the border polygon are marked as boundary elements, all other elements
+	 * are inside or outside, which is determined by a scanline fill (even-odd rule)
+	 * at the centres of the elements.
+	 * The edges of the border polygon are straight lines w.r.t. geographical coordinates,
+	 * but in general not w.r.t. the map projection. Therefore, they are subdivided until
+	 * the projected polyline deviates by at most <code>resolution/8</code> from the projected
+	 * edge, and every grid element within a distance of <code>resolution/4</code> of the
+	 * polyline is marked as boundary element. This ensures that grid elements are only
+	 * classified as inside or outside if they do not intersect the boundary of the border
+	 * polygon, i.e., the result is the same as intersecting every grid element.
+	 * 
+	 * @param iMax  the largest column index
+	 * @param jMax  the largest row index
+	 * @return the coverage bitmap (column <code>i</code>, row <code>j</code> at index <code>i*(jMax+1)+j</code>)
+	 */
+	private byte[] rasteriseBorder(int iMax, int jMax) {
+		double[][] polyline = projectBorder(this.resolution / 8.0);
+		double[] x = polyline[0];
+		double[] y = polyline[1];
+		int m = x.length;
+		double margin = this.resolution / 4.0;
+		
+		byte[] coverage = new byte[(iMax+1)*(jMax+1)];
+		double[][] crossings = new double[jMax+1][];
+		int[] crossingCounts = new int[jMax+1];
+		
+		for (int k = 0; k < m; k++) {
+			int l = (k+1 == m) ? 0 : (k+1);
+			double minY = Math.min(y[k], y[l]);
+			double maxY = Math.max(y[k], y[l]);
+			
+			// mark all grid elements within the margin around the edge as boundary (row by row)
+			int j1 = Math.max(0, (int)Math.floor((minY - margin - getY(0)) / this.resolution + 0.5));
+			int j2 = Math.min(jMax, (int)Math.floor((maxY + margin - getY(0)) / this.resolution + 0.5));
+			for (int j = j1; j <= j2; j++) {
+				double bandMinY = Math.max(minY, getY(j) - this.resolution/2.0 - margin);
+				double bandMaxY = Math.min(maxY, getY(j) + this.resolution/2.0 + margin);
+				double xa, xb;
+				if (y[k] == y[l]) {
+					xa = x[k];
+					xb = x[l];
+				} else {
+					xa = x[k] + (bandMinY - y[k]) * (x[l] - x[k]) / (y[l] - y[k]);
+					xb = x[k] + (bandMaxY - y[k]) * (x[l] - x[k]) / (y[l] - y[k]);
+				}
+				int i1 = Math.max(0, (int)Math.floor((Math.min(xa, xb) - margin - getX(0)) / this.resolution + 0.5));
+				int i2 = Math.min(iMax, (int)Math.floor((Math.max(xa, xb) + margin - getX(0)) / this.resolution + 0.5));
+				for (int i = i1; i <= i2; i++) {
+					coverage[i*(jMax+1)+j] = COVERAGE_BOUNDARY;
+				}
+			}
+			
+			// crossings of the edge with the horizontal lines through the centres of the rows
+			int j3 = Math.max(0, (int)Math.ceil((minY - getY(0)) / this.resolution) - 1);
+			int j4 = Math.min(jMax, (int)Math.ceil((maxY - getY(0)) / this.resolution));
+			for (int j = j3; j <= j4; j++) {
+				double rowY = getY(j);
+				if ((y[k] > rowY) != (y[l] > rowY)) {
+					if (crossings[j] == null) {
+						crossings[j] = new double[8];
+					} else if (crossingCounts[j] == crossings[j].length) {
+						crossings[j] = Arrays.copyOf(crossings[j], 2*crossingCounts[j]);
+					}
+					crossings[j][crossingCounts[j]++] = x[k] + (rowY - y[k]) * (x[l] - x[k]) / (y[l] - y[k]);
+				}
+			}
+		}
+		
+		// scanline fill of the elements that are not on the boundary
+		for (int j = 0; j <= jMax; j++) {
+			if (crossings[j] == null) {
+				continue;
+			}
+			Arrays.sort(crossings[j], 0, crossingCounts[j]);
+			for (int c = 0; c+1 < crossingCounts[j]; c += 2) {
+				int i1 = Math.max(0, (int)Math.ceil((crossings[j][c] - getX(0)) / this.resolution));
+				int i2 = Math.min(iMax, (int)Math.floor((crossings[j][c+1] - getX(0)) / this.resolution));
+				for (int i = i1; i <= i2; i++) {
+					if (coverage[i*(jMax+1)+j] == COVERAGE_OUTSIDE) {
+						coverage[i*(jMax+1)+j] = COVERAGE_INSIDE;
+					}
 				}
 			}
 		}
+		return coverage;
+	}
+	
+	/**
+	 * Projects the border polygon, where the edges are subdivided (in geographical
+	 * coordinates) until the projected polyline deviates by at most the given tolerance
+	 * from the projected edges.
+	 * 
+	 * @param tolerance  the maximal deviation w.r.t. the map projection
+	 * @return the x-coordinates (at index <code>0</code>) and y-coordinates (at index <code>1</code>) of the closed polyline
+	 */
+	private double[][] projectBorder(double tolerance) {
+		Point[] vertices = this.border.getVertices();
+		int m = vertices.length;
+		double[] x = new double[2*m];
+		double[] y = new double[2*m];
+		int count = 0;
+		for (int k = 0; k < m; k++) {
+			double[] a = vertices[k].getCoordinates();
+			double[] b = vertices[(k+1 == m) ? 0 : (k+1)].getCoordinates();
+			double[] xyA = this.mapProjection.projectLatLong(a);
+			double[] xyB = this.mapProjection.projectLatLong(b);
+			
+			// subdivide the edge from a to b (depth-first, such that the points are in order)
+			ArrayList<double[]> stack = new ArrayList<double[]>();
+			stack.add(new double[] { 0.0, 1.0, xyA[0], xyA[1], xyB[0], xyB[1] });
+			while (!stack.isEmpty()) {
+				double[] segment = stack.remove(stack.size()-1);
+				double t = (segment[0] + segment[1]) / 2.0;
+				double[] xyMid = this.mapProjection.projectLatLong(new double[] { a[0] + t*(b[0]-a[0]), a[1] + t*(b[1]-a[1]) });
+				double dx = xyMid[0] - (segment[2] + segment[4]) / 2.0;
+				double dy = xyMid[1] - (segment[3] + segment[5]) / 2.0;
+				if ((dx*dx + dy*dy > tolerance*tolerance) && (segment[1] - segment[0] > 1E-6)) {
+					stack.add(new double[] { t, segment[1], xyMid[0], xyMid[1], segment[4], segment[5] });
+					stack.add(new double[] { segment[0], t, segment[2], segment[3], xyMid[0], xyMid[1] });
+				} else {
+					if (count == x.length) {
+						x = Arrays.copyOf(x, 2*count);
+						y = Arrays.copyOf(y, 2*count);
+					}
+					x[count] = segment[2];
+					y[count] = segment[3];
+					count++;
+				}
+			}
+		}
+		return new double[][] { Arrays.copyOf(x, count), Arrays.copyOf(y, count) };
+	}
+	
+	/**
+	 * Returns the x-coordinate of the grid points in the given column w.r.t. the map projection.
+	 * 
+	 * @param column  the column
+	 * @return the x-coordinate
+	 */
+	private double getX(int column) {
+		return this.origin[0] + column*this.resolution;
+	}
+	
+	/**
+	 * Returns the y-coordinate of the grid points in the given row w.r.t. the map projection.
+	 * 
+	 * @param row  the row
+	 * @return the y-coordinate
+	 */
+	private double getY(int row) {
+		return this.origin[1] + row*this.resolution;
+	}
+	
+	/**
+	 * Computes the rectangle of the grid element in the given column and row,
+	 * given by geographical coordinates.
+	 * 
+	 * @param column  the column
+	 * @param row     the row
+	 * @return the rectangle
+	 */
+	private Polytope computeLatLongRect(int column, int row) {
+		double x = getX(column);
+		double y = getY(row);
+		Point p1 = new Point(new double[] { x-this.resolution/2.0, y-this.resolution/2.0 });
+		Point p2 = new Point(new double[] { x+this.resolution/2.0, y-this.resolution/2.0 });
+		Point p3 = new Point(new double[] { x+this.resolution/2.0, y+this.resolution/2.0 });
+		Point p4 = new Point(new double[] { x-this.resolution/2.0, y+this.resolution/2.0 });
+		Polytope gridRectXY = new Polytope(new Point[] { p1, p2, p3, p4 });
+		return this.mapProjection.revertProjection(gridRectXY);
+	}
+	
+	/**
+	 * Constructs an empty grid, all fields are set by <code>readFrom</code>.
+	 */
+	private RectangularGrid() {
+	}
+	
+	/**
+	 * Writes the grid points of this grid to the given stream (see <code>MapCacheFile</code>).
+	 * 
+	 * @param out  the output stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeDouble(this.resolution);
+		out.writeDouble(this.origin[0]);
+		out.writeDouble(this.origin[1]);
+		out.writeInt(this.gridPoints.size());
+		for (int index = 0; index < this.gridPoints.size(); index++) {
+			out.writeInt(this.columns[index]);
+			out.writeInt(this.rows[index]);
+			out.writeDouble(this.latitudes[index]);
+			out.writeDouble(this.longitudes[index]);
+		}
+	}
+	
+	/**
+	 * Reads a grid that was written by <code>writeTo</code>.
+	 * 
+	 * @param in            the input stream
+	 * @param border        the border polygon of the map
+	 * @param mapProjection the map projection method
+	 * @return the grid
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static RectangularGrid readFrom(DataInputStream in, Polytope border, MapProjection mapProjection) throws IOException {
+		RectangularGrid result = new RectangularGrid();
+		result.border             = border;
+		result.borderIntersection = MapBorderIntersectionCache.getHelperObject(border);
+		result.mapProjection      = mapProjection;
+		result.resolution         = in.readDouble();
+		result.origin             = new double[] { in.readDouble(), in.readDouble() };
+		int count = in.readInt();
+		if (!(result.resolution > 0.0) || (count < 0)) {
+			throw new IOException("Invalid grid.");
+		}
+		result.latitudes  = new double[count];
+		result.longitudes = new double[count];
+		result.columns    = new int[count];
+		result.rows       = new int[count];
+		result.gridPoints = new ArrayList<GridPoint>(count);
+		for (int index = 0; index < count; index++) {
+			result.columns[index]    = in.readInt();
+			result.rows[index]       = in.readInt();
+			result.latitudes[index]  = in.readDouble();
+			result.longitudes[index] = in.readDouble();
+			result.gridPoints.add(result.new GridPoint(index));
+		}
+		return result;
 	}
 	
 	/**
@@ -189,4 +499,24 @@ public class RectangularGrid {
 		return this.gridPoints;
 	}
 	
+	/**
+	 * Returns the latitudes of all grid points, in the same order as <code>getGridPoints()</code>.
+	 * Note that the array is not copied, it must not be modified.
+	 * 
+	 * @return the latitudes of the grid points
+	 */
+	public double[] getLatitudes() {
+		return this.latitudes;
+	}
+	
+	/**
+	 * Returns the longitudes of all grid points, in the same order as <code>getGridPoints()</code>.
+	 * Note that the array is not copied, it must not be modified.
+	 * 
+	 * @return the longitudes of the grid points
+	 */
+	public double[] getLongitudes() {
+		return this.longitudes;
+	}
+	
 }
\ No newline at end of file
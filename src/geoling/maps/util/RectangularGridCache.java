@@ -1,13 +1,15 @@
 package geoling.maps.util;
 
 import geoling.maps.projection.MapProjection;
+import geoling.util.SharedCache;
 import geoling.util.sim.grain.Polytope;
 
-import java.util.LinkedList;
-
 /**
  * Class for caching of grids for maps, because we want to avoid recomputing
- * them all the time.
+ * them all the time. The grids are identified by the fingerprint of their
+ * border polygon and map projection (see <code>MapFingerprint</code>).
+ * Computed grids are also stored in cache files (see <code>MapCacheFile</code>),
+ * which are used after a restart.
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
@@ -16,8 +18,15 @@ public class RectangularGridCache {
 	/** Maximal number of grids that are held in the cache. */
 	private static final int MAX_SIZE = 10;
 	
+	/** Maximal total number of grid points of the grids that are held in the cache. */
+	private static final long MAX_WEIGHT = 1000000;
+	
 	/** The cached grids. */
-	private static LinkedList<RectangularGrid> cachedGrids = new LinkedList<RectangularGrid>();
+	private static final SharedCache<RectangularGrid> cache = new SharedCache<RectangularGrid>("Grids", MAX_SIZE, MAX_WEIGHT, new SharedCache.Weigher<RectangularGrid>() {
+		public long getWeight(RectangularGrid grid) {
+			return grid.getGridPoints().size();
+		}
+	});
 	
 	/**
 	 * Returns a grid for the given border polygon with the specified
@@ -27,29 +36,27 @@ public class RectangularGridCache {
 	 * @param mapProjection the map projection method to use
 	 * @return the grid
 	 */
-	public static synchronized RectangularGrid getGrid(Polytope border, MapProjection mapProjection) {
-		// we look for a grid that has:
-		// - the same border polygon, currently only checked by area and circumference, which should be sufficient
-		// - the same map projection type
-		for (RectangularGrid grid : cachedGrids) {
-			if (!MapBorder.bordersAreEqual(grid.getBorder(), border)) {
-				continue;
+	public static RectangularGrid getGrid(final Polytope border, final MapProjection mapProjection) {
+		final String fingerprint = MapFingerprint.of(border, mapProjection)+"_width-"+RectangularGrid.DEFAULT_GRID_WIDTH;
+		return cache.get(fingerprint, new SharedCache.Loader<RectangularGrid>() {
+			public RectangularGrid load() {
+				RectangularGrid grid = MapCacheFile.readGrid(fingerprint, border, mapProjection);
+				if (grid == null) {
+					grid = new RectangularGrid(border, mapProjection);
+					MapCacheFile.writeGrid(fingerprint, grid);
+				}
+				return grid;
 			}
-			
-			if (!mapProjection.isSimilar(grid.getMapProjection())) {
-				continue;
-			}
-			
-			return grid;
-		}
-		
-		if (cachedGrids.size() >= MAX_SIZE) {
-			cachedGrids.removeLast();
-		}
-		
-		RectangularGrid result = new RectangularGrid(border, mapProjection);
-		cachedGrids.addFirst(result);
-		return result;
+		});
+	}
+	
+	/**
+	 * Returns a string with the number of cached grids and the hit/miss/eviction counts.
+	 * 
+	 * @return the statistics of the cache
+	 */
+	public static String getStatistics() {
+		return cache.toString();
 	}
 	
 }
\ No newline at end of file
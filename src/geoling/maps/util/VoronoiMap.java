@@ -1,6 +1,10 @@
 package geoling.maps.util;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -21,8 +25,7 @@ import geoling.util.sim.grain.LineSegment;
 import geoling.util.sim.grain.MarkedPoint;
 import geoling.util.sim.grain.Point;
 import geoling.util.sim.grain.Polytope;
-import geoling.util.sim.util.RandomSet;
-import geoling.util.tessellation.LaguerreDelaunayTessellation2D;
+import geoling.util.tessellation.DelaunayTriangulation2D;
 import geoling.util.tessellation.LaguerreTessellation2D;
 
 /**
@@ -80,8 +83,24 @@ public class VoronoiMap {
 	/** Mapping of location to internal array index. */
 	private HashMap<AggregatedLocation,Integer> locationToArrayIndex;
 	
-	/** Array containing the separating edge for each pair of cells or null if the cells aren't neighbors*/
-	private LineSegment[][] edges;
+	/**
+	 * Offsets of the neighbours of every cell in <code>neighbourIndices</code> (compressed
+	 * sparse rows): the neighbours of cell <code>i</code> are stored at the positions
+	 * <code>neighbourOffsets[i]</code> to <code>neighbourOffsets[i+1]-1</code>.
+	 */
+	private int[] neighbourOffsets;
+	
+	/** Array indices of the neighbouring cells, sorted in ascending order for every cell. */
+	private int[] neighbourIndices;
+	
+	/**
+	 * Index of the separating edge for every entry of <code>neighbourIndices</code>, i.e.,
+	 * both directions of a pair of neighbours refer to the same edge.
+	 */
+	private int[] neighbourEdges;
+	
+	/** Start and end point coordinates (x1, y1, x2, y2) of every separating edge. */
+	private double[] edgeCoordinates;
 	
 	/**
 	 * Constructs a Voronoi map for the given locations, uses the given border.
@@ -133,46 +152,47 @@ public class VoronoiMap {
 		}
 		
 		// namespace for computing (approximate) neighbourhood of cells;
-		final boolean[][] roughNeighbourhood = new boolean[locationCells.size()][locationCells.size()];
+		// the neighbours of every cell are collected in a separate row, because the
+		// Delaunay triangulation has only O(n) edges (note that the indices of the
+		// points in the triangulation are the array indices of the cells)
+		final int n = locationCells.size();
+		int[][] roughRows = new int[n][];
+		int[] roughCounts = new int[n];
 		try {
-			RandomSet ldt = LaguerreDelaunayTessellation2D.computeLaguerreDelaunayTessellation(xyPointsMarked, true, 1E-9);
-			for (Iterator<?> it = ldt.iterator(); it.hasNext(); ) {
-				Point[] vertices = ((ConvexPolytope) it.next()).getVertices();
-				for (int i = 0; i < vertices.length; i++) {
-					int index1 = xyPointsMarked.indexOf(new MarkedPoint(vertices[i].getCoordinates(), 1.0));
-					int index2 = xyPointsMarked.indexOf(new MarkedPoint(vertices[(i+1)%vertices.length].getCoordinates(), 1.0));
-					roughNeighbourhood[index1][index2] = true;
-					roughNeighbourhood[index2][index1] = true;
-				}
+			DelaunayTriangulation2D triangulation = DelaunayTriangulation2D.fromMarkedPoints(xyPointsMarked);
+			for (int i = 0; i < n; i++) {
+				roughRows[i] = triangulation.getNeighbours(i);
+				roughCounts[i] = roughRows[i].length;
 			}
 		} catch (RuntimeException e) {
-			// Delaunay tessellation runtime exception
-			// => fallback: just set everything in "roughNeighbourhood" to true, code below will be slow!
-			for (int i = 0; i < roughNeighbourhood.length; i++) {
-				for (int j = 0; j < roughNeighbourhood[i].length; j++) {
-					roughNeighbourhood[i][j] = (i != j);
+			// Delaunay triangulation runtime exception (only for degenerate input, e.g. if all locations are collinear)
+			// => fallback: every other cell is a potential neighbour, code below will be slow!
+			for (int i = 0; i < n; i++) {
+				roughRows[i] = new int[n-1];
+				for (int j = 0; j < n-1; j++) {
+					roughRows[i][j] = (j < i) ? j : (j+1);
 				}
+				roughCounts[i] = n-1;
 			}
 		}
+		final int[][] roughNeighbours = toSortedUniqueRows(roughRows, roughCounts);
+		roughRows = null;
 		
-		// note: "roughNeighbourhood" may still contain "false" neighbors due to edge effects
-		//       (but, for for all real neighbours (i,j) it holds that roughNeighbourhood[i][j]==true)
+		// note: "roughNeighbours" may still contain "false" neighbors due to edge effects
+		//       (but, for for all real neighbours (i,j) it holds that roughNeighbours[i] contains j)
 		
 		// check that every location has at least one neighbour
 		// (otherwise, there is some problem in the Laguerre-Delaunay construction, or, more precisely, in the set of points)
-		for (int i = 0; i < roughNeighbourhood.length; i++) {
-			boolean found = false;
-			for (int j = 0; j < roughNeighbourhood[i].length; j++) {
-				if (roughNeighbourhood[i][j]) {
-					found = true;
-					break;
-				}
-			}
-			if (!found) {
+		for (int i = 0; i < n; i++) {
+			if (roughNeighbours[i].length == 0) {
 				throw new RuntimeException("Problem detected: every location must have at least one neighbour in the Voronoi diagram. Maybe there are two locations with the same geographical coordinates?");
 			}
 		}
 		
+		// edges of every cell (and their bounding boxes), used below for determining the separating edges
+		final Geometry2D.LineSegment[][] cellEdges = new Geometry2D.LineSegment[n][];
+		final double[][] cellEdgeBoxes = new double[n][];
+		
 		// namespace for computing the Voronoi cells
 		{
 			final ArrayList<MarkedPoint> xyPointsMarkedFinal = new ArrayList<MarkedPoint>(xyPointsMarked);
@@ -188,11 +208,9 @@ public class VoronoiMap {
 				public void processTodoItem(LocationCell locationCell) {
 					// get Index and determine (potential) neighbors
 					int i = locationToArrayIndex.get(locationCell.getLocation());
-					ArrayList<MarkedPoint> neighbours = new ArrayList<MarkedPoint>();
-					for (int j = 0; j < roughNeighbourhood[0].length; j++) {
-						if (roughNeighbourhood[i][j]) {
-							neighbours.add(xyPointsMarkedFinal.get(j));
-						}
+					ArrayList<MarkedPoint> neighbours = new ArrayList<MarkedPoint>(roughNeighbours[i].length);
+					for (int j : roughNeighbours[i]) {
+						neighbours.add(xyPointsMarkedFinal.get(j));
 					}
 					// build Voronoi cell
 					Geometry2D.ConvexPolygon xyVoronoiCell = LaguerreTessellation2D.constructLaguerreCell(xyPointsMarkedFinal.get(i),
@@ -209,95 +227,318 @@ public class VoronoiMap {
 					} else {
 						locationCell.voronoiCell = new Polytope(voronoiCell.getVertices(), true);
 					}
+					
+					// collect the edges once, instead of once for every neighbour
+					ArrayList<Geometry2D.LineSegment> edges = new ArrayList<Geometry2D.LineSegment>();
+					for (Iterator<?> it = locationCell.voronoiCell.getEdges().iterator(); it.hasNext(); ) {
+						LineSegment edge = (LineSegment) it.next();
+						edges.add(new Geometry2D.LineSegment(edge.getStartPoint().toGeo2DPoint(), edge.getEndPoint().toGeo2DPoint()));
+					}
+					cellEdges[i] = edges.toArray(new Geometry2D.LineSegment[edges.size()]);
+					cellEdgeBoxes[i] = getBoundingBoxes(cellEdges[i]);
 				}
 			});
 		}
 		
 		// namespace for collecting (inner) edges of cells and determining exact neighbourhoods
 		{
-			edges = new LineSegment[roughNeighbourhood.length][roughNeighbourhood.length];
-			for (int i = 0; i < roughNeighbourhood.length; i++) {
-				for (int j = 0; j < i; j++) {
-					if (roughNeighbourhood[i][j]) {
-						Polytope cell1 = locationCells.get(i).voronoiCell;
-						Polytope cell2 = locationCells.get(j).voronoiCell;
-						ArrayList<Geometry2D.LineSegment> commonSegments = new ArrayList<Geometry2D.LineSegment>();
-						for (Iterator<?> it1 = cell1.getEdges().iterator(); it1.hasNext(); ) {
-							LineSegment a = (LineSegment) it1.next();
-							Point aStart = a.getStartPoint();
-							Point aEnd = a.getEndPoint();
-							Geometry2D.LineSegment a_geo2D = new Geometry2D.LineSegment(aStart.toGeo2DPoint(), 
-																						aEnd.toGeo2DPoint());
-							for (Iterator<?> it2 = cell2.getEdges().iterator(); it2.hasNext(); ) {
-								LineSegment b = (LineSegment) it2.next();
-								Point bStart = b.getStartPoint();
-								Point bEnd = b.getEndPoint();
-								Geometry2D.LineSegment b_geo2D = new Geometry2D.LineSegment(bStart.toGeo2DPoint(), 
-										  													bEnd.toGeo2DPoint());
-								try {
-									Geometry2D.GeometricObject intersection = Utilities.intersectSegments(a_geo2D, b_geo2D);
-									// cells are adjacent only if the intersection is a line segment
-									
-									if (intersection instanceof Geometry2D.LineSegment) {
-										// we want to be able to assume that two adjacent cells have the same line
-										// segment, i.e., the same start/end points, this has to be true for
-										// Voronoi cells!
-										commonSegments.add((Geometry2D.LineSegment) intersection);
-									}
-								} catch (IllegalArgumentException exception) {
-									// exception occurs e.g. if Utilities.intersectSegments tries to construct a line segment
-									// with identical start and end point
-								}
-							}
-						}
-						if (commonSegments.size() == 1) {
-							LineSegment segment = commonSegments.get(0).toLineSegment(); 
-							edges[i][j] = segment;
-							edges[j][i] = segment;
-						} else if (commonSegments.size() > 1) {
-							// due to numerical problems (e.g., intersection with non-convex border polygon) there may
-							// be two or more line segments between a single pair of cells - we just use one large
-							// segment instead of them
-							
-							// collect start and endpoints
-							ArrayList<Geometry2D.Point> endPoints = new ArrayList<Geometry2D.Point>();
-							for (Geometry2D.LineSegment segment : commonSegments) {
-								endPoints.add(segment.p1);
-								endPoints.add(segment.p2);
-							}
-							// compute points with max distance
-							double maxDist = Double.NEGATIVE_INFINITY;
-							int maxIndex1 = 0;
-							int maxIndex2 = 0;
-							for (int k = 0; k < endPoints.size(); k++) {
-								for (int l = 0; l < k; l++) {
-									double dist = endPoints.get(k).distanceTo(endPoints.get(l));
-									if (dist > maxDist) {
-										maxDist = dist;
-										maxIndex1 = k;
-										maxIndex2 = l;
-									}
-								}
-							}
-							Geometry2D.LineSegment temp = new Geometry2D.LineSegment(endPoints.get(maxIndex1), endPoints.get(maxIndex2));
-							LineSegment maxSegment = temp.toLineSegment();
-							edges[i][j] = maxSegment;
-							edges[j][i] = maxSegment;
-							
-							//System.err.println("Warning: Found " + commonSegments.size() + " common segments for cells " + i + " and " + j + ":");
-							//System.err.println(" -> Added segment connecting endpoints with maximum distance!");
-							//System.err.println("Common segments:");
-							//for (Geometry2D.LineSegment segment : commonSegments) {
-							//	System.err.println(segment);
-							//}
-							//System.err.println("Added segment: " + maxSegment);
+			// the separating edges are determined only for the pairs of the Delaunay triangulation,
+			// i.e., for the neighbours j<i in the row of cell i
+			final LineSegment[][] rowSegments = new LineSegment[n][];
+			ThreadedTodoWorker.workOnIndexRange(0, n-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+				public void processTodoIndex(int i) {
+					int count = 0;
+					while ((count < roughNeighbours[i].length) && (roughNeighbours[i][count] < i)) {
+						count++;
+					}
+					rowSegments[i] = new LineSegment[count];
+					for (int k = 0; k < count; k++) {
+						int j = roughNeighbours[i][k];
+						rowSegments[i][k] = computeSeparatingEdge(cellEdges[i], cellEdgeBoxes[i], cellEdges[j], cellEdgeBoxes[j]);
+					}
+				}
+			});
+			
+			int[] edgeCells = new int[0];
+			double[] coordinates = new double[0];
+			int numberOfEdges = 0;
+			int[] counts = new int[n];
+			for (int i = 0; i < n; i++) {
+				for (int k = 0; k < rowSegments[i].length; k++) {
+					int j = roughNeighbours[i][k];
+					LineSegment segment = rowSegments[i][k];
+					if (segment != null) {
+						if (numberOfEdges*2 == edgeCells.length) {
+							edgeCells = Arrays.copyOf(edgeCells, Math.max(16, 2*edgeCells.length));
+							coordinates = Arrays.copyOf(coordinates, 2*edgeCells.length);
 						}
+						double[] start = segment.getStartPoint().getCoordinates();
+						double[] end = segment.getEndPoint().getCoordinates();
+						edgeCells[2*numberOfEdges]     = i;
+						edgeCells[2*numberOfEdges+1]   = j;
+						coordinates[4*numberOfEdges]   = start[0];
+						coordinates[4*numberOfEdges+1] = start[1];
+						coordinates[4*numberOfEdges+2] = end[0];
+						coordinates[4*numberOfEdges+3] = end[1];
+						numberOfEdges++;
+						counts[i]++;
+						counts[j]++;
 					}
 				}
 			}
+			
+			// build the compressed sparse rows; note that the rows are sorted automatically, because
+			// the edges are ordered by (i,j) with j<i: in row r, all entries j<r (added with i=r)
+			// precede the entries i>r (added later, in ascending order of i)
+			this.neighbourOffsets = new int[n+1];
+			for (int i = 0; i < n; i++) {
+				this.neighbourOffsets[i+1] = this.neighbourOffsets[i] + counts[i];
+			}
+			this.neighbourIndices = new int[2*numberOfEdges];
+			this.neighbourEdges = new int[2*numberOfEdges];
+			int[] positions = Arrays.copyOf(this.neighbourOffsets, n);
+			for (int e = 0; e < numberOfEdges; e++) {
+				int i = edgeCells[2*e];
+				int j = edgeCells[2*e+1];
+				this.neighbourIndices[positions[i]] = j;
+				this.neighbourEdges[positions[i]++] = e;
+				this.neighbourIndices[positions[j]] = i;
+				this.neighbourEdges[positions[j]++] = e;
+			}
+			this.edgeCoordinates = Arrays.copyOf(coordinates, 4*numberOfEdges);
 		}
 	}
 	
+	/**
+	 * Sorts the used entries of every row and removes duplicates.
+	 * 
+	 * @param rows    the rows
+	 * @param counts  the number of used entries of every row
+	 * @return the sorted rows without duplicates, trimmed to their length
+	 */
+	private static int[][] toSortedUniqueRows(int[][] rows, int[] counts) {
+		int[][] result = new int[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			int[] row = Arrays.copyOf(rows[i], counts[i]);
+			Arrays.sort(row);
+			int m = 0;
+			for (int k = 0; k < row.length; k++) {
+				if ((m == 0) || (row[k] != row[m-1])) {
+					row[m++] = row[k];
+				}
+			}
+			result[i] = (m == row.length) ? row : Arrays.copyOf(row, m);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the bounding boxes of the given line segments.
+	 * 
+	 * @param segments  the line segments
+	 * @return the bounding boxes, stored as (x_min, y_min, x_max, y_max) for every segment
+	 */
+	private static double[] getBoundingBoxes(Geometry2D.LineSegment[] segments) {
+		double[] boxes = new double[4*segments.length];
+		for (int k = 0; k < segments.length; k++) {
+			boxes[4*k]   = Math.min(segments[k].p1.x, segments[k].p2.x);
+			boxes[4*k+1] = Math.min(segments[k].p1.y, segments[k].p2.y);
+			boxes[4*k+2] = Math.max(segments[k].p1.x, segments[k].p2.x);
+			boxes[4*k+3] = Math.max(segments[k].p1.y, segments[k].p2.y);
+		}
+		return boxes;
+	}
+	
+	/**
+	 * Computes the edge separating two cells, given by their edges.
+	 * 
+	 * @param edges1  the edges of the first cell
+	 * @param boxes1  the bounding boxes of the edges of the first cell
+	 * @param edges2  the edges of the second cell
+	 * @param boxes2  the bounding boxes of the edges of the second cell
+	 * @return the separating edge or <code>null</code> if the cells aren't neighbours
+	 */
+	private static LineSegment computeSeparatingEdge(Geometry2D.LineSegment[] edges1, double[] boxes1,
+	                                                 Geometry2D.LineSegment[] edges2, double[] boxes2) {
+		ArrayList<Geometry2D.LineSegment> commonSegments = new ArrayList<Geometry2D.LineSegment>();
+		for (int k = 0; k < edges1.length; k++) {
+			for (int l = 0; l < edges2.length; l++) {
+				// skip pairs of edges whose bounding boxes are clearly disjoint (the tolerance is
+				// larger than the one used by Utilities.intersectSegments)
+				double tolerance = 1E-8 * Math.max(1.0, Math.max(Math.abs(boxes1[4*k+2]), Math.abs(boxes1[4*k+3])));
+				if ((boxes1[4*k] > boxes2[4*l+2] + tolerance) || (boxes2[4*l] > boxes1[4*k+2] + tolerance) ||
+				    (boxes1[4*k+1] > boxes2[4*l+3] + tolerance) || (boxes2[4*l+1] > boxes1[4*k+3] + tolerance)) {
+					continue;
+				}
+				try {
+					Geometry2D.GeometricObject intersection = Utilities.intersectSegments(edges1[k], edges2[l]);
+					// cells are adjacent only if the intersection is a line segment
+					
+					if (intersection instanceof Geometry2D.LineSegment) {
+						// we want to be able to assume that two adjacent cells have the same line
+						// segment, i.e., the same start/end points, this has to be true for
+						// Voronoi cells!
+						commonSegments.add((Geometry2D.LineSegment) intersection);
+					}
+				} catch (IllegalArgumentException exception) {
+					// exception occurs e.g. if Utilities.intersectSegments tries to construct a line segment
+					// with identical start and end point
+				}
+			}
+		}
+		if (commonSegments.size() == 1) {
+			return commonSegments.get(0).toLineSegment();
+		} else if (commonSegments.size() > 1) {
+			// due to numerical problems (e.g., intersection with non-convex border polygon) there may
+			// be two or more line segments between a single pair of cells - we just use one large
+			// segment instead of them
+			
+			// collect start and endpoints
+			ArrayList<Geometry2D.Point> endPoints = new ArrayList<Geometry2D.Point>();
+			for (Geometry2D.LineSegment segment : commonSegments) {
+				endPoints.add(segment.p1);
+				endPoints.add(segment.p2);
+			}
+			// compute points with max distance
+			double maxDist = Double.NEGATIVE_INFINITY;
+			int maxIndex1 = 0;
+			int maxIndex2 = 0;
+			for (int k = 0; k < endPoints.size(); k++) {
+				for (int l = 0; l < k; l++) {
+					double dist = endPoints.get(k).distanceTo(endPoints.get(l));
+					if (dist > maxDist) {
+						maxDist = dist;
+						maxIndex1 = k;
+						maxIndex2 = l;
+					}
+				}
+			}
+			Geometry2D.LineSegment temp = new Geometry2D.LineSegment(endPoints.get(maxIndex1), endPoints.get(maxIndex2));
+			return temp.toLineSegment();
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Constructs an empty Voronoi map, all fields are set by <code>readFrom</code>.
+	 */
+	private VoronoiMap() {
+	}
+	
+	/**
+	 * Writes the cells and the separating edges of this Voronoi map to the given stream
+	 * (see <code>MapCacheFile</code>). The locations are identified by their IDs.
+	 * 
+	 * @param out  the output stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		int n = this.locationCells.size();
+		out.writeInt(n);
+		for (LocationCell cell : this.locationCells) {
+			out.writeLong(cell.getLocation().getId());
+			Point[] vertices = cell.getVoronoiCell().getVertices();
+			out.writeInt(vertices.length);
+			for (Point vertex : vertices) {
+				out.writeDouble(vertex.getCoordinates()[0]);
+				out.writeDouble(vertex.getCoordinates()[1]);
+			}
+		}
+		out.writeInt(getNumberOfEdges());
+		for (int i = 0; i <= n; i++) {
+			out.writeInt(this.neighbourOffsets[i]);
+		}
+		for (int k = 0; k < this.neighbourIndices.length; k++) {
+			out.writeInt(this.neighbourIndices[k]);
+			out.writeInt(this.neighbourEdges[k]);
+		}
+		for (int k = 0; k < this.edgeCoordinates.length; k++) {
+			out.writeDouble(this.edgeCoordinates[k]);
+		}
+	}
+	
+	/**
+	 * Reads a Voronoi map that was written by <code>writeTo</code>.
+	 * 
+	 * @param in            the input stream
+	 * @param locations     the set of (aggregated) locations, which has to contain the
+	 *                      locations of all cells
+	 * @param border        the border polygon
+	 * @param mapProjection the projection method for the coordinates
+	 * @return the Voronoi map
+	 * @throws IOException if an I/O error occurs or the data does not match the locations
+	 */
+	public static VoronoiMap readFrom(DataInputStream in, Collection<AggregatedLocation> locations, Polytope border, MapProjection mapProjection) throws IOException {
+		HashMap<Long,AggregatedLocation> locationsById = new HashMap<Long,AggregatedLocation>();
+		for (AggregatedLocation location : locations) {
+			if (locationsById.put(location.getId(), location) != null) {
+				throw new IOException("Locations are not identified uniquely by their IDs.");
+			}
+		}
+		
+		VoronoiMap result = new VoronoiMap();
+		result.locations          = new ArrayList<AggregatedLocation>(locations);
+		result.border             = border;
+		result.borderIntersection = null;
+		result.window             = MapBorder.getWindow(border);
+		result.mapProjection      = mapProjection;
+		
+		int n = in.readInt();
+		if ((n < 0) || (n > locations.size())) {
+			throw new IOException("Invalid number of cells.");
+		}
+		result.locationCells = new ArrayList<LocationCell>(n);
+		result.locationToArrayIndex = new HashMap<AggregatedLocation,Integer>();
+		for (int i = 0; i < n; i++) {
+			AggregatedLocation location = locationsById.get(in.readLong());
+			int count = in.readInt();
+			if ((location == null) || (count < 0)) {
+				throw new IOException("Invalid cell.");
+			}
+			Point[] vertices = new Point[count];
+			for (int k = 0; k < count; k++) {
+				double latitude = in.readDouble();
+				double longitude = in.readDouble();
+				vertices[k] = new Point(new double[] { latitude, longitude });
+			}
+			LocationCell cell = result.new LocationCell(location, Conversion.toGeom2DPoint(location.getLatLong()), i);
+			cell.voronoiCell = new Polytope(vertices, true);
+			result.locationCells.add(cell);
+			result.locationToArrayIndex.put(location, i);
+		}
+		
+		int numberOfEdges = in.readInt();
+		if (numberOfEdges < 0) {
+			throw new IOException("Invalid number of edges.");
+		}
+		result.neighbourOffsets = new int[n+1];
+		for (int i = 0; i <= n; i++) {
+			result.neighbourOffsets[i] = in.readInt();
+			if ((i > 0) && (result.neighbourOffsets[i] < result.neighbourOffsets[i-1])) {
+				throw new IOException("Invalid neighbourhood.");
+			}
+		}
+		if ((result.neighbourOffsets[0] != 0) || (result.neighbourOffsets[n] != 2*numberOfEdges)) {
+			throw new IOException("Invalid neighbourhood.");
+		}
+		result.neighbourIndices = new int[2*numberOfEdges];
+		result.neighbourEdges = new int[2*numberOfEdges];
+		for (int k = 0; k < 2*numberOfEdges; k++) {
+			result.neighbourIndices[k] = in.readInt();
+			result.neighbourEdges[k] = in.readInt();
+			if ((result.neighbourIndices[k] < 0) || (result.neighbourIndices[k] >= n) ||
+			    (result.neighbourEdges[k] < 0) || (result.neighbourEdges[k] >= numberOfEdges)) {
+				throw new IOException("Invalid neighbourhood.");
+			}
+		}
+		result.edgeCoordinates = new double[4*numberOfEdges];
+		for (int k = 0; k < 4*numberOfEdges; k++) {
+			result.edgeCoordinates[k] = in.readDouble();
+		}
+		return result;
+	}
+	
 	/**
 	 * Constructs a Voronoi map for the given locations, uses the convex hull
 	 * of the locations as border.
@@ -429,7 +670,7 @@ public class VoronoiMap {
 		if (index2 == null) {
 			throw new IllegalArgumentException("Location 2 \""+location2+"\" does not exist in the Voronoi map!");
 		}
-		return (this.edges[index1][index2] != null);
+		return (findNeighbour(index1, index2) >= 0);
 	}
 	
 	/**
@@ -439,8 +680,8 @@ public class VoronoiMap {
 	 * @param location1		the location of the first cell
 	 * @param location2		the location of the second cell
 	 * @return the edge separating the two cells or <code>null</code> if they aren't neighbours;
-	 *         note that exactly the same object is returned regardless of the order of the two
-	 *         locations
+	 *         note that the same edge (i.e., with the same start and end point) is returned
+	 *         regardless of the order of the two locations
 	 */
 	public LineSegment getSeparatingEdge(AggregatedLocation location1, AggregatedLocation location2) {
 		Integer index1 = locationToArrayIndex.get(location1);
@@ -451,10 +692,12 @@ public class VoronoiMap {
 		if (index2 == null) {
 			throw new IllegalArgumentException("Location 2 \""+location2+"\" does not exist in the Voronoi map!");
 		}
-		if (this.edges[index1][index2] == null) {
+		int pos = findNeighbour(index1, index2);
+		if (pos < 0) {
 			return null;
 		} else {
-			return (this.edges[index1][index2]).clone();
+			int e = 4*this.neighbourEdges[pos];
+			return new LineSegment(this.edgeCoordinates[e], this.edgeCoordinates[e+1], this.edgeCoordinates[e+2], this.edgeCoordinates[e+3], true);
 		}
 	}
 	
@@ -465,8 +708,8 @@ public class VoronoiMap {
 	 * @param cell1		the first cell
 	 * @param cell2		the second cell
 	 * @return the edge separating the two cells or <code>null</code> if they aren't neighbours;
-	 *         note that exactly the same object is returned regardless of the order of the two
-	 *         locations
+	 *         note that the same edge (i.e., with the same start and end point) is returned
+	 *         regardless of the order of the two locations
 	 */
 	public LineSegment getSeparatingEdge(LocationCell cell1, LocationCell cell2) {
 		return getSeparatingEdge(cell1.getLocation(), cell2.getLocation());
@@ -479,15 +722,21 @@ public class VoronoiMap {
 	 * @return number of inner edges
 	 */
 	public int getNumberOfEdges() {
-		int n = 0;
-		for (int i = 0; i < this.edges.length; i++) {
-			for (int j = 0; j < i; j++) {
-				if (this.edges[i][j] != null) {
-					n++;
-				}
-			}
-		}
-		return n;
+		// every edge is stored for both cells
+		return this.neighbourIndices.length / 2;
+	}
+	
+	/**
+	 * Returns the position of a neighbour in <code>neighbourIndices</code>.
+	 * 
+	 * @param index1  the array index of the first cell
+	 * @param index2  the array index of the second cell
+	 * @return the position of the second cell in the neighbours of the first cell,
+	 *         or a negative value if the cells aren't neighbours
+	 */
+	private int findNeighbour(int index1, int index2) {
+		int pos = Arrays.binarySearch(this.neighbourIndices, this.neighbourOffsets[index1], this.neighbourOffsets[index1+1], index2);
+		return (pos >= 0) ? pos : -1;
 	}
 	
 }
@@ -2,25 +2,39 @@ package geoling.maps.util;
 
 import geoling.locations.util.AggregatedLocation;
 import geoling.maps.projection.MapProjection;
+import geoling.util.SharedCache;
 import geoling.util.sim.grain.Polytope;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
 
 /**
  * Class for caching of Voronoi maps, because we want to avoid recomputing
- * them all the time.
+ * them all the time. The Voronoi maps are identified by the fingerprint of
+ * their locations, border polygon and map projection (see <code>MapFingerprint</code>),
+ * and every Voronoi map is computed only once, even if it is requested by
+ * several threads at the same time. Computed Voronoi maps are also stored in
+ * cache files (see <code>MapCacheFile</code>), which are used after a restart.
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
 public class VoronoiMapCache {
 	
-	/** Maximal number of Voronoi maps that are held in the cache. */
-	private static final int MAX_SIZE = 10;
+	/**
+	 * Maximal number of Voronoi maps that are held in the cache. Note that the
+	 * neighbourhood of the cells is stored sparsely, i.e., a Voronoi map requires
+	 * only memory linear in the number of locations.
+	 */
+	private static final int MAX_SIZE = 30;
+	
+	/** Maximal total number of locations of the Voronoi maps that are held in the cache. */
+	private static final long MAX_WEIGHT = 500000;
 	
 	/** The cached Voronoi maps. */
-	private static LinkedList<VoronoiMap> cachedMaps = new LinkedList<VoronoiMap>();
+	private static final SharedCache<VoronoiMap> cache = new SharedCache<VoronoiMap>("Voronoi maps", MAX_SIZE, MAX_WEIGHT, new SharedCache.Weigher<VoronoiMap>() {
+		public long getWeight(VoronoiMap voronoiMap) {
+			return voronoiMap.getLocations().size();
+		}
+	});
 	
 	/**
 	 * Returns a Voronoi map for the given locations, uses the given border.
@@ -30,41 +44,27 @@ public class VoronoiMapCache {
 	 * @param mapProjection the projection method for the coordinates
 	 * @return the Voronoi map
 	 */
-	public static synchronized VoronoiMap getVoronoiMap(Collection<AggregatedLocation> locations, Polytope border, MapProjection mapProjection) {
-		HashSet<AggregatedLocation> locationsSet = new HashSet<AggregatedLocation>(locations);
-		
-		// we look for a Voronoi map that has:
-		// - the same set of locations
-		// - the same border polygon, currently only checked by area and circumference, which should be sufficient
-		// - the same map projection type
-		mapLoop: for (VoronoiMap voronoiMap : cachedMaps) {
-			if (voronoiMap.getLocations().size() != locationsSet.size()) {
-				continue;
-			}
-			for (AggregatedLocation location : voronoiMap.getLocations()) {
-				if (!locationsSet.contains(location)) {
-					continue mapLoop;
+	public static VoronoiMap getVoronoiMap(final Collection<AggregatedLocation> locations, final Polytope border, final MapProjection mapProjection) {
+		final String fingerprint = MapFingerprint.of(locations, border, mapProjection);
+		return cache.get(fingerprint, new SharedCache.Loader<VoronoiMap>() {
+			public VoronoiMap load() {
+				VoronoiMap voronoiMap = MapCacheFile.readVoronoiMap(fingerprint, locations, border, mapProjection);
+				if (voronoiMap == null) {
+					voronoiMap = new VoronoiMap(locations, border, mapProjection);
+					MapCacheFile.writeVoronoiMap(fingerprint, voronoiMap);
 				}
+				return voronoiMap;
 			}
-			
-			if (!MapBorder.bordersAreEqual(voronoiMap.getBorder(), border)) {
-				continue;
-			}
-			
-			if (!mapProjection.isSimilar(voronoiMap.getMapProjection())) {
-				continue;
-			}
-			
-			return voronoiMap;
-		}
-		
-		if (cachedMaps.size() >= MAX_SIZE) {
-			cachedMaps.removeLast();
-		}
-		
-		VoronoiMap result = new VoronoiMap(locations, border, mapProjection);
-		cachedMaps.addFirst(result);
-		return result;
+		});
+	}
+	
+	/**
+	 * Returns a string with the number of cached Voronoi maps and the hit/miss/eviction counts.
+	 * 
+	 * @return the statistics of the cache
+	 */
+	public static String getStatistics() {
+		return cache.toString();
 	}
 	
 }
\ No newline at end of file
@@ -3,34 +3,62 @@ package geoling.maps.weights;
 import geoling.maps.util.LocationGrid;
 import geoling.models.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Set;
 
 import org.javalite.activejdbc.LazyList;
 
 /**
  * Abstract class for objects that compute the weights of variants at locations.
+ * <p>
+ * The counters are stored in a dense representation: locations and variants
+ * are numbered consecutively (in the order they were added, starting with zero),
+ * the number of answers per location and variant is kept in a primitive
+ * <code>int</code> row per location and the total number of answers per location
+ * in an <code>int</code> array. Besides the accessors based on <code>Location</code>
+ * and <code>Variant</code> objects, there are index-based accessors, which avoid
+ * all hash lookups and are intended for inner loops.
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
 public abstract class VariantWeights {
 	
+	/** The initial capacity of the internal arrays. */
+	private static final int INITIAL_CAPACITY = 16;
+	
+	/** Empty row, used for locations without any answers. */
+	private static final int[] EMPTY_ROW = new int[0];
+	
 	/** The map the weights are computed for. */
 	protected Map map;
 	
+	/** The locations, the position in this list is the location index. */
+	private ArrayList<Location> locations;
+	
+	/** Mapping of locations to their index (ordered by index). */
+	private LinkedHashMap<Location,Integer> locationIndices;
+	
+	/** The variants, the position in this list is the variant index. */
+	private ArrayList<Variant> variants;
+	
+	/** Mapping of variants to their index. */
+	private HashMap<Variant,Integer> variantIndices;
+	
 	/** 
-	 * Counter: the answers given at the location for each variant.
-	 * Note that the number of answers per variant must be greater than zero, i.e.,
-	 * don't create entries in the hash map where the value zero is assigned
-	 * to a variant.
+	 * Counter: the answers given at the location (first index) for each variant
+	 * (second index). Rows may be shorter than the number of variants, missing
+	 * entries are zero.
 	 */
-	protected HashMap<Location,HashMap<Variant,Integer>> variantCounter;
+	private int[][] variantCounter;
 	
-	/** Counter: the answers given at the location. */
-	protected HashMap<Location,Integer> totalCounter;
+	/** Counter: the answers given at the location (index). */
+	private int[] totalCounter;
 	
 	/** Cached <code>LocationGrid</code> object, only initialized when required. */
 	protected LocationGrid locationGrid;
@@ -39,22 +67,24 @@ public abstract class VariantWeights {
 	 * Constructor that initializes the internal data structure.
 	 * 
 	 * @param map               the map the weights should be computed for
-	 * @param initWithLocations determines whether the internal maps should
+	 * @param initWithLocations determines whether the internal data structure should
 	 *                          be initialized with the locations
 	 */
 	public VariantWeights(Map map, boolean initWithLocations) {
 		this.map          = map;
 		this.locationGrid = null;
 		
-		variantCounter = new HashMap<Location,HashMap<Variant,Integer>>();
-		totalCounter   = new HashMap<Location,Integer>();
+		locations       = new ArrayList<Location>();
+		locationIndices = new LinkedHashMap<Location,Integer>();
+		variants        = new ArrayList<Variant>();
+		variantIndices  = new HashMap<Variant,Integer>();
+		variantCounter  = new int[INITIAL_CAPACITY][];
+		totalCounter    = new int[INITIAL_CAPACITY];
 		
 		if (initWithLocations) {
 			LazyList<Location> locations = Location.findAll();
-			Integer zero = new Integer(0);
 			for (Location location : locations) {
-				variantCounter.put(location, new HashMap<Variant,Integer>());
-				totalCounter.put(location, zero);
+				addLocation(location);
 			}
 		}
 	}
@@ -86,11 +116,12 @@ public abstract class VariantWeights {
 	
 	/**
 	 * Returns the set of all locations.
+	 * The iteration order of the set corresponds to the location indices.
 	 * 
 	 * @return a (read-only) set of all locations
 	 */
 	public Set<Location> getLocations() {
-		return Collections.unmodifiableSet(totalCounter.keySet());
+		return Collections.unmodifiableSet(locationIndices.keySet());
 	}
 	
 	/**
@@ -100,7 +131,7 @@ public abstract class VariantWeights {
 	 */
 	public synchronized LocationGrid getLocationGrid() {
 		if (this.locationGrid == null) {
-			this.locationGrid = new LocationGrid(totalCounter.keySet());
+			this.locationGrid = new LocationGrid(locationIndices.keySet());
 		}
 		return this.locationGrid;
 	}
@@ -116,9 +147,8 @@ public abstract class VariantWeights {
 	 * @return <code>true</code> if the location was not present before
 	 */
 	public synchronized boolean enforceLocation(Location location) {
-		if (!variantCounter.containsKey(location)) {
-			variantCounter.put(location, new HashMap<Variant,Integer>());
-			totalCounter.put(location, new Integer(0));
+		if (!locationIndices.containsKey(location)) {
+			addLocation(location);
 			return true;
 		} else {
 			return false;
@@ -151,11 +181,7 @@ public abstract class VariantWeights {
 	 * @return the set of variants
 	 */
 	public HashSet<Variant> getVariants() {
-		HashSet<Variant> result = new HashSet<Variant>();
-		for (HashMap<Variant,Integer> variantCounterAtLoc : variantCounter.values()) {
-			result.addAll(variantCounterAtLoc.keySet());
-		}
-		return result;
+		return new HashSet<Variant>(variants);
 	}
 	
 	/**
@@ -166,9 +192,14 @@ public abstract class VariantWeights {
 	 */
 	public HashSet<Variant> getVariantsAtLocation(Location location) {
 		HashSet<Variant> result = new HashSet<Variant>();
-		HashMap<Variant, Integer> variantCounterAtLoc = variantCounter.get(location);
-		if (variantCounterAtLoc != null) {
-			result.addAll(variantCounterAtLoc.keySet());
+		int locationIndex = getLocationIndex(location);
+		if (locationIndex >= 0) {
+			int[] row = variantCounter[locationIndex];
+			for (int variantIndex = 0; variantIndex < row.length; variantIndex++) {
+				if (row[variantIndex] != 0) {
+					result.add(variants.get(variantIndex));
+				}
+			}
 		}
 		return result;
 	}
@@ -180,16 +211,12 @@ public abstract class VariantWeights {
 	 * @return the number of occurrences of a single variant at the given location
 	 */
 	public int getNumberOfVariantOccurencesAtLocation(Variant variant, Location location) {
-		HashMap<Variant, Integer> variantCounterAtLoc = variantCounter.get(location);
-		if (variantCounterAtLoc == null) {
+		int locationIndex = getLocationIndex(location);
+		int variantIndex  = getVariantIndex(variant);
+		if (locationIndex < 0 || variantIndex < 0) {
 			return 0;
 		} else {
-			Integer n = variantCounterAtLoc.get(variant);
-			if (n == null) {
-				return 0;
-			} else {
-				return n.intValue();
-			}
+			return getNumberOfVariantOccurences(variantIndex, locationIndex);
 		}
 	}
 	
@@ -200,11 +227,11 @@ public abstract class VariantWeights {
 	 * @return the number of answers at the given location
 	 */
 	public int getTotalNumberOfVariantOccurencesAtLocation(Location location) {
-		Integer n = totalCounter.get(location);
-		if (n == null) {
+		int locationIndex = getLocationIndex(location);
+		if (locationIndex < 0) {
 			return 0;
 		} else {
-			return n.intValue();
+			return totalCounter[locationIndex];
 		}
 	}
 	
@@ -218,12 +245,220 @@ public abstract class VariantWeights {
 	 * @return the weight
 	 */
 	public double getWeight(Variant variant, Location location) {
-		int n = this.getNumberOfVariantOccurencesAtLocation(variant, location);
+		int locationIndex = getLocationIndex(location);
+		int variantIndex  = getVariantIndex(variant);
+		if (locationIndex < 0 || variantIndex < 0) {
+			return 0;
+		} else {
+			return getWeight(variantIndex, locationIndex);
+		}
+	}
+	
+	/**
+	 * Returns the number of locations, i.e., location indices are in
+	 * <code>0, ..., getNumberOfLocations()-1</code>.
+	 * 
+	 * @return the number of locations
+	 */
+	public int getNumberOfLocations() {
+		return locations.size();
+	}
+	
+	/**
+	 * Returns the number of variants, i.e., variant indices are in
+	 * <code>0, ..., getNumberOfVariants()-1</code>.
+	 * 
+	 * @return the number of variants
+	 */
+	public int getNumberOfVariants() {
+		return variants.size();
+	}
+	
+	/**
+	 * Returns the index of the given location.
+	 * 
+	 * @param location  the location
+	 * @return the index of the location, or <code>-1</code> if the location is unknown
+	 */
+	public int getLocationIndex(Location location) {
+		Integer index = locationIndices.get(location);
+		return (index != null) ? index.intValue() : -1;
+	}
+	
+	/**
+	 * Returns the index of the given variant.
+	 * 
+	 * @param variant  the variant
+	 * @return the index of the variant, or <code>-1</code> if the variant is unknown
+	 */
+	public int getVariantIndex(Variant variant) {
+		Integer index = variantIndices.get(variant);
+		return (index != null) ? index.intValue() : -1;
+	}
+	
+	/**
+	 * Returns the location with the given index.
+	 * 
+	 * @param locationIndex  the location index
+	 * @return the location
+	 */
+	public Location getLocationByIndex(int locationIndex) {
+		return locations.get(locationIndex);
+	}
+	
+	/**
+	 * Returns the variant with the given index.
+	 * 
+	 * @param variantIndex  the variant index
+	 * @return the variant
+	 */
+	public Variant getVariantByIndex(int variantIndex) {
+		return variants.get(variantIndex);
+	}
+	
+	/**
+	 * Returns the number of occurrences of a single variant at the given location.
+	 * 
+	 * @param variantIndex   the variant index
+	 * @param locationIndex  the location index
+	 * @return the number of occurrences of a single variant at the given location
+	 */
+	public int getNumberOfVariantOccurences(int variantIndex, int locationIndex) {
+		int[] row = variantCounter[locationIndex];
+		return (variantIndex < row.length) ? row[variantIndex] : 0;
+	}
+	
+	/**
+	 * Returns the numbers of occurrences of all variants at the given location.
+	 * The returned array is the internal data structure and must not be modified.
+	 * It may be shorter than <code>getNumberOfVariants()</code>, missing
+	 * entries are zero.
+	 * 
+	 * @param locationIndex  the location index
+	 * @return the (read-only) row of occurrences, indexed by variant index
+	 */
+	public int[] getNumbersOfVariantOccurences(int locationIndex) {
+		return variantCounter[locationIndex];
+	}
+	
+	/**
+	 * Returns the total number of answers available at the given location.
+	 * 
+	 * @param locationIndex  the location index
+	 * @return the number of answers at the given location
+	 */
+	public int getTotalNumberOfVariantOccurences(int locationIndex) {
+		return totalCounter[locationIndex];
+	}
+	
+	/**
+	 * Returns the computed weight for the given variant and location.
+	 * 
+	 * @param variantIndex   the variant index
+	 * @param locationIndex  the location index
+	 * @return the weight
+	 */
+	public double getWeight(int variantIndex, int locationIndex) {
+		int n = getNumberOfVariantOccurences(variantIndex, locationIndex);
 		if (n == 0) {
 			return 0;
 		} else {
-			return (double)n / this.getTotalNumberOfVariantOccurencesAtLocation(location);
+			return (double)n / totalCounter[locationIndex];
+		}
+	}
+	
+	/**
+	 * Adds a location (with zero answers) if it is not already contained.
+	 * 
+	 * @param location  the location
+	 * @return the index of the location
+	 */
+	protected int addLocation(Location location) {
+		Integer index = locationIndices.get(location);
+		if (index != null) {
+			return index.intValue();
 		}
+		
+		int locationIndex = locations.size();
+		if (locationIndex == totalCounter.length) {
+			int newCapacity = 2*totalCounter.length;
+			variantCounter = Arrays.copyOf(variantCounter, newCapacity);
+			totalCounter   = Arrays.copyOf(totalCounter, newCapacity);
+		}
+		locations.add(location);
+		locationIndices.put(location, locationIndex);
+		variantCounter[locationIndex] = EMPTY_ROW;
+		totalCounter[locationIndex]   = 0;
+		return locationIndex;
+	}
+	
+	/**
+	 * Adds a variant if it is not already contained.
+	 * 
+	 * @param variant  the variant
+	 * @return the index of the variant
+	 */
+	protected int addVariant(Variant variant) {
+		Integer index = variantIndices.get(variant);
+		if (index != null) {
+			return index.intValue();
+		}
+		
+		int variantIndex = variants.size();
+		variants.add(variant);
+		variantIndices.put(variant, variantIndex);
+		return variantIndex;
+	}
+	
+	/**
+	 * Adds the given number of answers for a variant at a location, the total
+	 * number of answers at the location is increased accordingly.
+	 * 
+	 * @param variantIndex   the variant index
+	 * @param locationIndex  the location index
+	 * @param count          the number of answers to add
+	 */
+	protected void addOccurences(int variantIndex, int locationIndex, int count) {
+		int[] row = variantCounter[locationIndex];
+		if (variantIndex >= row.length) {
+			row = Arrays.copyOf(row, Math.max(variantIndex+1, Math.max(variants.size(), 2*row.length)));
+			variantCounter[locationIndex] = row;
+		}
+		row[variantIndex]           += count;
+		totalCounter[locationIndex] += count;
+	}
+	
+	/**
+	 * Removes all locations without any answers, the indices of the remaining
+	 * locations are compacted (preserving their order).
+	 */
+	protected void removeLocationsWithoutOccurences() {
+		ArrayList<Location> oldLocations = locations;
+		locations = new ArrayList<Location>(oldLocations.size());
+		locationIndices.clear();
+		int newIndex = 0;
+		for (int oldIndex = 0; oldIndex < oldLocations.size(); oldIndex++) {
+			if (totalCounter[oldIndex] != 0) {
+				Location location = oldLocations.get(oldIndex);
+				locations.add(location);
+				locationIndices.put(location, newIndex);
+				variantCounter[newIndex] = variantCounter[oldIndex];
+				totalCounter[newIndex]   = totalCounter[oldIndex];
+				newIndex++;
+			}
+		}
+		Arrays.fill(variantCounter, newIndex, oldLocations.size(), null);
+	}
+	
+	/**
+	 * Overwrites the total number of answers at a location. This is only
+	 * required if the weights at the location should not sum up to one.
+	 * 
+	 * @param locationIndex  the location index
+	 * @param total          the total number of answers
+	 */
+	protected void setTotalNumberOfVariantOccurences(int locationIndex, int total) {
+		totalCounter[locationIndex] = total;
 	}
 	
 }
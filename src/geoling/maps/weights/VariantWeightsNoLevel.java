@@ -4,8 +4,6 @@ import geoling.models.*;
 import geoling.util.ModelHelper;
 
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
 
 import org.javalite.activejdbc.Base;
 import org.javalite.activejdbc.RowListenerAdapter;
@@ -18,6 +16,9 @@ import org.javalite.activejdbc.RowListenerAdapter;
  */
 public class VariantWeightsNoLevel extends VariantWeights {
 	
+	/** The identification string of the weights computation, see <code>getIdentificationString</code>. */
+	public static final String IDENTIFICATION_STRING = "default";
+	
 	/**
 	 * Collects the answers for the variants of the given map and constructs
 	 * an object to fetch the weights easily.
@@ -37,31 +38,15 @@ public class VariantWeightsNoLevel extends VariantWeights {
 		          " JOIN variants AS v ON v.id=ia.variant_id"+
 		          " WHERE v.map_id=?", map.getId()).with(new RowListenerAdapter() {
 			public void onNext(java.util.Map<String,Object> row) {
-        		Variant variant = variantsMap.get(row.get("variant_id"));
-        		Location location = locationsMap.get(row.get("location_id"));
-
-				Integer oldWeightObj = variantCounter.get(location).get(variant);
-				int oldWeight = 0;
-				if (oldWeightObj != null) {
-					oldWeight = oldWeightObj.intValue();
-				}
-				variantCounter.get(location).put(variant, new Integer(oldWeight+1));
+				Variant variant = variantsMap.get(row.get("variant_id"));
+				Location location = locationsMap.get(row.get("location_id"));
 				
-				totalCounter.put(location, new Integer(totalCounter.get(location).intValue()+1));
-        	}
+				addOccurences(addVariant(variant), getLocationIndex(location), 1);
+			}
 		});
 		
 		// remove unused locations
-		for (Iterator<Entry<Location, HashMap<Variant,Integer>>> it = variantCounter.entrySet().iterator(); it.hasNext() ; ) {
-			if (it.next().getValue().isEmpty()) {
-				it.remove();
-			}
-		}
-		for (Iterator<Entry<Location, Integer>> it = totalCounter.entrySet().iterator(); it.hasNext() ; ) {
-			if (it.next().getValue().intValue() == 0) {
-				it.remove();
-			}
-		}
+		removeLocationsWithoutOccurences();
 	}
 
 	/**
@@ -70,7 +55,7 @@ public class VariantWeightsNoLevel extends VariantWeights {
 	 * @return the identification string
 	 */
 	public String getIdentificationString() {
-		return "default";
+		return IDENTIFICATION_STRING;
 	}
 
 }
@@ -3,7 +3,7 @@ package geoling.maps.weights;
 import geoling.models.*;
 import geoling.util.ModelHelper;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 
@@ -49,7 +49,11 @@ public class VariantWeightsWithLevel extends VariantWeights {
 		this.level = level;
 		this.variantWeightsBaseIdentification = variantWeights.getIdentificationString();
 		
-		ArrayList<Location> locations = new ArrayList<Location>(variantWeights.getLocations());
+		// mapping of location indices of the given object to location indices of this object,
+		// locations are only added when they get at least one answer
+		int numberOfLocations = variantWeights.getNumberOfLocations();
+		int[] toLocationIndices = new int[numberOfLocations];
+		Arrays.fill(toLocationIndices, -1);
 		
 		// cache locations to avoid queries in the loop below
 		final HashMap<Object,Variant> variantsMap = ModelHelper.toHashMap(map.getAll(Variant.class));
@@ -75,7 +79,8 @@ public class VariantWeightsWithLevel extends VariantWeights {
 		
 		// iterate over all variants and check if there exist (one or more) mappings
 		// to another variant for this level
-		for (Variant variant : variantWeights.getVariants()) {
+		for (int variantIndex = 0; variantIndex < variantWeights.getNumberOfVariants(); variantIndex++) {
+			Variant variant = variantWeights.getVariantByIndex(variantIndex);
 			LinkedList<Object> idMappings = null;
 			boolean noMapping = false;
 			if (allIdMappings.containsKey(variant.getId())) {
@@ -108,25 +113,20 @@ public class VariantWeightsWithLevel extends VariantWeights {
 						variantsMap.put(toVariantId, toVariant);
 					}
 					
-					for (Location location : locations) {
-						Integer addWeightObj = variantWeights.variantCounter.get(location).get(variant);
-						int addWeight = (addWeightObj != null) ? addWeightObj.intValue() : 0;
+					int toVariantIndex = -1;
+					for (int locationIndex = 0; locationIndex < numberOfLocations; locationIndex++) {
+						int addWeight = variantWeights.getNumberOfVariantOccurences(variantIndex, locationIndex);
 						if (addWeight == 0) {
 							continue;
 						}
 						
-						HashMap<Variant, Integer> variantCounterAtLoc = this.variantCounter.get(location);
-						if (variantCounterAtLoc == null) {
-							variantCounterAtLoc = new HashMap<Variant,Integer>();
-							this.variantCounter.put(location, variantCounterAtLoc);
+						if (toVariantIndex < 0) {
+							toVariantIndex = addVariant(toVariant);
 						}
-						Integer oldWeightObj = variantCounterAtLoc.get(toVariant);
-						int oldWeight = (oldWeightObj != null) ? oldWeightObj.intValue() : 0;
-						variantCounterAtLoc.put(toVariant, new Integer(oldWeight+addWeight));
-						
-						Integer oldCountObj = this.totalCounter.get(location);
-						int oldCount = (oldCountObj != null) ? oldCountObj.intValue() : 0;
-						this.totalCounter.put(location, new Integer(oldCount+addWeight));
+						if (toLocationIndices[locationIndex] < 0) {
+							toLocationIndices[locationIndex] = addLocation(variantWeights.getLocationByIndex(locationIndex));
+						}
+						addOccurences(toVariantIndex, toLocationIndices[locationIndex], addWeight);
 					}
 				}
 			}
@@ -139,7 +139,20 @@ public class VariantWeightsWithLevel extends VariantWeights {
 	 * @return the identification string
 	 */
 	public String getIdentificationString() {
-		return this.variantWeightsBaseIdentification + ":level_id="+this.level.getId();
+		return getIdentificationString(this.variantWeightsBaseIdentification, this.level);
+	}
+	
+	/**
+	 * Returns the identification string of the weights that aggregate the variants of
+	 * weights with the given identification string, using the given level.
+	 * This allows to find existing results without computing the weights first.
+	 * 
+	 * @param variantWeightsBaseIdentification  the identification string of the aggregated weights
+	 * @param level                             the level to use for variant aggregation
+	 * @return the identification string
+	 */
+	public static String getIdentificationString(String variantWeightsBaseIdentification, Level level) {
+		return variantWeightsBaseIdentification + ":level_id="+level.getId();
 	}
 	
 	/**
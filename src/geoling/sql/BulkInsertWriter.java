@@ -0,0 +1,359 @@
+package geoling.sql;
+
+import geoling.util.ProgressOutput;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Writer for inserting a large number of rows into a single table.
+ * The rows are inserted with batched prepared statements, and every batch is
+ * committed in its own transaction (if the connection is in auto-commit mode,
+ * otherwise the surrounding transaction is used). For SQLite, the pragmas
+ * <code>journal_mode</code> and <code>synchronous</code> are relaxed while
+ * writing, for MySQL every statement inserts several rows at once (multi-row
+ * <code>VALUES</code>), because the driver executes batches row by row.
+ * <p>
+ * Example:
+ * <pre>
+ * BulkInsertWriter writer = new BulkInsertWriter(Base.connection(), "location_distances",
+ *                                                "distance_id", "location_id1", "location_id2", "distance");
+ * try {
+ *     writer.addRow(distanceId, id1, id2, value);
+ *     ...
+ *     writer.close();
+ * } finally {
+ *     writer.abort();
+ * }
+ * </pre>
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class BulkInsertWriter {
+	
+	/** The default number of rows that are committed together. */
+	public static int DEFAULT_BATCH_SIZE = 10000;
+	
+	/** The number of rows inserted by a single statement for MySQL. */
+	public static int MYSQL_ROWS_PER_STATEMENT = 500;
+	
+	/** The database connection. */
+	private Connection connection;
+	
+	/** The name of the table. */
+	private String table;
+	
+	/** The number of columns. */
+	private int columnCount;
+	
+	/** The number of rows that are committed together. */
+	private int batchSize;
+	
+	/** The number of rows inserted by a single statement. */
+	private int rowsPerStatement;
+	
+	/** Determines whether the writer commits its own transactions (i.e., the connection was in auto-commit mode). */
+	private boolean ownTransactions;
+	
+	/** Determines whether the database is SQLite. */
+	private boolean sqlite;
+	
+	/** The previous value of the SQLite pragma <code>journal_mode</code> (<code>null</code> if not changed). */
+	private String previousJournalMode = null;
+	
+	/** The previous value of the SQLite pragma <code>synchronous</code> (<code>null</code> if not changed). */
+	private String previousSynchronous = null;
+	
+	/** The statement inserting a single row. */
+	private PreparedStatement singleRowStatement;
+	
+	/** The statement inserting <code>rowsPerStatement</code> rows (<code>null</code> if only one row per statement). */
+	private PreparedStatement multiRowStatement;
+	
+	/** The values of the rows that are not yet added to a statement. */
+	private Object[] pendingValues;
+	
+	/** The number of rows in <code>pendingValues</code>. */
+	private int pendingRows = 0;
+	
+	/** The number of rows that are added to the batch, but not yet executed. */
+	private int batchRows = 0;
+	
+	/** The total number of rows. */
+	private long rowCount = 0;
+	
+	/** The start time (in milliseconds). */
+	private long startTime;
+	
+	/** Determines whether the writer is closed. */
+	private boolean closed = false;
+	
+	/**
+	 * Constructs a writer for inserting rows into the given table.
+	 * 
+	 * @param connection  the database connection
+	 * @param table       the name of the table
+	 * @param columns     the names of the columns
+	 * @throws SQLException if a database error occurs
+	 */
+	public BulkInsertWriter(Connection connection, String table, String... columns) throws SQLException {
+		this(connection, DEFAULT_BATCH_SIZE, table, columns);
+	}
+	
+	/**
+	 * Constructs a writer for inserting rows into the given table.
+	 * 
+	 * @param connection  the database connection
+	 * @param batchSize   the number of rows that are committed together
+	 * @param table       the name of the table
+	 * @param columns     the names of the columns
+	 * @throws SQLException if a database error occurs
+	 */
+	public BulkInsertWriter(Connection connection, int batchSize, String table, String... columns) throws SQLException {
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("At least one column required!");
+		}
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size has to be a positive number!");
+		}
+		this.connection      = connection;
+		this.table           = table;
+		this.columnCount     = columns.length;
+		this.batchSize       = batchSize;
+		this.ownTransactions = connection.getAutoCommit();
+		this.sqlite          = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("sqlite");
+		this.rowsPerStatement = this.sqlite ? 1 : Math.max(1, Math.min(MYSQL_ROWS_PER_STATEMENT, batchSize));
+		
+		if (this.sqlite && this.ownTransactions) {
+			// the journal mode cannot be changed within a transaction
+			this.previousJournalMode = queryPragma("journal_mode");
+			this.previousSynchronous = queryPragma("synchronous");
+			executePragma("journal_mode = MEMORY");
+			executePragma("synchronous = OFF");
+		}
+		
+		StringBuilder columnList = new StringBuilder();
+		StringBuilder placeholders = new StringBuilder("(");
+		for (int i = 0; i < columns.length; i++) {
+			columnList.append((i > 0) ? ", " : "").append(columns[i]);
+			placeholders.append((i > 0) ? ", ?" : "?");
+		}
+		placeholders.append(")");
+		String sql = "INSERT INTO "+table+" ("+columnList+") VALUES ";
+		
+		this.singleRowStatement = connection.prepareStatement(sql+placeholders);
+		if (this.rowsPerStatement > 1) {
+			StringBuilder multiRowSql = new StringBuilder(sql);
+			for (int r = 0; r < this.rowsPerStatement; r++) {
+				multiRowSql.append((r > 0) ? ", " : "").append(placeholders);
+			}
+			this.multiRowStatement = connection.prepareStatement(multiRowSql.toString());
+		} else {
+			this.multiRowStatement = null;
+		}
+		this.pendingValues = new Object[this.rowsPerStatement * this.columnCount];
+		
+		if (this.ownTransactions) {
+			connection.setAutoCommit(false);
+		}
+		this.startTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Adds a row, which is inserted when the current batch is full (or when the
+	 * writer is closed).
+	 * 
+	 * @param values  the values of the columns
+	 * @throws SQLException if a database error occurs
+	 */
+	public void addRow(Object... values) throws SQLException {
+		if (this.closed) {
+			throw new IllegalStateException("Writer is already closed!");
+		}
+		if (values.length != this.columnCount) {
+			throw new IllegalArgumentException("Wrong number of values: "+values.length+" instead of "+this.columnCount);
+		}
+		
+		System.arraycopy(values, 0, this.pendingValues, this.pendingRows*this.columnCount, this.columnCount);
+		this.pendingRows++;
+		this.rowCount++;
+		if (this.pendingRows == this.rowsPerStatement) {
+			PreparedStatement statement = (this.multiRowStatement != null) ? this.multiRowStatement : this.singleRowStatement;
+			for (int i = 0; i < this.pendingRows*this.columnCount; i++) {
+				statement.setObject(i+1, this.pendingValues[i]);
+			}
+			statement.addBatch();
+			this.batchRows += this.pendingRows;
+			this.pendingRows = 0;
+		}
+		
+		if (this.batchRows >= this.batchSize) {
+			flush();
+		}
+	}
+	
+	/**
+	 * Inserts all rows that were added so far.
+	 * 
+	 * @throws SQLException if a database error occurs
+	 */
+	public void flush() throws SQLException {
+		// remaining rows that do not fill a multi-row statement
+		for (int r = 0; r < this.pendingRows; r++) {
+			for (int c = 0; c < this.columnCount; c++) {
+				this.singleRowStatement.setObject(c+1, this.pendingValues[r*this.columnCount+c]);
+			}
+			this.singleRowStatement.addBatch();
+		}
+		this.batchRows += this.pendingRows;
+		this.pendingRows = 0;
+		
+		if (this.batchRows > 0) {
+			if (this.multiRowStatement != null) {
+				this.multiRowStatement.executeBatch();
+			}
+			this.singleRowStatement.executeBatch();
+			if (this.ownTransactions) {
+				this.connection.commit();
+			}
+			this.batchRows = 0;
+		}
+	}
+	
+	/**
+	 * Inserts all remaining rows and releases the resources of this writer.
+	 * 
+	 * @throws SQLException if a database error occurs
+	 */
+	public void close() throws SQLException {
+		if (this.closed) {
+			return;
+		}
+		try {
+			flush();
+		} catch (SQLException e) {
+			abort();
+			throw e;
+		} catch (RuntimeException e) {
+			abort();
+			throw e;
+		}
+		release();
+	}
+	
+	/**
+	 * Inserts all remaining rows and releases the resources of this writer,
+	 * the number of rows and the rate are written to the given <code>ProgressOutput</code>.
+	 * 
+	 * @param progress  the <code>ProgressOutput</code>
+	 * @throws SQLException if a database error occurs
+	 */
+	public void close(ProgressOutput progress) throws SQLException {
+		close();
+		progress.customMessage("Inserted "+this.rowCount+" rows into table "+this.table+" ("+String.format("%.0f", getRowsPerSecond())+" rows/s)");
+	}
+	
+	/**
+	 * Discards all rows that were not inserted yet (and rolls back the current
+	 * batch if the writer uses its own transactions), and releases the resources
+	 * of this writer. Does nothing if the writer is already closed.
+	 */
+	public void abort() {
+		if (this.closed) {
+			return;
+		}
+		try {
+			if (this.ownTransactions) {
+				this.connection.rollback();
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		try {
+			release();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Returns the number of rows added to this writer.
+	 * 
+	 * @return the number of rows
+	 */
+	public long getRowCount() {
+		return this.rowCount;
+	}
+	
+	/**
+	 * Returns the average number of rows inserted per second.
+	 * 
+	 * @return the number of rows per second
+	 */
+	public double getRowsPerSecond() {
+		double seconds = (System.currentTimeMillis() - this.startTime) / 1000.0;
+		return (seconds > 0.0) ? this.rowCount / seconds : this.rowCount;
+	}
+	
+	/**
+	 * Closes the statements and restores the settings of the connection.
+	 * 
+	 * @throws SQLException if a database error occurs
+	 */
+	private void release() throws SQLException {
+		this.closed = true;
+		try {
+			this.singleRowStatement.close();
+			if (this.multiRowStatement != null) {
+				this.multiRowStatement.close();
+			}
+		} finally {
+			if (this.ownTransactions) {
+				this.connection.setAutoCommit(true);
+			}
+			if (this.previousSynchronous != null) {
+				executePragma("synchronous = "+this.previousSynchronous);
+			}
+			if (this.previousJournalMode != null) {
+				executePragma("journal_mode = "+this.previousJournalMode);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the value of the given SQLite pragma.
+	 * 
+	 * @param pragma  the name of the pragma
+	 * @return the value
+	 * @throws SQLException if a database error occurs
+	 */
+	private String queryPragma(String pragma) throws SQLException {
+		Statement statement = this.connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("PRAGMA "+pragma);
+			return rs.next() ? rs.getString(1) : null;
+		} finally {
+			statement.close();
+		}
+	}
+	
+	/**
+	 * Sets the value of a SQLite pragma.
+	 * 
+	 * @param assignment  the assignment, e.g. <code>synchronous = OFF</code>
+	 * @throws SQLException if a database error occurs
+	 */
+	private void executePragma(String assignment) throws SQLException {
+		Statement statement = this.connection.createStatement();
+		try {
+			// note: some pragmas return a result (e.g. journal_mode), therefore we use execute()
+			statement.execute("PRAGMA "+assignment);
+		} finally {
+			statement.close();
+		}
+	}
+	
+}
@@ -1,5 +1,5 @@
 /**
- * Export and import of SQL-format dump files.
+ * Export and import of SQL-format dump files, and bulk inserts of large tables.
  * 
  * @author Institute of Stochastics, Ulm University
  */
@@ -0,0 +1,159 @@
+package geoling.tools;
+
+import geoling.util.LatLong;
+import geoling.util.LatLongPoints;
+
+import java.util.Random;
+
+/**
+ * Micro-benchmark for the computation of geographical distances: compares
+ * the original haversine formula (evaluating all trigonometric functions for
+ * every pair), <code>LatLong.calculateDistanceTo</code> and the batch methods
+ * of <code>LatLongPoints</code> (exact and with chord approximation).
+ * Random locations in a region of the size of Germany are used, every variant
+ * computes all distances several times after a warm-up phase.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class DistanceBenchmark {
+	
+	/** The mean earth radius in kilometres. */
+	private static final double R = 6371.0;
+	
+	/** The number of measured repetitions. */
+	private static final int REPETITIONS = 5;
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args  command line parameters: optionally the number of locations (default: 2000)
+	 */
+	public static void main(String[] args) {
+		int n = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		
+		Random random = new Random(1);
+		LatLong[] latLongs = new LatLong[n];
+		for (int i = 0; i < n; i++) {
+			latLongs[i] = new LatLong(47.0 + 8.0*random.nextDouble(), 6.0 + 9.0*random.nextDouble());
+		}
+		double[] latitudes  = new double[n];
+		double[] longitudes = new double[n];
+		for (int i = 0; i < n; i++) {
+			latitudes[i]  = LatLong.degToRad(latLongs[i].getLatitude());
+			longitudes[i] = LatLong.degToRad(latLongs[i].getLongitude());
+		}
+		LatLongPoints exact  = new LatLongPoints(latLongs, false);
+		LatLongPoints approx = new LatLongPoints(latLongs, true);
+		
+		double[] reference = new double[n];
+		double[] result = new double[n];
+		double maxError = 0.0;
+		double maxRelativeErrorApprox = 0.0;
+		double maxDistance = 0.0;
+		for (int i = 0; i < n; i++) {
+			exact.distances(i, result);
+			for (int j = 0; j < n; j++) {
+				reference[j] = haversine(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+				maxError = Math.max(maxError, Math.abs(result[j] - reference[j]));
+				maxDistance = Math.max(maxDistance, reference[j]);
+			}
+			approx.distances(i, result);
+			for (int j = 0; j < n; j++) {
+				if (reference[j] > 0.0) {
+					maxRelativeErrorApprox = Math.max(maxRelativeErrorApprox, (reference[j] - result[j]) / reference[j]);
+				}
+			}
+		}
+		System.out.println(n+" locations, maximal distance "+maxDistance+" km");
+		System.out.println("maximal absolute error of exact batch distances: "+maxError+" km");
+		System.out.println("maximal relative error of chord approximation: "+maxRelativeErrorApprox+
+		                   " (bound: "+LatLongPoints.getMaximumRelativeError(maxDistance)+")");
+		
+		for (int round = 0; round < 2; round++) {
+			boolean warmUp = (round == 0);
+			if (!warmUp) {
+				System.out.println("average time for all "+((long)n*n)+" distances:");
+			}
+			
+			long start = System.nanoTime();
+			double checksum = 0.0;
+			for (int r = 0; r < REPETITIONS; r++) {
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						checksum += haversine(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+					}
+				}
+			}
+			print(warmUp, "original haversine formula", start, checksum);
+			
+			start = System.nanoTime();
+			checksum = 0.0;
+			for (int r = 0; r < REPETITIONS; r++) {
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						checksum += latLongs[i].calculateDistanceTo(latLongs[j]);
+					}
+				}
+			}
+			print(warmUp, "LatLong.calculateDistanceTo", start, checksum);
+			
+			start = System.nanoTime();
+			checksum = 0.0;
+			for (int r = 0; r < REPETITIONS; r++) {
+				for (int i = 0; i < n; i++) {
+					exact.distances(i, result);
+					for (int j = 0; j < n; j++) {
+						checksum += result[j];
+					}
+				}
+			}
+			print(warmUp, "LatLongPoints (exact)", start, checksum);
+			
+			start = System.nanoTime();
+			checksum = 0.0;
+			for (int r = 0; r < REPETITIONS; r++) {
+				for (int i = 0; i < n; i++) {
+					approx.distances(i, result);
+					for (int j = 0; j < n; j++) {
+						checksum += result[j];
+					}
+				}
+			}
+			print(warmUp, "LatLongPoints (chord approximation)", start, checksum);
+		}
+	}
+	
+	/**
+	 * Prints the average time of a measurement.
+	 * 
+	 * @param warmUp    determines whether the measurement belongs to the warm-up phase (which is not printed)
+	 * @param name      the name of the measured variant
+	 * @param start     the start time in nanoseconds
+	 * @param checksum  the sum of all distances (printed to avoid dead-code elimination)
+	 */
+	private static void print(boolean warmUp, String name, long start, double checksum) {
+		if (!warmUp) {
+			double millis = (System.nanoTime() - start) / 1e6 / REPETITIONS;
+			System.out.println(String.format("  %-40s %10.2f ms (checksum %.6e)", name, millis, checksum));
+		}
+	}
+	
+	/**
+	 * The original implementation of <code>LatLong.calculateDistanceTo</code>, which
+	 * evaluates the trigonometric functions of both coordinates for every pair.
+	 * 
+	 * @param lat1  the latitude of the first coordinate in radian
+	 * @param lon1  the longitude of the first coordinate in radian
+	 * @param lat2  the latitude of the second coordinate in radian
+	 * @param lon2  the longitude of the second coordinate in radian
+	 * @return the distance in kilometres
+	 */
+	private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+		double dlongit = lon2 - lon1;
+		double dlatitu = lat2 - lat1;
+		double a = Math.sin(dlatitu/2) * Math.sin(dlatitu/2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dlongit/2) * Math.sin(dlongit/2);
+		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
+		return R * c;
+	}
+	
+}
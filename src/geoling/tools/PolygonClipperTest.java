@@ -0,0 +1,192 @@
+package geoling.tools;
+
+import geoling.util.geom.PolygonClipper;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This program tests <code>PolygonClipper</code> by comparing the area of the
+ * intersection of a polygon and a rectangle with the result of
+ * <code>java.awt.geom.Area</code>. Besides generic rectangles, the degenerate
+ * cases are tested where a vertex of the polygon lies exactly on an edge or a
+ * corner of the rectangle, or an edge of the polygon runs along an edge of the
+ * rectangle.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class PolygonClipperTest {
+	
+	/** The number of failed tests. */
+	private static int failures = 0;
+	
+	/**
+	 * Runs the tests.
+	 * 
+	 * @param args  command line parameters: optionally the number of random tests (default: 20000)
+	 */
+	public static void main(String[] args) {
+		int n = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		
+		// a vertex of the polygon on an edge of the rectangle, the rectangle lies inside
+		double[] notchX = { -1.0, 1.0, 1.0, 0.0, -1.0 };
+		double[] notchY = { -1.0, -1.0, 1.0, 0.0, 1.0 };
+		check("vertex on edge (inside)", notchX, notchY, -0.1, -0.3, 0.1, 0.0);
+		// ... the rectangle lies outside in the notch
+		check("vertex on edge (outside)", notchX, notchY, -0.1, 0.0, 0.1, 0.05);
+		// ... the vertex is a corner of the rectangle
+		check("vertex on corner (inside)", notchX, notchY, 0.0, -0.3, 0.2, 0.0);
+		check("vertex on corner (outside)", notchX, notchY, -0.05, 0.0, 0.0, 0.01);
+		// a convex vertex of the polygon touches the rectangle from outside
+		double[] diamondX = { 0.0, 1.0, 0.0, -1.0 };
+		double[] diamondY = { -1.0, 0.0, 1.0, 0.0 };
+		check("convex vertex on edge (outside)", diamondX, diamondY, 0.5, 1.0, 1.5, 2.0);
+		check("convex vertex on corner (outside)", diamondX, diamondY, 1.0, 0.0, 2.0, 1.0);
+		// edges of the polygon along edges of the rectangle
+		double[] squareX = { 0.0, 2.0, 2.0, 0.0 };
+		double[] squareY = { 0.0, 0.0, 2.0, 2.0 };
+		check("common edges (inside)", squareX, squareY, 0.0, 0.0, 1.0, 1.0);
+		check("common edges (outside)", squareX, squareY, 2.0, 0.5, 3.0, 1.5);
+		check("identical", squareX, squareY, 0.0, 0.0, 2.0, 2.0);
+		
+		// random star-shaped polygons
+		Random random = new Random(1);
+		int generic = 0;
+		int degenerate = 0;
+		for (int test = 0; test < n; test++) {
+			int m = 3 + random.nextInt(30);
+			double[] x = new double[m];
+			double[] y = new double[m];
+			for (int i = 0; i < m; i++) {
+				double angle = 2.0 * Math.PI * (i + 0.8*random.nextDouble()) / m;
+				double radius = 0.2 + random.nextDouble();
+				x[i] = Math.rint(1000.0 * radius * Math.cos(angle)) / 1000.0;
+				y[i] = Math.rint(1000.0 * radius * Math.sin(angle)) / 1000.0;
+			}
+			double w = 0.01 + 0.5*random.nextDouble();
+			double h = 0.01 + 0.5*random.nextDouble();
+			double minX;
+			double minY;
+			if (test % 10 == 0) {
+				minX = -1.2 + 2.4*random.nextDouble();
+				minY = -1.2 + 2.4*random.nextDouble();
+				generic++;
+			} else {
+				// put a vertex on an edge or a corner of the rectangle
+				int v = random.nextInt(m);
+				double a = (random.nextInt(3) == 0) ? random.nextInt(2) : random.nextDouble();
+				switch (random.nextInt(4)) {
+					case 0:  minX = x[v] - a*w; minY = y[v];     break;
+					case 1:  minX = x[v] - a*w; minY = y[v] - h; break;
+					case 2:  minX = x[v];       minY = y[v] - a*h; break;
+					default: minX = x[v] - w;   minY = y[v] - a*h; break;
+				}
+				degenerate++;
+			}
+			check("random test " + test, x, y, minX, minY, minX + w, minY + h);
+		}
+		
+		System.out.println(generic + " generic and " + degenerate + " degenerate random tests.");
+		if (failures > 0) {
+			System.out.println(failures + " tests failed!");
+			System.exit(1);
+		}
+		System.out.println("OK.");
+	}
+	
+	/**
+	 * Compares the area of the intersection of the polygon and the rectangle computed
+	 * by <code>PolygonClipper</code> and <code>java.awt.geom.Area</code>.
+	 * 
+	 * @param name  the name of the test
+	 * @param x     the x-coordinates of the polygon
+	 * @param y     the y-coordinates of the polygon
+	 * @param minX  the minimal x-coordinate of the rectangle
+	 * @param minY  the minimal y-coordinate of the rectangle
+	 * @param maxX  the maximal x-coordinate of the rectangle
+	 * @param maxY  the maximal y-coordinate of the rectangle
+	 */
+	private static void check(String name, double[] x, double[] y, double minX, double minY, double maxX, double maxY) {
+		double[] cx = { minX, maxX, maxX, minX };
+		double[] cy = { minY, minY, maxY, maxY };
+		
+		double area = 0.0;
+		try {
+			List<double[][]> polygons = new PolygonClipper(x, y).clip(cx, cy);
+			for (double[][] polygon : polygons) {
+				area += PolygonClipper.getSignedArea(polygon[0], polygon[1]);
+			}
+		} catch (RuntimeException e) {
+			System.out.println(name + ": " + e);
+			failures++;
+			return;
+		}
+		
+		Area expected = new Area(toPath(x, y));
+		expected.intersect(new Area(toPath(cx, cy)));
+		double expectedArea = getArea(expected);
+		
+		if (Math.abs(area - expectedArea) > 1E-9 * (maxX - minX) * (maxY - minY) + 1E-12) {
+			System.out.println(name + ": area " + area + " instead of " + expectedArea);
+			failures++;
+		}
+	}
+	
+	/**
+	 * Converts a polygon to a path.
+	 * 
+	 * @param x  the x-coordinates of the polygon
+	 * @param y  the y-coordinates of the polygon
+	 * @return the path
+	 */
+	private static Path2D.Double toPath(double[] x, double[] y) {
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(x[0], y[0]);
+		for (int i = 1; i < x.length; i++) {
+			path.lineTo(x[i], y[i]);
+		}
+		path.closePath();
+		return path;
+	}
+	
+	/**
+	 * Computes the area of an area consisting of polygons (holes are oriented opposite
+	 * to the outer polygons).
+	 * 
+	 * @param area  the area
+	 * @return the area
+	 */
+	private static double getArea(Area area) {
+		double result = 0.0;
+		double[] coords = new double[6];
+		double startX = 0.0;
+		double startY = 0.0;
+		double lastX = 0.0;
+		double lastY = 0.0;
+		for (PathIterator it = area.getPathIterator(null); !it.isDone(); it.next()) {
+			switch (it.currentSegment(coords)) {
+				case PathIterator.SEG_MOVETO:
+					startX = lastX = coords[0];
+					startY = lastY = coords[1];
+					break;
+				case PathIterator.SEG_LINETO:
+					result += lastX * coords[1] - coords[0] * lastY;
+					lastX = coords[0];
+					lastY = coords[1];
+					break;
+				case PathIterator.SEG_CLOSE:
+					result += lastX * startY - startX * lastY;
+					lastX = startX;
+					lastY = startY;
+					break;
+				default:
+					throw new IllegalStateException("Unexpected curve segment!");
+			}
+		}
+		return Math.abs(result / 2.0);
+	}
+	
+}
@@ -0,0 +1,175 @@
+package geoling.util;
+
+/**
+ * Fast Fourier transform (radix-2, Cooley-Tukey) for one- and two-dimensional
+ * complex data, given by separate arrays for the real and imaginary parts.
+ * All lengths have to be powers of two (see <code>nextPowerOfTwo</code>).
+ * The forward transform is not normalized, the inverse transform divides by
+ * the number of values.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class FFT {
+	
+	/**
+	 * Returns the smallest power of two that is greater than or equal to the given number.
+	 * 
+	 * @param n  the number (at least <code>1</code>)
+	 * @return the power of two
+	 */
+	public static int nextPowerOfTwo(int n) {
+		if (n <= 1) {
+			return 1;
+		}
+		int result = Integer.highestOneBit(n - 1) << 1;
+		if (result <= 0) {
+			throw new IllegalArgumentException("The number is too large for a power of two: "+n);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the (inverse) discrete Fourier transform in-place.
+	 * 
+	 * @param re       the real parts
+	 * @param im       the imaginary parts
+	 * @param offset   the index of the first value
+	 * @param stride   the distance between consecutive values in the arrays
+	 * @param n        the number of values (a power of two)
+	 * @param inverse  determines whether the inverse transform is computed
+	 */
+	public static void transform(double[] re, double[] im, int offset, int stride, int n, boolean inverse) {
+		if (Integer.bitCount(n) != 1) {
+			throw new IllegalArgumentException("The length has to be a power of two: "+n);
+		}
+		
+		// bit-reversal permutation
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				int a = offset + i*stride;
+				int b = offset + j*stride;
+				double t = re[a]; re[a] = re[b]; re[b] = t;
+				t = im[a]; im[a] = im[b]; im[b] = t;
+			}
+		}
+		
+		// butterflies
+		double sign = inverse ? 1.0 : -1.0;
+		for (int len = 2; len <= n; len <<= 1) {
+			int half = len >> 1;
+			double angle = sign * 2.0 * Math.PI / len;
+			double stepRe = Math.cos(angle);
+			double stepIm = Math.sin(angle);
+			for (int start = 0; start < n; start += len) {
+				double wRe = 1.0;
+				double wIm = 0.0;
+				for (int k = 0; k < half; k++) {
+					int a = offset + (start + k)*stride;
+					int b = a + half*stride;
+					double tRe = re[b]*wRe - im[b]*wIm;
+					double tIm = re[b]*wIm + im[b]*wRe;
+					re[b] = re[a] - tRe;
+					im[b] = im[a] - tIm;
+					re[a] += tRe;
+					im[a] += tIm;
+					double nextRe = wRe*stepRe - wIm*stepIm;
+					wIm = wRe*stepIm + wIm*stepRe;
+					wRe = nextRe;
+				}
+			}
+		}
+		
+		if (inverse) {
+			for (int i = 0; i < n; i++) {
+				re[offset + i*stride] /= n;
+				im[offset + i*stride] /= n;
+			}
+		}
+	}
+	
+	/**
+	 * Computes the two-dimensional (inverse) discrete Fourier transform in-place.
+	 * The values are stored row by row, i.e., the value in column <code>x</code>
+	 * and row <code>y</code> has index <code>y*width+x</code>.
+	 * 
+	 * @param re       the real parts
+	 * @param im       the imaginary parts
+	 * @param width    the number of columns (a power of two)
+	 * @param height   the number of rows (a power of two)
+	 * @param rows     the number of leading rows that may contain non-zero values (the
+	 *                 transform of the remaining rows is skipped in the first pass)
+	 * @param inverse  determines whether the inverse transform is computed
+	 */
+	public static void transform2D(double[] re, double[] im, int width, int height, int rows, boolean inverse) {
+		for (int y = 0; y < Math.min(rows, height); y++) {
+			transform(re, im, y*width, 1, width, inverse);
+		}
+		
+		// columns are copied to a temporary array, which is much faster than a large stride
+		double[] colRe = new double[height];
+		double[] colIm = new double[height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				colRe[y] = re[y*width + x];
+				colIm[y] = im[y*width + x];
+			}
+			transform(colRe, colIm, 0, 1, height, inverse);
+			for (int y = 0; y < height; y++) {
+				re[y*width + x] = colRe[y];
+				im[y*width + x] = colIm[y];
+			}
+		}
+	}
+	
+	/**
+	 * Computes the circular autocorrelations of two real two-dimensional fields with
+	 * only one forward and one inverse transform: the array <code>a</code> is
+	 * replaced by the autocorrelation <i>c</i>(dx,dy) = &Sigma; <i>a</i>(x,y) <i>a</i>(x+dx,y+dy)
+	 * (indices modulo width and height), <code>b</code> analogously.
+	 * To obtain the non-circular autocorrelation up to a lag <i>L</i> in each direction,
+	 * the fields have to be padded with at least <i>L</i> columns and rows of zeros.
+	 * 
+	 * @param a       the first field, replaced by its autocorrelation
+	 * @param b       the second field, replaced by its autocorrelation
+	 * @param width   the number of columns (a power of two)
+	 * @param height  the number of rows (a power of two)
+	 * @param rows    the number of leading rows that may contain non-zero values
+	 */
+	public static void autocorrelation2D(double[] a, double[] b, int width, int height, int rows) {
+		// transform of z = a + ib
+		transform2D(a, b, width, height, rows, false);
+		
+		// separate the transforms A, B of a and b, and replace Z by |A|^2 + i|B|^2
+		// (note that |A|^2 and |B|^2 are equal at k and -k)
+		for (int y = 0; y < height; y++) {
+			int yNeg = (height - y) & (height - 1);
+			for (int x = 0; x < width; x++) {
+				int xNeg = (width - x) & (width - 1);
+				int k    = y*width + x;
+				int kNeg = yNeg*width + xNeg;
+				if (kNeg < k) {
+					continue;
+				}
+				double zRe = a[k], zIm = b[k];
+				double nRe = a[kNeg], nIm = -b[kNeg];
+				double sumRe  = zRe + nRe, sumIm  = zIm + nIm;
+				double diffRe = zRe - nRe, diffIm = zIm - nIm;
+				double powerA = 0.25 * (sumRe*sumRe + sumIm*sumIm);
+				double powerB = 0.25 * (diffRe*diffRe + diffIm*diffIm);
+				a[k] = powerA;
+				b[k] = powerB;
+				a[kNeg] = powerA;
+				b[kNeg] = powerB;
+			}
+		}
+		
+		// the inverse transforms of |A|^2 and |B|^2 are real
+		transform2D(a, b, width, height, height, true);
+	}
+	
+}
@@ -21,9 +21,14 @@ public class LatLong  {
      * The longitude of <code>this</code> in radian 
      */
     private double longit=0.0;
+    
+    /** 
+     * The cosine of the latitude of <code>this</code>, cached for the distance computation 
+     */
+    private double cosLatitu=1.0;
    
     /** The Mean Earth Radius in km*/
-    private static final double R=6371.0;;  
+    static final double R=6371.0;;  
     /** 1 Nautical Mile in km*/
     private static final double nautical_mile=1.852;
     /** 1 (Statute) Mile in km */
@@ -50,6 +55,7 @@ public class LatLong  {
               
         this.latitu = degToRad(degLatitu);
         this.longit = degToRad(degLongit);
+        this.cosLatitu = Math.cos(this.latitu);
      }
     
     
@@ -90,7 +96,9 @@ public class LatLong  {
         double dlongit = dest.longit - this.longit;
         double dlatitu = dest.latitu - this.latitu;
         
-        double a = Math.sin(dlatitu/2) * Math.sin(dlatitu/2) + Math.cos(this.latitu) * Math.cos(dest.latitu) * Math.sin(dlongit/2) * Math.sin(dlongit/2);
+        double sinDlatitu = Math.sin(dlatitu/2);
+        double sinDlongit = Math.sin(dlongit/2);
+        double a = sinDlatitu * sinDlatitu + this.cosLatitu * dest.cosLatitu * sinDlongit * sinDlongit;
         
         // Math.atan2(x,y): Konvertiert(x,y) in Polarkoordinaten r,theta; berechnet Theta als Arcustangens von y/x; liefert Theta zurueck.
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
@@ -206,6 +214,20 @@ public class LatLong  {
         return (rad * 180.0 / Math.PI + 360 ) % 360; 
     }
     
+    /** @return the Latitude of <code>this</code> Location in radian
+    */ 
+    double getLatitudeRadian()
+    {
+        return this.latitu;
+    }
+    
+    /** @return the Longitude of <code>this</code> Location in radian
+    */ 
+    double getLongitudeRadian()
+    {
+        return this.longit;
+    }
+    
     /** @return the Latitude of <code>this</code> Location in decimal degrees
     */ 
     public double getLatitude()
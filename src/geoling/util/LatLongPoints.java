@@ -0,0 +1,324 @@
+package geoling.util;
+
+import java.util.Collection;
+
+/**
+ * A fixed set of geographical coordinates with precomputed values for fast
+ * distance computations, e.g. for computing many distances between the same
+ * locations. For every point, the latitude and longitude in radian, the cosine
+ * of the latitude and the position on the unit sphere (x, y, z) are stored in
+ * arrays.
+ * <p>
+ * The exact distance is the great-circle distance on a sphere with the mean earth
+ * radius (like in <code>LatLong.calculateDistanceTo</code>), it is computed from
+ * the length <i>c</i> of the chord between the points on the unit sphere as
+ * <i>2R</i> asin(<i>c</i>/2), i.e., without evaluating trigonometric functions of
+ * the coordinates.
+ * If the chord approximation is enabled, then the distance is approximated by the
+ * chord length <i>Rc</i> itself. This approximation is always smaller than the exact
+ * distance <i>d</i>, its relative error is at most (<i>d</i>/<i>R</i>)&sup2;/24
+ * (see <code>getMaximumRelativeError</code>), e.g. less than 0.03% for distances up
+ * to 500 kilometres. Note that the approximation is monotone in the exact distance,
+ * i.e., comparisons of distances are not affected.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class LatLongPoints {
+	
+	/** The mean earth radius in kilometres, see <code>LatLong</code>. */
+	public static final double EARTH_RADIUS = LatLong.R;
+	
+	/** The latitudes in radian. */
+	private final double[] latitudes;
+	
+	/** The longitudes in radian. */
+	private final double[] longitudes;
+	
+	/** The cosines of the latitudes. */
+	private final double[] cosLatitudes;
+	
+	/** The x-coordinates of the points on the unit sphere. */
+	private final double[] x;
+	
+	/** The y-coordinates of the points on the unit sphere. */
+	private final double[] y;
+	
+	/** The z-coordinates of the points on the unit sphere. */
+	private final double[] z;
+	
+	/** Determines whether distances are approximated by the chord length. */
+	private final boolean chordApproximation;
+	
+	/**
+	 * Constructs the precomputed representation of the given coordinates,
+	 * distances are computed exactly.
+	 * 
+	 * @param latLongs  the geographical coordinates
+	 */
+	public LatLongPoints(Collection<LatLong> latLongs) {
+		this(latLongs.toArray(new LatLong[latLongs.size()]), false);
+	}
+	
+	/**
+	 * Constructs the precomputed representation of the given coordinates.
+	 * 
+	 * @param latLongs            the geographical coordinates
+	 * @param chordApproximation  determines whether distances are approximated by the chord length
+	 */
+	public LatLongPoints(LatLong[] latLongs, boolean chordApproximation) {
+		int n = latLongs.length;
+		this.latitudes    = new double[n];
+		this.longitudes   = new double[n];
+		this.cosLatitudes = new double[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.z = new double[n];
+		this.chordApproximation = chordApproximation;
+		
+		for (int i = 0; i < n; i++) {
+			double lat = latLongs[i].getLatitudeRadian();
+			double lon = latLongs[i].getLongitudeRadian();
+			double cosLat = Math.cos(lat);
+			this.latitudes[i]    = lat;
+			this.longitudes[i]   = lon;
+			this.cosLatitudes[i] = cosLat;
+			this.x[i] = cosLat * Math.cos(lon);
+			this.y[i] = cosLat * Math.sin(lon);
+			this.z[i] = Math.sin(lat);
+		}
+	}
+	
+	/**
+	 * Returns the number of points.
+	 * 
+	 * @return the number of points
+	 */
+	public int size() {
+		return this.x.length;
+	}
+	
+	/**
+	 * Returns whether distances are approximated by the chord length.
+	 * 
+	 * @return <code>true</code> if the chord approximation is used
+	 */
+	public boolean isChordApproximation() {
+		return this.chordApproximation;
+	}
+	
+	/**
+	 * Returns the latitude of the given point.
+	 * 
+	 * @param i  the index of the point
+	 * @return the latitude in radian
+	 */
+	public double getLatitudeRadian(int i) {
+		return this.latitudes[i];
+	}
+	
+	/**
+	 * Returns the longitude of the given point.
+	 * 
+	 * @param i  the index of the point
+	 * @return the longitude in radian
+	 */
+	public double getLongitudeRadian(int i) {
+		return this.longitudes[i];
+	}
+	
+	/**
+	 * Returns the cosine of the latitude of the given point.
+	 * 
+	 * @param i  the index of the point
+	 * @return the cosine of the latitude
+	 */
+	public double getCosLatitude(int i) {
+		return this.cosLatitudes[i];
+	}
+	
+	/**
+	 * Computes the position of the given coordinates on the unit sphere.
+	 * 
+	 * @param latLong  the geographical coordinates
+	 * @return the array (x, y, z)
+	 */
+	public static double[] getUnitVector(LatLong latLong) {
+		double lat = latLong.getLatitudeRadian();
+		double lon = latLong.getLongitudeRadian();
+		double cosLat = Math.cos(lat);
+		return new double[] { cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat) };
+	}
+	
+	/**
+	 * Returns the squared chord length between two points on the unit sphere.
+	 * 
+	 * @param i  the index of the first point
+	 * @param j  the index of the second point
+	 * @return the squared chord length
+	 */
+	public double getSquaredChordLength(int i, int j) {
+		double dx = this.x[i] - this.x[j];
+		double dy = this.y[i] - this.y[j];
+		double dz = this.z[i] - this.z[j];
+		return dx*dx + dy*dy + dz*dz;
+	}
+	
+	/**
+	 * Returns the squared chord length between a point and the given position on the unit sphere.
+	 * 
+	 * @param i           the index of the point
+	 * @param unitVector  the position (x, y, z) on the unit sphere, see <code>getUnitVector</code>
+	 * @return the squared chord length
+	 */
+	public double getSquaredChordLength(int i, double[] unitVector) {
+		double dx = this.x[i] - unitVector[0];
+		double dy = this.y[i] - unitVector[1];
+		double dz = this.z[i] - unitVector[2];
+		return dx*dx + dy*dy + dz*dz;
+	}
+	
+	/**
+	 * Converts a squared chord length on the unit sphere to the great-circle distance.
+	 * 
+	 * @param squaredChordLength  the squared chord length
+	 * @return the distance in kilometres
+	 */
+	public static double squaredChordLengthToDistance(double squaredChordLength) {
+		return 2.0 * EARTH_RADIUS * Math.asin(Math.min(1.0, 0.5 * Math.sqrt(squaredChordLength)));
+	}
+	
+	/**
+	 * Converts a great-circle distance to the squared chord length on the unit sphere.
+	 * This is useful for checking many distances against the same maximal distance.
+	 * 
+	 * @param distance  the distance in kilometres
+	 * @return the squared chord length
+	 */
+	public static double distanceToSquaredChordLength(double distance) {
+		if (distance >= Math.PI * EARTH_RADIUS) {
+			return 4.0;
+		}
+		double c = 2.0 * Math.sin(0.5 * Math.max(0.0, distance) / EARTH_RADIUS);
+		return c*c;
+	}
+	
+	/**
+	 * Returns an upper bound for the relative error of the chord approximation,
+	 * for all distances up to the given maximal distance.
+	 * The bound follows from sin(<i>t</i>)/<i>t</i> &ge; 1 - <i>t</i>&sup2;/6.
+	 * 
+	 * @param maxDistance  the maximal (exact) distance in kilometres
+	 * @return the upper bound for the relative error
+	 */
+	public static double getMaximumRelativeError(double maxDistance) {
+		double t = maxDistance / EARTH_RADIUS;
+		return Math.min(1.0, t*t / 24.0);
+	}
+	
+	/**
+	 * Converts a squared chord length to the distance, respecting the chord approximation.
+	 * 
+	 * @param squaredChordLength  the squared chord length
+	 * @return the distance in kilometres
+	 */
+	private double toDistance(double squaredChordLength) {
+		if (this.chordApproximation) {
+			return EARTH_RADIUS * Math.sqrt(squaredChordLength);
+		} else {
+			return squaredChordLengthToDistance(squaredChordLength);
+		}
+	}
+	
+	/**
+	 * Computes the distance between two points.
+	 * 
+	 * @param i  the index of the first point
+	 * @param j  the index of the second point
+	 * @return the distance in kilometres
+	 */
+	public double distance(int i, int j) {
+		return toDistance(getSquaredChordLength(i, j));
+	}
+	
+	/**
+	 * Computes the distance between a point and the given geographical coordinates.
+	 * If many distances to the same coordinates are required, then
+	 * <code>distances(LatLong, double[])</code> should be used.
+	 * 
+	 * @param i        the index of the point
+	 * @param latLong  the geographical coordinates
+	 * @return the distance in kilometres
+	 */
+	public double distance(int i, LatLong latLong) {
+		return toDistance(getSquaredChordLength(i, getUnitVector(latLong)));
+	}
+	
+	/**
+	 * Computes the distances from a point to all points.
+	 * 
+	 * @param i       the index of the point
+	 * @param result  the array for the distances (in kilometres), with length at least <code>size()</code>
+	 * @return the array <code>result</code>
+	 */
+	public double[] distances(int i, double[] result) {
+		return distances(this.x[i], this.y[i], this.z[i], result);
+	}
+	
+	/**
+	 * Computes the distances from the given geographical coordinates to all points.
+	 * 
+	 * @param latLong  the geographical coordinates
+	 * @param result   the array for the distances (in kilometres), with length at least <code>size()</code>
+	 * @return the array <code>result</code>
+	 */
+	public double[] distances(LatLong latLong, double[] result) {
+		double[] u = getUnitVector(latLong);
+		return distances(u[0], u[1], u[2], result);
+	}
+	
+	/**
+	 * Computes the distances from a point to the points with the given indices.
+	 * 
+	 * @param i        the index of the point
+	 * @param indices  the indices of the other points
+	 * @param result   the array for the distances (in kilometres), with length at least <code>indices.length</code>
+	 * @return the array <code>result</code>
+	 */
+	public double[] distances(int i, int[] indices, double[] result) {
+		double px = this.x[i];
+		double py = this.y[i];
+		double pz = this.z[i];
+		for (int k = 0; k < indices.length; k++) {
+			int j = indices[k];
+			double dx = this.x[j] - px;
+			double dy = this.y[j] - py;
+			double dz = this.z[j] - pz;
+			result[k] = toDistance(dx*dx + dy*dy + dz*dz);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the distances from the given position on the unit sphere to all points.
+	 * 
+	 * @param px      the x-coordinate of the position
+	 * @param py      the y-coordinate of the position
+	 * @param pz      the z-coordinate of the position
+	 * @param result  the array for the distances
+	 * @return the array <code>result</code>
+	 */
+	private double[] distances(double px, double py, double pz, double[] result) {
+		int n = this.x.length;
+		if (result.length < n) {
+			throw new IllegalArgumentException("The result array is too short!");
+		}
+		for (int j = 0; j < n; j++) {
+			double dx = this.x[j] - px;
+			double dy = this.y[j] - py;
+			double dz = this.z[j] - pz;
+			result[j] = toDistance(dx*dx + dy*dy + dz*dz);
+		}
+		return result;
+	}
+	
+}
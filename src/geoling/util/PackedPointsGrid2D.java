@@ -0,0 +1,359 @@
+package geoling.util;
+
+/**
+ * A static grid for a set of points in 2D, which provides methods for finding
+ * all points in a given distance, the nearest neighbour or the <code>k</code>
+ * nearest neighbours. In contrast to <code>PointsGrid2D</code>, the points are
+ * given by arrays of coordinates and identified by their indices in these arrays,
+ * and the grid is packed into arrays (compressed sparse rows): the points of every
+ * grid element are stored consecutively. Queries do not allocate any objects.
+ * <p>
+ * The grid works best if the points disperse roughly uniformly in their bounding box.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class PackedPointsGrid2D {
+	
+	/** The default mean number of points per grid element. */
+	public static final double DEF_MEAN_NUMBER_OF_POINTS_PER_ELEMENT = 2.0;
+	
+	/** Visitor for the points found by a query. */
+	public interface Visitor {
+		/**
+		 * Called for every point found by a query.
+		 * 
+		 * @param index            the index of the point
+		 * @param squaredDistance  the squared distance of the point to the query point
+		 */
+		public void visit(int index, double squaredDistance);
+	}
+	
+	/** The number of points. */
+	private final int n;
+	
+	/** The minimal x-coordinate of the grid. */
+	private final double minX;
+	
+	/** The minimal y-coordinate of the grid. */
+	private final double minY;
+	
+	/** The width and height of a grid element. */
+	private final double elementSize;
+	
+	/** The number of grid columns. */
+	private final int columns;
+	
+	/** The number of grid rows. */
+	private final int rows;
+	
+	/** The offsets of the grid elements (row by row) in the arrays of points. */
+	private final int[] elementOffsets;
+	
+	/** The x-coordinates of the points, ordered by grid elements. */
+	private final double[] elementX;
+	
+	/** The y-coordinates of the points, ordered by grid elements. */
+	private final double[] elementY;
+	
+	/** The indices of the points, ordered by grid elements. */
+	private final int[] elementIndices;
+	
+	/**
+	 * Constructs a grid for the given points with a default number of points per grid element.
+	 * 
+	 * @param x  the x-coordinates of the points
+	 * @param y  the y-coordinates of the points
+	 */
+	public PackedPointsGrid2D(double[] x, double[] y) {
+		this(x, y, DEF_MEAN_NUMBER_OF_POINTS_PER_ELEMENT);
+	}
+	
+	/**
+	 * Constructs a grid for the given points.
+	 * 
+	 * @param x                 the x-coordinates of the points
+	 * @param y                 the y-coordinates of the points
+	 * @param pointsPerElement  the mean number of points per grid element
+	 */
+	public PackedPointsGrid2D(double[] x, double[] y, double pointsPerElement) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("The arrays of coordinates must have the same length!");
+		}
+		if (!(pointsPerElement > 0.0)) {
+			throw new IllegalArgumentException("The number of points per grid element has to be positive!");
+		}
+		this.n = x.length;
+		
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < this.n; i++) {
+			if (Double.isNaN(x[i]) || Double.isNaN(y[i]) || Double.isInfinite(x[i]) || Double.isInfinite(y[i])) {
+				throw new IllegalArgumentException("The coordinates have to be finite!");
+			}
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		if (this.n == 0) {
+			minX = minY = maxX = maxY = 0.0;
+		}
+		double width = maxX - minX;
+		double height = maxY - minY;
+		
+		// choose square grid elements such that there are about pointsPerElement points per
+		// element, if the points are collinear use the extent in one direction only
+		double size;
+		if ((width > 0.0) && (height > 0.0)) {
+			size = Math.sqrt(width * height * pointsPerElement / Math.max(1, this.n));
+		} else {
+			size = Math.max(width, height) * pointsPerElement / Math.max(1, this.n);
+		}
+		if (!(size > 0.0)) {
+			size = 1.0;
+		}
+		// limit the number of elements for very unequal extents
+		while (((long)Math.floor(width/size)+1) * ((long)Math.floor(height/size)+1) > 4L*this.n + 16) {
+			size *= 2.0;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.elementSize = size;
+		this.columns = (int)Math.floor(width/size) + 1;
+		this.rows = (int)Math.floor(height/size) + 1;
+		
+		// counting sort of the points by grid elements
+		int[] elements = new int[this.n];
+		this.elementOffsets = new int[this.columns*this.rows + 1];
+		for (int i = 0; i < this.n; i++) {
+			elements[i] = getRow(y[i])*this.columns + getColumn(x[i]);
+			this.elementOffsets[elements[i]+1]++;
+		}
+		for (int e = 0; e < this.columns*this.rows; e++) {
+			this.elementOffsets[e+1] += this.elementOffsets[e];
+		}
+		int[] positions = new int[this.columns*this.rows];
+		System.arraycopy(this.elementOffsets, 0, positions, 0, positions.length);
+		this.elementX = new double[this.n];
+		this.elementY = new double[this.n];
+		this.elementIndices = new int[this.n];
+		for (int i = 0; i < this.n; i++) {
+			int p = positions[elements[i]]++;
+			this.elementX[p] = x[i];
+			this.elementY[p] = y[i];
+			this.elementIndices[p] = i;
+		}
+	}
+	
+	/**
+	 * Returns the number of points.
+	 * 
+	 * @return the number of points
+	 */
+	public int size() {
+		return this.n;
+	}
+	
+	/**
+	 * Returns the grid column of the given x-coordinate (without limitation to the grid).
+	 * 
+	 * @param x  the x-coordinate
+	 * @return the column
+	 */
+	private int getUnboundedColumn(double x) {
+		return (int)Math.max(Integer.MIN_VALUE/2, Math.min(Integer.MAX_VALUE/2, Math.floor((x - this.minX) / this.elementSize)));
+	}
+	
+	/**
+	 * Returns the grid row of the given y-coordinate (without limitation to the grid).
+	 * 
+	 * @param y  the y-coordinate
+	 * @return the row
+	 */
+	private int getUnboundedRow(double y) {
+		return (int)Math.max(Integer.MIN_VALUE/2, Math.min(Integer.MAX_VALUE/2, Math.floor((y - this.minY) / this.elementSize)));
+	}
+	
+	/**
+	 * Returns the grid column of the given x-coordinate.
+	 * 
+	 * @param x  the x-coordinate
+	 * @return the column
+	 */
+	private int getColumn(double x) {
+		return Math.max(0, Math.min(this.columns-1, getUnboundedColumn(x)));
+	}
+	
+	/**
+	 * Returns the grid row of the given y-coordinate.
+	 * 
+	 * @param y  the y-coordinate
+	 * @return the row
+	 */
+	private int getRow(double y) {
+		return Math.max(0, Math.min(this.rows-1, getUnboundedRow(y)));
+	}
+	
+	/**
+	 * Visits all points whose distance to the given point is at most <code>r</code>
+	 * (in no specific order).
+	 * 
+	 * @param px       the x-coordinate of the query point
+	 * @param py       the y-coordinate of the query point
+	 * @param r        the maximal distance
+	 * @param visitor  the visitor called for every point
+	 */
+	public void visitNeighboursInDistance(double px, double py, double r, Visitor visitor) {
+		if ((this.n == 0) || (r < 0.0)) {
+			return;
+		}
+		double rSquared = r*r;
+		int c1 = getColumn(px - r);
+		int c2 = getColumn(px + r);
+		int r1 = getRow(py - r);
+		int r2 = getRow(py + r);
+		for (int row = r1; row <= r2; row++) {
+			for (int p = this.elementOffsets[row*this.columns + c1]; p < this.elementOffsets[row*this.columns + c2 + 1]; p++) {
+				double dx = this.elementX[p] - px;
+				double dy = this.elementY[p] - py;
+				double squaredDistance = dx*dx + dy*dy;
+				if (squaredDistance <= rSquared) {
+					visitor.visit(this.elementIndices[p], squaredDistance);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the index of the point nearest to the given point.
+	 * 
+	 * @param px  the x-coordinate of the query point
+	 * @param py  the y-coordinate of the query point
+	 * @return the index of the nearest point, <code>-1</code> if there are no points
+	 */
+	public int findNearestNeighbour(double px, double py) {
+		if (this.n == 0) {
+			return -1;
+		}
+		int pc = getUnboundedColumn(px);
+		int pr = getUnboundedRow(py);
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int level = getInitialLevel(pc, pr); level <= getMaximalLevel(pc, pr); level++) {
+			// all elements of the following levels have at least this distance
+			double levelDistance = (level - 1) * this.elementSize;
+			if ((best >= 0) && (levelDistance > 0.0) && (levelDistance*levelDistance > bestDistance)) {
+				break;
+			}
+			for (int row = Math.max(0, pr-level); row <= Math.min(this.rows-1, pr+level); row++) {
+				boolean fullRow = (Math.abs(row - pr) == level);
+				int step = fullRow ? 1 : Math.max(1, 2*level);
+				for (int column = pc-level; column <= pc+level; column += step) {
+					if ((column < 0) || (column >= this.columns)) {
+						continue;
+					}
+					int e = row*this.columns + column;
+					for (int p = this.elementOffsets[e]; p < this.elementOffsets[e+1]; p++) {
+						double dx = this.elementX[p] - px;
+						double dy = this.elementY[p] - py;
+						double squaredDistance = dx*dx + dy*dy;
+						if (squaredDistance < bestDistance) {
+							bestDistance = squaredDistance;
+							best = this.elementIndices[p];
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Searches the <code>k</code> nearest neighbours of the given point. The indices and
+	 * squared distances are written to the given arrays, sorted by distance (ascendingly).
+	 * 
+	 * @param px                the x-coordinate of the query point
+	 * @param py                the y-coordinate of the query point
+	 * @param k                 the number of nearest neighbours to find
+	 * @param indices           the array for the indices of the neighbours (length at least <code>k</code>)
+	 * @param squaredDistances  the array for the squared distances (length at least <code>k</code>)
+	 * @return the number of neighbours found, i.e., the minimum of <code>k</code> and the number of points
+	 */
+	public int findKNearestNeighbours(double px, double py, int k, int[] indices, double[] squaredDistances) {
+		if ((indices.length < k) || (squaredDistances.length < k)) {
+			throw new IllegalArgumentException("The arrays for the result are too short!");
+		}
+		if ((this.n == 0) || (k <= 0)) {
+			return 0;
+		}
+		int pc = getUnboundedColumn(px);
+		int pr = getUnboundedRow(py);
+		int count = 0;
+		for (int level = getInitialLevel(pc, pr); level <= getMaximalLevel(pc, pr); level++) {
+			// all elements of the following levels have at least this distance
+			double levelDistance = (level - 1) * this.elementSize;
+			if ((count == k) && (levelDistance > 0.0) && (levelDistance*levelDistance > squaredDistances[k-1])) {
+				break;
+			}
+			for (int row = Math.max(0, pr-level); row <= Math.min(this.rows-1, pr+level); row++) {
+				boolean fullRow = (Math.abs(row - pr) == level);
+				int step = fullRow ? 1 : Math.max(1, 2*level);
+				for (int column = pc-level; column <= pc+level; column += step) {
+					if ((column < 0) || (column >= this.columns)) {
+						continue;
+					}
+					int e = row*this.columns + column;
+					for (int p = this.elementOffsets[e]; p < this.elementOffsets[e+1]; p++) {
+						double dx = this.elementX[p] - px;
+						double dy = this.elementY[p] - py;
+						double squaredDistance = dx*dx + dy*dy;
+						if ((count < k) || (squaredDistance < squaredDistances[count-1])) {
+							// insertion into the sorted arrays
+							int pos = (count < k) ? count++ : (count-1);
+							while ((pos > 0) && (squaredDistances[pos-1] > squaredDistance)) {
+								squaredDistances[pos] = squaredDistances[pos-1];
+								indices[pos] = indices[pos-1];
+								pos--;
+							}
+							squaredDistances[pos] = squaredDistance;
+							indices[pos] = this.elementIndices[p];
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the first level (maximum norm distance in grid elements) that contains grid
+	 * elements, which is positive for query points outside of the grid.
+	 * 
+	 * @param pc  the column of the query point
+	 * @param pr  the row of the query point
+	 * @return the first level
+	 */
+	private int getInitialLevel(int pc, int pr) {
+		int level = 0;
+		level = Math.max(level, -pc);
+		level = Math.max(level, pc - (this.columns-1));
+		level = Math.max(level, -pr);
+		level = Math.max(level, pr - (this.rows-1));
+		return level;
+	}
+	
+	/**
+	 * Returns the last level (maximum norm distance in grid elements) that contains grid elements.
+	 * 
+	 * @param pc  the column of the query point
+	 * @param pr  the row of the query point
+	 * @return the last level
+	 */
+	private int getMaximalLevel(int pc, int pr) {
+		return Math.max(Math.max(Math.abs(pc), Math.abs(pc - (this.columns-1))),
+		                Math.max(Math.abs(pr), Math.abs(pr - (this.rows-1))));
+	}
+	
+}
@@ -0,0 +1,303 @@
+package geoling.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Thread-safe cache for objects that are expensive to compute, identified by a
+ * fingerprint string (e.g. a hash of all parameters of the computation).
+ * <p>
+ * The lock of the cache is only held while looking up or inserting entries,
+ * not while computing values: the first thread requesting a key computes the
+ * value, all other threads requesting the same key in the meantime wait for
+ * this computation (i.e., every value is computed only once). If the number
+ * of entries or their total weight exceeds the limits, the least recently used
+ * entries are evicted.
+ * 
+ * @param <V> the type of the cached values
+ * @author Institute of Stochastics, Ulm University
+ */
+public class SharedCache<V> {
+	
+	/** Interface for computing a value that is not yet cached. */
+	public interface Loader<V> {
+		/**
+		 * Computes the value.
+		 * 
+		 * @return the value
+		 */
+		public V load();
+	}
+	
+	/** Interface for determining the weight of a value, e.g. its approximate size. */
+	public interface Weigher<V> {
+		/**
+		 * Returns the weight of the given value.
+		 * 
+		 * @param value  the value
+		 * @return the weight (non-negative)
+		 */
+		public long getWeight(V value);
+	}
+	
+	/** An entry of the cache. */
+	private static class Entry<V> {
+		/** The computation of the value. */
+		private final FutureTask<V> task;
+		
+		/** The weight of the value, <code>-1</code> if the value is not yet computed. */
+		private long weight = -1;
+		
+		private Entry(FutureTask<V> task) {
+			this.task = task;
+		}
+	}
+	
+	/** The name of the cache, used in <code>toString()</code>. */
+	private final String name;
+	
+	/** The maximal number of entries. */
+	private final int maxEntries;
+	
+	/** The maximal total weight of the entries. */
+	private final long maxWeight;
+	
+	/** The weigher for the values, <code>null</code> if every value has weight <code>1</code>. */
+	private final Weigher<V> weigher;
+	
+	/** The entries in access order (least recently used first). */
+	private final LinkedHashMap<String,Entry<V>> entries = new LinkedHashMap<String,Entry<V>>(16, 0.75f, true);
+	
+	/** The total weight of all computed entries. */
+	private long totalWeight = 0;
+	
+	/** The number of requests that found their key in the cache. */
+	private long hits = 0;
+	
+	/** The number of requests that had to compute their value. */
+	private long misses = 0;
+	
+	/** The number of evicted entries. */
+	private long evictions = 0;
+	
+	/**
+	 * Constructs a cache that is limited by the number of entries.
+	 * 
+	 * @param name        the name of the cache
+	 * @param maxEntries  the maximal number of entries
+	 */
+	public SharedCache(String name, int maxEntries) {
+		this(name, maxEntries, Long.MAX_VALUE, null);
+	}
+	
+	/**
+	 * Constructs a cache that is limited by the number of entries and their total weight.
+	 * Note that the most recently used entry is never evicted, even if its weight
+	 * exceeds the maximal weight.
+	 * 
+	 * @param name        the name of the cache
+	 * @param maxEntries  the maximal number of entries
+	 * @param maxWeight   the maximal total weight of the entries
+	 * @param weigher     the weigher for the values, may be <code>null</code> if every value has weight <code>1</code>
+	 */
+	public SharedCache(String name, int maxEntries, long maxWeight, Weigher<V> weigher) {
+		if ((maxEntries < 1) || (maxWeight < 0)) {
+			throw new IllegalArgumentException("The cache has to hold at least one entry!");
+		}
+		this.name       = name;
+		this.maxEntries = maxEntries;
+		this.maxWeight  = maxWeight;
+		this.weigher    = weigher;
+	}
+	
+	/**
+	 * Returns the value for the given key, the value is computed using the given loader
+	 * if it is not yet cached. If another thread is computing the value for the same key,
+	 * then this method waits for its result.
+	 * 
+	 * @param key     the fingerprint of the value
+	 * @param loader  the loader computing the value
+	 * @return the value
+	 */
+	public V get(String key, final Loader<V> loader) {
+		Entry<V> entry;
+		boolean compute = false;
+		synchronized (this) {
+			entry = this.entries.get(key);
+			if (entry != null) {
+				this.hits++;
+			} else {
+				this.misses++;
+				entry = new Entry<V>(new FutureTask<V>(new Callable<V>() {
+					public V call() {
+						return loader.load();
+					}
+				}));
+				this.entries.put(key, entry);
+				compute = true;
+			}
+		}
+		
+		if (compute) {
+			entry.task.run();
+		}
+		
+		V value;
+		try {
+			value = getValue(entry.task);
+		} catch (RuntimeException e) {
+			// do not cache failed computations
+			synchronized (this) {
+				if (this.entries.get(key) == entry) {
+					this.entries.remove(key);
+				}
+			}
+			throw e;
+		}
+		
+		if (compute) {
+			synchronized (this) {
+				if ((this.entries.get(key) == entry) && (entry.weight < 0)) {
+					entry.weight = (this.weigher != null) ? Math.max(0, this.weigher.getWeight(value)) : 1;
+					this.totalWeight += entry.weight;
+					evict();
+				}
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * Waits for the given computation and returns its result.
+	 * 
+	 * @param task  the computation
+	 * @return the result
+	 */
+	private static <V> V getValue(FutureTask<V> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					// the value is required anyway, so wait until it is available
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException)cause;
+					} else if (cause instanceof Error) {
+						throw (Error)cause;
+					} else {
+						throw new RuntimeException(cause);
+					}
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the least recently used computed entries until the limits are satisfied.
+	 * Entries that are still computed are not evicted. Note that the caller has to hold
+	 * the lock of this cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String,Entry<V>>> it = this.entries.entrySet().iterator();
+		int remaining = this.entries.size();
+		while (it.hasNext() && (remaining > 1) && ((this.entries.size() > this.maxEntries) || (this.totalWeight > this.maxWeight))) {
+			Entry<V> entry = it.next().getValue();
+			remaining--;
+			if (entry.weight >= 0) {
+				it.remove();
+				this.totalWeight -= entry.weight;
+				this.evictions++;
+			}
+		}
+	}
+	
+	/**
+	 * Removes the value with the given key from the cache, e.g. because it is outdated.
+	 * Threads that are already waiting for the value are not affected.
+	 * 
+	 * @param key  the fingerprint of the value
+	 */
+	public synchronized void invalidate(String key) {
+		Entry<V> entry = this.entries.remove(key);
+		if ((entry != null) && (entry.weight >= 0)) {
+			this.totalWeight -= entry.weight;
+		}
+	}
+	
+	/**
+	 * Removes all values from the cache.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.totalWeight = 0;
+	}
+	
+	/**
+	 * Returns the number of entries (including values that are still computed).
+	 * 
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	/**
+	 * Returns the total weight of the computed entries.
+	 * 
+	 * @return the total weight
+	 */
+	public synchronized long getTotalWeight() {
+		return this.totalWeight;
+	}
+	
+	/**
+	 * Returns the number of requests that found their key in the cache.
+	 * 
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+	
+	/**
+	 * Returns the number of requests that had to compute their value.
+	 * 
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+	
+	/**
+	 * Returns the number of evicted entries.
+	 * 
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+	
+	/**
+	 * Returns a string representation of this cache, including its metrics.
+	 * 
+	 * @return a string representation of the cache
+	 */
+	@Override
+	public synchronized String toString() {
+		return this.name+": "+this.entries.size()+" entries (weight "+this.totalWeight+"), "+
+		       this.hits+" hits, "+this.misses+" misses, "+this.evictions+" evictions";
+	}
+	
+}
@@ -1,14 +1,13 @@
 package geoling.util;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class for working on a to-do list of jobs (objects) in parallel.
@@ -18,6 +17,11 @@ import java.util.concurrent.Future;
  * may be explicitly controlled by setting the environment variable
  * <code>NUMBER_OF_THREADS</code> or the class variable <code>ThreadedTodoWorker.NUMBER_OF_THREADS</code>.
  * <p>
+ * All jobs are executed by a single shared <code>ForkJoinPool</code>. Items are
+ * handed out in chunks of consecutive indices, and nested calls (i.e., calls from
+ * within a worker) are executed in the same pool, such that idle threads steal
+ * work from the nested job instead of running it single-threaded.
+ * <p>
  * Example (density estimation):
  * <code>
  * // input: (list of) locations, data (passed to an exemplary densityEstimation object)
@@ -48,21 +52,60 @@ public class ThreadedTodoWorker {
 	/** Determines whether usage of threads is enabled. Disabled by default. */
 	public static boolean ENABLED = false;
 	
-	/** Number of threads that may be used, has to be changed (if necessary) before the first call to <code>getThreadExecutor</code>. */
+	/** Number of threads that may be used, changes take effect with the next call to <code>workOnTodoList</code>. */
 	public static int NUMBER_OF_THREADS = getDefaultNumberOfThreads();
 	
+	/** Number of chunks per thread a job is divided into, more chunks give a better load balancing. */
+	private static final int CHUNKS_PER_THREAD = 8;
+	
 	/** Worker class for <code>workOnTodoList</code>, a single object is used in several threads, so avoid e.g. instance variables! */
 	public interface SimpleTodoWorker<E> {
 		public void processTodoItem(E todo);
 	}
 	
-	/** Marks whether we have currently running threads. */
-	private static boolean threadsCurrentlyRunning = false;
+	/** Worker class for <code>workOnIndexRange</code>, avoids boxing of the indices. A single object is used in several threads, so avoid e.g. instance variables! */
+	public interface IndexTodoWorker {
+		public void processTodoIndex(int index);
+	}
+	
+	/**
+	 * Object used to cancel a running job. Items that are already being processed
+	 * are completed, all others are skipped and <code>workOnTodoList</code> throws a
+	 * <code>CancellationException</code>.
+	 */
+	public static class Cancellation {
+		
+		/** Marks whether the job was cancelled. */
+		private volatile boolean cancelled = false;
+		
+		/**
+		 * Requests cancellation of the job(s) using this object.
+		 */
+		public void cancel() {
+			this.cancelled = true;
+		}
+		
+		/**
+		 * Checks whether cancellation was requested.
+		 * 
+		 * @return <code>true</code> if cancellation was requested
+		 */
+		public boolean isCancelled() {
+			return this.cancelled;
+		}
+		
+	}
+	
+	/** The shared thread pool, created when required. */
+	private static ForkJoinPool threadPool = null;
+	
+	/** The number of jobs currently executed in parallel. */
+	private static final AtomicInteger jobsCurrentlyRunning = new AtomicInteger(0);
 	
 	/**
 	 * Starts threads that work on items of a to-do list.
 	 * This method doesn't use threads if the number of threads is set
-	 * to one, or, if we are already in a thread created by this class.
+	 * to one.
 	 * 
 	 * @param todos   the items to process
 	 * @param worker  the worker object used to process an item
@@ -74,101 +117,45 @@ public class ThreadedTodoWorker {
 	/**
 	 * Starts threads that work on items of a to-do list.
 	 * This method doesn't use threads if the number of threads is set
-	 * to one, or, if we are already in a thread created by this class.
+	 * to one.
 	 * 
 	 * @param todos    the items to process
 	 * @param worker   the worker object used to process an item
 	 * @param progress output object for progress messages, e.g.
 	 *                 <code>new ProgressOutput(System.out)</code>
 	 */
-	public static <E> void workOnTodoList(Collection<E> todos, final SimpleTodoWorker<E> worker, final ProgressOutput progress) {
-		int todoCount  = todos.size();
-		int maxThreads = Math.min(todoCount, ENABLED ? NUMBER_OF_THREADS : 1);
-		
-		// prepare progress output
-		progress.reset(todoCount);
-		progress.initCurrent();
-		
-		// are we allowed to use threads (and there aren't already threads running...)?
-		boolean lockObtained;
-		if (maxThreads > 1) {
-			lockObtained = getLockOnThreadsCurrentlyRunning();
-		} else {
-			lockObtained = false;
-		}
-		
-		// now begin, either with threads or without
-		if (lockObtained) {
-			try {
-				ExecutorService threadPool = Executors.newCachedThreadPool();
-				try {
-					// variable to hold the thread references
-					ArrayList<Future<?>> futures = new ArrayList<Future<?>>(maxThreads);
-					
-					// synchronized copy of to-do list
-					final List<E> todosSynchronized = Collections.synchronizedList(new LinkedList<E>(todos));
-					
-					// now start all the threads
-					for (int i = 0; i < maxThreads; i++) {
-						Runnable thread = new Runnable() {
-							public void run() {
-								while (!todosSynchronized.isEmpty()) {
-									E todo = null;
-									try {
-										todo = todosSynchronized.remove(0);
-									} catch (IndexOutOfBoundsException e) {
-										// maybe another thread has fetched the last todo entry since the isEmpty() call
-									}
-									if (todo != null) {
-										worker.processTodoItem(todo);
-										progress.incrementCurrent();
-									}
-								}
-							}
-						};
-						futures.add(threadPool.submit(thread));
-					}
-					
-					try {
-						// wait until all threads are finished
-						for (Future<?> future : futures) {
-							future.get();
-						}
-					} catch (InterruptedException e) {
-						throw new RuntimeException(e);
-					} catch (ExecutionException e) {
-						if (e.getCause() != null) {
-							// throw original exception created in the thread, wrap it with a
-							// RuntimeException only if necessary
-							if (e.getCause() instanceof RuntimeException) {
-								throw (RuntimeException)e.getCause();
-							} else {
-								throw new RuntimeException(e.getCause());
-							}
-						} else {
-							throw new RuntimeException(e);
-						}
-					}
-				} finally {
-					threadPool.shutdown();
-				}
-			} finally {
-				releaseLockOnThreadsCurrentlyRunning();
-			}
-		} else {
-			// no multi-threading or already in a thread: don't start a new thread
-			for (E todo : todos) {
-				worker.processTodoItem(todo);
-				progress.incrementCurrent();
+	public static <E> void workOnTodoList(Collection<E> todos, SimpleTodoWorker<E> worker, ProgressOutput progress) {
+		workOnTodoList(todos, worker, progress, NUMBER_OF_THREADS, null);
+	}
+	
+	/**
+	 * Starts threads that work on items of a to-do list.
+	 * This method doesn't use threads if the number of threads is set
+	 * to one.
+	 * 
+	 * @param todos        the items to process
+	 * @param worker       the worker object used to process an item
+	 * @param progress     output object for progress messages, e.g.
+	 *                     <code>new ProgressOutput(System.out)</code>
+	 * @param maxThreads   the maximum number of threads working on this job
+	 *                     (bounded by <code>NUMBER_OF_THREADS</code>)
+	 * @param cancellation object to cancel the job, may be <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> void workOnTodoList(Collection<E> todos, final SimpleTodoWorker<E> worker, ProgressOutput progress, int maxThreads, Cancellation cancellation) {
+		final Object[] todosArray = todos.toArray();
+		workOnIndexRange(0, todosArray.length-1, 1, new IndexTodoWorker() {
+			public void processTodoIndex(int index) {
+				worker.processTodoItem((E)todosArray[index]);
 			}
-		}
+		}, progress, maxThreads, cancellation);
 	}
 	
 	/**
 	 * Starts threads which work on a single index each, which may
 	 * be e.g. a coordinate of a slice in a 3D image.
 	 * This method doesn't use threads if the number of threads is set
-	 * to one, or, if we are already in a thread created by this class.
+	 * to one.
 	 * 
 	 * @param startIndex  the first index
 	 * @param endIndex    the last index
@@ -183,7 +170,43 @@ public class ThreadedTodoWorker {
 	 * Starts threads which work on a single index each, which may
 	 * be e.g. a coordinate of a slice in a 3D image.
 	 * This method doesn't use threads if the number of threads is set
-	 * to one, or, if we are already in a thread created by this class.
+	 * to one.
+	 * 
+	 * @param startIndex  the first index
+	 * @param endIndex    the last index
+	 * @param increment   the increment for the indices
+	 * @param worker      the worker object used to process a single index
+	 * @param progress    output object for progress messages, e.g.
+	 *                    <code>new ProgressOutput(System.out)</code>
+	 */
+	public static <E> void workOnIndices(int startIndex, int endIndex, int increment, final SimpleTodoWorker<Integer> worker, ProgressOutput progress) {
+		workOnIndexRange(startIndex, endIndex, increment, new IndexTodoWorker() {
+			public void processTodoIndex(int index) {
+				worker.processTodoItem(index);
+			}
+		}, progress);
+	}
+	
+	/**
+	 * Starts threads which work on a single index each, which may
+	 * be e.g. a coordinate of a slice in a 3D image.
+	 * This method doesn't use threads if the number of threads is set
+	 * to one.
+	 * 
+	 * @param startIndex  the first index
+	 * @param endIndex    the last index
+	 * @param increment   the increment for the indices
+	 * @param worker      the worker object used to process a single index
+	 */
+	public static void workOnIndexRange(int startIndex, int endIndex, int increment, IndexTodoWorker worker) {
+		workOnIndexRange(startIndex, endIndex, increment, worker, new ProgressOutput());
+	}
+	
+	/**
+	 * Starts threads which work on a single index each, which may
+	 * be e.g. a coordinate of a slice in a 3D image.
+	 * This method doesn't use threads if the number of threads is set
+	 * to one.
 	 * 
 	 * @param startIndex  the first index
 	 * @param endIndex    the last index
@@ -192,47 +215,220 @@ public class ThreadedTodoWorker {
 	 * @param progress    output object for progress messages, e.g.
 	 *                    <code>new ProgressOutput(System.out)</code>
 	 */
-	public static <E> void workOnIndices(int startIndex, int endIndex, int increment, SimpleTodoWorker<Integer> worker, ProgressOutput progress) {
+	public static void workOnIndexRange(int startIndex, int endIndex, int increment, IndexTodoWorker worker, ProgressOutput progress) {
+		workOnIndexRange(startIndex, endIndex, increment, worker, progress, NUMBER_OF_THREADS, null);
+	}
+	
+	/**
+	 * Starts threads which work on a single index each, which may
+	 * be e.g. a coordinate of a slice in a 3D image.
+	 * This method doesn't use threads if the number of threads is set
+	 * to one.
+	 * 
+	 * @param startIndex   the first index
+	 * @param endIndex     the last index
+	 * @param increment    the increment for the indices
+	 * @param worker       the worker object used to process a single index
+	 * @param progress     output object for progress messages, e.g.
+	 *                     <code>new ProgressOutput(System.out)</code>
+	 * @param maxThreads   the maximum number of threads working on this job
+	 *                     (bounded by <code>NUMBER_OF_THREADS</code>)
+	 * @param cancellation object to cancel the job, may be <code>null</code>
+	 */
+	public static void workOnIndexRange(int startIndex, int endIndex, int increment, IndexTodoWorker worker, ProgressOutput progress, int maxThreads, Cancellation cancellation) {
 		if (increment <= 0) {
 			throw new IllegalArgumentException("The increment has to be positive!");
 		}
-		ArrayList<Integer> list = new ArrayList<Integer>((endIndex-startIndex)/increment + 1);
-		for (int i = startIndex; i <= endIndex; i += increment) {
-			list.add(i);
+		int todoCount = (endIndex >= startIndex) ? (endIndex-startIndex)/increment + 1 : 0;
+		int threads   = Math.min(todoCount, ENABLED ? Math.min(maxThreads, NUMBER_OF_THREADS) : 1);
+		
+		// prepare progress output
+		progress.reset(todoCount);
+		progress.initCurrent();
+		
+		if (cancellation == null) {
+			cancellation = new Cancellation();
+		}
+		
+		// now begin, either with threads or without
+		if (threads > 1) {
+			int chunkSize = Math.max(1, todoCount / (threads*CHUNKS_PER_THREAD));
+			TodoJob job = new TodoJob(startIndex, increment, todoCount, chunkSize, threads, worker, progress, cancellation);
+			
+			jobsCurrentlyRunning.incrementAndGet();
+			try {
+				if (ForkJoinTask.inForkJoinPool()) {
+					// nested call: the current worker thread participates, idle threads steal the other parts
+					job.invoke();
+				} else {
+					ForkJoinTask<Void> future = getThreadPool().submit(job);
+					try {
+						future.get();
+					} catch (InterruptedException e) {
+						cancellation.cancel();
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Interrupted while waiting for the job to finish.");
+					} catch (ExecutionException e) {
+						// exceptions of the items are collected and thrown below
+					}
+				}
+			} finally {
+				jobsCurrentlyRunning.decrementAndGet();
+			}
+			
+			// throw original exception created in the thread, wrap it with a
+			// RuntimeException only if necessary
+			Throwable exception = job.exception.get();
+			if (exception instanceof RuntimeException) {
+				throw (RuntimeException)exception;
+			} else if (exception instanceof Error) {
+				throw (Error)exception;
+			} else if (exception != null) {
+				throw new RuntimeException(exception);
+			}
+		} else {
+			// no multi-threading: don't start a new thread
+			for (int i = 0; i < todoCount; i++) {
+				if (cancellation.isCancelled()) {
+					break;
+				}
+				worker.processTodoIndex(startIndex + i*increment);
+				progress.incrementCurrent();
+			}
+		}
+		
+		if (cancellation.isCancelled()) {
+			throw new CancellationException("The job was cancelled.");
 		}
-		workOnTodoList(list, worker, progress);
 	}
 	
 	/**
-	 * Checks whether the lock for using threads is already assigned.
-	 * 
-	 * @return <code>true</code> if the lock exists,
-	 *         <code>false</code> if the lock is available
+	 * A job executed in the thread pool: a fixed number of parts (bounding the
+	 * parallelism of the job) fetch chunks of consecutive to-do indices from a
+	 * shared counter until all indices are processed.
 	 */
-	public static synchronized boolean hasLockOnThreadsCurrentlyRunning() {
-		return threadsCurrentlyRunning;
+	@SuppressWarnings("serial")
+	private static class TodoJob extends RecursiveAction {
+		
+		/** The first index. */
+		private final int startIndex;
+		
+		/** The increment for the indices. */
+		private final int increment;
+		
+		/** The number of indices to process. */
+		private final int todoCount;
+		
+		/** The number of consecutive indices fetched at once. */
+		private final int chunkSize;
+		
+		/** The number of parts working on the indices in parallel. */
+		private final int parts;
+		
+		/** The worker object used to process a single index. */
+		private final IndexTodoWorker worker;
+		
+		/** Output object for progress messages. */
+		private final ProgressOutput progress;
+		
+		/** Object to cancel the job. */
+		private final Cancellation cancellation;
+		
+		/** The next to-do number (not index) to fetch. */
+		private final AtomicInteger next = new AtomicInteger(0);
+		
+		/** The first exception thrown by the worker. */
+		private final AtomicReference<Throwable> exception = new AtomicReference<Throwable>();
+		
+		/**
+		 * Constructs a new job.
+		 * 
+		 * @param startIndex   the first index
+		 * @param increment    the increment for the indices
+		 * @param todoCount    the number of indices to process
+		 * @param chunkSize    the number of consecutive indices fetched at once
+		 * @param parts        the number of parts working in parallel
+		 * @param worker       the worker object used to process a single index
+		 * @param progress     output object for progress messages
+		 * @param cancellation object to cancel the job
+		 */
+		public TodoJob(int startIndex, int increment, int todoCount, int chunkSize, int parts, IndexTodoWorker worker, ProgressOutput progress, Cancellation cancellation) {
+			this.startIndex   = startIndex;
+			this.increment    = increment;
+			this.todoCount    = todoCount;
+			this.chunkSize    = chunkSize;
+			this.parts        = parts;
+			this.worker       = worker;
+			this.progress     = progress;
+			this.cancellation = cancellation;
+		}
+		
+		@Override
+		protected void compute() {
+			RecursiveAction[] tasks = new RecursiveAction[parts];
+			for (int i = 0; i < parts; i++) {
+				tasks[i] = new RecursiveAction() {
+					@Override
+					protected void compute() {
+						processChunks();
+					}
+				};
+			}
+			invokeAll(tasks);
+		}
+		
+		/**
+		 * Fetches and processes chunks until all indices are processed.
+		 */
+		private void processChunks() {
+			try {
+				while (!cancellation.isCancelled()) {
+					int from = next.getAndAdd(chunkSize);
+					if (from >= todoCount) {
+						break;
+					}
+					int to = Math.min(from+chunkSize, todoCount);
+					for (int i = from; i < to; i++) {
+						if (cancellation.isCancelled()) {
+							break;
+						}
+						worker.processTodoIndex(startIndex + i*increment);
+						progress.incrementCurrent();
+					}
+				}
+			} catch (Throwable e) {
+				// stop the other parts of this job, remember only the first exception
+				exception.compareAndSet(null, e);
+				next.set(todoCount);
+			}
+		}
+		
 	}
 	
 	/**
-	 * Tries to get a lock on using threads.
+	 * Checks whether there are jobs currently executed in parallel.
 	 * 
-	 * @return <code>true</code> if the lock was obtained
+	 * @return <code>true</code> if at least one job is running
 	 */
-	private static synchronized boolean getLockOnThreadsCurrentlyRunning() {
-		if (threadsCurrentlyRunning) {
-			return false;
-		} else {
-			threadsCurrentlyRunning = true;
-			return true;
-		}
+	public static boolean hasLockOnThreadsCurrentlyRunning() {
+		return (jobsCurrentlyRunning.get() > 0);
 	}
 	
 	/**
-	 * Releases the lock on using threads.
-	 * Call this method only if you obtained the lock before with <code>getLockOnThreadsCurrentlyRunning</code>!
+	 * Returns the shared thread pool, a new pool is created if the number
+	 * of threads has changed.
+	 * 
+	 * @return the thread pool
 	 */
-	private static synchronized void releaseLockOnThreadsCurrentlyRunning() {
-		threadsCurrentlyRunning = false;
+	private static synchronized ForkJoinPool getThreadPool() {
+		int parallelism = Math.max(1, NUMBER_OF_THREADS);
+		if ((threadPool == null) || (threadPool.getParallelism() != parallelism)) {
+			if (threadPool != null) {
+				threadPool.shutdown();
+			}
+			threadPool = new ForkJoinPool(parallelism);
+		}
+		return threadPool;
 	}
 	
 	/**
@@ -43,7 +43,8 @@ public class Cluster {
 	 *         is not contained in this cluster
 	 */
 	public double getProbability(ClusterObject obj) {
-		return this.objects.get(obj);
+		Double probability = this.objects.get(obj);
+		return (probability != null) ? probability.doubleValue() : 0.0;
 	}
 	
 	/**
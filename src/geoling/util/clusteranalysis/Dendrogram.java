@@ -0,0 +1,225 @@
+package geoling.util.clusteranalysis;
+
+import geoling.util.clusteranalysis.linkage.LinkageMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The merge tree of an agglomerative hierarchical clustering, which allows to
+ * obtain the clusters after any number of merges without repeating the clustering.
+ * <p>
+ * The nodes of the tree are identified by integers: the objects (leaves) have the
+ * numbers <code>0, ..., n-1</code> (their index in the list of objects), and the
+ * cluster created by merge <code>s</code> has the number <code>n+s</code>.
+ * For every merge, the two merged nodes and the distance of the two clusters
+ * (the height of the merge) are stored in arrays.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class Dendrogram {
+	
+	/** The clustered objects, i.e., the leaves of the tree. */
+	private final List<ClusterObject> objects;
+	
+	/** The linkage-method used to determine distances between clusters. */
+	private final LinkageMethod linkage;
+	
+	/** The merged nodes, the nodes of merge <code>s</code> are stored at indices <code>2s</code> and <code>2s+1</code>. */
+	private final int[] merges;
+	
+	/** The distances between the merged clusters. */
+	private final float[] heights;
+	
+	/**
+	 * Constructs a new dendrogram.
+	 * 
+	 * @param objects  the clustered objects
+	 * @param linkage  the linkage-method used to determine distances between clusters
+	 * @param merges   the merged nodes, two entries per merge
+	 * @param heights  the distances between the merged clusters, one entry per merge
+	 */
+	public Dendrogram(List<? extends ClusterObject> objects, LinkageMethod linkage, int[] merges, float[] heights) {
+		if (merges.length != 2*heights.length || heights.length >= Math.max(objects.size(), 1)) {
+			throw new IllegalArgumentException("Invalid number of merges!");
+		}
+		int n = objects.size();
+		for (int s = 0; s < heights.length; s++) {
+			for (int l = 2*s; l < 2*s+2; l++) {
+				if (merges[l] < 0 || merges[l] >= n+s) {
+					throw new IllegalArgumentException("Invalid node in merge "+s+": "+merges[l]);
+				}
+			}
+		}
+		this.objects = Collections.unmodifiableList(new ArrayList<ClusterObject>(objects));
+		this.linkage = linkage;
+		this.merges  = merges.clone();
+		this.heights = heights.clone();
+	}
+	
+	/**
+	 * Returns the clustered objects.
+	 * 
+	 * @return the list of objects (unmodifiable)
+	 */
+	public List<ClusterObject> getObjects() {
+		return this.objects;
+	}
+	
+	/**
+	 * Returns the linkage-method used to determine distances between clusters.
+	 * 
+	 * @return the linkage-method
+	 */
+	public LinkageMethod getLinkage() {
+		return this.linkage;
+	}
+	
+	/**
+	 * Returns the number of clustered objects.
+	 * 
+	 * @return the number of objects
+	 */
+	public int getNumberOfObjects() {
+		return this.objects.size();
+	}
+	
+	/**
+	 * Returns the number of merges, which is usually the number of objects minus one
+	 * (but may be smaller, if some distances between clusters are not defined).
+	 * 
+	 * @return the number of merges
+	 */
+	public int getNumberOfMerges() {
+		return this.heights.length;
+	}
+	
+	/**
+	 * Returns the first node of a merge, i.e., the cluster to which the second one is added.
+	 * 
+	 * @param s  the index of the merge
+	 * @return the node
+	 */
+	public int getFirstNode(int s) {
+		return this.merges[2*s];
+	}
+	
+	/**
+	 * Returns the second node of a merge.
+	 * 
+	 * @param s  the index of the merge
+	 * @return the node
+	 */
+	public int getSecondNode(int s) {
+		return this.merges[2*s+1];
+	}
+	
+	/**
+	 * Returns the height of a merge, i.e., the distance between the merged clusters.
+	 * 
+	 * @param s  the index of the merge
+	 * @return the distance
+	 */
+	public double getHeight(int s) {
+		return this.heights[s];
+	}
+	
+	/**
+	 * Returns all objects below a node of the tree.
+	 * 
+	 * @param node  the node
+	 * @return the list of objects
+	 */
+	public List<ClusterObject> getObjectsOfNode(int node) {
+		int n = this.objects.size();
+		ArrayList<ClusterObject> result = new ArrayList<ClusterObject>();
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = node;
+		while (size > 0) {
+			int current = stack[--size];
+			if (current < n) {
+				result.add(this.objects.get(current));
+			} else {
+				if (size + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, 2*stack.length);
+				}
+				stack[size++] = this.merges[2*(current-n)+1];
+				stack[size++] = this.merges[2*(current-n)];
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the clusters after the given number of merges.
+	 * The clusters are ordered by their first object (with respect to the
+	 * order of the objects), like in the clustering itself.
+	 * This needs linear time in the number of objects.
+	 * 
+	 * @param numberOfMerges  the number of merges, between <code>0</code> and <code>getNumberOfMerges()</code>
+	 * @return the clustering result
+	 */
+	public ClusteringResult getClusteringResult(int numberOfMerges) {
+		if (numberOfMerges < 0 || numberOfMerges > this.heights.length) {
+			throw new IllegalArgumentException("Invalid number of merges: "+numberOfMerges);
+		}
+		int n = this.objects.size();
+		
+		// determine the root of every node, starting with the last merge
+		int[] root = new int[n + numberOfMerges];
+		Arrays.fill(root, -1);
+		for (int s = numberOfMerges-1; s >= 0; s--) {
+			int node = n + s;
+			if (root[node] < 0) {
+				root[node] = node;
+			}
+			root[this.merges[2*s]]   = root[node];
+			root[this.merges[2*s+1]] = root[node];
+		}
+		
+		ArrayList<Cluster> clusters = new ArrayList<Cluster>(n - numberOfMerges);
+		int[] clusterIndex = new int[n + numberOfMerges];
+		Arrays.fill(clusterIndex, -1);
+		for (int i = 0; i < n; i++) {
+			int r = (root[i] < 0) ? i : root[i];
+			if (clusterIndex[r] < 0) {
+				clusterIndex[r] = clusters.size();
+				clusters.add(new Cluster());
+			}
+			clusters.get(clusterIndex[r]).put(this.objects.get(i), 1.0);
+		}
+		return new ClusteringResult(clusters, false);
+	}
+	
+	/**
+	 * Returns the clusters when the given number of clusters is reached.
+	 * 
+	 * @param numberOfClusters  the number of clusters (if not possible, the
+	 *                          nearest possible number of clusters is used)
+	 * @return the clustering result
+	 */
+	public ClusteringResult getClusteringResultWithNumberOfClusters(int numberOfClusters) {
+		int numberOfMerges = this.objects.size() - Math.max(numberOfClusters, 1);
+		return getClusteringResult(Math.max(0, Math.min(numberOfMerges, this.heights.length)));
+	}
+	
+	/**
+	 * Returns the clusters when merging is stopped before the first merge with a height
+	 * larger than the given threshold. Note that the heights are increasing for most
+	 * linkage-methods, but not for the centroid-method.
+	 * 
+	 * @param height  the threshold for the distance between clusters
+	 * @return the clustering result
+	 */
+	public ClusteringResult getClusteringResultAtHeight(double height) {
+		int numberOfMerges = 0;
+		while (numberOfMerges < this.heights.length && this.heights[numberOfMerges] <= height) {
+			numberOfMerges++;
+		}
+		return getClusteringResult(numberOfMerges);
+	}
+	
+}
@@ -1,6 +1,7 @@
 package geoling.util.clusteranalysis.linkage;
 
 import geoling.util.clusteranalysis.Cluster;
+import geoling.util.clusteranalysis.ClusterObject;
 import geoling.util.clusteranalysis.distance.ClusterObjectDistance;
 
 import java.util.ArrayList;
@@ -14,6 +15,17 @@ import java.util.List;
  * There are methods provided such that the cache can be updated
  * partially (and you can easily obtain the pair of clusters with
  * the smallest distance).
+ * <p>
+ * When two clusters are merged with <code>mergeClusters</code>, the distances
+ * to the merged cluster are updated without iterating over the objects, if the
+ * linkage-method is known: single-, complete- and average-linkage use the
+ * Lance-Williams formulas, the centroid-method and Ward's method use the weights
+ * and centroids of the clusters, which are maintained in this cache. Moreover,
+ * the nearest neighbour (with smaller index) of every cluster is cached, i.e.,
+ * the pair with the smallest distance is found in linear time, and a merge costs
+ * linear time in the number of clusters (apart from the rare cases where a cached
+ * nearest neighbour has to be searched again).
+ * Pairs with equal distances are chosen in the same order as by a full search.
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  */
@@ -37,6 +49,34 @@ public class CachedLinkage implements LinkageMethod {
 	/** The cached distances. */
 	private float[][] distances;
 	
+	/** No known update formula, distances are recomputed by the linkage-method. */
+	private static final int UPDATE_RECOMPUTE = 0;
+	/** Update formula for single-linkage. */
+	private static final int UPDATE_SINGLE = 1;
+	/** Update formula for complete-linkage. */
+	private static final int UPDATE_COMPLETE = 2;
+	/** Update formula for average-linkage. */
+	private static final int UPDATE_AVERAGE = 3;
+	/** Update using the centroids. */
+	private static final int UPDATE_CENTROID = 4;
+	/** Update using the centroids and weights for Ward's method. */
+	private static final int UPDATE_WARD = 5;
+	
+	/** The update formula for the linkage-method, one of the <code>UPDATE_...</code> constants. */
+	private int update;
+	
+	/** The sum of object weights of every cluster. */
+	private double[] weights;
+	
+	/** The (weighted) centroid of every cluster, only for the centroid-method and Ward's method. */
+	private double[][] centroids;
+	
+	/** The smallest distance in every row of the distance matrix. */
+	private float[] rowMinimum;
+	
+	/** The column of the smallest distance in every row, <code>-1</code> if there is none. */
+	private int[] rowMinimumIndex;
+	
 	/**
 	 * Constructs a new cache for distances between clusters.
 	 * 
@@ -51,12 +91,162 @@ public class CachedLinkage implements LinkageMethod {
 			clusterToIndex.put(clusters.get(i), i);
 		}
 		
+		if (linkage instanceof SingleLinkage) {
+			update = UPDATE_SINGLE;
+		} else if (linkage instanceof CompleteLinkage) {
+			update = UPDATE_COMPLETE;
+		} else if (linkage instanceof AverageLinkage) {
+			update = UPDATE_AVERAGE;
+		} else if (linkage instanceof CentroidMethod) {
+			update = UPDATE_CENTROID;
+		} else if (linkage instanceof WardsMethod) {
+			update = UPDATE_WARD;
+		} else {
+			update = UPDATE_RECOMPUTE;
+		}
+		
+		weights = new double[clusters.size()];
+		if (update == UPDATE_CENTROID || update == UPDATE_WARD) {
+			centroids = new double[clusters.size()][];
+		}
+		for (int i = 0; i < clusters.size(); i++) {
+			updateWeightAndCentroid(i);
+		}
+		
 		// initialize distance matrix
 		distances = new float[clusters.size()][];
 		for (int i = 0; i < clusters.size(); i++) {
 			distances[i] = new float[i];
 			for (int j = 0; j < distances[i].length; j++) {
-				distances[i][j] = (float)this.linkage.distance(clusters.get(i), clusters.get(j));
+				distances[i][j] = (float)this.initialDistance(i, j);
+			}
+		}
+		
+		rowMinimum      = new float[clusters.size()];
+		rowMinimumIndex = new int[clusters.size()];
+		for (int i = 0; i < clusters.size(); i++) {
+			updateRowMinimum(i);
+		}
+	}
+	
+	/**
+	 * Computes the distance between two clusters for the initial distance matrix.
+	 * For clusters with a single object (the usual case), the object distance is
+	 * used directly if possible.
+	 * 
+	 * @param i  the index of the first cluster
+	 * @param j  the index of the second cluster
+	 * @return the distance
+	 */
+	private double initialDistance(int i, int j) {
+		Cluster cluster1 = clusters.get(i);
+		Cluster cluster2 = clusters.get(j);
+		switch (update) {
+			case UPDATE_SINGLE:
+			case UPDATE_COMPLETE:
+			case UPDATE_AVERAGE:
+				if (cluster1.size() == 1 && cluster2.size() == 1) {
+					return this.getObjectDistance().distance(cluster1.getObjects().get(0), cluster2.getObjects().get(0));
+				}
+				return this.linkage.distance(cluster1, cluster2);
+			case UPDATE_CENTROID:
+			case UPDATE_WARD:
+				return centroidDistance(i, j);
+			default:
+				return this.linkage.distance(cluster1, cluster2);
+		}
+	}
+	
+	/**
+	 * Computes the distance between two clusters by their centroids and weights
+	 * (centroid-method or Ward's method).
+	 * 
+	 * @param i  the index of the first cluster
+	 * @param j  the index of the second cluster
+	 * @return the distance
+	 */
+	private double centroidDistance(int i, int j) {
+		double dist = this.getObjectDistance().distance(centroids[i], centroids[j]);
+		if (update == UPDATE_WARD) {
+			dist /= (1.0/weights[i] + 1.0/weights[j]);
+		}
+		return dist;
+	}
+	
+	/**
+	 * Computes the sum of weights (and the centroid, if required) of a cluster from its objects.
+	 * 
+	 * @param k  the index of the cluster
+	 * @throws UnsupportedOperationException if coordinates are required, but not supported
+	 */
+	private void updateWeightAndCentroid(int k) {
+		double weight = 0.0;
+		double[] centroid = null;
+		for (ClusterObject point : clusters.get(k).getObjects()) {
+			weight += point.getWeight();
+			if (centroids != null) {
+				double[] coord = point.getCoordinates();
+				if (centroid == null) {
+					centroid = new double[coord.length];
+				}
+				for (int l = 0; l < centroid.length; l++) {
+					centroid[l] += coord[l]*point.getWeight();
+				}
+			}
+		}
+		weights[k] = weight;
+		if (centroids != null) {
+			if (centroid != null) {
+				for (int l = 0; l < centroid.length; l++) {
+					centroid[l] /= weight;
+				}
+			}
+			centroids[k] = centroid;
+		}
+	}
+	
+	/**
+	 * Searches the smallest distance in a row of the distance matrix.
+	 * 
+	 * @param i  the row, i.e., the index of a cluster
+	 */
+	private void updateRowMinimum(int i) {
+		float minDist = Float.POSITIVE_INFINITY;
+		int index = -1;
+		if (clusters.get(i) != null) {
+			float[] row = distances[i];
+			for (int j = 0; j < row.length; j++) {
+				if (minDist > row[j]) {
+					minDist = row[j];
+					index = j;
+				}
+			}
+		}
+		rowMinimum[i]      = minDist;
+		rowMinimumIndex[i] = index;
+	}
+	
+	/**
+	 * Updates the cached row minima after the distances to a cluster have changed
+	 * or the cluster has been removed.
+	 * 
+	 * @param k        the index of the changed cluster
+	 * @param removed  determines whether the cluster has been removed
+	 */
+	private void updateRowMinima(int k, boolean removed) {
+		updateRowMinimum(k);
+		for (int i = k+1; i < distances.length; i++) {
+			if (clusters.get(i) == null) {
+				continue;
+			}
+			if (rowMinimumIndex[i] == k) {
+				updateRowMinimum(i);
+			} else if (!removed) {
+				float dist = distances[i][k];
+				if (rowMinimum[i] > dist || (rowMinimum[i] == dist && rowMinimumIndex[i] > k)) {
+					rowMinimum[i]      = dist;
+					rowMinimumIndex[i] = k;
+				}
 			}
 		}
 	}
@@ -107,15 +297,10 @@ public class CachedLinkage implements LinkageMethod {
 		int clusterIndex1 = -1;
 		int clusterIndex2 = -1;
 		for (int i = 0; i < distances.length; i++) {
-			if (clusters.get(i) == null) {
-				continue;
-			}
-			for (int j = 0; j < distances[i].length; j++) {
-				if (minDist > distances[i][j]) {
-					minDist = distances[i][j];
-					clusterIndex1 = j;
-					clusterIndex2 = i;
-				}
+			if (minDist > rowMinimum[i]) {
+				minDist = rowMinimum[i];
+				clusterIndex1 = rowMinimumIndex[i];
+				clusterIndex2 = i;
 			}
 		}
 		
@@ -129,6 +314,85 @@ public class CachedLinkage implements LinkageMethod {
 		}
 	}
 	
+	/**
+	 * Merges two clusters: all objects of the second cluster are moved to the first
+	 * cluster, the distances to the first cluster are updated and the (now empty)
+	 * second cluster is removed.
+	 * 
+	 * @param pair  the pair of clusters, e.g., from <code>getSmallestDistancePair</code>
+	 */
+	public void mergeClusters(ClusterPair pair) {
+		Integer aObj = clusterToIndex.get(pair.cluster1);
+		Integer bObj = clusterToIndex.get(pair.cluster2);
+		if (aObj == null || bObj == null || aObj.equals(bObj)) {
+			throw new IllegalArgumentException("The clusters have to be two different known clusters!");
+		}
+		int a = aObj.intValue();
+		int b = bObj.intValue();
+		
+		// join clusters
+		for (ClusterObject object : pair.cluster2.getObjects()) {
+			pair.cluster1.put(object, 1.0);
+		}
+		pair.cluster2.clear();
+		
+		double weightA = weights[a];
+		double weightB = weights[b];
+		weights[a] = weightA + weightB;
+		if (centroids != null && centroids[a] != null && centroids[b] != null) {
+			double[] centroid = new double[centroids[a].length];
+			for (int l = 0; l < centroid.length; l++) {
+				centroid[l] = (centroids[a][l]*weightA + centroids[b][l]*weightB) / weights[a];
+			}
+			centroids[a] = centroid;
+			centroids[b] = null;
+		}
+		
+		// update distances to the merged cluster
+		clusterToIndex.remove(pair.cluster2);
+		clusters.set(b, null);
+		for (int k = 0; k < distances.length; k++) {
+			if (k == a || k == b || clusters.get(k) == null) {
+				continue;
+			}
+			float distB = distances[Math.max(k, b)][Math.min(k, b)];
+			float distA = distances[Math.max(k, a)][Math.min(k, a)];
+			double dist;
+			switch (update) {
+				case UPDATE_SINGLE:
+					dist = Math.min(distA, distB);
+					break;
+				case UPDATE_COMPLETE:
+					dist = Math.max(distA, distB);
+					break;
+				case UPDATE_AVERAGE:
+					dist = (distA*weightA + distB*weightB) / (weightA + weightB);
+					break;
+				case UPDATE_CENTROID:
+				case UPDATE_WARD:
+					dist = centroidDistance(k, a);
+					break;
+				default:
+					dist = this.linkage.distance(clusters.get(k), pair.cluster1);
+			}
+			distances[Math.max(k, a)][Math.min(k, a)] = (float)dist;
+		}
+		
+		// remove the second cluster from the distance matrix
+		for (int i = 0; i < distances.length; i++) {
+			if (i == b) {
+				for (int j = 0; j < distances[i].length; j++) {
+					distances[i][j] = Float.NaN;
+				}
+			} else if (b < distances[i].length) {
+				distances[i][b] = Float.NaN;
+			}
+		}
+		
+		updateRowMinima(b, true);
+		updateRowMinima(a, false);
+	}
+	
 	/**
 	 * Updates all distances to a (modified) cluster.
 	 * 
@@ -158,6 +422,8 @@ public class CachedLinkage implements LinkageMethod {
 				}
 			}
 		}
+		updateWeightAndCentroid(k);
+		updateRowMinima(k, false);
 	}
 	
 	/**
@@ -181,6 +447,7 @@ public class CachedLinkage implements LinkageMethod {
 		}
 		clusterToIndex.remove(cluster);
 		clusters.set(k, null);
+		updateRowMinima(k, true);
 	}
 	
 }
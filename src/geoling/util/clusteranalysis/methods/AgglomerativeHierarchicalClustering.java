@@ -4,15 +4,28 @@ import geoling.util.clusteranalysis.Cluster;
 import geoling.util.clusteranalysis.ClusterAnalysis;
 import geoling.util.clusteranalysis.ClusterObject;
 import geoling.util.clusteranalysis.ClusteringResult;
+import geoling.util.clusteranalysis.Dendrogram;
 import geoling.util.clusteranalysis.linkage.CachedLinkage;
 import geoling.util.clusteranalysis.linkage.LinkageMethod;
+import geoling.util.clusteranalysis.termination.DistanceVariabilityThreshold;
+import geoling.util.clusteranalysis.termination.NumberOfClusters;
 import geoling.util.clusteranalysis.termination.TerminationCriterion;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 
 /**
  * Agglomerative hierarchical clustering.
+ * <p>
+ * For the termination criteria <code>NumberOfClusters</code> and
+ * <code>DistanceVariabilityThreshold</code>, the complete merge tree (see
+ * <code>Dendrogram</code>) is computed and the result is obtained from it.
+ * The most recent merge tree is kept by this object and can be passed to another
+ * object (see <code>setDendrogram</code>), i.e., clustering the same objects with
+ * the same linkage-method again (e.g. with another number of clusters) does not
+ * repeat the merges.
  * 
  * @author Aaron Spettl, Institute of Stochastics, Ulm University
  * @see <a href="http://en.wikipedia.org/wiki/Hierarchical_clustering">Wikipedia: Hierarchical clustering</a>
@@ -25,6 +38,9 @@ public class AgglomerativeHierarchicalClustering implements ClusterAnalysis {
 	/** The termination-criterion to use. */
 	private TerminationCriterion termination;
 	
+	/** The most recently computed (or given) merge tree, <code>null</code> if there is none. */
+	private Dendrogram dendrogram = null;
+	
 	/**
 	 * Constructs a new object for agglomerative hierarchical clustering.
 	 * 
@@ -43,6 +59,15 @@ public class AgglomerativeHierarchicalClustering implements ClusterAnalysis {
 	 * @return the set of clusters
 	 */
 	public ClusteringResult clusterAnalysis(Collection<? extends ClusterObject> objects) {
+		if (this.termination instanceof NumberOfClusters) {
+			Dendrogram dendrogram = this.computeDendrogram(objects);
+			return dendrogram.getClusteringResultWithNumberOfClusters(((NumberOfClusters)this.termination).getTargetNumber());
+		} else if (this.termination instanceof DistanceVariabilityThreshold) {
+			Dendrogram dendrogram = this.computeDendrogram(objects);
+			return dendrogram.getClusteringResult(((DistanceVariabilityThreshold)this.termination).getNumberOfMerges(dendrogram));
+		}
+		
+		// other termination criteria have to be checked after every merge
 		ArrayList<ClusterObject> objectsList = new ArrayList<ClusterObject>(objects);
 		
 		CachedLinkage cachedLinkage = new CachedLinkage(this.getInitialClusters(objectsList), this.linkage);
@@ -52,16 +77,8 @@ public class AgglomerativeHierarchicalClustering implements ClusterAnalysis {
 		while (!this.termination.shouldTerminate(result, cachedLinkage)) {
 			CachedLinkage.ClusterPair pair = cachedLinkage.getSmallestDistancePair();
 			
-			// join clusters
-			for (ClusterObject object : pair.cluster2.getObjects()) {
-				pair.cluster1.put(object, 1.0);
-			}
-			pair.cluster2.clear();
-			
-			// remove empty cluster
-			cachedLinkage.removeCluster(pair.cluster2);
-			// recompute distances to modified cluster
-			cachedLinkage.recomputeDistancesToCluster(pair.cluster1);
+			// join clusters (distances to the joined cluster are updated by the cache)
+			cachedLinkage.mergeClusters(pair);
 			
 			result = new ClusteringResult(cachedLinkage.getClusters(), false);
 		}
@@ -69,6 +86,72 @@ public class AgglomerativeHierarchicalClustering implements ClusterAnalysis {
 		return result;
 	}
 	
+	/**
+	 * Computes the complete merge tree for the given objects (independent of the
+	 * termination-criterion). If the merge tree of this object belongs to the same
+	 * objects (in the same order) and the same linkage-method, then it is returned
+	 * without repeating the merges.
+	 * 
+	 * @param objects  the set of objects that shall be clustered
+	 * @return the merge tree
+	 */
+	public synchronized Dendrogram computeDendrogram(Collection<? extends ClusterObject> objects) {
+		ArrayList<ClusterObject> objectsList = new ArrayList<ClusterObject>(objects);
+		if (this.dendrogram != null && this.dendrogram.getLinkage() == this.linkage && this.dendrogram.getObjects().equals(objectsList)) {
+			return this.dendrogram;
+		}
+		
+		int n = objectsList.size();
+		ArrayList<Cluster> initialClusters = this.getInitialClusters(objectsList);
+		CachedLinkage cachedLinkage = new CachedLinkage(initialClusters, this.linkage);
+		
+		// the node of every current cluster in the merge tree
+		HashMap<Cluster,Integer> nodes = new HashMap<Cluster,Integer>(n*4/3+1);
+		for (int i = 0; i < n; i++) {
+			nodes.put(initialClusters.get(i), i);
+		}
+		
+		int[] merges = new int[2*Math.max(n-1, 0)];
+		float[] heights = new float[Math.max(n-1, 0)];
+		int numberOfMerges = 0;
+		while (numberOfMerges < n-1) {
+			CachedLinkage.ClusterPair pair = cachedLinkage.getSmallestDistancePair();
+			if (pair == null) {
+				break;
+			}
+			merges[2*numberOfMerges]   = nodes.get(pair.cluster1);
+			merges[2*numberOfMerges+1] = nodes.remove(pair.cluster2);
+			heights[numberOfMerges]    = (float)cachedLinkage.distance(pair.cluster1, pair.cluster2);
+			
+			cachedLinkage.mergeClusters(pair);
+			nodes.put(pair.cluster1, n + numberOfMerges);
+			numberOfMerges++;
+		}
+		
+		this.dendrogram = new Dendrogram(objectsList, this.linkage,
+		                                 Arrays.copyOf(merges, 2*numberOfMerges), Arrays.copyOf(heights, numberOfMerges));
+		return this.dendrogram;
+	}
+	
+	/**
+	 * Returns the most recently computed (or given) merge tree.
+	 * 
+	 * @return the merge tree, <code>null</code> if there is none
+	 */
+	public synchronized Dendrogram getDendrogram() {
+		return this.dendrogram;
+	}
+	
+	/**
+	 * Sets a previously computed merge tree, e.g. of another object with the same
+	 * linkage-method, which is used if the same objects are clustered again.
+	 * 
+	 * @param dendrogram  the merge tree (may be <code>null</code>)
+	 */
+	public synchronized void setDendrogram(Dendrogram dendrogram) {
+		this.dendrogram = dendrogram;
+	}
+	
 	/**
 	 * Generates the initial clusters, i.e., one object per cluster.
 	 * 
@@ -0,0 +1,662 @@
+package geoling.util.clusteranalysis.methods;
+
+import geoling.util.ThreadedTodoWorker;
+import geoling.util.clusteranalysis.Cluster;
+import geoling.util.clusteranalysis.ClusterObject;
+import geoling.util.clusteranalysis.ClusteringResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The common implementation of k-means and fuzzy c-means clustering with
+ * Euclidean distances. The coordinates of all objects are stored in a single
+ * array (object by object), the cluster centers are initialized by k-means++
+ * seeding, i.e., the first center is chosen uniformly and every further center is
+ * an object chosen with probability proportional to the squared distance to the
+ * nearest center chosen so far.
+ * <p>
+ * For k-means clustering, Hamerly's algorithm is used: for every object, an
+ * upper bound for the distance to its center and a lower bound for the distance
+ * to all other centers are maintained, such that most distances need not be
+ * computed in later iterations. An empty cluster gets the object which is
+ * farthest from its center as new center.
+ * <p>
+ * The assignment and update steps are computed in parallel (see
+ * <code>ThreadedTodoWorker</code>) for blocks of objects, which do not depend on
+ * the number of threads. Therefore the result depends only on the random numbers.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ * @see "Greg Hamerly, Making k-means even faster, 2010"
+ * @see "David Arthur, Sergei Vassilvitskii, k-means++: The Advantages of Careful Seeding, 2007"
+ */
+class CMeansCore {
+	
+	/** The minimal number of objects in a block of the parallel steps. */
+	private static final int MIN_BLOCK_SIZE = 256;
+	
+	/** The maximal number of blocks of the parallel steps. */
+	private static final int MAX_BLOCKS = 64;
+	
+	/** The maximal number of iterations. */
+	private static final int MAX_ITERATIONS = 10000;
+	
+	/** The objects. */
+	private final List<ClusterObject> objects;
+	
+	/** The number of objects. */
+	private final int n;
+	
+	/** The dimension of the coordinates. */
+	private final int d;
+	
+	/** The coordinates of all objects, the coordinates of object <code>i</code> start at index <code>i*d</code>. */
+	private final double[] data;
+	
+	/** The number of objects in a block of the parallel steps. */
+	private final int blockSize;
+	
+	/** The number of blocks of the parallel steps. */
+	private final int numberOfBlocks;
+	
+	/** Worker for a block of objects. */
+	private interface BlockWorker {
+		/**
+		 * Processes a block of objects.
+		 * 
+		 * @param block  the index of the block
+		 * @param from   the first object (inclusive)
+		 * @param to     the last object (exclusive)
+		 */
+		public void processBlock(int block, int from, int to);
+	}
+	
+	/**
+	 * Constructs the array of coordinates for the given objects.
+	 * 
+	 * @param objects  the objects, which have to provide coordinates of the same dimension
+	 */
+	CMeansCore(Collection<? extends ClusterObject> objects) {
+		this.objects = new ArrayList<ClusterObject>(objects);
+		this.n = this.objects.size();
+		this.d = (this.n > 0) ? this.objects.get(0).getCoordinates().length : 0;
+		this.data = new double[this.n * this.d];
+		for (int i = 0; i < this.n; i++) {
+			double[] coord = this.objects.get(i).getCoordinates();
+			if (coord.length != this.d) {
+				throw new IllegalArgumentException("All objects must have coordinates of the same dimension!");
+			}
+			System.arraycopy(coord, 0, this.data, i*this.d, this.d);
+		}
+		this.blockSize      = Math.max(MIN_BLOCK_SIZE, (this.n + MAX_BLOCKS - 1) / MAX_BLOCKS);
+		this.numberOfBlocks = (this.n + this.blockSize - 1) / this.blockSize;
+	}
+	
+	/**
+	 * Returns the number of objects.
+	 * 
+	 * @return the number of objects
+	 */
+	int size() {
+		return this.n;
+	}
+	
+	/**
+	 * Processes all blocks of objects, in parallel if possible.
+	 * 
+	 * @param worker  the worker for a single block
+	 */
+	private void processBlocks(final BlockWorker worker) {
+		ThreadedTodoWorker.workOnIndexRange(0, this.numberOfBlocks-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int block) {
+				worker.processBlock(block, block*blockSize, Math.min(n, (block+1)*blockSize));
+			}
+		});
+	}
+	
+	/**
+	 * Computes the squared distance between an object and a center.
+	 * 
+	 * @param i        the index of the object
+	 * @param centers  the coordinates of the centers
+	 * @param j        the index of the center
+	 * @return the squared distance
+	 */
+	private double squaredDistance(int i, double[] centers, int j) {
+		int a = i*this.d;
+		int b = j*this.d;
+		double result = 0.0;
+		for (int l = 0; l < this.d; l++) {
+			double diff = this.data[a+l] - centers[b+l];
+			result += diff*diff;
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the squared distance between two centers.
+	 * 
+	 * @param centers1  the coordinates of the first centers
+	 * @param j1        the index of the first center
+	 * @param centers2  the coordinates of the second centers
+	 * @param j2        the index of the second center
+	 * @return the squared distance
+	 */
+	private double squaredDistance(double[] centers1, int j1, double[] centers2, int j2) {
+		int a = j1*this.d;
+		int b = j2*this.d;
+		double result = 0.0;
+		for (int l = 0; l < this.d; l++) {
+			double diff = centers1[a+l] - centers2[b+l];
+			result += diff*diff;
+		}
+		return result;
+	}
+	
+	/**
+	 * Chooses initial centers by k-means++ seeding.
+	 * 
+	 * @param c       the number of clusters
+	 * @param random  the random number generator
+	 * @return the coordinates of the centers, center <code>j</code> starts at index <code>j*d</code>
+	 */
+	double[] seedCenters(final int c, Random random) {
+		if (c <= 0 || c > this.n) {
+			throw new IllegalArgumentException("The number of clusters has to be between 1 and the number of objects!");
+		}
+		final double[] centers = new double[c*this.d];
+		final double[] minDistances = new double[this.n];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		
+		int chosen = random.nextInt(this.n);
+		for (int k = 0; k < c; k++) {
+			if (k > 0) {
+				double sum = 0.0;
+				for (int i = 0; i < this.n; i++) {
+					sum += minDistances[i];
+				}
+				if (sum > 0.0) {
+					double r = random.nextDouble() * sum;
+					chosen = -1;
+					for (int i = 0; i < this.n && r >= 0.0; i++) {
+						if (minDistances[i] > 0.0) {
+							chosen = i;
+							r -= minDistances[i];
+						}
+					}
+				} else {
+					// all objects coincide with a center
+					chosen = random.nextInt(this.n);
+				}
+			}
+			System.arraycopy(this.data, chosen*this.d, centers, k*this.d, this.d);
+			
+			final int center = k;
+			processBlocks(new BlockWorker() {
+				public void processBlock(int block, int from, int to) {
+					for (int i = from; i < to; i++) {
+						minDistances[i] = Math.min(minDistances[i], squaredDistance(i, centers, center));
+					}
+				}
+			});
+		}
+		return centers;
+	}
+	
+	/**
+	 * Computes a k-means clustering (Hamerly's algorithm) with k-means++ seeding.
+	 * All clusters are non-empty, unless there are less than <code>c</code>
+	 * different objects.
+	 * 
+	 * @param c       the number of clusters
+	 * @param random  the random number generator
+	 * @return the cluster of every object
+	 */
+	int[] kMeans(final int c, Random random) {
+		final double[] centers = seedCenters(c, random);
+		final int[] labels    = new int[this.n];
+		final double[] upper  = new double[this.n];
+		final double[] lower  = new double[this.n];
+		
+		processBlocks(new BlockWorker() {
+			public void processBlock(int block, int from, int to) {
+				for (int i = from; i < to; i++) {
+					assignToNearestCenter(i, centers, c, labels, upper, lower);
+				}
+			}
+		});
+		
+		final double[] oldCenters = new double[c*this.d];
+		final double[] drifts = new double[c];
+		final double[] halfSeparations = new double[c];
+		final int[] changes = new int[this.numberOfBlocks];
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			// move centers to the means of their objects
+			System.arraycopy(centers, 0, oldCenters, 0, centers.length);
+			boolean reseeded = updateMeans(labels, c, centers, upper);
+			
+			int largestDrift = 0;
+			for (int j = 0; j < c; j++) {
+				drifts[j] = Math.sqrt(squaredDistance(oldCenters, j, centers, j));
+				if (drifts[j] > drifts[largestDrift]) {
+					largestDrift = j;
+				}
+			}
+			double secondLargest = 0.0;
+			for (int j = 0; j < c; j++) {
+				if (j != largestDrift) {
+					secondLargest = Math.max(secondLargest, drifts[j]);
+				}
+			}
+			final int argMaxDrift = largestDrift;
+			final double maxDrift = drifts[largestDrift];
+			final double secondMaxDrift = secondLargest;
+			
+			for (int j = 0; j < c; j++) {
+				double minDistance = Double.POSITIVE_INFINITY;
+				for (int k = 0; k < c; k++) {
+					if (k != j) {
+						minDistance = Math.min(minDistance, squaredDistance(centers, j, centers, k));
+					}
+				}
+				halfSeparations[j] = 0.5 * Math.sqrt(minDistance);
+			}
+			
+			// update bounds and assign objects, distances are only computed if the bounds do not suffice
+			processBlocks(new BlockWorker() {
+				public void processBlock(int block, int from, int to) {
+					int count = 0;
+					for (int i = from; i < to; i++) {
+						int label = labels[i];
+						upper[i] += drifts[label];
+						lower[i] -= (label == argMaxDrift) ? secondMaxDrift : maxDrift;
+						double bound = Math.max(halfSeparations[label], lower[i]);
+						if (upper[i] > bound) {
+							upper[i] = Math.sqrt(squaredDistance(i, centers, label));
+							if (upper[i] > bound) {
+								assignToNearestCenter(i, centers, c, labels, upper, lower);
+								if (labels[i] != label) {
+									count++;
+								}
+							}
+						}
+					}
+					changes[block] = count;
+				}
+			});
+			
+			int totalChanges = 0;
+			for (int block = 0; block < this.numberOfBlocks; block++) {
+				totalChanges += changes[block];
+			}
+			if (totalChanges == 0 && !reseeded) {
+				break;
+			}
+		}
+		return labels;
+	}
+	
+	/**
+	 * Assigns an object to the nearest center and sets the exact bounds.
+	 * 
+	 * @param i        the index of the object
+	 * @param centers  the coordinates of the centers
+	 * @param c        the number of centers
+	 * @param labels   the cluster of every object
+	 * @param upper    the upper bounds for the distance to the own center
+	 * @param lower    the lower bounds for the distance to all other centers
+	 */
+	private void assignToNearestCenter(int i, double[] centers, int c, int[] labels, double[] upper, double[] lower) {
+		double best = Double.POSITIVE_INFINITY;
+		double second = Double.POSITIVE_INFINITY;
+		int label = 0;
+		for (int j = 0; j < c; j++) {
+			double dist = squaredDistance(i, centers, j);
+			if (dist < best) {
+				second = best;
+				best = dist;
+				label = j;
+			} else if (dist < second) {
+				second = dist;
+			}
+		}
+		labels[i] = label;
+		upper[i] = Math.sqrt(best);
+		lower[i] = Math.sqrt(second);
+	}
+	
+	/**
+	 * Moves the centers to the means of their objects. The center of an empty
+	 * cluster is moved to the object with the largest upper bound for the distance
+	 * to its center.
+	 * 
+	 * @param labels   the cluster of every object
+	 * @param c        the number of clusters
+	 * @param centers  the coordinates of the centers, which are replaced
+	 * @param upper    the upper bounds for the distance to the own center
+	 * @return <code>true</code> if the center of an empty cluster has been moved
+	 */
+	private boolean updateMeans(final int[] labels, final int c, double[] centers, double[] upper) {
+		final double[][] partialSums = new double[this.numberOfBlocks][c*this.d];
+		final int[][] partialCounts = new int[this.numberOfBlocks][c];
+		processBlocks(new BlockWorker() {
+			public void processBlock(int block, int from, int to) {
+				double[] sums = partialSums[block];
+				int[] counts = partialCounts[block];
+				for (int i = from; i < to; i++) {
+					int offset = labels[i]*d;
+					for (int l = 0; l < d; l++) {
+						sums[offset+l] += data[i*d+l];
+					}
+					counts[labels[i]]++;
+				}
+			}
+		});
+		
+		boolean reseeded = false;
+		boolean[] used = null;
+		for (int j = 0; j < c; j++) {
+			int count = 0;
+			for (int block = 0; block < this.numberOfBlocks; block++) {
+				count += partialCounts[block][j];
+			}
+			if (count > 0) {
+				for (int l = 0; l < this.d; l++) {
+					double sum = 0.0;
+					for (int block = 0; block < this.numberOfBlocks; block++) {
+						sum += partialSums[block][j*this.d+l];
+					}
+					centers[j*this.d+l] = sum / count;
+				}
+			} else {
+				// empty cluster: use the object farthest from its center
+				if (used == null) {
+					used = new boolean[this.n];
+				}
+				int farthest = -1;
+				for (int i = 0; i < this.n; i++) {
+					if (!used[i] && (farthest < 0 || upper[i] > upper[farthest])) {
+						farthest = i;
+					}
+				}
+				if (farthest >= 0 && upper[farthest] > 0.0) {
+					used[farthest] = true;
+					System.arraycopy(this.data, farthest*this.d, centers, j*this.d, this.d);
+					reseeded = true;
+				}
+			}
+		}
+		return reseeded;
+	}
+	
+	/**
+	 * Computes a fuzzy c-means clustering with k-means++ seeding of the initial centers.
+	 * The algorithm terminates if the squared Frobenius norm of the difference of the
+	 * membership matrices of two iterations is less than <code>epsilon</code>.
+	 * 
+	 * @param c        the number of clusters
+	 * @param m        the fuzzifier (larger than <code>1</code>)
+	 * @param epsilon  the termination threshold
+	 * @param random   the random number generator
+	 * @return the memberships, the membership of object <code>i</code> to cluster <code>j</code> is stored at index <code>i*c+j</code>
+	 */
+	double[] fuzzyCMeans(int c, double m, double epsilon, Random random) {
+		double[] centers = seedCenters(c, random);
+		double[] memberships = new double[this.n*c];
+		double[] newMemberships = new double[this.n*c];
+		updateMemberships(centers, c, m, null, memberships);
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			updateFuzzyCenters(memberships, c, m, centers);
+			double change = updateMemberships(centers, c, m, memberships, newMemberships);
+			double[] tmp = memberships;
+			memberships = newMemberships;
+			newMemberships = tmp;
+			if (change < epsilon) {
+				break;
+			}
+		}
+		return memberships;
+	}
+	
+	/**
+	 * Computes the memberships for the given centers, i.e., the membership of object
+	 * <i>i</i> to cluster <i>j</i> is proportional to
+	 * (1/<i>d</i><sub><i>ij</i></sub>&sup2;)<sup>1/(<i>m</i>-1)</sup>.
+	 * If an object coincides with centers, its membership is shared by these centers.
+	 * 
+	 * @param centers         the coordinates of the centers
+	 * @param c               the number of clusters
+	 * @param m               the fuzzifier
+	 * @param oldMemberships  the previous memberships (may be <code>null</code>)
+	 * @param memberships     the array for the new memberships
+	 * @return the squared Frobenius norm of the difference to the previous memberships
+	 */
+	private double updateMemberships(final double[] centers, final int c, final double m, final double[] oldMemberships, final double[] memberships) {
+		final double exponent = -1.0 / (m - 1.0);
+		final double[] partialChanges = new double[this.numberOfBlocks];
+		processBlocks(new BlockWorker() {
+			public void processBlock(int block, int from, int to) {
+				double[] weights = new double[c];
+				double change = 0.0;
+				for (int i = from; i < to; i++) {
+					double sum = 0.0;
+					int zeros = 0;
+					for (int j = 0; j < c; j++) {
+						double dist = squaredDistance(i, centers, j);
+						if (dist == 0.0) {
+							zeros++;
+						}
+						weights[j] = (exponent == -1.0) ? 1.0/dist : Math.pow(dist, exponent);
+						sum += weights[j];
+					}
+					for (int j = 0; j < c; j++) {
+						double u;
+						if (zeros > 0) {
+							u = Double.isInfinite(weights[j]) ? 1.0/zeros : 0.0;
+						} else {
+							u = weights[j] / sum;
+						}
+						if (oldMemberships != null) {
+							double diff = u - oldMemberships[i*c+j];
+							change += diff*diff;
+						}
+						memberships[i*c+j] = u;
+					}
+				}
+				partialChanges[block] = change;
+			}
+		});
+		
+		double change = 0.0;
+		for (int block = 0; block < this.numberOfBlocks; block++) {
+			change += partialChanges[block];
+		}
+		return change;
+	}
+	
+	/**
+	 * Computes the centers as weighted means of all objects, the weight of an
+	 * object is its membership to the power <code>m</code>.
+	 * 
+	 * @param memberships  the memberships
+	 * @param c            the number of clusters
+	 * @param m            the fuzzifier
+	 * @param centers      the coordinates of the centers, which are replaced
+	 */
+	private void updateFuzzyCenters(final double[] memberships, final int c, final double m, double[] centers) {
+		final double[][] partialSums = new double[this.numberOfBlocks][c*this.d];
+		final double[][] partialWeights = new double[this.numberOfBlocks][c];
+		processBlocks(new BlockWorker() {
+			public void processBlock(int block, int from, int to) {
+				double[] sums = partialSums[block];
+				double[] weights = partialWeights[block];
+				for (int i = from; i < to; i++) {
+					for (int j = 0; j < c; j++) {
+						double u = memberships[i*c+j];
+						double weight = (m == 2.0) ? u*u : Math.pow(u, m);
+						if (weight == 0.0) {
+							continue;
+						}
+						int offset = j*d;
+						for (int l = 0; l < d; l++) {
+							sums[offset+l] += weight * data[i*d+l];
+						}
+						weights[j] += weight;
+					}
+				}
+			}
+		});
+		
+		for (int j = 0; j < c; j++) {
+			double weight = 0.0;
+			for (int block = 0; block < this.numberOfBlocks; block++) {
+				weight += partialWeights[block][j];
+			}
+			if (weight > 0.0) {
+				for (int l = 0; l < this.d; l++) {
+					double sum = 0.0;
+					for (int block = 0; block < this.numberOfBlocks; block++) {
+						sum += partialSums[block][j*this.d+l];
+					}
+					centers[j*this.d+l] = sum / weight;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Assigns every object to the cluster with the largest membership.
+	 * 
+	 * @param memberships  the memberships, see <code>fuzzyCMeans</code>
+	 * @param c            the number of clusters
+	 * @return the cluster of every object
+	 */
+	static int[] getHardLabels(double[] memberships, int c) {
+		int[] labels = new int[memberships.length / c];
+		for (int i = 0; i < labels.length; i++) {
+			int label = 0;
+			for (int j = 1; j < c; j++) {
+				if (memberships[i*c+label] < memberships[i*c+j]) {
+					label = j;
+				}
+			}
+			labels[i] = label;
+		}
+		return labels;
+	}
+	
+	/**
+	 * Returns the number of non-empty clusters.
+	 * 
+	 * @param labels  the cluster of every object
+	 * @param c       the number of clusters
+	 * @return the number of non-empty clusters
+	 */
+	static int getNumberOfNonEmptyClusters(int[] labels, int c) {
+		boolean[] nonEmpty = new boolean[c];
+		int result = 0;
+		for (int label : labels) {
+			if (!nonEmpty[label]) {
+				nonEmpty[label] = true;
+				result++;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the sum of the Euclidean distances between all pairs of objects in the
+	 * same cluster, divided by the number of clusters (including empty clusters). This
+	 * is the criterion for choosing the best of several results of a cluster analysis.
+	 * 
+	 * @param labels  the cluster of every object
+	 * @param c       the number of clusters
+	 * @return the average sum of distances within clusters
+	 */
+	double getAverageSumOfDistancesWithinClusters(int[] labels, int c) {
+		// sort the objects by their clusters
+		final int[] start = new int[c+1];
+		for (int label : labels) {
+			start[label+1]++;
+		}
+		for (int j = 0; j < c; j++) {
+			start[j+1] += start[j];
+		}
+		final int[] sorted = new int[this.n];
+		final int[] sortedLabels = new int[this.n];
+		int[] next = Arrays.copyOf(start, c);
+		for (int i = 0; i < this.n; i++) {
+			sortedLabels[next[labels[i]]] = labels[i];
+			sorted[next[labels[i]]++] = i;
+		}
+		
+		final double[] partialSums = new double[this.numberOfBlocks];
+		processBlocks(new BlockWorker() {
+			public void processBlock(int block, int from, int to) {
+				double sum = 0.0;
+				for (int p = from; p < to; p++) {
+					int i = sorted[p];
+					int end = start[sortedLabels[p]+1];
+					for (int q = p+1; q < end; q++) {
+						int a = i*d;
+						int b = sorted[q]*d;
+						double dist = 0.0;
+						for (int l = 0; l < d; l++) {
+							double diff = data[a+l] - data[b+l];
+							dist += diff*diff;
+						}
+						sum += Math.sqrt(dist);
+					}
+				}
+				partialSums[block] = sum;
+			}
+		});
+		
+		double sum = 0.0;
+		for (int block = 0; block < this.numberOfBlocks; block++) {
+			sum += partialSums[block];
+		}
+		return sum / c;
+	}
+	
+	/**
+	 * Constructs the (hard) clustering result.
+	 * 
+	 * @param labels  the cluster of every object
+	 * @param c       the number of clusters
+	 * @return the clustering result
+	 */
+	ClusteringResult getHardResult(int[] labels, int c) {
+		ArrayList<Cluster> clusters = new ArrayList<Cluster>(c);
+		for (int j = 0; j < c; j++) {
+			clusters.add(new Cluster());
+		}
+		for (int i = 0; i < this.n; i++) {
+			clusters.get(labels[i]).put(this.objects.get(i), 1.0);
+		}
+		return new ClusteringResult(clusters, false);
+	}
+	
+	/**
+	 * Constructs the fuzzy clustering result.
+	 * 
+	 * @param memberships  the memberships, see <code>fuzzyCMeans</code>
+	 * @param c            the number of clusters
+	 * @return the clustering result
+	 */
+	ClusteringResult getFuzzyResult(double[] memberships, int c) {
+		ArrayList<Cluster> clusters = new ArrayList<Cluster>(c);
+		for (int j = 0; j < c; j++) {
+			Cluster cluster = new Cluster();
+			for (int i = 0; i < this.n; i++) {
+				cluster.put(this.objects.get(i), memberships[i*c+j]);
+			}
+			clusters.add(cluster);
+		}
+		return new ClusteringResult(clusters, true);
+	}
+	
+}
@@ -1,15 +1,15 @@
 package geoling.util.clusteranalysis.methods;
 
-import geoling.util.clusteranalysis.Cluster;
 import geoling.util.clusteranalysis.ClusterAnalysis;
 import geoling.util.clusteranalysis.ClusterObject;
 import geoling.util.clusteranalysis.ClusteringResult;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Random;
 
 /**
  * This class is an implementation of the fuzzy c-means clustering (FCMC) algorithm.
+ * The initial cluster centers are chosen by k-means++ seeding (see <code>CMeansCore</code>).
  * 
  * @author student assistant, Institute of Stochastics, Ulm University
  * @see "Robert L Cannon, Jitendra V Dave, James C Bezdek, Efficient Implementation
@@ -56,141 +56,34 @@ public class FuzzyCMeansClustering implements ClusterAnalysis {
 	 * Computes the resulting clusters according to this method.
 	 * 
 	 * @param objects  the set of objects that shall be clustered
-	 * @return the set of clusters or <code>null</code> if an empty cluster occured
+	 * @return the set of clusters
 	 */
 	public ClusteringResult clusterAnalysis(Collection<? extends ClusterObject> objects) {
-		ArrayList<ClusterObject> objectsList = new ArrayList<ClusterObject>(objects);
-		
-		ArrayList<double[]> allCoordinates = new ArrayList<double[]>();
-		for (int i = 0; i < objectsList.size(); i++) {
-			allCoordinates.add(objectsList.get(i).getCoordinates());
-		}
-		
-		if (c > objectsList.size()) {
-			throw new IllegalArgumentException("The number of clusters can't be greater than the number of objects which shall be clustered!");
-		}
-		int p = objectsList.get(0).getCoordinates().length - 1;
-				
-		/**
-		 * The value U[i][j] is the probability with which the j-th cluster
-		 * Object belongs to Cluster i.
-		 */
-		
-		double[][] U = new double[c][objectsList.size()];
-		
-		/** Initialize the entries of U randomly. */
-		for (int j = 0; j < objectsList.size(); j++) {
-			double sum = 0.0;
-			for (int i = 0; i < c; i++) {
-				U[i][j] = Math.random();
-				sum = sum + U[i][j];
-			}
-			
-			for (int i = 0; i < c; i++) {
-				U[i][j] = U[i][j] / sum;
-			}
-			
-		}
-		
-		boolean doWeContinue;
-		do {
-			/**
-			 * Calculates the c Cluster centers, where clusterCenters.get(i) is
-			 * the center of the i-th cluster.
-			 */
-			double[][] clusterCenters = new double[c][p + 1];
-			
-			for (int i = 0; i < c; i++) {
-				double tmp;
-				for (int l = 0; l < p + 1; l++) {
-					tmp = 0;
-					double divide = 0;
-					for (int k = 0; k < objectsList.size(); k++) {
-						tmp = tmp + Math.pow(U[i][k], ((double) m)) * allCoordinates.get(k)[l];
-						divide = divide + Math.pow(U[i][k], ((double) m));
-					}
-					tmp = tmp / divide;
-					clusterCenters[i][l] = tmp;
-				}
-			}
-			
-			/** Compute the new values of U */
-			double[][] Utmp = new double[c][objectsList.size()];
-			for (int i = 0; i < c; i++) {
-				for (int k = 0; k < objectsList.size(); k++) {
-					double tmp = 0;
-					for (int j = 0; j < c; j++) {
-						tmp = tmp + Math.pow((norm(allCoordinates, clusterCenters, i, k) / norm(allCoordinates, clusterCenters, j, k)), (2.0) / (((double) m) - 1.0));
-					}
-					Utmp[i][k] = 1.0 / tmp;
-				}
-			}
-			
-			doWeContinue = isMatrixNormLessThanEpsilon(U, Utmp);
-			U = Utmp;
-			
-		} while (doWeContinue);
-		
-		ArrayList<Cluster> clusters = new ArrayList<Cluster>();
-		for (int i = 0; i < c; i++) {
-			Cluster tmpCluster = new Cluster();
-			for (int j = 0; j < objectsList.size(); j++) {
-				
-				tmpCluster.put(objectsList.get(j), U[i][j]);
-			}
-			clusters.add(tmpCluster);
-		}
-		
-		return new ClusteringResult(clusters, true);
+		CMeansCore core = new CMeansCore(objects);
+		return core.getFuzzyResult(this.computeMemberships(core, new Random()), c);
 	}
 	
 	/**
-	 * Calculates the Frobenius norm between <code>U</code> and <code>Utmp</code>.
+	 * Returns the number of clusters.
 	 * 
-	 * @param U     a matrix
-	 * @param Utmp  a matrix with the same dimensions as <code>U</code>
-	 * @return <code>false</code> when the Frobenius norm is less than
-	 *         <code>epsilon</code>, <code>true</code> otherwise.
+	 * @return the number of clusters
 	 */
-	private boolean isMatrixNormLessThanEpsilon(double[][] U, double[][] Utmp) {
-		double frobNorm = 0;
-		for (int i = 0; i < U.length; i++) {
-			for (int j = 0; j < U[i].length; j++) {
-				frobNorm = frobNorm + Math.pow((U[i][j] - Utmp[i][j]), 2.0);
-			}
-		}
-		
-		if (frobNorm < epsilon) {
-			return false;
-		} else {
-			return true;
-		}		
+	int getNumberOfClusters() {
+		return this.c;
 	}
 	
 	/**
-	 * Calculates the Euclidean norm between the <code>k</code>-th point and the
-	 * <code>i</code>-th cluster center.
+	 * Computes the memberships of all objects.
 	 * 
-	 * @param allCoordinates  the coordinates of the cluster objects
-	 * @param clusterCenters  the centers of the current clusters
-	 * @param i               any integer between 1 and the number of clusters
-	 * @param k               any integer between 1 and the number of objects
-	 * @return the Euclidean norm
+	 * @param core    the coordinates of the objects
+	 * @param random  the random number generator
+	 * @return the memberships, the membership of object <code>i</code> to cluster <code>j</code> is stored at index <code>i*c+j</code>
 	 */
-	private double norm(ArrayList<double[]> allCoordinates, double[][] clusterCenters, int i, int k) {
-		double result = 0;
-		
-		for (int j = 0; j < clusterCenters[i].length; j++) {
-			double diff = allCoordinates.get(k)[j] - clusterCenters[i][j];
-			result += diff * diff;
-		}
-		
-		result = Math.sqrt(result);
-		if (result == 0) {
-			throw new RuntimeException("Result of function 'norm' is zero, but this is probably a problem, at least a special case was implemented here. For now, it is safer to let the program crash...");
+	double[] computeMemberships(CMeansCore core, Random random) {
+		if (c > core.size()) {
+			throw new IllegalArgumentException("The number of clusters can't be greater than the number of objects which shall be clustered!");
 		}
-		
-		return result;
+		return core.fuzzyCMeans(c, m, epsilon, random);
 	}
 	
 }
\ No newline at end of file
@@ -1,14 +1,12 @@
 package geoling.util.clusteranalysis.methods;
 
-import geoling.util.clusteranalysis.Cluster;
+import geoling.util.ThreadedTodoWorker;
 import geoling.util.clusteranalysis.ClusterAnalysis;
 import geoling.util.clusteranalysis.ClusterObject;
 import geoling.util.clusteranalysis.ClusteringResult;
-import geoling.util.sim.grain.Point;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Random;
 
 /**
  * This class is an improved implementation of the fuzzy c-means clustering
@@ -17,6 +15,9 @@ import java.util.List;
  * times, the optimal result will be chosen and returned. Due to the fact that
  * the result depends on a random matrix, the described strategy is
  * useful.
+ * <p>
+ * The repetitions are computed in parallel (see <code>ThreadedTodoWorker</code>),
+ * all of them use the same array of coordinates (see <code>CMeansCore</code>).
  * 
  * @author student assistant, Institute of Stochastics, Ulm University
  * @see "Robert L Cannon, Jitendra V Dave, James C Bezdek, Efficient Implementation
@@ -53,48 +54,42 @@ public class FuzzyCMeansClusteringImproved implements ClusterAnalysis {
 	 * @return the set of clusters
 	 */
 	public ClusteringResult clusterAnalysis(Collection<? extends ClusterObject> objects) {
-		ArrayList<ClusteringResult> allResults = new ArrayList<ClusteringResult>();
+		final CMeansCore core = new CMeansCore(objects);
+		final int c = singleAnalysis.getNumberOfClusters();
 		
-		/** Doing the cluster analysis as often as intended. */
+		// the seeds are drawn in advance, i.e., the results do not depend on the order of execution
+		Random random = new Random();
+		final long[] seeds = new long[repeat];
 		for (int i = 0; i < repeat; i++) {
-			allResults.add(singleAnalysis.clusterAnalysis(objects));
+			seeds[i] = random.nextLong();
 		}
 		
 		/**
-		 * Finding the best clustering. That means the clustering where the sum
-		 * of all euclidean distances between every point in a cluster to every
-		 * other point of the same cluster, is minimal.
+		 * Doing the cluster analysis as often as intended and finding the best
+		 * clustering. That means the clustering where the sum of all euclidean
+		 * distances between every point in a cluster to every other point of the
+		 * same cluster, is minimal.
 		 */
+		final double[][] allMemberships = new double[repeat][];
+		final double[] sumsOfNorms = new double[repeat];
+		ThreadedTodoWorker.workOnIndexRange(0, repeat-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int i) {
+				allMemberships[i] = singleAnalysis.computeMemberships(core, new Random(seeds[i]));
+				// transform "fuzzy" results to "hard" results
+				sumsOfNorms[i] = core.getAverageSumOfDistancesWithinClusters(CMeansCore.getHardLabels(allMemberships[i], c), c);
+			}
+		});
+		
 		int indexOfTheBestCluster = 0;
 		double minimalNorm = Double.POSITIVE_INFINITY;
 		for (int l = 0; l < repeat; l++) {
-			// transform "fuzzy" results to "hard" results
-			ClusteringResult currentClusteringResultHard = allResults.get(l).getHardResult();
-			ArrayList<Cluster> currentClusters = currentClusteringResultHard.getClusters();
-			double sumOfNorms = 0.0;
-			
-			for (int i = 0; i < currentClusters.size(); i++) {
-				Cluster currentCluster = currentClusters.get(i);
-				List<ClusterObject> currentClusterObjects = currentCluster.getObjects();
-				double tmp = 0.0;
-				for (int j = 0; j < currentCluster.size(); j++) {
-					for (int k = j + 1; k < currentCluster.size(); k++) {
-						
-						tmp = tmp + Point.distance(currentClusterObjects.get(j).getCoordinates(), currentClusterObjects.get(k).getCoordinates());
-						
-					}
-				}
-				sumOfNorms = sumOfNorms + tmp;
-			}
-			sumOfNorms = sumOfNorms / currentClusters.size();
-			
-			if (sumOfNorms <= minimalNorm) {
-				minimalNorm = sumOfNorms;
+			if (sumsOfNorms[l] <= minimalNorm) {
+				minimalNorm = sumsOfNorms[l];
 				indexOfTheBestCluster = l;
 			}
 		}
 		
-		return allResults.get(indexOfTheBestCluster);
+		return core.getFuzzyResult(allMemberships[indexOfTheBestCluster], c);
 	}
 	
 }
\ No newline at end of file
@@ -1,14 +1,12 @@
 package geoling.util.clusteranalysis.methods;
 
-import geoling.util.clusteranalysis.Cluster;
+import geoling.util.ThreadedTodoWorker;
 import geoling.util.clusteranalysis.ClusterAnalysis;
 import geoling.util.clusteranalysis.ClusterObject;
 import geoling.util.clusteranalysis.ClusteringResult;
-import geoling.util.sim.grain.Point;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Random;
 
 /**
  * This class is an improved implementation of the k-means cluster algorithm.
@@ -17,6 +15,9 @@ import java.util.List;
  * the optimal result will be chosen and returned. Due to the fact that the
  * result of a KMC depends on the random initial configuration of the cluster
  * centers the described strategy is useful.
+ * <p>
+ * The repetitions are computed in parallel (see <code>ThreadedTodoWorker</code>),
+ * all of them use the same array of coordinates (see <code>CMeansCore</code>).
  * 
  * @author student assistant, Institute of Stochastics, Ulm University
  */
@@ -52,23 +53,14 @@ public class KMeansClusteringImproved implements ClusterAnalysis {
 	 * @return the set of clusters
 	 */
 	public ClusteringResult clusterAnalysis(Collection<? extends ClusterObject> objects) {
-		ArrayList<ClusteringResult> allResults = new ArrayList<ClusteringResult>();
+		final CMeansCore core = new CMeansCore(objects);
+		final int c = singleAnalysis.getNumberOfClusters();
 		
+		// the seeds are drawn in advance, i.e., the results do not depend on the order of execution
+		Random random = new Random();
+		final long[] seeds = new long[repeat];
 		for (int i = 0; i < repeat; i++) {
-			ClusteringResult temporaryClusteringResult = null;
-			
-			for (int j = 0; j <= retries; j++) {
-				temporaryClusteringResult = singleAnalysis.clusterAnalysis(objects);
-				if (temporaryClusteringResult != null) {
-					break;
-				}
-			}
-			
-			if (temporaryClusteringResult == null) {
-				throw new RuntimeException("Cannot compute clustering result, "+retries+" tries yielded empty clusters!");
-			}
-			
-			allResults.add(temporaryClusteringResult);
+			seeds[i] = random.nextLong();
 		}
 		
 		/**
@@ -76,37 +68,35 @@ public class KMeansClusteringImproved implements ClusterAnalysis {
 		 * of all euclidean distances between every point in a cluster to every
 		 * other point of the same cluster, is minimal.
 		 */
-		/**
-		 * Does the Fuzzy cluster analysis for each possible value of c and
-		 * transforms it to a hard cluster analysis.
-		 */
+		final int[][] allLabels = new int[repeat][];
+		final double[] sumsOfNorms = new double[repeat];
+		ThreadedTodoWorker.workOnIndexRange(0, repeat-1, 1, new ThreadedTodoWorker.IndexTodoWorker() {
+			public void processTodoIndex(int i) {
+				Random random = new Random(seeds[i]);
+				int[] labels = null;
+				for (int j = 0; j <= retries && labels == null; j++) {
+					labels = singleAnalysis.computeLabels(core, random);
+				}
+				
+				if (labels == null) {
+					throw new RuntimeException("Cannot compute clustering result, "+retries+" tries yielded empty clusters!");
+				}
+				
+				allLabels[i]   = labels;
+				sumsOfNorms[i] = core.getAverageSumOfDistancesWithinClusters(labels, c);
+			}
+		});
+		
 		int indexOfTheBestCluster = 0;
 		double minimalNorm = Double.POSITIVE_INFINITY;
 		for (int l = 0; l < repeat; l++) {
-			ClusteringResult currentClusteringResult = allResults.get(l);
-			ArrayList<Cluster> currentClusters = currentClusteringResult.getClusters();
-			double sumOfNorms = 0.0;
-			
-			for (int i = 0; i < currentClusters.size(); i++) {
-				Cluster currentCluster = currentClusters.get(i);
-				List<ClusterObject> currentClusterObjects = currentCluster.getObjects();
-				double tmp = 0.0;
-				for (int j = 0; j < currentCluster.size(); j++) {
-					for (int k = j + 1; k < currentCluster.size(); k++) {
-						tmp = tmp + Point.distance(currentClusterObjects.get(j).getCoordinates(), currentClusterObjects.get(k).getCoordinates());
-					}
-				}
-				sumOfNorms = sumOfNorms + tmp;
-			}
-			sumOfNorms = sumOfNorms / currentClusters.size();
-			
-			if (sumOfNorms <= minimalNorm) {
-				minimalNorm = sumOfNorms;
+			if (sumsOfNorms[l] <= minimalNorm) {
+				minimalNorm = sumsOfNorms[l];
 				indexOfTheBestCluster = l;
 			}
 		}
 		
-		return allResults.get(indexOfTheBestCluster);
+		return core.getHardResult(allLabels[indexOfTheBestCluster], c);
 	}
 	
-}
\ No newline at end of file
+}
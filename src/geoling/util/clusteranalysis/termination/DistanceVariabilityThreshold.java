@@ -2,6 +2,7 @@ package geoling.util.clusteranalysis.termination;
 
 import geoling.util.clusteranalysis.ClusterObject;
 import geoling.util.clusteranalysis.ClusteringResult;
+import geoling.util.clusteranalysis.Dendrogram;
 import geoling.util.clusteranalysis.distance.ClusterObjectDistance;
 import geoling.util.clusteranalysis.linkage.CachedLinkage;
 import geoling.util.clusteranalysis.linkage.LinkageMethod;
@@ -64,27 +65,60 @@ public class DistanceVariabilityThreshold implements TerminationCriterion {
 			
 			// note: we use explicitly only float-precision in the following, this allows us to
 			//       use float-storage for cached distances
-			float smallestDistance  = (float)cachedLinkage.distance(pair.cluster1, pair.cluster2);
-			float meanOfDistances   = (float)meanOfDistances(pair, linkage.getObjectDistance());
-			float stddevOfDistances = (float)stddevOfDistances(pair, meanOfDistances, linkage.getObjectDistance());
-			
-			return (smallestDistance > meanOfDistances + k*stddevOfDistances + EPS);
+			float smallestDistance = (float)cachedLinkage.distance(pair.cluster1, pair.cluster2);
+			return exceedsThreshold(smallestDistance, pair.cluster1.getObjects(), pair.cluster2.getObjects(), linkage.getObjectDistance());
 		} else {
 			throw new IllegalArgumentException("CachedLinkage expected!");
 		}
 	}
 	
+	/**
+	 * Determines the number of merges of the given merge tree after which the clustering
+	 * terminates, i.e., the merges are replayed without computing distances between clusters.
+	 * 
+	 * @param dendrogram  the merge tree of an agglomerative hierarchical clustering
+	 * @return the number of merges before termination
+	 */
+	public int getNumberOfMerges(Dendrogram dendrogram) {
+		ClusterObjectDistance objectDistance = dendrogram.getLinkage().getObjectDistance();
+		for (int s = 0; s < dendrogram.getNumberOfMerges(); s++) {
+			float smallestDistance = (float)dendrogram.getHeight(s);
+			List<ClusterObject> objects1 = dendrogram.getObjectsOfNode(dendrogram.getFirstNode(s));
+			List<ClusterObject> objects2 = dendrogram.getObjectsOfNode(dendrogram.getSecondNode(s));
+			if (exceedsThreshold(smallestDistance, objects1, objects2, objectDistance)) {
+				return s;
+			}
+		}
+		// no further pair => terminate
+		return dendrogram.getNumberOfMerges();
+	}
+	
+	/**
+	 * Determines whether the smallest distance between clusters exceeds the threshold
+	 * for the two clusters with this distance.
+	 * 
+	 * @param smallestDistance  the smallest distance between clusters
+	 * @param objects1          the objects of the first cluster
+	 * @param objects2          the objects of the second cluster
+	 * @param objectDistance    the distance measure
+	 * @return <code>true</code> if the threshold is exceeded
+	 */
+	private boolean exceedsThreshold(float smallestDistance, List<ClusterObject> objects1, List<ClusterObject> objects2, ClusterObjectDistance objectDistance) {
+		float meanOfDistances   = (float)meanOfDistances(objects1, objects2, objectDistance);
+		float stddevOfDistances = (float)stddevOfDistances(objects1, objects2, meanOfDistances, objectDistance);
+		
+		return (smallestDistance > meanOfDistances + k*stddevOfDistances + EPS);
+	}
+	
 	/**
 	 * Returns the average distance between the objects in the two clusters.
 	 * 
-	 * @param pair           the pair of clusters
+	 * @param objects1       the objects of the first cluster
+	 * @param objects2       the objects of the second cluster
 	 * @param objectDistance the distance measure
 	 * @return the average distance
 	 */
-	private double meanOfDistances(CachedLinkage.ClusterPair pair, ClusterObjectDistance objectDistance) {
-		List<ClusterObject> objects1 = pair.cluster1.getObjects();
-		List<ClusterObject> objects2 = pair.cluster2.getObjects();
-		
+	private double meanOfDistances(List<ClusterObject> objects1, List<ClusterObject> objects2, ClusterObjectDistance objectDistance) {
 		double sum = 0.0;
 		int count = 0;
 		for (ClusterObject object1 : objects1) {
@@ -100,19 +134,17 @@ public class DistanceVariabilityThreshold implements TerminationCriterion {
 	/**
 	 * Returns the standard deviation of the distances between the objects in the two clusters.
 	 * 
-	 * @param pair            the pair of clusters
+	 * @param objects1        the objects of the first cluster
+	 * @param objects2        the objects of the second cluster
 	 * @param meanOfDistances the average distance, which has been already computed
 	 * @param objectDistance  the distance measure
 	 * @return the standard deviation of the distances
 	 */
-	private double stddevOfDistances(CachedLinkage.ClusterPair pair, double meanOfDistances, ClusterObjectDistance objectDistance) {
-		if (pair.cluster1.size()*pair.cluster2.size() <= 1) {
+	private double stddevOfDistances(List<ClusterObject> objects1, List<ClusterObject> objects2, double meanOfDistances, ClusterObjectDistance objectDistance) {
+		if (objects1.size()*objects2.size() <= 1) {
 			return 0.0;
 		}
 		
-		List<ClusterObject> objects1 = pair.cluster1.getObjects();
-		List<ClusterObject> objects2 = pair.cluster2.getObjects();
-		
 		double sum = 0.0;
 		int count = 0;
 		for (ClusterObject object1 : objects1) {
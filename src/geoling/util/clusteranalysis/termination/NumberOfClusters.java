@@ -23,6 +23,15 @@ public class NumberOfClusters implements TerminationCriterion {
 		this.targetNumber = targetNumber;
 	}
 	
+	/**
+	 * Returns the number of clusters we want to have.
+	 * 
+	 * @return the number of clusters
+	 */
+	public int getTargetNumber() {
+		return this.targetNumber;
+	}
+	
 	/**
 	 * Determines whether we should terminate the iteration process
 	 * of the clustering algorithm.
@@ -0,0 +1,663 @@
+package geoling.util.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clipping of a simple (not necessarily convex) polygon with convex polygons,
+ * e.g. the border polygon of a map with the cells of a tessellation.
+ * The polygon is given by arrays of coordinates, its edges are stored in a
+ * uniform grid, therefore clipping only considers the edges near the convex
+ * polygon and is roughly linear in the local complexity of the polygon.
+ * <p>
+ * The clipping works like the Weiler-Atherton algorithm for a convex clip
+ * window: every edge of the polygon is clipped with the convex polygon
+ * (Cyrus-Beck), consecutive inside parts are joined to chains from an entry
+ * to an exit point, and the resulting polygons are traced by following a
+ * chain to its exit point and the boundary of the convex polygon to the next
+ * entry point. Points within a small tolerance of the convex polygon are
+ * treated as inside.
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class PolygonClipper {
+	
+	/** The x-coordinates of the polygon (counter-clockwise). */
+	private final double[] x;
+	
+	/** The y-coordinates of the polygon (counter-clockwise). */
+	private final double[] y;
+	
+	/** The number of vertices of the polygon. */
+	private final int m;
+	
+	/** The absolute tolerance for points on the boundary. */
+	private final double tolerance;
+	
+	/** The minimal x-coordinate of the grid. */
+	private final double gridMinX;
+	
+	/** The minimal y-coordinate of the grid. */
+	private final double gridMinY;
+	
+	/** The width of a grid cell. */
+	private final double cellWidth;
+	
+	/** The height of a grid cell. */
+	private final double cellHeight;
+	
+	/** The number of grid columns. */
+	private final int columns;
+	
+	/** The number of grid rows. */
+	private final int rows;
+	
+	/** The offsets of the grid cells in <code>cellEdges</code>. */
+	private final int[] cellOffsets;
+	
+	/** The edges (index of the start vertex) intersecting the bounding box of every grid cell. */
+	private final int[] cellEdges;
+	
+	/**
+	 * Constructs a clipper for the given simple polygon.
+	 * 
+	 * @param x  the x-coordinates of the vertices (clockwise or counter-clockwise)
+	 * @param y  the y-coordinates of the vertices
+	 */
+	public PolygonClipper(double[] x, double[] y) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("The arrays of coordinates must have the same length!");
+		}
+		// remove consecutive duplicate vertices, because edges of length zero are not allowed
+		double[] px = new double[x.length];
+		double[] py = new double[y.length];
+		int count = 0;
+		for (int i = 0; i < x.length; i++) {
+			if ((count == 0) || (x[i] != px[count-1]) || (y[i] != py[count-1])) {
+				px[count] = x[i];
+				py[count] = y[i];
+				count++;
+			}
+		}
+		while ((count > 1) && (px[0] == px[count-1]) && (py[0] == py[count-1])) {
+			count--;
+		}
+		if (count < 3) {
+			throw new IllegalArgumentException("A polygon requires at least three vertices!");
+		}
+		px = Arrays.copyOf(px, count);
+		py = Arrays.copyOf(py, count);
+		this.m = count;
+		if (getSignedArea(px, py) < 0.0) {
+			this.x = reverse(px);
+			this.y = reverse(py);
+		} else {
+			this.x = px;
+			this.y = py;
+		}
+		
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double maxAbs = 1.0;
+		for (int i = 0; i < this.m; i++) {
+			minX = Math.min(minX, this.x[i]);
+			minY = Math.min(minY, this.y[i]);
+			maxX = Math.max(maxX, this.x[i]);
+			maxY = Math.max(maxY, this.y[i]);
+			maxAbs = Math.max(maxAbs, Math.max(Math.abs(this.x[i]), Math.abs(this.y[i])));
+		}
+		this.tolerance = 1E-10 * maxAbs;
+		
+		// uniform grid with about two edges per cell
+		int size = Math.max(1, (int)Math.ceil(Math.sqrt(this.m / 2.0)));
+		this.columns = size;
+		this.rows = size;
+		this.gridMinX = minX;
+		this.gridMinY = minY;
+		this.cellWidth = Math.max(maxX - minX, this.tolerance) / this.columns;
+		this.cellHeight = Math.max(maxY - minY, this.tolerance) / this.rows;
+		
+		// two passes: count the edges of every cell, then store them
+		int[] counts = new int[this.columns * this.rows];
+		int[] edgesOfCells = null;
+		for (int pass = 0; pass < 2; pass++) {
+			int[] positions = (pass == 1) ? Arrays.copyOf(counts, counts.length) : null;
+			for (int i = 0; i < this.m; i++) {
+				int j = (i+1 == this.m) ? 0 : (i+1);
+				int c1 = getColumn(Math.min(this.x[i], this.x[j]));
+				int c2 = getColumn(Math.max(this.x[i], this.x[j]));
+				int r1 = getRow(Math.min(this.y[i], this.y[j]));
+				int r2 = getRow(Math.max(this.y[i], this.y[j]));
+				for (int r = r1; r <= r2; r++) {
+					for (int c = c1; c <= c2; c++) {
+						if (pass == 0) {
+							counts[r*this.columns + c]++;
+						} else {
+							positions[r*this.columns + c]--;
+							edgesOfCells[positions[r*this.columns + c]] = i;
+						}
+					}
+				}
+			}
+			if (pass == 0) {
+				for (int c = 1; c < counts.length; c++) {
+					counts[c] += counts[c-1];
+				}
+				edgesOfCells = new int[counts[counts.length-1]];
+			}
+		}
+		this.cellOffsets = new int[counts.length + 1];
+		System.arraycopy(counts, 0, this.cellOffsets, 1, counts.length);
+		this.cellEdges = edgesOfCells;
+	}
+	
+	/**
+	 * Returns the grid column of the given x-coordinate (clamped to the grid).
+	 * 
+	 * @param px  the x-coordinate
+	 * @return the column
+	 */
+	private int getColumn(double px) {
+		int c = (int)Math.floor((px - this.gridMinX) / this.cellWidth);
+		return Math.max(0, Math.min(this.columns-1, c));
+	}
+	
+	/**
+	 * Returns the grid row of the given y-coordinate (clamped to the grid).
+	 * 
+	 * @param py  the y-coordinate
+	 * @return the row
+	 */
+	private int getRow(double py) {
+		int r = (int)Math.floor((py - this.gridMinY) / this.cellHeight);
+		return Math.max(0, Math.min(this.rows-1, r));
+	}
+	
+	/**
+	 * Returns the number of vertices of the polygon.
+	 * 
+	 * @return the number of vertices
+	 */
+	public int getNumberOfVertices() {
+		return this.m;
+	}
+	
+	/**
+	 * Returns the edges of the polygon whose bounding boxes may intersect the given box.
+	 * Edge <code>i</code> connects the vertices <code>i</code> and <code>i+1</code> (modulo the
+	 * number of vertices) of the polygon in counter-clockwise order.
+	 * 
+	 * @param minX  the minimal x-coordinate of the box
+	 * @param minY  the minimal y-coordinate of the box
+	 * @param maxX  the maximal x-coordinate of the box
+	 * @param maxY  the maximal y-coordinate of the box
+	 * @return the indices of the edges in ascending order
+	 */
+	public int[] getEdgesInBox(double minX, double minY, double maxX, double maxY) {
+		if ((maxX < this.gridMinX) || (maxY < this.gridMinY) ||
+		    (minX > this.gridMinX + this.columns*this.cellWidth) || (minY > this.gridMinY + this.rows*this.cellHeight)) {
+			return new int[0];
+		}
+		int c1 = getColumn(minX);
+		int c2 = getColumn(maxX);
+		int r1 = getRow(minY);
+		int r2 = getRow(maxY);
+		int count = 0;
+		for (int r = r1; r <= r2; r++) {
+			count += this.cellOffsets[r*this.columns + c2 + 1] - this.cellOffsets[r*this.columns + c1];
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int r = r1; r <= r2; r++) {
+			int from = this.cellOffsets[r*this.columns + c1];
+			int to = this.cellOffsets[r*this.columns + c2 + 1];
+			System.arraycopy(this.cellEdges, from, result, count, to - from);
+			count += to - from;
+		}
+		
+		// sort and remove duplicates (edges may be stored in several cells)
+		Arrays.sort(result);
+		int n = 0;
+		for (int k = 0; k < result.length; k++) {
+			if ((n == 0) || (result[k] != result[n-1])) {
+				result[n++] = result[k];
+			}
+		}
+		return (n == result.length) ? result : Arrays.copyOf(result, n);
+	}
+	
+	/**
+	 * Checks whether the given point is contained in the polygon (ray casting, only
+	 * the grid row of the point is considered). The result for points on the boundary
+	 * is not specified.
+	 * 
+	 * @param px  the x-coordinate of the point
+	 * @param py  the y-coordinate of the point
+	 * @return <code>true</code> if the point is contained in the polygon
+	 */
+	public boolean contains(double px, double py) {
+		if ((py < this.gridMinY) || (py > this.gridMinY + this.rows*this.cellHeight)) {
+			return false;
+		}
+		int r = getRow(py);
+		boolean inside = false;
+		for (int c = getColumn(px); c < this.columns; c++) {
+			for (int k = this.cellOffsets[r*this.columns + c]; k < this.cellOffsets[r*this.columns + c + 1]; k++) {
+				int i = this.cellEdges[k];
+				int j = (i+1 == this.m) ? 0 : (i+1);
+				if ((this.y[i] > py) != (this.y[j] > py)) {
+					double xc = this.x[i] + (py - this.y[i]) * (this.x[j] - this.x[i]) / (this.y[j] - this.y[i]);
+					// an edge may be stored in several cells, count it only in the cell of the crossing
+					if ((xc > px) && (getColumn(xc) == c)) {
+						inside = !inside;
+					}
+				}
+			}
+		}
+		return inside;
+	}
+	
+	/**
+	 * Checks whether the given polygon is convex (collinear vertices are allowed).
+	 * 
+	 * @param cx  the x-coordinates of the vertices
+	 * @param cy  the y-coordinates of the vertices
+	 * @return <code>true</code> if the polygon is convex
+	 */
+	public static boolean isConvex(double[] cx, double[] cy) {
+		int k = cx.length;
+		if (k < 3) {
+			return false;
+		}
+		int sign = 0;
+		for (int i = 0; i < k; i++) {
+			int j = (i+1) % k;
+			int l = (i+2) % k;
+			double cross = (cx[j]-cx[i]) * (cy[l]-cy[j]) - (cy[j]-cy[i]) * (cx[l]-cx[j]);
+			if (cross != 0.0) {
+				int s = (cross > 0.0) ? 1 : -1;
+				if ((sign != 0) && (s != sign)) {
+					return false;
+				}
+				sign = s;
+			}
+		}
+		return (sign != 0);
+	}
+	
+	/**
+	 * Computes the signed area of the given polygon (positive if counter-clockwise).
+	 * 
+	 * @param px  the x-coordinates of the vertices
+	 * @param py  the y-coordinates of the vertices
+	 * @return the signed area
+	 */
+	public static double getSignedArea(double[] px, double[] py) {
+		double area = 0.0;
+		for (int i = 0; i < px.length; i++) {
+			int j = (i+1 == px.length) ? 0 : (i+1);
+			area += (px[i] - px[0]) * (py[j] - py[0]) - (px[j] - px[0]) * (py[i] - py[0]);
+		}
+		return area / 2.0;
+	}
+	
+	/**
+	 * Returns a reversed copy of the given array.
+	 * 
+	 * @param values  the array
+	 * @return the reversed copy
+	 */
+	private static double[] reverse(double[] values) {
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = values[values.length-1-i];
+		}
+		return result;
+	}
+	
+	/**
+	 * Intersects the polygon with the given convex polygon.
+	 * 
+	 * @param cx  the x-coordinates of the vertices of the convex polygon (clockwise or counter-clockwise)
+	 * @param cy  the y-coordinates of the vertices of the convex polygon
+	 * @return the polygons of the intersection (may be empty), each given by the arrays of
+	 *         x- and y-coordinates of its vertices in counter-clockwise order
+	 * @throws IllegalArgumentException if the given polygon is not convex
+	 * @throws RuntimeException if the intersection could not be determined due to numerical problems
+	 */
+	public List<double[][]> clip(double[] cx, double[] cy) {
+		if (!isConvex(cx, cy)) {
+			throw new IllegalArgumentException("The clip polygon has to be convex!");
+		}
+		if (getSignedArea(cx, cy) < 0.0) {
+			cx = reverse(cx);
+			cy = reverse(cy);
+		}
+		int k = cx.length;
+		double[] edgeLengths = new double[k];
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int j = 0; j < k; j++) {
+			int j2 = (j+1 == k) ? 0 : (j+1);
+			edgeLengths[j] = Math.hypot(cx[j2]-cx[j], cy[j2]-cy[j]);
+			minX = Math.min(minX, cx[j]);
+			minY = Math.min(minY, cy[j]);
+			maxX = Math.max(maxX, cx[j]);
+			maxY = Math.max(maxY, cy[j]);
+		}
+		
+		// clip all edges near the convex polygon, the inside part of edge edges[c] is [tIn[c], tOut[c]]
+		int[] candidates = getEdgesInBox(minX - this.tolerance, minY - this.tolerance, maxX + this.tolerance, maxY + this.tolerance);
+		int[] edges = new int[candidates.length];
+		double[] tIn = new double[candidates.length];
+		double[] tOut = new double[candidates.length];
+		int count = 0;
+		for (int i : candidates) {
+			int i2 = (i+1 == this.m) ? 0 : (i+1);
+			double ax = this.x[i];
+			double ay = this.y[i];
+			double dx = this.x[i2] - ax;
+			double dy = this.y[i2] - ay;
+			double length = Math.hypot(dx, dy);
+			if (length == 0.0) {
+				continue;
+			}
+			// the interval [t1, t2] is determined with tolerance, [s1, s2] without tolerance
+			double t1 = 0.0;
+			double t2 = 1.0;
+			double s1 = 0.0;
+			double s2 = 1.0;
+			for (int j = 0; (j < k) && (t1 <= t2); j++) {
+				int j2 = (j+1 == k) ? 0 : (j+1);
+				double ex = cx[j2] - cx[j];
+				double ey = cy[j2] - cy[j];
+				// inside: num + t*den >= 0
+				double num = ex * (ay - cy[j]) - ey * (ax - cx[j]);
+				double den = ex * dy - ey * dx;
+				double numTolerance = num + this.tolerance * edgeLengths[j];
+				if (den == 0.0) {
+					if (numTolerance < 0.0) {
+						t1 = 1.0;
+						t2 = 0.0;
+					}
+				} else if (den > 0.0) {
+					t1 = Math.max(t1, -numTolerance / den);
+					s1 = Math.max(s1, -num / den);
+				} else {
+					t2 = Math.min(t2, -numTolerance / den);
+					s2 = Math.min(s2, -num / den);
+				}
+			}
+			if ((t2 - t1) * length > this.tolerance) {
+				// the tolerance decides whether the part starts or ends at a vertex, but the
+				// intersection points are computed exactly on the boundary of the convex polygon
+				double in = (t1 <= 0.0) ? 0.0 : Math.min(s1, 1.0);
+				double out = (t2 >= 1.0) ? 1.0 : Math.max(s2, 0.0);
+				if (in > out) {
+					in = out = (in + out) / 2.0;
+				}
+				edges[count] = i;
+				tIn[count] = in;
+				tOut[count] = out;
+				count++;
+			}
+		}
+		
+		List<double[][]> result = new ArrayList<double[][]>();
+		if (count == 0) {
+			// the boundary of the polygon does not intersect the convex polygon
+			return clipWithoutCrossings(cx, cy);
+		}
+		
+		// an inside part continues the previous one, if they belong to consecutive edges and
+		// the first one ends at the end of its edge, and the second one starts at its start
+		boolean[] continues = new boolean[count];
+		int breakIndex = -1;
+		for (int c = 0; c < count; c++) {
+			int p = (c == 0) ? (count-1) : (c-1);
+			int nextEdge = (edges[p]+1 == this.m) ? 0 : (edges[p]+1);
+			continues[c] = (nextEdge == edges[c]) && (tOut[p] >= 1.0) && (tIn[c] <= 0.0);
+			if (!continues[c] && (breakIndex < 0)) {
+				breakIndex = c;
+			}
+		}
+		if (breakIndex < 0) {
+			// the polygon is completely contained in the convex polygon
+			result.add(new double[][] { this.x.clone(), this.y.clone() });
+			return result;
+		}
+		
+		// join the inside parts to chains from an entry point to an exit point
+		ArrayList<double[]> chains = new ArrayList<double[]>();
+		int start = 0;
+		while (start < count) {
+			int end = start + 1;
+			while ((end < count) && continues[(breakIndex + end) % count]) {
+				end++;
+			}
+			double[] chain = new double[2 * (end - start + 1)];
+			for (int s = start; s < end; s++) {
+				int c = (breakIndex + s) % count;
+				int i = edges[c];
+				int i2 = (i+1 == this.m) ? 0 : (i+1);
+				double dx = this.x[i2] - this.x[i];
+				double dy = this.y[i2] - this.y[i];
+				if (s == start) {
+					chain[0] = this.x[i] + tIn[c]*dx;
+					chain[1] = this.y[i] + tIn[c]*dy;
+				}
+				chain[2*(s-start+1)] = this.x[i] + tOut[c]*dx;
+				chain[2*(s-start+1)+1] = this.y[i] + tOut[c]*dy;
+			}
+			chains.add(chain);
+			start = end;
+		}
+		
+		// determine the positions of entry and exit points on the boundary of the convex polygon,
+		// and drop chains of length zero (i.e., a vertex of the polygon touches the boundary)
+		// and chains running along the boundary in the opposite direction (i.e., the polygon
+		// only touches the convex polygon from outside)
+		ArrayList<double[]> validChains = new ArrayList<double[]>();
+		ArrayList<double[]> validPositions = new ArrayList<double[]>();
+		for (double[] chain : chains) {
+			double chainLength = 0.0;
+			for (int p = 0; p+3 < chain.length; p += 2) {
+				chainLength += Math.hypot(chain[p+2]-chain[p], chain[p+3]-chain[p+1]);
+			}
+			if (chainLength <= this.tolerance) {
+				continue;
+			}
+			double entry = getBoundaryPosition(cx, cy, chain[0], chain[1]);
+			double exit = getBoundaryPosition(cx, cy, chain[chain.length-2], chain[chain.length-1]);
+			if (isOnBoundary(cx, cy, edgeLengths, chain)) {
+				int j = (int)Math.floor(entry) % k;
+				int j2 = (j+1 == k) ? 0 : (j+1);
+				double direction = (chain[2]-chain[0]) * (cx[j2]-cx[j]) + (chain[3]-chain[1]) * (cy[j2]-cy[j]);
+				if (direction <= 0.0) {
+					continue;
+				}
+			}
+			validChains.add(chain);
+			validPositions.add(new double[] { entry, exit });
+		}
+		if (validChains.isEmpty()) {
+			// the boundary of the polygon only touches the convex polygon
+			return clipWithoutCrossings(cx, cy);
+		}
+		
+		// trace the polygons: follow a chain to its exit point, then the boundary of the
+		// convex polygon (counter-clockwise) to the next entry point
+		boolean[] used = new boolean[validChains.size()];
+		for (int first = 0; first < validChains.size(); first++) {
+			if (used[first]) {
+				continue;
+			}
+			double[] polygon = new double[0];
+			int current = first;
+			while (true) {
+				if (used[current]) {
+					throw new RuntimeException("Inconsistent chains in polygon clipping!");
+				}
+				used[current] = true;
+				double[] chain = validChains.get(current);
+				int offset = polygon.length;
+				polygon = Arrays.copyOf(polygon, polygon.length + chain.length);
+				System.arraycopy(chain, 0, polygon, offset, chain.length);
+				
+				// find the next entry point along the boundary
+				double exit = validPositions.get(current)[1];
+				int next = -1;
+				double nextDistance = Double.POSITIVE_INFINITY;
+				for (int c = 0; c < validChains.size(); c++) {
+					double distance = validPositions.get(c)[0] - exit;
+					if (distance < -1E-12) {
+						distance += k;
+					}
+					if (distance < nextDistance) {
+						nextDistance = distance;
+						next = c;
+					}
+				}
+				
+				// add the vertices of the convex polygon between the exit and the entry point
+				for (int v = (int)Math.floor(exit) + 1; v < exit + nextDistance; v++) {
+					int j = v % k;
+					offset = polygon.length;
+					polygon = Arrays.copyOf(polygon, polygon.length + 2);
+					polygon[offset] = cx[j];
+					polygon[offset+1] = cy[j];
+				}
+				
+				if (next == first) {
+					break;
+				}
+				current = next;
+			}
+			
+			double[][] cleaned = removeDuplicateVertices(polygon);
+			if ((cleaned[0].length >= 3) && (getSignedArea(cleaned[0], cleaned[1]) > this.tolerance * this.tolerance)) {
+				result.add(cleaned);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Intersects the polygon with the given convex polygon, if the boundary of the polygon
+	 * does not cross the interior of the convex polygon. Then the convex polygon is either
+	 * contained in the polygon or the interiors are disjoint, which is decided by the
+	 * centre of the convex polygon.
+	 * 
+	 * @param cx  the x-coordinates of the vertices of the convex polygon (counter-clockwise)
+	 * @param cy  the y-coordinates of the vertices of the convex polygon
+	 * @return the convex polygon or an empty list
+	 */
+	private List<double[][]> clipWithoutCrossings(double[] cx, double[] cy) {
+		int k = cx.length;
+		double centreX = 0.0;
+		double centreY = 0.0;
+		for (int j = 0; j < k; j++) {
+			centreX += cx[j] / k;
+			centreY += cy[j] / k;
+		}
+		List<double[][]> result = new ArrayList<double[][]>();
+		if (contains(centreX, centreY)) {
+			result.add(new double[][] { cx.clone(), cy.clone() });
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the position of a point on the boundary of the convex polygon, given by
+	 * <code>j+u</code> if the point lies on edge <code>j</code> at relative position <code>u</code>
+	 * (the nearest edge is used).
+	 * 
+	 * @param cx  the x-coordinates of the convex polygon (counter-clockwise)
+	 * @param cy  the y-coordinates of the convex polygon
+	 * @param px  the x-coordinate of the point
+	 * @param py  the y-coordinate of the point
+	 * @return the position on the boundary, in <code>[0,k)</code> for <code>k</code> vertices
+	 */
+	private static double getBoundaryPosition(double[] cx, double[] cy, double px, double py) {
+		int k = cx.length;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		double bestPosition = 0.0;
+		for (int j = 0; j < k; j++) {
+			int j2 = (j+1 == k) ? 0 : (j+1);
+			double ex = cx[j2] - cx[j];
+			double ey = cy[j2] - cy[j];
+			double lengthSq = ex*ex + ey*ey;
+			double u = (lengthSq > 0.0) ? (((px - cx[j]) * ex + (py - cy[j]) * ey) / lengthSq) : 0.0;
+			u = Math.max(0.0, Math.min(1.0, u));
+			double distance = Math.hypot(cx[j] + u*ex - px, cy[j] + u*ey - py);
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				bestPosition = j + u;
+			}
+		}
+		return (bestPosition >= k) ? (bestPosition - k) : bestPosition;
+	}
+	
+	/**
+	 * Checks whether all parts of the given chain lie on the boundary of the convex polygon,
+	 * by checking the midpoints of its segments.
+	 * 
+	 * @param cx           the x-coordinates of the convex polygon (counter-clockwise)
+	 * @param cy           the y-coordinates of the convex polygon
+	 * @param edgeLengths  the lengths of the edges of the convex polygon
+	 * @param chain        the chain (interleaved coordinates)
+	 * @return <code>true</code> if the chain lies on the boundary
+	 */
+	private boolean isOnBoundary(double[] cx, double[] cy, double[] edgeLengths, double[] chain) {
+		int k = cx.length;
+		for (int p = 0; p+3 < chain.length; p += 2) {
+			double mx = (chain[p] + chain[p+2]) / 2.0;
+			double my = (chain[p+1] + chain[p+3]) / 2.0;
+			double minDistance = Double.POSITIVE_INFINITY;
+			for (int j = 0; j < k; j++) {
+				int j2 = (j+1 == k) ? 0 : (j+1);
+				if (edgeLengths[j] > 0.0) {
+					double distance = ((cx[j2]-cx[j]) * (my-cy[j]) - (cy[j2]-cy[j]) * (mx-cx[j])) / edgeLengths[j];
+					minDistance = Math.min(minDistance, distance);
+				}
+			}
+			if (minDistance > 2.0 * this.tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes consecutive vertices that are (almost) identical.
+	 * 
+	 * @param polygon  the polygon (interleaved coordinates)
+	 * @return the x- and y-coordinates of the remaining vertices
+	 */
+	private double[][] removeDuplicateVertices(double[] polygon) {
+		int n = polygon.length / 2;
+		double[] px = new double[n];
+		double[] py = new double[n];
+		int count = 0;
+		for (int p = 0; p < n; p++) {
+			double vx = polygon[2*p];
+			double vy = polygon[2*p+1];
+			if ((count > 0) && (Math.abs(vx - px[count-1]) <= this.tolerance) && (Math.abs(vy - py[count-1]) <= this.tolerance)) {
+				continue;
+			}
+			px[count] = vx;
+			py[count] = vy;
+			count++;
+		}
+		while ((count > 1) && (Math.abs(px[0] - px[count-1]) <= this.tolerance) && (Math.abs(py[0] - py[count-1]) <= this.tolerance)) {
+			count--;
+		}
+		return new double[][] { Arrays.copyOf(px, count), Arrays.copyOf(py, count) };
+	}
+	
+}
@@ -0,0 +1,886 @@
+package geoling.util.tessellation;
+
+import geoling.util.sim.grain.MarkedPoint;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * (Weighted) Delaunay triangulation in 2D, computed directly in the plane by
+ * incremental insertion (Bowyer-Watson) of the points in the order of a Hilbert
+ * curve. For weighted points (points with radii), the result is the regular
+ * triangulation, i.e., the dual of the Laguerre tessellation, and points whose
+ * Laguerre cell is empty are redundant (not part of any triangle).
+ * <p>
+ * The geometric predicates (orientation and power test) are evaluated with
+ * floating point arithmetic first and exactly (with <code>BigDecimal</code>)
+ * if the result is not certain, therefore the triangulation is consistent
+ * for degenerate input (e.g. collinear or co-circular points) and no random
+ * perturbation is necessary.
+ * <p>
+ * The result is given as index-based half-edge structure: triangle <code>t</code>
+ * consists of the half-edges <code>3t</code>, <code>3t+1</code> and <code>3t+2</code>
+ * in counter-clockwise order, every half-edge knows its origin and its twin
+ * (the half-edge in the opposite direction in the neighbouring triangle, or
+ * <code>-1</code> on the convex hull).
+ * 
+ * @author Institute of Stochastics, Ulm University
+ */
+public class DelaunayTriangulation2D {
+	
+	/** Relative error bound for the floating point evaluation of the orientation test. */
+	private static final double ORIENTATION_ERROR_BOUND = 1E-14;
+	
+	/** Relative error bound for the floating point evaluation of the power test. */
+	private static final double POWER_ERROR_BOUND = 1E-12;
+	
+	/** The x-coordinates of the points. */
+	private final double[] x;
+	
+	/** The y-coordinates of the points. */
+	private final double[] y;
+	
+	/** The squared radii of the points. */
+	private final double[] squaredRadii;
+	
+	/** The number of points. */
+	private final int n;
+	
+	/** The origin of every half-edge (of the final triangulation). */
+	private int[] halfEdgeOrigins;
+	
+	/** The twin of every half-edge (of the final triangulation), <code>-1</code> on the convex hull. */
+	private int[] halfEdgeTwins;
+	
+	/** An outgoing half-edge of every point, <code>-1</code> if the point is redundant. */
+	private int[] incidentHalfEdges;
+	
+	/** Offsets of the neighbours of every point in <code>neighbourIndices</code>. */
+	private int[] neighbourOffsets;
+	
+	/** The neighbours of every point, sorted in ascending order. */
+	private int[] neighbourIndices;
+	
+	// working arrays of the incremental construction, where vertex n is the
+	// vertex "at infinity", which is part of the ghost triangles outside of
+	// the convex hull
+	
+	/** The vertices of all triangles (including ghost triangles). */
+	private int[] vertices;
+	
+	/** The twins of all half-edges (including ghost triangles). */
+	private int[] twins;
+	
+	/** Determines whether a triangle is part of the current triangulation. */
+	private boolean[] alive;
+	
+	/** The number of allocated triangles. */
+	private int numberOfAllocatedTriangles;
+	
+	/** Indices of triangles that can be reused. */
+	private int[] freeTriangles;
+	
+	/** The number of indices in <code>freeTriangles</code>. */
+	private int numberOfFreeTriangles;
+	
+	/** The insertion (stamp) in which a triangle was last tested for conflicts. */
+	private int[] testedStamps;
+	
+	/** Determines whether a triangle was in conflict when it was tested last. */
+	private boolean[] conflicts;
+	
+	/** The insertion (stamp) in which a triangle was last added to the cavity. */
+	private int[] visitedStamps;
+	
+	/**
+	 * Constructs the Delaunay triangulation of the given points.
+	 * 
+	 * @param x  the x-coordinates of the points
+	 * @param y  the y-coordinates of the points
+	 * @throws IllegalArgumentException if there are less than three points or all points are collinear
+	 */
+	public DelaunayTriangulation2D(double[] x, double[] y) {
+		this(x, y, null);
+	}
+	
+	/**
+	 * Constructs the weighted Delaunay triangulation (regular triangulation) of the given points,
+	 * which is dual to the Laguerre tessellation.
+	 * Note that only the first of several points with identical coordinates is used.
+	 * 
+	 * @param x      the x-coordinates of the points
+	 * @param y      the y-coordinates of the points
+	 * @param radii  the radii of the points, <code>null</code> for the (unweighted) Delaunay triangulation
+	 * @throws IllegalArgumentException if there are less than three points or all points are collinear
+	 */
+	public DelaunayTriangulation2D(double[] x, double[] y, double[] radii) {
+		if ((x.length != y.length) || ((radii != null) && (radii.length != x.length))) {
+			throw new IllegalArgumentException("The arrays of coordinates and radii must have the same length!");
+		}
+		for (int i = 0; i < x.length; i++) {
+			if (Double.isNaN(x[i]) || Double.isInfinite(x[i]) || Double.isNaN(y[i]) || Double.isInfinite(y[i])) {
+				throw new IllegalArgumentException("The coordinates of point "+i+" are not finite!");
+			}
+		}
+		this.x = x.clone();
+		this.y = y.clone();
+		this.n = x.length;
+		this.squaredRadii = new double[this.n];
+		if (radii != null) {
+			for (int i = 0; i < this.n; i++) {
+				this.squaredRadii[i] = radii[i] * radii[i];
+			}
+		}
+		
+		triangulate();
+		buildResult();
+		
+		// release working arrays
+		this.vertices = null;
+		this.twins = null;
+		this.alive = null;
+		this.freeTriangles = null;
+		this.testedStamps = null;
+		this.conflicts = null;
+		this.visitedStamps = null;
+	}
+	
+	/**
+	 * Constructs the weighted Delaunay triangulation (regular triangulation) of the given marked
+	 * points, where the marks are the radii of the points (see <code>LaguerreDelaunayTessellation2D</code>).
+	 * 
+	 * @param markedPoints  the 2D points, with a numeric mark for the radius of the sphere around the point
+	 * @return the triangulation, the indices of the points correspond to the iteration order of
+	 *         <code>markedPoints</code>
+	 */
+	public static DelaunayTriangulation2D fromMarkedPoints(Collection<MarkedPoint> markedPoints) {
+		double[] x = new double[markedPoints.size()];
+		double[] y = new double[markedPoints.size()];
+		double[] radii = new double[markedPoints.size()];
+		int i = 0;
+		for (MarkedPoint markedPoint : markedPoints) {
+			if (markedPoint.getDimension() != 2) {
+				throw new IllegalArgumentException("Expected marked points in dimension 2!");
+			}
+			double[] coord = markedPoint.getCoordinates();
+			x[i] = coord[0];
+			y[i] = coord[1];
+			radii[i] = markedPoint.getValue();
+			i++;
+		}
+		return new DelaunayTriangulation2D(x, y, radii);
+	}
+	
+	/**
+	 * Returns the number of points (including redundant points).
+	 * 
+	 * @return the number of points
+	 */
+	public int getNumberOfPoints() {
+		return this.n;
+	}
+	
+	/**
+	 * Returns the number of triangles.
+	 * 
+	 * @return the number of triangles
+	 */
+	public int getNumberOfTriangles() {
+		return this.halfEdgeOrigins.length / 3;
+	}
+	
+	/**
+	 * Returns the number of half-edges, i.e., three times the number of triangles.
+	 * 
+	 * @return the number of half-edges
+	 */
+	public int getNumberOfHalfEdges() {
+		return this.halfEdgeOrigins.length;
+	}
+	
+	/**
+	 * Returns the index of the point where the given half-edge starts.
+	 * 
+	 * @param halfEdge  the index of the half-edge
+	 * @return the index of the point
+	 */
+	public int getOrigin(int halfEdge) {
+		return this.halfEdgeOrigins[halfEdge];
+	}
+	
+	/**
+	 * Returns the index of the point where the given half-edge ends.
+	 * 
+	 * @param halfEdge  the index of the half-edge
+	 * @return the index of the point
+	 */
+	public int getDestination(int halfEdge) {
+		return this.halfEdgeOrigins[getNext(halfEdge)];
+	}
+	
+	/**
+	 * Returns the twin of the given half-edge, i.e., the half-edge in the opposite direction
+	 * in the neighbouring triangle.
+	 * 
+	 * @param halfEdge  the index of the half-edge
+	 * @return the index of the twin, <code>-1</code> if the half-edge is on the convex hull
+	 */
+	public int getTwin(int halfEdge) {
+		return this.halfEdgeTwins[halfEdge];
+	}
+	
+	/**
+	 * Returns the next half-edge (counter-clockwise) in the same triangle.
+	 * 
+	 * @param halfEdge  the index of the half-edge
+	 * @return the index of the next half-edge
+	 */
+	public static int getNext(int halfEdge) {
+		return (halfEdge % 3 == 2) ? (halfEdge - 2) : (halfEdge + 1);
+	}
+	
+	/**
+	 * Returns the previous half-edge (counter-clockwise) in the same triangle.
+	 * 
+	 * @param halfEdge  the index of the half-edge
+	 * @return the index of the previous half-edge
+	 */
+	public static int getPrevious(int halfEdge) {
+		return (halfEdge % 3 == 0) ? (halfEdge + 2) : (halfEdge - 1);
+	}
+	
+	/**
+	 * Returns the triangle of the given half-edge.
+	 * 
+	 * @param halfEdge  the index of the half-edge
+	 * @return the index of the triangle
+	 */
+	public static int getTriangle(int halfEdge) {
+		return halfEdge / 3;
+	}
+	
+	/**
+	 * Returns the vertices of the given triangle, in counter-clockwise order.
+	 * 
+	 * @param triangle  the index of the triangle
+	 * @return the indices of the three points
+	 */
+	public int[] getTriangleVertices(int triangle) {
+		return new int[] { this.halfEdgeOrigins[3*triangle], this.halfEdgeOrigins[3*triangle+1], this.halfEdgeOrigins[3*triangle+2] };
+	}
+	
+	/**
+	 * Returns an outgoing half-edge of the given point. For points on the convex hull,
+	 * this is the half-edge on the hull, i.e., all outgoing half-edges can be visited
+	 * clockwise by <code>getNext(getTwin(halfEdge))</code> until the twin is <code>-1</code>.
+	 * 
+	 * @param point  the index of the point
+	 * @return the index of the half-edge, <code>-1</code> if the point is redundant
+	 */
+	public int getIncidentHalfEdge(int point) {
+		return this.incidentHalfEdges[point];
+	}
+	
+	/**
+	 * Checks whether the given point is redundant, i.e., it is not a vertex of any triangle.
+	 * This is the case for points whose Laguerre cell is empty and for duplicate points.
+	 * 
+	 * @param point  the index of the point
+	 * @return <code>true</code> if the point is redundant
+	 */
+	public boolean isRedundant(int point) {
+		return (this.incidentHalfEdges[point] < 0);
+	}
+	
+	/**
+	 * Returns the neighbours of the given point, i.e., the points that share an edge
+	 * with this point.
+	 * 
+	 * @param point  the index of the point
+	 * @return the indices of the neighbours in ascending order
+	 */
+	public int[] getNeighbours(int point) {
+		return Arrays.copyOfRange(this.neighbourIndices, this.neighbourOffsets[point], this.neighbourOffsets[point+1]);
+	}
+	
+	/**
+	 * Returns the number of neighbours of the given point.
+	 * 
+	 * @param point  the index of the point
+	 * @return the number of neighbours
+	 */
+	public int getNumberOfNeighbours(int point) {
+		return this.neighbourOffsets[point+1] - this.neighbourOffsets[point];
+	}
+	
+	/**
+	 * Computes the triangulation (including ghost triangles) by incremental insertion.
+	 */
+	private void triangulate() {
+		if (this.n < 3) {
+			throw new IllegalArgumentException("At least three points are required for a triangulation!");
+		}
+		int[] order = getHilbertOrder();
+		
+		// find a first (non-degenerate) triangle
+		int i0 = order[0];
+		int i1 = -1;
+		int i2 = -1;
+		for (int k = 1; k < this.n; k++) {
+			int i = order[k];
+			if (i1 < 0) {
+				if ((this.x[i] != this.x[i0]) || (this.y[i] != this.y[i0])) {
+					i1 = i;
+				}
+			} else if (orientation(i0, i1, i) != 0) {
+				i2 = i;
+				break;
+			}
+		}
+		if (i2 < 0) {
+			throw new IllegalArgumentException("Cannot triangulate points that are all collinear!");
+		}
+		if (orientation(i0, i1, i2) < 0) {
+			int tmp = i1;
+			i1 = i2;
+			i2 = tmp;
+		}
+		
+		int capacity = 2*this.n + 16;
+		this.vertices = new int[3*capacity];
+		this.twins = new int[3*capacity];
+		this.alive = new boolean[capacity];
+		this.testedStamps = new int[capacity];
+		this.conflicts = new boolean[capacity];
+		this.visitedStamps = new int[capacity];
+		this.freeTriangles = new int[16];
+		this.numberOfAllocatedTriangles = 0;
+		this.numberOfFreeTriangles = 0;
+		
+		int infinite = this.n;
+		int t0 = newTriangle(i0, i1, i2);
+		int g0 = newTriangle(i1, i0, infinite);
+		int g1 = newTriangle(i2, i1, infinite);
+		int g2 = newTriangle(i0, i2, infinite);
+		linkTriangles(new int[] { t0, g0, g1, g2 });
+		
+		// cavity boundary, indexed by the start vertex of the boundary edge
+		int[] cavityStart = new int[this.n+1];
+		Arrays.fill(cavityStart, -1);
+		int[] stack = new int[64];
+		int[] boundary = new int[64];
+		int[] cavity = new int[64];
+		
+		Random random = new Random(0);
+		int last = t0;
+		int stamp = 0;
+		for (int k = 0; k < this.n; k++) {
+			int p = order[k];
+			if ((p == i0) || (p == i1) || (p == i2)) {
+				continue;
+			}
+			stamp++;
+			
+			int start = locate(p, last, random);
+			if (!isGhost(start)) {
+				if (isDuplicate(start, p) || !inConflict(start, p, stamp)) {
+					// point is a duplicate or redundant
+					continue;
+				}
+			}
+			
+			// collect all triangles in conflict with p (Bowyer-Watson cavity) and the boundary edges
+			int cavitySize = 0;
+			int boundarySize = 0;
+			int stackSize = 0;
+			this.visitedStamps[start] = stamp;
+			stack[stackSize++] = start;
+			while (stackSize > 0) {
+				int t = stack[--stackSize];
+				if (cavitySize == cavity.length) {
+					cavity = Arrays.copyOf(cavity, 2*cavity.length);
+				}
+				cavity[cavitySize++] = t;
+				for (int e = 3*t; e < 3*t+3; e++) {
+					int u = this.twins[e] / 3;
+					if (this.visitedStamps[u] == stamp) {
+						// already part of the cavity
+						continue;
+					}
+					if ((this.testedStamps[u] == stamp) ? this.conflicts[u] : inConflict(u, p, stamp)) {
+						this.visitedStamps[u] = stamp;
+						if (stackSize == stack.length) {
+							stack = Arrays.copyOf(stack, 2*stack.length);
+						}
+						stack[stackSize++] = u;
+					} else {
+						if (boundarySize == boundary.length) {
+							boundary = Arrays.copyOf(boundary, 2*boundary.length);
+						}
+						boundary[boundarySize++] = e;
+					}
+				}
+			}
+			
+			// remember the boundary edges (vertices and outer twins) before removing the cavity
+			int[] boundaryData = new int[3*boundarySize];
+			for (int b = 0; b < boundarySize; b++) {
+				int e = boundary[b];
+				boundaryData[3*b]   = this.vertices[e];
+				boundaryData[3*b+1] = this.vertices[nextInternal(e)];
+				boundaryData[3*b+2] = this.twins[e];
+			}
+			for (int c = 0; c < cavitySize; c++) {
+				freeTriangle(cavity[c]);
+			}
+			
+			// connect p with all boundary edges
+			int[] newTriangles = new int[boundarySize];
+			for (int b = 0; b < boundarySize; b++) {
+				int a = boundaryData[3*b];
+				int c = boundaryData[3*b+1];
+				int outer = boundaryData[3*b+2];
+				int t = newTriangle(a, c, p);
+				newTriangles[b] = t;
+				this.twins[3*t] = outer;
+				this.twins[outer] = 3*t;
+				if (cavityStart[a] >= 0) {
+					throw new RuntimeException("Inconsistent cavity in Delaunay triangulation!");
+				}
+				cavityStart[a] = t;
+			}
+			for (int b = 0; b < boundarySize; b++) {
+				int t = newTriangles[b];
+				int c = this.vertices[3*t+1];
+				int u = cavityStart[c];
+				if (u < 0) {
+					throw new RuntimeException("Inconsistent cavity in Delaunay triangulation!");
+				}
+				// edge c->p of t and edge p->c of u (which starts at c)
+				this.twins[3*t+1] = 3*u+2;
+				this.twins[3*u+2] = 3*t+1;
+			}
+			for (int b = 0; b < boundarySize; b++) {
+				cavityStart[boundaryData[3*b]] = -1;
+				if (!isGhost(newTriangles[b])) {
+					last = newTriangles[b];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Builds the half-edge structure (without ghost triangles) and the neighbourhood of the points.
+	 */
+	private void buildResult() {
+		int[] newIndex = new int[this.numberOfAllocatedTriangles];
+		int count = 0;
+		for (int t = 0; t < this.numberOfAllocatedTriangles; t++) {
+			newIndex[t] = (this.alive[t] && !isGhost(t)) ? count++ : -1;
+		}
+		
+		this.halfEdgeOrigins = new int[3*count];
+		this.halfEdgeTwins = new int[3*count];
+		this.incidentHalfEdges = new int[this.n];
+		Arrays.fill(this.incidentHalfEdges, -1);
+		for (int t = 0; t < this.numberOfAllocatedTriangles; t++) {
+			if (newIndex[t] < 0) {
+				continue;
+			}
+			for (int k = 0; k < 3; k++) {
+				int e = 3*newIndex[t] + k;
+				int twin = this.twins[3*t+k];
+				this.halfEdgeOrigins[e] = this.vertices[3*t+k];
+				this.halfEdgeTwins[e] = (newIndex[twin/3] >= 0) ? (3*newIndex[twin/3] + twin%3) : -1;
+			}
+		}
+		for (int e = 0; e < this.halfEdgeOrigins.length; e++) {
+			int origin = this.halfEdgeOrigins[e];
+			// prefer half-edges on the convex hull, such that all outgoing half-edges can be visited
+			if ((this.incidentHalfEdges[origin] < 0) || (this.halfEdgeTwins[getPrevious(e)] < 0)) {
+				this.incidentHalfEdges[origin] = e;
+			}
+		}
+		
+		// neighbours as compressed sparse rows: every edge is visited once by the half-edge with
+		// origin < destination or (on the convex hull) by its only half-edge
+		int[] counts = new int[this.n];
+		for (int e = 0; e < this.halfEdgeOrigins.length; e++) {
+			int a = this.halfEdgeOrigins[e];
+			int b = getDestination(e);
+			if ((a < b) || (this.halfEdgeTwins[e] < 0)) {
+				counts[a]++;
+				counts[b]++;
+			}
+		}
+		this.neighbourOffsets = new int[this.n+1];
+		for (int i = 0; i < this.n; i++) {
+			this.neighbourOffsets[i+1] = this.neighbourOffsets[i] + counts[i];
+		}
+		this.neighbourIndices = new int[this.neighbourOffsets[this.n]];
+		int[] positions = Arrays.copyOf(this.neighbourOffsets, this.n);
+		for (int e = 0; e < this.halfEdgeOrigins.length; e++) {
+			int a = this.halfEdgeOrigins[e];
+			int b = getDestination(e);
+			if ((a < b) || (this.halfEdgeTwins[e] < 0)) {
+				this.neighbourIndices[positions[a]++] = b;
+				this.neighbourIndices[positions[b]++] = a;
+			}
+		}
+		for (int i = 0; i < this.n; i++) {
+			Arrays.sort(this.neighbourIndices, this.neighbourOffsets[i], this.neighbourOffsets[i+1]);
+		}
+	}
+	
+	/**
+	 * Returns the indices of the points ordered along a Hilbert curve, such that
+	 * consecutive points are close to each other (which makes point location fast).
+	 * 
+	 * @return the ordered indices
+	 */
+	private int[] getHilbertOrder() {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < this.n; i++) {
+			minX = Math.min(minX, this.x[i]);
+			minY = Math.min(minY, this.y[i]);
+			maxX = Math.max(maxX, this.x[i]);
+			maxY = Math.max(maxY, this.y[i]);
+		}
+		double scale = Math.max(maxX - minX, maxY - minY);
+		scale = (scale > 0.0) ? (65535.0 / scale) : 0.0;
+		
+		// sort by (Hilbert index, point index), packed into a single long value
+		long[] keys = new long[this.n];
+		for (int i = 0; i < this.n; i++) {
+			int hx = (int)((this.x[i] - minX) * scale);
+			int hy = (int)((this.y[i] - minY) * scale);
+			keys[i] = (hilbertIndex(hx, hy) << 31) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[this.n];
+		for (int i = 0; i < this.n; i++) {
+			order[i] = (int)(keys[i] & 0x7FFFFFFFL);
+		}
+		return order;
+	}
+	
+	/**
+	 * Computes the position of a grid cell along the Hilbert curve on a
+	 * <code>65536 x 65536</code> grid.
+	 * 
+	 * @param hx  the x-coordinate of the grid cell
+	 * @param hy  the y-coordinate of the grid cell
+	 * @return the position along the Hilbert curve
+	 */
+	private static long hilbertIndex(int hx, int hy) {
+		long d = 0;
+		for (int s = 1 << 15; s > 0; s >>= 1) {
+			int rx = ((hx & s) > 0) ? 1 : 0;
+			int ry = ((hy & s) > 0) ? 1 : 0;
+			d += (long)s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant
+			if (ry == 0) {
+				if (rx == 1) {
+					hx = s-1 - hx;
+					hy = s-1 - hy;
+				}
+				int tmp = hx;
+				hx = hy;
+				hy = tmp;
+			}
+		}
+		return d;
+	}
+	
+	/**
+	 * Finds a triangle containing the given point, by walking from the given start triangle.
+	 * 
+	 * @param p       the index of the point
+	 * @param start   the start triangle (not a ghost triangle)
+	 * @param random  random generator for choosing the order of the edges (avoids cycles)
+	 * @return a (solid) triangle containing the point (possibly on its boundary) or a ghost
+	 *         triangle if the point is outside of the convex hull
+	 */
+	private int locate(int p, int start, Random random) {
+		int t = start;
+		walk: while (true) {
+			int offset = random.nextInt(3);
+			for (int k = 0; k < 3; k++) {
+				int e = 3*t + (k+offset)%3;
+				if (orientation(this.vertices[e], this.vertices[nextInternal(e)], p) < 0) {
+					t = this.twins[e] / 3;
+					if (isGhost(t)) {
+						return t;
+					}
+					continue walk;
+				}
+			}
+			return t;
+		}
+	}
+	
+	/**
+	 * Checks whether the given point has the same coordinates as a vertex of the given triangle.
+	 * 
+	 * @param t  the triangle
+	 * @param p  the index of the point
+	 * @return <code>true</code> if the point is a duplicate
+	 */
+	private boolean isDuplicate(int t, int p) {
+		for (int k = 0; k < 3; k++) {
+			int v = this.vertices[3*t+k];
+			if ((this.x[v] == this.x[p]) && (this.y[v] == this.y[p])) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether the given triangle is in conflict with the point, i.e., whether
+	 * it has to be removed when the point is inserted. The result is remembered for the
+	 * given stamp.
+	 * 
+	 * @param t      the triangle
+	 * @param p      the index of the point
+	 * @param stamp  the stamp of the current insertion
+	 * @return <code>true</code> if the triangle is in conflict
+	 */
+	private boolean inConflict(int t, int p, int stamp) {
+		boolean result;
+		int infinite = this.n;
+		int a = this.vertices[3*t];
+		int b = this.vertices[3*t+1];
+		int c = this.vertices[3*t+2];
+		if ((a != infinite) && (b != infinite) && (c != infinite)) {
+			result = (power(a, b, c, p) > 0);
+		} else {
+			// ghost triangle: rotate such that (a,b) is the edge on the convex hull
+			int e = 3*t;
+			while ((this.vertices[e] == infinite) || (this.vertices[nextInternal(e)] == infinite)) {
+				e = nextInternal(e);
+			}
+			a = this.vertices[e];
+			b = this.vertices[nextInternal(e)];
+			int o = orientation(a, b, p);
+			if (o != 0) {
+				result = (o > 0);
+			} else if (isStrictlyBetween(a, b, p)) {
+				// p on the hull edge: same as the solid triangle on the other side
+				int solid = this.twins[e] / 3;
+				result = (this.testedStamps[solid] == stamp) ? this.conflicts[solid] : inConflict(solid, p, stamp);
+			} else {
+				result = false;
+			}
+		}
+		this.testedStamps[t] = stamp;
+		this.conflicts[t] = result;
+		return result;
+	}
+	
+	/**
+	 * Checks whether the point <code>p</code> lies strictly between the points <code>a</code>
+	 * and <code>b</code> on the line through them (collinearity is assumed).
+	 * 
+	 * @param a  the index of the first point
+	 * @param b  the index of the second point
+	 * @param p  the index of the point to check
+	 * @return <code>true</code> if <code>p</code> is between <code>a</code> and <code>b</code>
+	 */
+	private boolean isStrictlyBetween(int a, int b, int p) {
+		if (this.x[a] != this.x[b]) {
+			return ((this.x[a] < this.x[p]) && (this.x[p] < this.x[b])) || ((this.x[b] < this.x[p]) && (this.x[p] < this.x[a]));
+		} else {
+			return ((this.y[a] < this.y[p]) && (this.y[p] < this.y[b])) || ((this.y[b] < this.y[p]) && (this.y[p] < this.y[a]));
+		}
+	}
+	
+	/**
+	 * Checks whether the given triangle is a ghost triangle (outside of the convex hull).
+	 * 
+	 * @param t  the triangle
+	 * @return <code>true</code> if it is a ghost triangle
+	 */
+	private boolean isGhost(int t) {
+		return (this.vertices[3*t] == this.n) || (this.vertices[3*t+1] == this.n) || (this.vertices[3*t+2] == this.n);
+	}
+	
+	/**
+	 * Returns the next half-edge in the same triangle (of the working arrays).
+	 * 
+	 * @param e  the half-edge
+	 * @return the next half-edge
+	 */
+	private static int nextInternal(int e) {
+		return (e % 3 == 2) ? (e - 2) : (e + 1);
+	}
+	
+	/**
+	 * Allocates a new triangle (or reuses a free one).
+	 * 
+	 * @param a  the first vertex
+	 * @param b  the second vertex
+	 * @param c  the third vertex
+	 * @return the index of the triangle
+	 */
+	private int newTriangle(int a, int b, int c) {
+		int t;
+		if (this.numberOfFreeTriangles > 0) {
+			t = this.freeTriangles[--this.numberOfFreeTriangles];
+		} else {
+			t = this.numberOfAllocatedTriangles++;
+			if (t == this.alive.length) {
+				int capacity = 2*this.alive.length;
+				this.vertices = Arrays.copyOf(this.vertices, 3*capacity);
+				this.twins = Arrays.copyOf(this.twins, 3*capacity);
+				this.alive = Arrays.copyOf(this.alive, capacity);
+				this.testedStamps = Arrays.copyOf(this.testedStamps, capacity);
+				this.conflicts = Arrays.copyOf(this.conflicts, capacity);
+				this.visitedStamps = Arrays.copyOf(this.visitedStamps, capacity);
+			}
+		}
+		this.vertices[3*t]   = a;
+		this.vertices[3*t+1] = b;
+		this.vertices[3*t+2] = c;
+		this.twins[3*t]   = -1;
+		this.twins[3*t+1] = -1;
+		this.twins[3*t+2] = -1;
+		this.alive[t] = true;
+		this.testedStamps[t] = 0;
+		this.visitedStamps[t] = 0;
+		return t;
+	}
+	
+	/**
+	 * Marks the given triangle as free, such that it can be reused.
+	 * 
+	 * @param t  the triangle
+	 */
+	private void freeTriangle(int t) {
+		this.alive[t] = false;
+		if (this.numberOfFreeTriangles == this.freeTriangles.length) {
+			this.freeTriangles = Arrays.copyOf(this.freeTriangles, 2*this.freeTriangles.length);
+		}
+		this.freeTriangles[this.numberOfFreeTriangles++] = t;
+	}
+	
+	/**
+	 * Sets the twins of all half-edges of the given triangles by matching their vertices.
+	 * 
+	 * @param triangles  the triangles
+	 */
+	private void linkTriangles(int[] triangles) {
+		HashMap<Long,Integer> halfEdges = new HashMap<Long,Integer>();
+		for (int t : triangles) {
+			for (int e = 3*t; e < 3*t+3; e++) {
+				halfEdges.put(((long)this.vertices[e] << 32) | this.vertices[nextInternal(e)], e);
+			}
+		}
+		for (int t : triangles) {
+			for (int e = 3*t; e < 3*t+3; e++) {
+				Integer twin = halfEdges.get(((long)this.vertices[nextInternal(e)] << 32) | this.vertices[e]);
+				if (twin != null) {
+					this.twins[e] = twin;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Orientation test: returns the sign of the determinant that is positive if the
+	 * points <code>a</code>, <code>b</code>, <code>c</code> are in counter-clockwise order.
+	 * 
+	 * @param a  the index of the first point
+	 * @param b  the index of the second point
+	 * @param c  the index of the third point
+	 * @return <code>1</code>, <code>0</code> or <code>-1</code>
+	 */
+	private int orientation(int a, int b, int c) {
+		double acx = this.x[a] - this.x[c];
+		double bcx = this.x[b] - this.x[c];
+		double acy = this.y[a] - this.y[c];
+		double bcy = this.y[b] - this.y[c];
+		double left = acx * bcy;
+		double right = acy * bcx;
+		double det = left - right;
+		double bound = ORIENTATION_ERROR_BOUND * (Math.abs(left) + Math.abs(right));
+		if (det > bound) {
+			return 1;
+		} else if (-det > bound) {
+			return -1;
+		}
+		
+		// exact evaluation
+		BigDecimal xc = new BigDecimal(this.x[c]);
+		BigDecimal yc = new BigDecimal(this.y[c]);
+		BigDecimal eAcx = new BigDecimal(this.x[a]).subtract(xc);
+		BigDecimal eBcx = new BigDecimal(this.x[b]).subtract(xc);
+		BigDecimal eAcy = new BigDecimal(this.y[a]).subtract(yc);
+		BigDecimal eBcy = new BigDecimal(this.y[b]).subtract(yc);
+		return eAcx.multiply(eBcy).subtract(eAcy.multiply(eBcx)).signum();
+	}
+	
+	/**
+	 * Power test (in-circle test for weighted points): returns the sign of the determinant
+	 * that is positive if the point <code>p</code> is in conflict with the counter-clockwise
+	 * triangle <code>a</code>, <code>b</code>, <code>c</code>, i.e., if the lifted point
+	 * <code>(x, y, x^2 + y^2 - r^2)</code> lies below the plane through the lifted vertices.
+	 * 
+	 * @param a  the index of the first point
+	 * @param b  the index of the second point
+	 * @param c  the index of the third point
+	 * @param p  the index of the point to test
+	 * @return <code>1</code>, <code>0</code> or <code>-1</code>
+	 */
+	private int power(int a, int b, int c, int p) {
+		double adx = this.x[a] - this.x[p];
+		double ady = this.y[a] - this.y[p];
+		double bdx = this.x[b] - this.x[p];
+		double bdy = this.y[b] - this.y[p];
+		double cdx = this.x[c] - this.x[p];
+		double cdy = this.y[c] - this.y[p];
+		double weightP = this.squaredRadii[p];
+		double alift = adx*adx + ady*ady - this.squaredRadii[a] + weightP;
+		double blift = bdx*bdx + bdy*bdy - this.squaredRadii[b] + weightP;
+		double clift = cdx*cdx + cdy*cdy - this.squaredRadii[c] + weightP;
+		double bc = bdx*cdy - cdx*bdy;
+		double ca = cdx*ady - adx*cdy;
+		double ab = adx*bdy - bdx*ady;
+		double det = alift*bc + blift*ca + clift*ab;
+		
+		double permanent = (Math.abs(bdx*cdy) + Math.abs(cdx*bdy)) * (adx*adx + ady*ady + this.squaredRadii[a] + weightP)
+		                 + (Math.abs(cdx*ady) + Math.abs(adx*cdy)) * (bdx*bdx + bdy*bdy + this.squaredRadii[b] + weightP)
+		                 + (Math.abs(adx*bdy) + Math.abs(bdx*ady)) * (cdx*cdx + cdy*cdy + this.squaredRadii[c] + weightP);
+		double bound = POWER_ERROR_BOUND * permanent;
+		if (det > bound) {
+			return 1;
+		} else if (-det > bound) {
+			return -1;
+		}
+		
+		// exact evaluation
+		BigDecimal xp = new BigDecimal(this.x[p]);
+		BigDecimal yp = new BigDecimal(this.y[p]);
+		BigDecimal eWeightP = new BigDecimal(this.squaredRadii[p]);
+		BigDecimal eAdx = new BigDecimal(this.x[a]).subtract(xp);
+		BigDecimal eAdy = new BigDecimal(this.y[a]).subtract(yp);
+		BigDecimal eBdx = new BigDecimal(this.x[b]).subtract(xp);
+		BigDecimal eBdy = new BigDecimal(this.y[b]).subtract(yp);
+		BigDecimal eCdx = new BigDecimal(this.x[c]).subtract(xp);
+		BigDecimal eCdy = new BigDecimal(this.y[c]).subtract(yp);
+		BigDecimal eAlift = eAdx.multiply(eAdx).add(eAdy.multiply(eAdy)).subtract(new BigDecimal(this.squaredRadii[a])).add(eWeightP);
+		BigDecimal eBlift = eBdx.multiply(eBdx).add(eBdy.multiply(eBdy)).subtract(new BigDecimal(this.squaredRadii[b])).add(eWeightP);
+		BigDecimal eClift = eCdx.multiply(eCdx).add(eCdy.multiply(eCdy)).subtract(new BigDecimal(this.squaredRadii[c])).add(eWeightP);
+		BigDecimal eBc = eBdx.multiply(eCdy).subtract(eCdx.multiply(eBdy));
+		BigDecimal eCa = eCdx.multiply(eAdy).subtract(eAdx.multiply(eCdy));
+		BigDecimal eAb = eAdx.multiply(eBdy).subtract(eBdx.multiply(eAdy));
+		return eAlift.multiply(eBc).add(eBlift.multiply(eCa)).add(eClift.multiply(eAb)).signum();
+	}
+	
+}